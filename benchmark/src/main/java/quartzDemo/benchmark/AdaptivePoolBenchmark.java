@@ -0,0 +1,204 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import org.quartz.listeners.TriggerListenerSupport;
+import quartzDemo.pool.AdaptiveThreadPool;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 突发负载下固定线程数的 SimpleThreadPool 与 AdaptiveThreadPool 的对比。
+ *
+ * 模拟大量触发器使用 0 0/2 8-17 * * ? 这样的表达式、在同一时刻一起触发：jobCount 个 CronTrigger 都使用
+ * cronExpression(默认每 10 秒一次，把两分钟一次的突发压缩到基准测试的时间里)，作业是 BlockingJob(休眠 blockMillis)，
+ * misfire 指令是 FireAndProceed，所以每次突发都正好执行 jobCount 次。
+ * 整个 Trial 使用同一个调度器，AdaptiveThreadPool 在两次突发之间可以收缩；每次调用先等到下一个触发时刻，
+ * 得分是从触发时刻到这一批作业全部执行完的时间。
+ *
+ * 辅助计数器：misfires(misfireThreshold 默认 1000 毫秒)、触发延迟 p99、突发开始前和期间的最大工作线程数。
+ *
+ * java -jar benchmarks.jar AdaptivePoolBenchmark -p jobCount=2000
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 6)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Thread)
+public class AdaptivePoolBenchmark {
+
+	/** simple-N：固定 N 个线程的 SimpleThreadPool；adaptive：AdaptiveThreadPool，minThreads..maxThreads */
+	@Param({"simple-10", "simple-100", "adaptive"})
+	public String pool;
+
+	@Param({"2000"})
+	public int jobCount;
+
+	@Param({"20"})
+	public long blockMillis;
+
+	@Param({"0/10 * * * * ?"})
+	public String cronExpression;
+
+	@Param({"2"})
+	public int minThreads;
+
+	@Param({"200"})
+	public int maxThreads;
+
+	@Param({"2000"})
+	public long keepAliveMillis;
+
+	private Scheduler scheduler;
+
+	private AdaptiveThreadPool adaptive;
+
+	private volatile CountDownLatch done;
+
+	private final AtomicInteger misfireCount = new AtomicInteger();
+
+	private final AtomicInteger peakThreads = new AtomicInteger();
+
+	private long[] lags;
+
+	private final AtomicInteger lagCount = new AtomicInteger();
+
+	private int threadsBefore;
+
+	private int fixedThreads;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class BurstStats {
+
+		public long misfires;
+
+		public long lagP99Millis;
+
+		public long threadsBefore;
+
+		public long peakThreads;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		lags = new long[jobCount];
+		Properties props = Fixtures.schedulerProperties(10);
+		if (pool.startsWith("simple-")) {
+			fixedThreads = Integer.parseInt(pool.substring("simple-".length()));
+			props.setProperty("org.quartz.threadPool.threadCount", String.valueOf(fixedThreads));
+		} else {
+			props.remove("org.quartz.threadPool.threadCount");
+			props.setProperty("org.quartz.threadPool.class", AdaptiveThreadPool.class.getName());
+			props.setProperty("org.quartz.threadPool.minThreads", String.valueOf(minThreads));
+			props.setProperty("org.quartz.threadPool.maxThreads", String.valueOf(maxThreads));
+			props.setProperty("org.quartz.threadPool.keepAliveMillis", String.valueOf(keepAliveMillis));
+		}
+		props.setProperty("org.quartz.jobStore.misfireThreshold", "1000");
+		props.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "100");
+		scheduler = Fixtures.newScheduler(props);
+		adaptive = AdaptiveThreadPool.of(scheduler.getSchedulerName());
+
+		scheduler.getListenerManager().addTriggerListener(new TriggerListenerSupport() {
+			@Override
+			public String getName() {
+				return "lagRecorder";
+			}
+
+			@Override
+			public void triggerFired(Trigger trigger, JobExecutionContext context) {
+				int i = lagCount.getAndIncrement();
+				if (i < lags.length) {
+					lags[i] = context.getFireTime().getTime() - context.getScheduledFireTime().getTime();
+				}
+			}
+
+			@Override
+			public void triggerMisfired(Trigger trigger) {
+				misfireCount.incrementAndGet();
+			}
+		}, EverythingMatcher.allTriggers());
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "completion";
+			}
+
+			@Override
+			public void jobToBeExecuted(JobExecutionContext context) {
+				int threads = poolSize();
+				int peak;
+				while (threads > (peak = peakThreads.get()) && !peakThreads.compareAndSet(peak, threads)) {
+				}
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				CountDownLatch latch = done;
+				if (latch != null) {
+					latch.countDown();
+				}
+			}
+		}, EverythingMatcher.allJobs());
+
+		for (int i = 0; i < jobCount; i++) {
+			JobDetail job = JobBuilder.newJob(BlockingJob.class)
+					.withIdentity("job" + i, "group" + (i % 100))
+					.usingJobData("blockMillis", blockMillis)
+					.build();
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group" + (i % 100))
+					.withSchedule(CronScheduleBuilder.cronSchedule(cronExpression)
+							.withMisfireHandlingInstructionFireAndProceed())
+					.build();
+			scheduler.scheduleJob(job, trigger);
+		}
+		scheduler.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+	}
+
+	/**
+	 * 等到下一次突发的触发时刻，期间上一批作业已经执行完，AdaptiveThreadPool 有时间收缩。
+	 */
+	@Setup(Level.Invocation)
+	public void awaitBurst() throws Exception {
+		misfireCount.set(0);
+		lagCount.set(0);
+		done = new CountDownLatch(jobCount);
+		Trigger any = scheduler.getTrigger(TriggerKey.triggerKey("trigger0", "group0"));
+		long wait = any.getNextFireTime().getTime() - System.currentTimeMillis();
+		if (wait > 0) {
+			Thread.sleep(wait);
+		}
+		threadsBefore = poolSize();
+		peakThreads.set(threadsBefore);
+	}
+
+	@Benchmark
+	public void burst(BurstStats stats) throws Exception {
+		done.await();
+
+		int n = Math.min(lagCount.get(), lags.length);
+		long[] sorted = Arrays.copyOf(lags, n);
+		Arrays.sort(sorted);
+		stats.misfires += misfireCount.get();
+		stats.lagP99Millis = n == 0 ? 0 : sorted[Math.min(n - 1, (int) (n * 0.99))];
+		stats.threadsBefore = threadsBefore;
+		stats.peakThreads = peakThreads.get();
+	}
+
+	private int poolSize() {
+		return adaptive != null ? adaptive.getPoolSize() : fixedThreads;
+	}
+}
@@ -0,0 +1,162 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import quartzDemo.MyJob;
+import quartzDemo.log.AsyncLogWriter;
+import quartzDemo.log.JobLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyJob 原来的输出方式(拼接字符串后 System.out.println)与 JobLogger + AsyncLogWriter 的对比，都写到临时文件。
+ *
+ * println 时 System.out 换成写文件的 PrintStream，缓冲区和 autoflush 与 JVM 默认的 System.out 相同
+ * (128 字节的 BufferedOutputStream，每次 println 都 flush)，即标准输出被重定向到文件时的情况。
+ *
+ * log：32 个线程直接调用(ops/s 是每秒写出的行数)，消息与 MyJob 相同；
+ * fire：与 FiringThroughputBenchmark 相同的满负荷 firing，32 个工作线程执行 MyJob，ops/s 是 firings/s。
+ * async 时写线程跟不上会让生产者等待(不丢弃记录)，所以 log 的结果是持续的写出速度，而不只是放入缓冲区的速度。
+ *
+ * java -jar benchmarks.jar AsyncLogBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncLogBenchmark {
+
+	private static final JobLogger LOG = JobLogger.getLogger(MyJob.class);
+
+	@State(Scope.Benchmark)
+	public abstract static class Output {
+
+		@Param({"println", "async"})
+		public String mode;
+
+		File file;
+
+		PrintStream stdout;
+
+		AsyncLogWriter writer;
+
+		void open() throws Exception {
+			file = File.createTempFile("async-log-bench", ".log");
+			stdout = System.out;
+			if (mode.equals("println")) {
+				System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(file), 128), true));
+			} else {
+				writer = AsyncLogWriter.start(file);
+			}
+		}
+
+		void close() {
+			if (writer != null) {
+				writer.shutdown();
+			} else {
+				System.out.close();
+			}
+			System.setOut(stdout);
+			System.out.println(mode + ": " + file.length() / 1024 + " KB written");
+			file.delete();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class LogState extends Output {
+
+		final JobKey key = new JobKey("job1", "group1");
+
+		final String name = "hyman";
+
+		final Integer value = 331;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			open();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			close();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class FireState extends Output {
+
+		@Param({"32"})
+		public int threadCount;
+
+		@Param({"1000"})
+		public int triggerCount;
+
+		private final Semaphore firings = new Semaphore(0);
+
+		private Scheduler scheduler;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			open();
+			scheduler = Fixtures.newScheduler(Fixtures.schedulerProperties(threadCount));
+			scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+				@Override
+				public String getName() {
+					return "firingCounter";
+				}
+
+				@Override
+				public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+					firings.release();
+				}
+			}, EverythingMatcher.allJobs());
+
+			for (int i = 0; i < triggerCount; i++) {
+				JobDetail job = JobBuilder.newJob(MyJob.class)
+						.withIdentity("job" + i, "group1")
+						.usingJobData("name", "hyman")
+						.usingJobData("value", 331)
+						.build();
+				Trigger trigger = TriggerBuilder.newTrigger()
+						.withIdentity("trigger" + i, "group1")
+						.startNow()
+						.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+								.withIntervalInMilliseconds(1)
+								.repeatForever())
+						.build();
+				scheduler.scheduleJob(job, trigger);
+			}
+			scheduler.start();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			scheduler.shutdown(true);
+			close();
+		}
+	}
+
+	@Benchmark
+	@Threads(32)
+	public void log(LogState state) {
+		if (state.writer == null) {
+			System.out.println("Instance " + state.key + "：" + state.name + " = " + state.value);
+		} else {
+			LOG.info("Instance {}：{} = {}", state.key, state.name, state.value);
+		}
+	}
+
+	@Benchmark
+	public void fire(FireState state) throws InterruptedException {
+		state.firings.acquire();
+	}
+}
@@ -0,0 +1,134 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import quartzDemo.job.BatchJob;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 同一时刻触发的 jobCount 个同类作业(只有 JobDataMap 中的 value 不同)在 PriorityStealingThreadPool 上逐个执行与合并执行的对比。
+ *
+ * maxBatchSize = 1 时每个触发器单独执行一次 execute；大于 1 时排队中的作业合并成一批(batchWindowMillis 默认 0，只合并
+ * 已经在排队的)。作业每次调用 execute(List) 有 callMicros 微秒的固定开销(模拟一次写库或网络请求，park 等待)，
+ * 之后对每个 context 读取 value。得分是这批作业全部执行完(监听器收到 jobCount 个 jobWasExecuted)的时间，
+ * 辅助计数器 calls 是 execute(List) 的调用次数。
+ *
+ * java -jar benchmarks.jar BatchJobBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+@State(Scope.Thread)
+public class BatchJobBenchmark {
+
+	private static final AtomicInteger CALLS = new AtomicInteger();
+
+	@Param({"1", "100"})
+	public int maxBatchSize;
+
+	@Param({"0", "500"})
+	public long callMicros;
+
+	@Param({"0"})
+	public long batchWindowMillis;
+
+	@Param({"8"})
+	public int threadCount;
+
+	@Param({"10000"})
+	public int jobCount;
+
+	private Scheduler scheduler;
+
+	private CountDownLatch done;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class BatchStats {
+
+		public long calls;
+	}
+
+	/**
+	 * 每批一次 callMicros 的固定开销，再逐个读取参数。
+	 */
+	public static class WriteJob extends BatchJob {
+
+		@Override
+		public void execute(List<JobExecutionContext> contexts) throws JobExecutionException {
+			CALLS.incrementAndGet();
+			long callMicros = contexts.get(0).getMergedJobDataMap().getLongValue("callMicros");
+			if (callMicros > 0) {
+				LockSupport.parkNanos(callMicros * 1000);
+			}
+			long sum = 0;
+			for (JobExecutionContext context : contexts) {
+				sum += context.getMergedJobDataMap().getInt("value");
+			}
+			if (sum < 0) {
+				throw new JobExecutionException("negative sum");
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setUp() throws Exception {
+		done = new CountDownLatch(jobCount);
+		CALLS.set(0);
+
+		Properties props = Fixtures.schedulerProperties(threadCount);
+		props.setProperty("org.quartz.threadPool.class", "quartzDemo.pool.PriorityStealingThreadPool");
+		props.setProperty("org.quartz.threadPool.maxBatchSize", String.valueOf(maxBatchSize));
+		props.setProperty("org.quartz.threadPool.batchWindowMillis", String.valueOf(batchWindowMillis));
+		props.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "1000");
+		scheduler = Fixtures.newScheduler(props);
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "completion";
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				done.countDown();
+			}
+		}, EverythingMatcher.allJobs());
+
+		Date moment = new Date();
+		for (int i = 0; i < jobCount; i++) {
+			JobDetail job = JobBuilder.newJob(WriteJob.class)
+					.withIdentity("job" + i, "group1")
+					.usingJobData("value", i)
+					.usingJobData("callMicros", callMicros)
+					.build();
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group1")
+					.startAt(moment)
+					.build();
+			scheduler.scheduleJob(job, trigger);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+	}
+
+	@Benchmark
+	public void fireAll(BatchStats stats) throws Exception {
+		scheduler.start();
+		done.await();
+		stats.calls += CALLS.get();
+	}
+}
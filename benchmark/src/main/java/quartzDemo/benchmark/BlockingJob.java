@@ -0,0 +1,20 @@
+package quartzDemo.benchmark;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * 模拟以 I/O 等待为主的作业：按 JobDataMap 中的 blockMillis 休眠。
+ */
+public class BlockingJob implements Job {
+
+	@Override
+	public void execute(JobExecutionContext context) throws JobExecutionException {
+		try {
+			Thread.sleep(context.getMergedJobDataMap().getLongValue("blockMillis"));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
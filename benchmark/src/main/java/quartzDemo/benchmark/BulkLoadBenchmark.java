@@ -0,0 +1,88 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import quartzDemo.MyJob;
+import quartzDemo.bulk.BulkScheduleLoader;
+import quartzDemo.bulk.ScheduleEntry;
+import quartzDemo.job.JobParamsRegistry;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动时加载 triggerCount 对作业/触发器所需的时间：AppMain 中逐个 scheduleJob 与 BulkScheduleLoader 分批加载。
+ *
+ * 与 AppMain 一样安装了 JobParamsRegistry(每个 jobScheduled 事件编译一次 JobParams)。started 为 true 时调度器
+ * 已经启动，调度线程会被每次存入唤醒并去抢 JobStore 的锁；触发器从一小时后开始，加载期间不会真正触发。
+ *
+ * java -jar benchmarks.jar BulkLoadBenchmark -p triggerCount=200000
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class BulkLoadBenchmark {
+
+	@Param({"200000"})
+	public int triggerCount;
+
+	@Param({"scheduleJob", "bulk"})
+	public String mode;
+
+	@Param({"false", "true"})
+	public boolean started;
+
+	@Param({"1000"})
+	public int batchSize;
+
+	private ScheduleEntry[] entries;
+
+	private Scheduler scheduler;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws Exception {
+		Date startAt = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+		entries = new ScheduleEntry[triggerCount];
+		for (int i = 0; i < triggerCount; i++) {
+			JobDetail job = JobBuilder.newJob(MyJob.class)
+					.withIdentity("job" + i, "group" + (i % 100))
+					.usingJobData("name", "hyman")
+					.usingJobData("value", 331)
+					.build();
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group" + (i % 100))
+					.startAt(startAt)
+					.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInSeconds(5)
+							.repeatForever())
+					.build();
+			entries[i] = new ScheduleEntry(job, trigger);
+		}
+		scheduler = Fixtures.newScheduler(Fixtures.schedulerProperties(4));
+		JobParamsRegistry.install(scheduler);
+		if (started) {
+			scheduler.start();
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+		entries = null;
+	}
+
+	@Benchmark
+	public int load() throws Exception {
+		if ("bulk".equals(mode)) {
+			return new BulkScheduleLoader(scheduler).setBatchSize(batchSize).load(Arrays.asList(entries).iterator());
+		}
+		for (ScheduleEntry entry : entries) {
+			scheduler.scheduleJob(entry.getJobDetail(), entry.getTrigger());
+		}
+		return entries.length;
+	}
+}
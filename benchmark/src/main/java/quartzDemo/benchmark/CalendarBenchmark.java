@@ -0,0 +1,109 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.Calendar;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerUtils;
+import org.quartz.impl.calendar.DailyCalendar;
+import org.quartz.impl.calendar.HolidayCalendar;
+import org.quartz.impl.calendar.WeeklyCalendar;
+import org.quartz.spi.OperableTrigger;
+import quartzDemo.calendar.BitsetCalendar;
+
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quartz 的 HolidayCalendar 链与编译后的 BitsetCalendar 对比。
+ *
+ * 日历链是 HolidayCalendar(years 年内 holidays 个假日) -> WeeklyCalendar(周末) -> DailyCalendar(只包含 08:00-18:00)，
+ * 在 years 年的范围内编译。getNextIncludedTime 只用 HolidayCalendar -> WeeklyCalendar 两环：
+ * HolidayCalendar.getNextIncludedTime 只检查每天零点，链上有 DailyCalendar 时会一直循环。
+ * fireTimes 是触发器真正的用法：一个每 15 分钟触发的 CronTrigger 被日历修饰后，计算之后 100 次触发时间。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalendarBenchmark {
+
+	@Param({"quartz", "bitset"})
+	public String calendar;
+
+	@Param({"5"})
+	public int years;
+
+	@Param({"1000"})
+	public int holidays;
+
+	private Calendar workingHours;
+
+	private Calendar workingDays;
+
+	private OperableTrigger trigger;
+
+	private long[] timestamps;
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		long from = new GregorianCalendar(2025, 0, 1).getTimeInMillis();
+		long to = new GregorianCalendar(2025 + years, 0, 1).getTimeInMillis();
+
+		HolidayCalendar dayChain = new HolidayCalendar(new WeeklyCalendar());
+		DailyCalendar daily = new DailyCalendar("08:00", "18:00");
+		daily.setInvertTimeRange(true);
+		HolidayCalendar hourChain = new HolidayCalendar(new WeeklyCalendar(daily));
+		for (int i = 0; i < holidays; i++) {
+			Date date = new Date(from + (long) (random.nextDouble() * (to - from)));
+			dayChain.addExcludedDate(date);
+			hourChain.addExcludedDate(date);
+		}
+
+		if ("bitset".equals(calendar)) {
+			workingHours = BitsetCalendar.compile(hourChain, from, to);
+			workingDays = BitsetCalendar.compile(dayChain, from, to);
+		} else {
+			workingHours = hourChain;
+			workingDays = dayChain;
+		}
+
+		trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+				.withSchedule(CronScheduleBuilder.cronSchedule("0 0/15 * * * ?"))
+				.startAt(new Date(from + (to - from) / 2))
+				.build();
+
+		timestamps = new long[4096];
+		for (int i = 0; i < timestamps.length; i++) {
+			timestamps[i] = from + (long) (random.nextDouble() * (to - from) * 0.9);
+		}
+	}
+
+	private long nextTimestamp() {
+		return timestamps[next++ & (timestamps.length - 1)];
+	}
+
+	@Benchmark
+	public boolean isTimeIncluded() {
+		return workingHours.isTimeIncluded(nextTimestamp());
+	}
+
+	@Benchmark
+	public long getNextIncludedTime() {
+		return workingDays.getNextIncludedTime(nextTimestamp());
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public List<Date> fireTimes() {
+		return TriggerUtils.computeFireTimes(trigger, workingHours, 100);
+	}
+}
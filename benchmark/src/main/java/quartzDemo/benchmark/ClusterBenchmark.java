@@ -0,0 +1,134 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.SchedulerRepository;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * nodes 个集群节点共用一个内存 H2 数据库时每秒完成的触发次数：JobStoreTX(QRTZ_LOCKS 行锁)与 OptimisticJobStoreTX(版本条件)。
+ *
+ * 所有节点在同一个 JVM 中，使用相同的调度器名称(即 QRTZ_ 表中的 SCHED_NAME)和不同的 instanceId；
+ * StdSchedulerFactory 按名称在 SchedulerRepository 中复用调度器，所以每创建一个节点就把它从 SchedulerRepository 中移除。
+ * triggerCount 个触发器每 intervalMillis 毫秒触发一次，默认需求远大于处理能力，ops/s 就是整个集群能达到的最大触发次数。
+ * 节点之间的竞争主要在数据库上，tcp = true 时每条语句都有一次网络往返，持有行锁的时间更接近生产环境。
+ *
+ * java -jar benchmarks.jar ClusterBenchmark -p tcp=true
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 6, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class ClusterBenchmark {
+
+	private static final String CLUSTER_NAME = "cluster";
+
+	@Param({"org.quartz.impl.jdbcjobstore.JobStoreTX", "quartzDemo.store.OptimisticJobStoreTX"})
+	public String jobStore;
+
+	@Param({"1", "2", "4"})
+	public int nodes;
+
+	@Param({"1000"})
+	public int triggerCount;
+
+	@Param({"1"})
+	public int intervalMillis;
+
+	@Param({"4"})
+	public int threadCount;
+
+	@Param({"20"})
+	public int batchSize;
+
+	@Param({"false"})
+	public boolean tcp;
+
+	private final Semaphore firings = new Semaphore(0);
+
+	private final List<Scheduler> schedulers = new ArrayList<Scheduler>();
+
+	private EmbeddedDatabase db;
+
+	private PrintStream stdout;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		stdout = Fixtures.silenceStdout();
+		db = EmbeddedDatabase.create(tcp);
+		for (int n = 0; n < nodes; n++) {
+			schedulers.add(newNode(n));
+		}
+
+		long start = System.currentTimeMillis() + 2000;
+		Scheduler first = schedulers.get(0);
+		for (int i = 0; i < triggerCount; i++) {
+			JobDetail job = Fixtures.job(i);
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group" + (i % 100))
+					.startAt(new Date(start + (long) i * intervalMillis / triggerCount))
+					.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInMilliseconds(intervalMillis)
+							.repeatForever())
+					.build();
+			first.scheduleJob(job, trigger);
+		}
+		for (Scheduler scheduler : schedulers) {
+			scheduler.start();
+		}
+	}
+
+	private Scheduler newNode(int n) throws SchedulerException {
+		Properties props = Fixtures.schedulerProperties(threadCount);
+		db.configure(props, jobStore, true);
+		props.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, CLUSTER_NAME);
+		props.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_ID, "node" + n);
+		props.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", String.valueOf(batchSize));
+		// 由其他节点调度的触发器不会唤醒本节点的调度线程，缩短空闲时的轮询间隔
+		props.setProperty("org.quartz.scheduler.idleWaitTime", "1000");
+		Scheduler scheduler = Fixtures.newScheduler(props);
+		SchedulerRepository.getInstance().remove(CLUSTER_NAME);
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "firingCounter";
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				firings.release();
+			}
+		}, EverythingMatcher.allJobs());
+		return scheduler;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		for (Scheduler scheduler : schedulers) {
+			scheduler.standby();
+		}
+		for (Scheduler scheduler : schedulers) {
+			scheduler.shutdown(true);
+		}
+		schedulers.clear();
+		db.drop();
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	public void fire() throws InterruptedException {
+		firings.acquire();
+	}
+}
@@ -0,0 +1,74 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.ScheduleBuilder;
+import org.quartz.TriggerBuilder;
+import org.quartz.spi.OperableTrigger;
+import quartzDemo.cron.CompiledCronScheduleBuilder;
+
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CronScheduleBuilder 与 CompiledCronScheduleBuilder 生成的触发器的对比。
+ *
+ * 每次调用处理 triggerCount 个触发器：computeFirstFireTime 后连续 triggered 10 次，这是 JobStore 中存入和
+ * 触发 cron 触发器时的计算量。distinctExpressions = 2 时所有触发器只使用 SimTriggerDemo 中的两个表达式
+ * (共享编译结果和最近一次的计算结果)，= 1000 时每个触发器的表达式秒字段都不同。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CronBenchmark {
+
+	@Param({"quartz", "compiled"})
+	public String builder;
+
+	@Param({"2", "1000"})
+	public int distinctExpressions;
+
+	@Param({"1000"})
+	public int triggerCount;
+
+	private OperableTrigger[] triggers;
+
+	private Date start;
+
+	@Setup
+	public void setUp() {
+		start = new GregorianCalendar(2025, 5, 1).getTime();
+		triggers = new OperableTrigger[triggerCount];
+		for (int i = 0; i < triggerCount; i++) {
+			String expression = distinctExpressions == 2
+					? (i % 2 == 0 ? "0 0/2 8-17 * * ?" : "0 42 10 ? * WED")
+					: (i % distinctExpressions % 60) + " 0/2 8-17 * * ?";
+			ScheduleBuilder<?> schedule = "compiled".equals(builder)
+					? CompiledCronScheduleBuilder.cronSchedule(expression)
+					: CronScheduleBuilder.cronSchedule(expression);
+			triggers[i] = (OperableTrigger) TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group1")
+					.withSchedule(schedule)
+					.startAt(start)
+					.build();
+		}
+	}
+
+	@Benchmark
+	public long computeAndTrigger() {
+		long sum = 0;
+		for (OperableTrigger template : triggers) {
+			OperableTrigger trigger = (OperableTrigger) template.clone();
+			trigger.computeFirstFireTime(null);
+			for (int i = 0; i < 10; i++) {
+				trigger.triggered(null);
+			}
+			sum += trigger.getNextFireTime().getTime();
+		}
+		return sum;
+	}
+}
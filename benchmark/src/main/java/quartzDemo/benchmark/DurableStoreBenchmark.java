@@ -0,0 +1,160 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地磁盘上的持久化 JobStore：JobStoreTX + H2 数据库文件与 JournalJobStore(内存映射日志，group / periodic 两种刷盘策略)。
+ *
+ * schedule：一次 scheduleJob(新作业 + 一个很久以后才触发的触发器)加一次 deleteJob，即每次操作两次持久化的变更，
+ * 在调用线程中测量持久化本身的开销(调度器处于待机状态)；
+ * fire：triggerCount 个每 intervalMillis 毫秒触发一次的触发器，需求远大于处理能力，ops/s 是每秒完成的触发次数，
+ * 每次触发都要持久化取出、触发和完成三次状态变化(JournalJobStore 只记录触发)。
+ *
+ * journal-group 时每次变更都在返回前刷盘(force)，同时等待的线程共用一次刷盘；journal-periodic 每 10 毫秒刷盘一次。
+ * H2 默认不在每次提交时 fsync，所以 JobStoreTX 在这里的持久性比 journal-group 弱，结果对 JobStoreTX 是偏乐观的。
+ *
+ * java -jar benchmarks.jar DurableStoreBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class DurableStoreBenchmark {
+
+	@State(Scope.Benchmark)
+	public abstract static class Store {
+
+		@Param({"jdbc", "journal-group", "journal-periodic"})
+		public String store;
+
+		@Param({"4"})
+		public int threadCount;
+
+		File dir;
+
+		EmbeddedDatabase db;
+
+		Scheduler scheduler;
+
+		PrintStream stdout;
+
+		void open() throws Exception {
+			stdout = Fixtures.silenceStdout();
+			dir = Files.createTempDirectory("durable-bench").toFile();
+			Properties props = Fixtures.schedulerProperties(threadCount);
+			if (store.equals("jdbc")) {
+				db = EmbeddedDatabase.createOnDisk(dir);
+				db.configure(props, "org.quartz.impl.jdbcjobstore.JobStoreTX", false);
+			} else {
+				props.setProperty("org.quartz.jobStore.class", "quartzDemo.store.JournalJobStore");
+				props.setProperty("org.quartz.jobStore.journalDir", dir.getAbsolutePath());
+				props.setProperty("org.quartz.jobStore.syncPolicy", store.substring("journal-".length()));
+			}
+			scheduler = Fixtures.newScheduler(props);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			scheduler.shutdown(true);
+			if (db != null) {
+				db.drop();
+			}
+			delete(dir);
+			System.setOut(stdout);
+		}
+
+		private static void delete(File file) throws IOException {
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					delete(child);
+				}
+			}
+			Files.deleteIfExists(file.toPath());
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class ScheduleState extends Store {
+
+		private int seq;
+
+		private final Date farFuture = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365));
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			open();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class FireState extends Store {
+
+		@Param({"1000"})
+		public int triggerCount;
+
+		@Param({"1"})
+		public int intervalMillis;
+
+		private final Semaphore firings = new Semaphore(0);
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			open();
+			scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+				@Override
+				public String getName() {
+					return "firingCounter";
+				}
+
+				@Override
+				public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+					firings.release();
+				}
+			}, EverythingMatcher.allJobs());
+
+			long start = System.currentTimeMillis() + 2000;
+			for (int i = 0; i < triggerCount; i++) {
+				JobDetail job = Fixtures.job(i);
+				Trigger trigger = TriggerBuilder.newTrigger()
+						.withIdentity("trigger" + i, "group" + (i % 100))
+						.startAt(new Date(start + (long) i * intervalMillis / triggerCount))
+						.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+								.withIntervalInMilliseconds(intervalMillis)
+								.repeatForever())
+						.build();
+				scheduler.scheduleJob(job, trigger);
+			}
+			scheduler.start();
+		}
+	}
+
+	@Benchmark
+	public void schedule(ScheduleState state) throws SchedulerException {
+		JobDetail job = Fixtures.job(state.seq++);
+		Trigger trigger = TriggerBuilder.newTrigger()
+				.withIdentity("t" + job.getKey().getName(), job.getKey().getGroup())
+				.startAt(state.farFuture)
+				.build();
+		state.scheduler.scheduleJob(job, trigger);
+		state.scheduler.deleteJob(job.getKey());
+	}
+
+	@Benchmark
+	public void fire(FireState state) throws InterruptedException {
+		state.firings.acquire();
+	}
+}
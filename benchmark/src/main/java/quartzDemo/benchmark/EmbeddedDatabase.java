@@ -0,0 +1,156 @@
+package quartzDemo.benchmark;
+
+import org.h2.tools.Server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JDBC JobStore 基准测试使用的内存 H2 数据库，表结构来自 quartz 包中的 tables_h2.sql。
+ *
+ * 每次 create() 创建一个新的数据库，同一个 url 可以配置给多个调度器(集群)。
+ * createOnDisk() 创建本地磁盘上的数据库文件；H2 默认不在每次提交时 fsync(MVStore 在后台定期写入)，
+ * 所以它的提交比真正的数据库便宜，与 JournalJobStore 比较时要考虑这一点。
+ */
+public final class EmbeddedDatabase {
+
+	private static final String SCHEMA = "org/quartz/impl/jdbcjobstore/tables_h2.sql";
+
+	/**
+	 * tables_h2.sql 中只有主键；这里补上 tables_postgres.sql 中调度线程和集群检查用到的索引，与生产环境的表结构一致
+	 */
+	private static final String[] INDEXES = {
+			"CREATE INDEX IDX_QRTZ_T_J ON QRTZ_TRIGGERS (SCHED_NAME, JOB_NAME, JOB_GROUP)",
+			"CREATE INDEX IDX_QRTZ_T_NFT_ST ON QRTZ_TRIGGERS (SCHED_NAME, TRIGGER_STATE, NEXT_FIRE_TIME)",
+			"CREATE INDEX IDX_QRTZ_T_NFT_ST_MISFIRE ON QRTZ_TRIGGERS (SCHED_NAME, MISFIRE_INSTR, NEXT_FIRE_TIME, TRIGGER_STATE)",
+			"CREATE INDEX IDX_QRTZ_FT_TRIG_INST_NAME ON QRTZ_FIRED_TRIGGERS (SCHED_NAME, INSTANCE_NAME)",
+			"CREATE INDEX IDX_QRTZ_FT_J_G ON QRTZ_FIRED_TRIGGERS (SCHED_NAME, JOB_NAME, JOB_GROUP)",
+			"CREATE INDEX IDX_QRTZ_FT_T_G ON QRTZ_FIRED_TRIGGERS (SCHED_NAME, TRIGGER_NAME, TRIGGER_GROUP)"
+	};
+
+	private static final AtomicInteger DATABASE_SEQ = new AtomicInteger();
+
+	private final String url;
+
+	private final Server server;
+
+	private EmbeddedDatabase(String url, Server server) {
+		this.url = url;
+		this.server = server;
+	}
+
+	public static EmbeddedDatabase create() throws SQLException, IOException {
+		return create(false);
+	}
+
+	/**
+	 * @param tcp 为 true 时通过本机的 H2 TCP 服务访问数据库，每条语句都是一次真正的网络往返(与生产环境的数据库类似)
+	 */
+	public static EmbeddedDatabase create(boolean tcp) throws SQLException, IOException {
+		String name = "mem:quartz" + DATABASE_SEQ.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+		EmbeddedDatabase db;
+		if (tcp) {
+			Server server = Server.createTcpServer("-tcpPort", "0").start();
+			db = new EmbeddedDatabase("jdbc:h2:tcp://localhost:" + server.getPort() + "/" + name, server);
+		} else {
+			db = new EmbeddedDatabase("jdbc:h2:" + name, null);
+		}
+		// 内存数据库只能在本进程中创建，TCP 服务访问的是同一个数据库
+		createSchema("jdbc:h2:" + name);
+		return db;
+	}
+
+	/**
+	 * 在 dir 目录中创建数据库文件(dir/quartz.mv.db)，drop() 之后由调用方删除目录。
+	 */
+	public static EmbeddedDatabase createOnDisk(File dir) throws SQLException, IOException {
+		String url = "jdbc:h2:file:" + new File(dir, "quartz").getAbsolutePath();
+		createSchema(url);
+		return new EmbeddedDatabase(url, null);
+	}
+
+	private static void createSchema(String url) throws SQLException, IOException {
+		try (Connection conn = DriverManager.getConnection(url, "sa", "");
+			 Statement st = conn.createStatement()) {
+			for (String sql : readSchema().split(";")) {
+				if (!sql.trim().isEmpty()) {
+					st.execute(sql);
+				}
+			}
+			for (String sql : INDEXES) {
+				st.execute(sql);
+			}
+		}
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * 把调度器配置成使用 jobStoreClass 和这个数据库。
+	 */
+	public Properties configure(Properties props, String jobStoreClass, boolean clustered) {
+		int threadCount = Integer.parseInt(props.getProperty("org.quartz.threadPool.threadCount", "10"));
+		props.setProperty("org.quartz.jobStore.class", jobStoreClass);
+		props.setProperty("org.quartz.jobStore.driverDelegateClass", "org.quartz.impl.jdbcjobstore.StdJDBCDelegate");
+		props.setProperty("org.quartz.jobStore.dataSource", "bench");
+		props.setProperty("org.quartz.jobStore.isClustered", String.valueOf(clustered));
+		props.setProperty("org.quartz.dataSource.bench.driver", "org.h2.Driver");
+		props.setProperty("org.quartz.dataSource.bench.URL", url);
+		props.setProperty("org.quartz.dataSource.bench.user", "sa");
+		props.setProperty("org.quartz.dataSource.bench.password", "");
+		props.setProperty("org.quartz.dataSource.bench.maxConnections", String.valueOf(threadCount + 3));
+		if (clustered) {
+			props.setProperty("org.quartz.scheduler.instanceId", "AUTO");
+		}
+		return props;
+	}
+
+	public Connection connect() throws SQLException {
+		return DriverManager.getConnection(url, "sa", "");
+	}
+
+	public int count(String sql) throws SQLException {
+		try (Connection conn = connect(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	public void drop() throws SQLException {
+		try (Connection conn = connect(); Statement st = conn.createStatement()) {
+			st.execute("SHUTDOWN");
+		} finally {
+			if (server != null) {
+				server.stop();
+			}
+		}
+	}
+
+	private static String readSchema() throws IOException {
+		StringBuilder sql = new StringBuilder();
+		try (InputStream in = EmbeddedDatabase.class.getClassLoader().getResourceAsStream(SCHEMA)) {
+			if (in == null) {
+				throw new IOException(SCHEMA + " not found");
+			}
+			Reader reader = new InputStreamReader(in, "UTF-8");
+			char[] buf = new char[4096];
+			int n;
+			while ((n = reader.read(buf)) > 0) {
+				sql.append(buf, 0, n);
+			}
+		}
+		// 去掉注释行；quartz 2.3.1 的 QRTZ_SIMPROP_TRIGGERS 最后一列后多了一个逗号，H2 1.4 不接受
+		return sql.toString().replaceAll("(?m)^--.*$", "").replaceAll(",\\s*\\)", ")");
+	}
+}
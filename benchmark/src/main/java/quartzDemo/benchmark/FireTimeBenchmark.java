@@ -0,0 +1,120 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.quartz.JobDetail;
+import org.quartz.Trigger;
+import org.quartz.TriggerUtils;
+import org.quartz.spi.OperableTrigger;
+import quartzDemo.trigger.MergedFireTimes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "接下来 windowMinutes 分钟内所有触发器的所有触发"：TriggerUtils.computeFireTimesBetween 逐个生成 List<Date>
+ * 再合并排序，与 MergedFireTimes 的堆合并比较。
+ *
+ * 触发器是 Fixtures 的三种形状轮流(每 5 秒 repeatForever、每 10 秒重复 10 次、cron)，一小时内约 250 次触发 / 触发器。
+ * all 遍历窗口内的全部触发；first100 只取最早的 100 次(例如管理页面上的"即将执行")，列表方式仍然要算出全部。
+ *
+ * java -jar benchmarks.jar FireTimeBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+@State(Scope.Benchmark)
+public class FireTimeBenchmark {
+
+	private static final Comparator<Object[]> BY_TIME = new Comparator<Object[]>() {
+		@Override
+		public int compare(Object[] a, Object[] b) {
+			return ((Date) a[1]).compareTo((Date) b[1]);
+		}
+	};
+
+	@Param({"1000"})
+	public int triggerCount;
+
+	@Param({"60"})
+	public int windowMinutes;
+
+	private Trigger[] triggers;
+
+	private Date from;
+
+	private Date to;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Fixtures.Shape[] shapes = Fixtures.Shape.values();
+		triggers = new Trigger[triggerCount];
+		for (int i = 0; i < triggerCount; i++) {
+			JobDetail job = Fixtures.job(i);
+			triggers[i] = Fixtures.trigger(shapes[i % shapes.length], i, job);
+			((OperableTrigger) triggers[i]).computeFirstFireTime(null);
+		}
+		from = new Date();
+		to = new Date(from.getTime() + windowMinutes * 60 * 1000L);
+	}
+
+	private List<Object[]> listAll() {
+		List<Object[]> fires = new ArrayList<Object[]>();
+		for (Trigger trigger : triggers) {
+			for (Date time : TriggerUtils.computeFireTimesBetween((OperableTrigger) trigger, null, from, to)) {
+				fires.add(new Object[]{trigger, time});
+			}
+		}
+		Collections.sort(fires, BY_TIME);
+		return fires;
+	}
+
+	private MergedFireTimes merged() {
+		MergedFireTimes fires = new MergedFireTimes(from, to);
+		for (Trigger trigger : triggers) {
+			fires.add(trigger, null);
+		}
+		return fires;
+	}
+
+	@Benchmark
+	public void allComputeFireTimes(Blackhole bh) {
+		for (Object[] fire : listAll()) {
+			bh.consume(fire[0]);
+			bh.consume(((Date) fire[1]).getTime());
+		}
+	}
+
+	@Benchmark
+	public void allMerged(Blackhole bh) {
+		MergedFireTimes fires = merged();
+		while (fires.next()) {
+			bh.consume(fires.getTrigger());
+			bh.consume(fires.getFireTime());
+		}
+	}
+
+	@Benchmark
+	public void first100ComputeFireTimes(Blackhole bh) {
+		List<Object[]> fires = listAll();
+		for (int i = 0; i < 100 && i < fires.size(); i++) {
+			bh.consume(fires.get(i)[0]);
+			bh.consume(((Date) fires.get(i)[1]).getTime());
+		}
+	}
+
+	@Benchmark
+	public void first100Merged(Blackhole bh) {
+		MergedFireTimes fires = merged();
+		for (int i = 0; i < 100 && fires.next(); i++) {
+			bh.consume(fires.getTrigger());
+			bh.consume(fires.getFireTime());
+		}
+	}
+}
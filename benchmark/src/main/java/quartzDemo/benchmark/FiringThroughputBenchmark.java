@@ -0,0 +1,93 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import quartzDemo.MyJob;
+
+import java.io.PrintStream;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StdSchedulerFactory 调度器在不同 org.quartz.threadPool.threadCount 下每秒能完成多少次 MyJob.execute。
+ *
+ * 调度器里放 triggerCount 个间隔 1ms 的 repeatForever 触发器，使需求始终大于线程池的处理能力；
+ * 每次 jobWasExecuted 释放一个许可，基准方法每取到一个许可算一次 firing，所以 ops/s 就是 firings/s。
+ *
+ * java -jar benchmarks.jar FiringThroughputBenchmark -p threadCount=1,2,4,8,16,32,64
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FiringThroughputBenchmark {
+
+	@Param({"1", "4", "16", "64"})
+	public int threadCount;
+
+	/** org.quartz.scheduler.batchTriggerAcquisitionMaxCount，默认值 1 与 ConfigDemo 的配置一致 */
+	@Param({"1"})
+	public int batchSize;
+
+	@Param({"1000"})
+	public int triggerCount;
+
+	private final Semaphore firings = new Semaphore(0);
+
+	private Scheduler scheduler;
+
+	private PrintStream stdout;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		stdout = Fixtures.silenceStdout();
+
+		Properties props = Fixtures.schedulerProperties(threadCount);
+		props.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", String.valueOf(batchSize));
+		scheduler = Fixtures.newScheduler(props);
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "firingCounter";
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				firings.release();
+			}
+		}, EverythingMatcher.allJobs());
+
+		for (int i = 0; i < triggerCount; i++) {
+			JobDetail job = JobBuilder.newJob(MyJob.class)
+					.withIdentity("job" + i, "group1")
+					.usingJobData("name", "hyman")
+					.usingJobData("value", 331)
+					.build();
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group1")
+					.startNow()
+					.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInMilliseconds(1)
+							.repeatForever())
+					.build();
+			scheduler.scheduleJob(job, trigger);
+		}
+		scheduler.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	public void fire() throws InterruptedException {
+		firings.acquire();
+	}
+}
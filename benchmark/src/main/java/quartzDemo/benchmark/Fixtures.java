@@ -0,0 +1,103 @@
+package quartzDemo.benchmark;
+
+import org.quartz.*;
+import org.quartz.impl.StdSchedulerFactory;
+import quartzDemo.MyJob;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基准测试共用的作业/触发器构造方式，与 AppMain、SimTriggerDemo 中的写法保持一致，
+ * 只是给每一对 JobDetail/Trigger 分配不重复的标识。
+ */
+public final class Fixtures {
+
+	private static final AtomicInteger SCHEDULER_SEQ = new AtomicInteger();
+
+	private static final String[] CRONS = {"0 0/2 8-17 * * ?", "0 42 10 ? * WED"};
+
+	private Fixtures() {
+	}
+
+	/**
+	 * 触发器的构造方式
+	 */
+	public enum Shape {
+		/** AppMain：startNow，每 5S 执行一次，repeatForever */
+		APP_MAIN,
+		/** SimTriggerDemo.simtrigger：每 10S 重复 10 次，NextWithExistingCount 错误指令 */
+		SIMPLE,
+		/** SimTriggerDemo.crontrigger：两种 cron 表达式轮流使用 */
+		CRON
+	}
+
+	public static JobDetail job(int i) {
+		return JobBuilder.newJob(MyJob.class)
+				.withIdentity("job" + i, "group" + (i % 100))
+				.usingJobData("name", "hyman")
+				.usingJobData("value", 331)
+				.build();
+	}
+
+	public static Trigger trigger(Shape shape, int i, JobDetail job) {
+		TriggerBuilder<Trigger> builder = TriggerBuilder.newTrigger()
+				.withIdentity("trigger" + i, "group" + (i % 100))
+				.forJob(job);
+		switch (shape) {
+			case SIMPLE:
+				return builder.startAt(new Date())
+						.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+								.withIntervalInSeconds(10)
+								.withRepeatCount(10)
+								.withMisfireHandlingInstructionNextWithExistingCount())
+						.build();
+			case CRON:
+				return builder.withSchedule(CronScheduleBuilder.cronSchedule(CRONS[i % CRONS.length])
+								.withMisfireHandlingInstructionFireAndProceed())
+						.build();
+			default:
+				return builder.startNow()
+						.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+								.withIntervalInSeconds(5)
+								.repeatForever())
+						.build();
+		}
+	}
+
+	/**
+	 * 每次基准迭代使用一个新的调度器名称，避免 SchedulerRepository 中的实例互相干扰。
+	 */
+	public static Properties schedulerProperties(int threadCount) {
+		Properties props = new Properties();
+		props.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, "bench-" + SCHEDULER_SEQ.incrementAndGet());
+		props.setProperty("org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool");
+		props.setProperty("org.quartz.threadPool.threadCount", String.valueOf(threadCount));
+		props.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+		return props;
+	}
+
+	public static Scheduler newScheduler(Properties props) throws SchedulerException {
+		return new StdSchedulerFactory(props).getScheduler();
+	}
+
+	/**
+	 * MyJob 每次执行都会 println，基准测试期间把标准输出换成丢弃型的流，保留格式化和锁的开销，但不刷屏。
+	 */
+	public static PrintStream silenceStdout() {
+		PrintStream original = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+		return original;
+	}
+}
@@ -0,0 +1,155 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存 H2 数据库上 JobStoreTX 与 BatchingJobStoreTX 每秒完成的触发次数。
+ *
+ * 调度器中有 triggerCount 个 repeatForever 触发器，间隔为 intervalMillis，开始时间错开，所以需求是
+ * triggerCount * 1000 / intervalMillis 次/秒：
+ * intervalMillis = 1000 即 1000 个触发器每秒各触发一次(1k fires/s)，ops/s 应该接近 1000，lagMillis 是实际执行时间与
+ * 计划触发时间之差的平均值(每次迭代单独输出，汇总行是各次迭代之和)；
+ * intervalMillis = 1 时需求远大于处理能力，ops/s 就是 JobStore 能达到的最大触发次数。
+ * 两种 JobStore 使用相同的 batchTriggerAcquisitionMaxCount，默认以集群模式运行(QRTZ_LOCKS 行锁)。
+ *
+ * 嵌入模式下一次往返只是一次方法调用，合并语句节省的主要是语句执行和加锁本身的开销；tcp = true 时通过本机的
+ * H2 TCP 服务访问，每条语句都有一次网络往返。
+ *
+ * java -jar benchmarks.jar JdbcJobStoreBenchmark -p intervalMillis=1000 -p tcp=true
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 8, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class JdbcJobStoreBenchmark {
+
+	@Param({"org.quartz.impl.jdbcjobstore.JobStoreTX", "quartzDemo.store.BatchingJobStoreTX"})
+	public String jobStore;
+
+	@Param({"1000", "1"})
+	public int intervalMillis;
+
+	@Param({"1000"})
+	public int triggerCount;
+
+	@Param({"8"})
+	public int threadCount;
+
+	@Param({"50"})
+	public int batchSize;
+
+	@Param({"true"})
+	public boolean clustered;
+
+	/** 为 true 时通过本机 TCP 访问数据库 */
+	@Param({"false"})
+	public boolean tcp;
+
+	private final Semaphore firings = new Semaphore(0);
+
+	private final AtomicLong lagSum = new AtomicLong();
+
+	private final AtomicLong lagCount = new AtomicLong();
+
+	private EmbeddedDatabase db;
+
+	private Scheduler scheduler;
+
+	private PrintStream stdout;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		stdout = Fixtures.silenceStdout();
+		db = EmbeddedDatabase.create(tcp);
+
+		Properties props = Fixtures.schedulerProperties(threadCount);
+		props.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", String.valueOf(batchSize));
+		db.configure(props, jobStore, clustered);
+		scheduler = Fixtures.newScheduler(props);
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "firingCounter";
+			}
+
+			@Override
+			public void jobToBeExecuted(JobExecutionContext context) {
+				lagSum.addAndGet(System.currentTimeMillis() - context.getScheduledFireTime().getTime());
+				lagCount.incrementAndGet();
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				firings.release();
+			}
+		}, EverythingMatcher.allJobs());
+
+		long start = System.currentTimeMillis() + 2000;
+		for (int i = 0; i < triggerCount; i++) {
+			JobDetail job = Fixtures.job(i);
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group" + (i % 100))
+					.startAt(new Date(start + (long) i * intervalMillis / triggerCount))
+					.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInMilliseconds(intervalMillis)
+							.repeatForever())
+					.build();
+			scheduler.scheduleJob(job, trigger);
+		}
+		scheduler.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(true);
+		db.drop();
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	public void fire(Lag lag) throws InterruptedException {
+		firings.acquire();
+		lag.update(lagSum.get(), lagCount.get());
+	}
+
+	/**
+	 * 每次迭代的平均触发延迟(毫秒)。
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Lag {
+
+		public double lagMillis;
+
+		private long sum0 = -1;
+
+		private long count0;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			sum0 = -1;
+			lagMillis = 0;
+		}
+
+		void update(long sum, long count) {
+			if (sum0 < 0) {
+				sum0 = sum;
+				count0 = count;
+			} else if (count > count0) {
+				lagMillis = (double) (sum - sum0) / (count - count0);
+			}
+		}
+	}
+}
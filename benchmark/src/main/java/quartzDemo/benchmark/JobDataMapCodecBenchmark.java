@@ -0,0 +1,83 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.JobDataMap;
+import quartzDemo.store.BinaryJobDataMapCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobDataMap 的 Java 序列化(StdJDBCDelegate 的 JOB_DATA 列)与 BinaryJobDataMapCodec 的编码、解码时间对比，
+ * 编码后的大小在 @Setup 中打印。
+ *
+ * myjob 是 MyJob 使用的 {name = "hyman", value = 331}；mixed 是 10 个常见类型的条目
+ * (字符串、int、long、boolean、double、Date 和重复的字符串值)。
+ *
+ * java -jar benchmarks.jar JobDataMapCodecBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JobDataMapCodecBenchmark {
+
+	@Param({"java", "binary"})
+	public String codec;
+
+	@Param({"myjob", "mixed"})
+	public String map;
+
+	private final BinaryJobDataMapCodec binary = new BinaryJobDataMapCodec();
+
+	private JobDataMap data;
+
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() throws Exception {
+		data = new JobDataMap();
+		data.put("name", "hyman");
+		data.put("value", 331);
+		if (map.equals("mixed")) {
+			data.put("owner", "hyman");
+			data.put("retries", 3);
+			data.put("timeoutMillis", 30000L);
+			data.put("enabled", true);
+			data.put("ratio", 0.75d);
+			data.put("createdAt", new Date(1700000000000L));
+			data.put("source", "report-service");
+			data.put("target", "report-service");
+		}
+		encoded = encode();
+		System.out.println(codec + "/" + map + ": " + encoded.length + " bytes");
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		if (codec.equals("binary")) {
+			return binary.encode(data.getWrappedMap());
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(baos);
+		out.writeObject(data);
+		out.flush();
+		return baos.toByteArray();
+	}
+
+	@Benchmark
+	public Object decode() throws IOException, ClassNotFoundException {
+		if (codec.equals("binary")) {
+			return binary.decode(encoded);
+		}
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(encoded));
+		return in.readObject();
+	}
+}
@@ -0,0 +1,67 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.spi.JobFactory;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次触发时 JobFactory.newJob() 的开销：默认的 PropertySettingJobFactory 与 PoolingJobFactory 对比。
+ *
+ * MyJob 标注了 @StatelessJob，PoolingJobFactory 直接复用实例；SetterJob 通过 setter 注入 name/value，
+ * 测的是缓存后的 MethodHandle 注入路径。分配率用 JMH 的 gc profiler 观察(gc.alloc.rate.norm，字节/次)：
+ * java -jar benchmarks.jar JobFactoryBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JobFactoryBenchmark {
+
+	@Param({"org.quartz.simpl.PropertySettingJobFactory", "quartzDemo.job.PoolingJobFactory"})
+	public String factory;
+
+	@Param({"quartzDemo.MyJob", "quartzDemo.benchmark.SetterJob"})
+	public String jobClass;
+
+	private JobFactory jobFactory;
+
+	private Scheduler scheduler;
+
+	private TriggerFiredBundle bundle;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception {
+		jobFactory = (JobFactory) Class.forName(factory).newInstance();
+		scheduler = Fixtures.newScheduler(Fixtures.schedulerProperties(1));
+
+		JobDetail job = JobBuilder.newJob((Class<? extends Job>) Class.forName(jobClass))
+				.withIdentity("job1", "group1")
+				.usingJobData("name", "hyman")
+				.usingJobData("value", 331)
+				.build();
+		OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+				.withIdentity("trigger1", "group1")
+				.forJob(job)
+				.startNow()
+				.build();
+		bundle = new TriggerFiredBundle(job, trigger, null, false, new Date(), null, null, null);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+	}
+
+	@Benchmark
+	public Job newJob() throws SchedulerException {
+		return jobFactory.newJob(bundle, scheduler);
+	}
+}
@@ -0,0 +1,138 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import quartzDemo.MyJob;
+import quartzDemo.metrics.JobMetrics;
+import quartzDemo.metrics.JobStats;
+import quartzDemo.metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobMetrics 的记录开销。
+ *
+ * fire：与 FiringThroughputBenchmark 相同的满负荷 firing(ops/s 就是 firings/s)，metrics = on 时安装 JobMetricsPlugin，
+ * 结束时打印按组汇总的 fireLag / queueWait / runTime 的 p50 和 p99；
+ * record / recordShared：单独测量 LatencyHistogram.record，recordShared 是 4 个线程同时记录同一个直方图(同一个作业
+ * 在多个工作线程上同时执行时的最坏情况)。
+ *
+ * java -jar benchmarks.jar JobMetricsBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobMetricsBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class FireState {
+
+		@Param({"off", "on"})
+		public String metrics;
+
+		@Param({"4"})
+		public int threadCount;
+
+		@Param({"1000"})
+		public int triggerCount;
+
+		private final Semaphore firings = new Semaphore(0);
+
+		private Scheduler scheduler;
+
+		private PrintStream stdout;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			stdout = Fixtures.silenceStdout();
+
+			Properties props = Fixtures.schedulerProperties(threadCount);
+			if (metrics.equals("on")) {
+				props.setProperty("org.quartz.plugin.jobMetrics.class", "quartzDemo.metrics.JobMetricsPlugin");
+			}
+			scheduler = Fixtures.newScheduler(props);
+			scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+				@Override
+				public String getName() {
+					return "firingCounter";
+				}
+
+				@Override
+				public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+					firings.release();
+				}
+			}, EverythingMatcher.allJobs());
+
+			for (int i = 0; i < triggerCount; i++) {
+				JobDetail job = JobBuilder.newJob(MyJob.class)
+						.withIdentity("job" + i, "group1")
+						.usingJobData("name", "hyman")
+						.usingJobData("value", 331)
+						.build();
+				Trigger trigger = TriggerBuilder.newTrigger()
+						.withIdentity("trigger" + i, "group1")
+						.startNow()
+						.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+								.withIntervalInMilliseconds(1)
+								.repeatForever())
+						.build();
+				scheduler.scheduleJob(job, trigger);
+			}
+			scheduler.start();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			scheduler.standby();
+			JobMetrics jobMetrics = JobMetrics.of(scheduler);
+			scheduler.shutdown(false);
+			System.setOut(stdout);
+			if (jobMetrics != null) {
+				for (Map.Entry<String, JobStats.Snapshot> e : jobMetrics.snapshotGroups().entrySet()) {
+					JobStats.Snapshot stats = e.getValue();
+					System.out.println(e.getKey() + ": executions " + stats.getExecutions()
+							+ ", fireLag " + percentiles(stats.getFireLag())
+							+ ", queueWait " + percentiles(stats.getQueueWait())
+							+ ", runTime " + percentiles(stats.getRunTime()));
+				}
+			}
+		}
+
+		private static String percentiles(LatencyHistogram.Snapshot histogram) {
+			return "p50 " + histogram.getValueAtPercentile(50) + "us / p99 " + histogram.getValueAtPercentile(99) + "us";
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class HistogramState {
+
+		final LatencyHistogram histogram = new LatencyHistogram();
+	}
+
+	@Benchmark
+	public void fire(FireState state) throws InterruptedException {
+		state.firings.acquire();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void record(HistogramState state) {
+		state.histogram.record(ThreadLocalRandom.current().nextInt(100000));
+	}
+
+	@Benchmark
+	@Threads(4)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void recordShared(HistogramState state) {
+		state.histogram.record(ThreadLocalRandom.current().nextInt(100000));
+	}
+}
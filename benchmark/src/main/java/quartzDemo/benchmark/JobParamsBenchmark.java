@@ -0,0 +1,92 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+import quartzDemo.MyJob;
+import quartzDemo.job.JobParams;
+import quartzDemo.job.JobParamsRegistry;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyJob 读取参数的两种方式：getMergedJobDataMap().getString/getIntValue 与 JobParams。
+ *
+ * valueAsString = true 相当于 org.quartz.jobStore.useProperties = true，value 以字符串 "331" 存储，
+ * getIntValue 每次都要 Integer.parseInt。readsPerExecution 是一次执行中读取参数的次数，JobParams.of 本身
+ * 要经过调度器上下文和注册表两次查找，读取次数越多，编译带来的收益越明显。分配情况用 -prof gc 观察：
+ * java -jar benchmarks.jar JobParamsBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JobParamsBenchmark {
+
+	private static final JobParams.Slot NAME = JobParams.slot("name");
+
+	private static final JobParams.Slot VALUE = JobParams.slot("value");
+
+	@Param({"false", "true"})
+	public boolean valueAsString;
+
+	@Param({"1", "16"})
+	public int readsPerExecution;
+
+	private Scheduler scheduler;
+
+	private JobExecutionContext context;
+
+	@Setup
+	public void setUp() throws Exception {
+		scheduler = Fixtures.newScheduler(Fixtures.schedulerProperties(1));
+		JobParamsRegistry.install(scheduler);
+
+		JobBuilder jobBuilder = JobBuilder.newJob(MyJob.class)
+				.withIdentity("job1", "group1")
+				.usingJobData("name", "hyman");
+		JobDetail job = valueAsString
+				? jobBuilder.usingJobData("value", "331").build()
+				: jobBuilder.usingJobData("value", 331).build();
+		OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+				.withIdentity("trigger1", "group1")
+				.forJob(job)
+				.startAt(new Date(System.currentTimeMillis() + 3600000L))
+				.build();
+		// 通过调度器存入，JobParamsRegistry 在这里完成编译
+		scheduler.scheduleJob(job, trigger);
+
+		TriggerFiredBundle bundle = new TriggerFiredBundle(job, trigger, null, false, new Date(), null, null, null);
+		context = new JobExecutionContextImpl(scheduler, bundle, new MyJob());
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+	}
+
+	@Benchmark
+	public int mergedJobDataMap() {
+		JobDataMap dataMap = context.getMergedJobDataMap();
+		int sum = 0;
+		for (int i = 0; i < readsPerExecution; i++) {
+			sum += dataMap.getString("name").length() + dataMap.getIntValue("value");
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int jobParams() {
+		JobParams params = JobParams.of(context);
+		int sum = 0;
+		for (int i = 0; i < readsPerExecution; i++) {
+			sum += params.getString(NAME).length() + params.getInt(VALUE);
+		}
+		return sum;
+	}
+}
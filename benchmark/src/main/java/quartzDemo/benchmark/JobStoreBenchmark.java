@@ -0,0 +1,107 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredResult;
+import quartzDemo.MyJob;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RAMJobStore 与 TimingWheelJobStore 在 1M 个触发器下的对比，直接驱动 JobStore，不经过调度线程。
+ *
+ * acquireFireComplete：一次完整的 acquireNextTriggers -> triggersFired -> triggeredJobComplete，即调度线程对每个触发器做的事情。
+ * storeAndRemove：storeTrigger + removeTrigger。
+ *
+ * 触发器与 AppMain 相同(每 5S 一次，repeatForever)，开始时间均匀分布在过去的一个周期内并打乱插入顺序，优先级随机；
+ * misfireThreshold 设得足够大，避免错过触发时间的处理混入测量。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class JobStoreBenchmark {
+
+	@Param({"org.quartz.simpl.RAMJobStore", "quartzDemo.store.TimingWheelJobStore"})
+	public String store;
+
+	@Param({"1000000"})
+	public int triggerCount;
+
+	private RAMJobStore jobStore;
+
+	private JobDetail job;
+
+	private OperableTrigger extra;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		jobStore = (RAMJobStore) Class.forName(store).newInstance();
+		jobStore.setMisfireThreshold(TimeUnit.DAYS.toMillis(365));
+		jobStore.initialize(null, new NoopSignaler());
+
+		job = JobBuilder.newJob(MyJob.class)
+				.withIdentity("job1", "group1")
+				.usingJobData("name", "hyman")
+				.usingJobData("value", 331)
+				.storeDurably()
+				.build();
+		jobStore.storeJob(job, false);
+
+		long now = System.currentTimeMillis();
+		Random random = new Random(42);
+		List<OperableTrigger> triggers = new ArrayList<OperableTrigger>(triggerCount);
+		for (int i = 0; i < triggerCount; i++) {
+			triggers.add(trigger("trigger" + i, job, new Date(now - 5000 + random.nextInt(5000)), 1 + random.nextInt(10)));
+		}
+		Collections.shuffle(triggers, random);
+		for (OperableTrigger trigger : triggers) {
+			jobStore.storeTrigger(trigger, false);
+		}
+		// 挂在单独的作业上，否则 removeTrigger 检查孤儿作业时要复制 job1 的全部 1M 个触发器
+		JobDetail other = JobBuilder.newJob(MyJob.class).withIdentity("job2", "group1").storeDurably().build();
+		jobStore.storeJob(other, false);
+		extra = trigger("extra", other, new Date(now + 1000), 5);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		jobStore.shutdown();
+		jobStore = null;
+	}
+
+	@Benchmark
+	public List<TriggerFiredResult> acquireFireComplete() throws Exception {
+		List<OperableTrigger> acquired = jobStore.acquireNextTriggers(Long.MAX_VALUE, 1, 0L);
+		List<TriggerFiredResult> fired = jobStore.triggersFired(acquired);
+		for (OperableTrigger trigger : acquired) {
+			jobStore.triggeredJobComplete(trigger, job, Trigger.CompletedExecutionInstruction.NOOP);
+		}
+		return fired;
+	}
+
+	@Benchmark
+	public boolean storeAndRemove() throws Exception {
+		jobStore.storeTrigger(extra, false);
+		return jobStore.removeTrigger(extra.getKey());
+	}
+
+	private static OperableTrigger trigger(String name, JobDetail job, Date startTime, int priority) {
+		OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+				.withIdentity(name, "group1")
+				.forJob(job)
+				.startAt(startTime)
+				.withPriority(priority)
+				.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+						.withIntervalInSeconds(5)
+						.repeatForever())
+				.build();
+		trigger.computeFirstFireTime(null);
+		return trigger;
+	}
+}
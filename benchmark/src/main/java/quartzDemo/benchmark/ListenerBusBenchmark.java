@@ -0,0 +1,173 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import quartzDemo.MyJob;
+import quartzDemo.listener.BatchJobListener;
+import quartzDemo.listener.JobListenerBus;
+
+import java.io.PrintStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * JobListener 直接注册在 ListenerManager 上与注册在 JobListenerBus(SYNC/ASYNC)上时的 firing 吞吐量。
+ *
+ * 与 ListenerDemo.joblis 一样，一个 groupContains("g") 的监听器匹配所有作业。它模拟把执行记录写到外部系统：
+ * 每次写出(flush)阻塞 flushMicros 微秒，直接注册在 ListenerManager 上时每个回调写一次，注册在总线上时
+ * 在 endOfBatch() 中写一次(SYNC 模式下每个回调之后都有一次 endOfBatch，ASYNC 模式下每批一次)。
+ * 另有 otherListeners 个不匹配任何作业的 groupContains 监听器，模拟每次回调都要逐个计算的 Matcher。
+ * 计数用的监听器直接注册在 ListenerManager 上，ops/s 就是 firings/s(计法与 FiringThroughputBenchmark 相同)。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListenerBusBenchmark {
+
+	@Param({"listenerManager", "SYNC", "ASYNC"})
+	public String mode;
+
+	@Param({"8"})
+	public int threadCount;
+
+	@Param({"50"})
+	public int otherListeners;
+
+	@Param({"200"})
+	public long flushMicros;
+
+	@Param({"1000"})
+	public int triggerCount;
+
+	private final Semaphore firings = new Semaphore(0);
+
+	private Scheduler scheduler;
+
+	private PrintStream stdout;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		stdout = Fixtures.silenceStdout();
+
+		scheduler = Fixtures.newScheduler(Fixtures.schedulerProperties(threadCount));
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "firingCounter";
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				firings.release();
+			}
+		}, EverythingMatcher.allJobs());
+
+		JobListenerBus bus = "listenerManager".equals(mode)
+				? null
+				: JobListenerBus.install(scheduler, JobListenerBus.Mode.valueOf(mode));
+		for (int i = 0; i < otherListeners; i++) {
+			final String name = "other" + i;
+			JobListener listener = new JobListenerSupport() {
+				@Override
+				public String getName() {
+					return name;
+				}
+			};
+			GroupMatcher<JobKey> matcher = GroupMatcher.groupContains("x" + i);
+			if (bus == null) {
+				scheduler.getListenerManager().addJobListener(listener, matcher);
+			} else {
+				bus.addJobListener(listener, matcher);
+			}
+		}
+		JobListener listener = new RecordingListener(flushMicros, bus == null);
+		GroupMatcher<JobKey> containsmatcher = GroupMatcher.groupContains("g");
+		if (bus == null) {
+			scheduler.getListenerManager().addJobListener(listener, containsmatcher);
+		} else {
+			bus.addJobListener(listener, containsmatcher);
+		}
+
+		for (int i = 0; i < triggerCount; i++) {
+			JobDetail job = JobBuilder.newJob(MyJob.class)
+					.withIdentity("job" + i, "group1")
+					.usingJobData("name", "hyman")
+					.usingJobData("value", 331)
+					.build();
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group1")
+					.startNow()
+					.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInMilliseconds(1)
+							.repeatForever())
+					.build();
+			scheduler.scheduleJob(job, trigger);
+		}
+		scheduler.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	public void fire() throws InterruptedException {
+		firings.acquire();
+	}
+
+	/**
+	 * 记录执行结果，每次 flush 阻塞 flushMicros 微秒(不占用 CPU，相当于等待 I/O)。
+	 */
+	static final class RecordingListener extends JobListenerSupport implements BatchJobListener {
+
+		private final long flushNanos;
+
+		private final boolean flushEachEvent;
+
+		private int pending;
+
+		RecordingListener(long flushMicros, boolean flushEachEvent) {
+			this.flushNanos = TimeUnit.MICROSECONDS.toNanos(flushMicros);
+			this.flushEachEvent = flushEachEvent;
+		}
+
+		@Override
+		public String getName() {
+			return "MyJobListener";
+		}
+
+		@Override
+		public void jobToBeExecuted(JobExecutionContext context) {
+			record();
+		}
+
+		@Override
+		public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+			record();
+		}
+
+		private synchronized void record() {
+			pending++;
+			if (flushEachEvent) {
+				endOfBatch();
+			}
+		}
+
+		@Override
+		public synchronized void endOfBatch() {
+			if (pending > 0) {
+				LockSupport.parkNanos(flushNanos);
+				pending = 0;
+			}
+		}
+	}
+}
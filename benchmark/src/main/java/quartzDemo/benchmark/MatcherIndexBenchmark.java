@@ -0,0 +1,131 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.JobKey;
+import org.quartz.Matcher;
+import org.quartz.impl.matchers.AndMatcher;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.KeyMatcher;
+import org.quartz.impl.matchers.NameMatcher;
+import org.quartz.impl.matchers.OrMatcher;
+import quartzDemo.listener.MatcherIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐个计算 Matcher(ListenerManagerImpl 的做法)与 MatcherIndex 查找"哪些监听器适用于这个 JobKey"的速度。
+ *
+ * jobCount 个作业分布在 groupCount 个组中，listenerCount 个监听器的 Matcher 按 ListenerDemo 中的几种混合：
+ * 35% groupEquals、20% groupStartsWith、15% groupContains、15% keyEquals、5% groupEndsWith/nameContains、
+ * 5% OrMatcher、5% AndMatcher(不能建索引，逐个计算)。每次调用依次查找下一个作业，不使用任何按作业的缓存，
+ * 也就是 JobListenerBus 第一次遇到一个作业或监听器变化之后的情况。setUp 中先确认两种做法对所有作业的结果相同。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatcherIndexBenchmark {
+
+	@Param({"500"})
+	public int listenerCount;
+
+	@Param({"100000"})
+	public int jobCount;
+
+	@Param({"2000"})
+	public int groupCount;
+
+	private JobKey[] keys;
+
+	private List<List<Matcher<JobKey>>> registrations;
+
+	private MatcherIndex<JobKey, Integer> index;
+
+	private int cursor;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		keys = new JobKey[jobCount];
+		for (int i = 0; i < jobCount; i++) {
+			keys[i] = new JobKey("job-" + i, group(random.nextInt(groupCount)));
+		}
+		registrations = new ArrayList<List<Matcher<JobKey>>>();
+		index = new MatcherIndex<JobKey, Integer>();
+		for (int i = 0; i < listenerCount; i++) {
+			List<Matcher<JobKey>> matchers = Collections.singletonList(matcher(i, random));
+			registrations.add(matchers);
+			index.add(i, matchers);
+		}
+		for (JobKey key : keys) {
+			if (!linear(key).equals(index.match(key))) {
+				throw new IllegalStateException("MatcherIndex disagrees with linear matching for " + key);
+			}
+		}
+	}
+
+	private String group(int g) {
+		return String.format("dept%02d.team%03d.g%04d", g % 37, g % 211, g);
+	}
+
+	private Matcher<JobKey> matcher(int i, Random random) {
+		String group = group(random.nextInt(groupCount));
+		int kind = i % 20;
+		if (kind < 7) {
+			return GroupMatcher.jobGroupEquals(group);
+		} else if (kind < 11) {
+			return GroupMatcher.jobGroupStartsWith(group.substring(0, 6 + random.nextInt(8)));
+		} else if (kind < 14) {
+			return GroupMatcher.jobGroupContains(".g" + String.format("%04d", random.nextInt(groupCount)).substring(0, 3));
+		} else if (kind < 17) {
+			return KeyMatcher.keyEquals(keys[random.nextInt(jobCount)]);
+		} else if (kind == 17) {
+			return random.nextBoolean()
+					? GroupMatcher.<JobKey>groupEndsWith(group.substring(group.length() - 3))
+					: NameMatcher.<JobKey>nameContains("-" + random.nextInt(1000) + "0");
+		} else if (kind == 18) {
+			return OrMatcher.or(GroupMatcher.<JobKey>groupEquals(group), KeyMatcher.keyEquals(keys[random.nextInt(jobCount)]));
+		} else {
+			return AndMatcher.and(GroupMatcher.<JobKey>groupStartsWith(group.substring(0, 6)),
+					NameMatcher.<JobKey>nameEndsWith(String.valueOf(random.nextInt(10))));
+		}
+	}
+
+	private List<Integer> linear(JobKey key) {
+		List<Integer> result = new ArrayList<Integer>();
+		for (int i = 0; i < registrations.size(); i++) {
+			for (Matcher<JobKey> matcher : registrations.get(i)) {
+				if (matcher.isMatch(key)) {
+					result.add(i);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	private JobKey nextKey() {
+		JobKey key = keys[cursor];
+		if (++cursor == keys.length) {
+			cursor = 0;
+		}
+		return key;
+	}
+
+	@Benchmark
+	public List<Integer> linearMatch() {
+		return linear(nextKey());
+	}
+
+	@Benchmark
+	public List<Integer> indexedMatch() {
+		return index.match(nextKey());
+	}
+}
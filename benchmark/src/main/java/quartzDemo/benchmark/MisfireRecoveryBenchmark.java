@@ -0,0 +1,126 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.impl.matchers.KeyMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import org.quartz.listeners.TriggerListenerSupport;
+import quartzDemo.MyJob;
+import quartzDemo.bulk.BulkScheduleLoader;
+import quartzDemo.bulk.ScheduleEntry;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动时有 triggerCount 个错过触发的 SimpleTrigger(SimTriggerDemo 中的 NextWithExistingCount 指令，开始时间在
+ * 一到两小时之前)时，TimingWheelJobStore 串行恢复(misfireRecoveryThreads = 0，与 RAMJobStore 相同)与并行恢复的对比。
+ *
+ * timeToFirstFire：scheduler.start() 到一个没有错过触发的触发器(startNow)第一次执行的时间；
+ * timeToRecovered：scheduler.start() 到所有错过触发都通知了 TriggerListener.triggerMisfired 的时间
+ * (并行模式下每段在锁外对副本执行错过触发指令，加锁换入之后通知)。
+ * 有一个计数用的 TriggerListener，模拟应用记录错过触发的监听器。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class MisfireRecoveryBenchmark {
+
+	@Param({"500000"})
+	public int triggerCount;
+
+	@Param({"0", "4"})
+	public int misfireRecoveryThreads;
+
+	private Scheduler scheduler;
+
+	private CountDownLatch firstFire;
+
+	private CountDownLatch misfires;
+
+	private PrintStream stdout;
+
+	@Setup(Level.Invocation)
+	public void setUp() throws Exception {
+		stdout = Fixtures.silenceStdout();
+		Properties props = Fixtures.schedulerProperties(4);
+		props.setProperty("org.quartz.jobStore.class", "quartzDemo.store.TimingWheelJobStore");
+		props.setProperty("org.quartz.jobStore.misfireRecoveryThreads", String.valueOf(misfireRecoveryThreads));
+		scheduler = Fixtures.newScheduler(props);
+
+		long now = System.currentTimeMillis();
+		List<ScheduleEntry> entries = new ArrayList<ScheduleEntry>(triggerCount);
+		for (int i = 0; i < triggerCount; i++) {
+			JobDetail job = JobBuilder.newJob(MyJob.class)
+					.withIdentity("job" + i, "group" + (i % 100))
+					.build();
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group" + (i % 100))
+					.startAt(new Date(now - TimeUnit.HOURS.toMillis(1) - (i % 3600) * 1000L))
+					.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInMinutes(10)
+							.repeatForever()
+							.withMisfireHandlingInstructionNextWithExistingCount())
+					.build();
+			entries.add(new ScheduleEntry(job, trigger));
+		}
+		new BulkScheduleLoader(scheduler).setBatchSize(10000).load(entries.iterator());
+
+		JobDetail probe = JobBuilder.newJob(MyJob.class).withIdentity("probe").build();
+		scheduler.scheduleJob(probe, TriggerBuilder.newTrigger().withIdentity("probe").startNow().build());
+
+		firstFire = new CountDownLatch(1);
+		misfires = new CountDownLatch(triggerCount);
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "probe";
+			}
+
+			@Override
+			public void jobToBeExecuted(JobExecutionContext context) {
+				firstFire.countDown();
+			}
+		}, KeyMatcher.keyEquals(probe.getKey()));
+		scheduler.getListenerManager().addTriggerListener(new TriggerListenerSupport() {
+			@Override
+			public String getName() {
+				return "misfireCounter";
+			}
+
+			@Override
+			public void triggerMisfired(Trigger trigger) {
+				misfires.countDown();
+			}
+		}, EverythingMatcher.allTriggers());
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	public long timeToFirstFire() throws Exception {
+		scheduler.start();
+		firstFire.await();
+		return firstFire.getCount();
+	}
+
+	@Benchmark
+	public long timeToRecovered() throws Exception {
+		scheduler.start();
+		misfires.await();
+		return misfires.getCount();
+	}
+}
@@ -0,0 +1,32 @@
+package quartzDemo.benchmark;
+
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.spi.SchedulerSignaler;
+
+/**
+ * 直接驱动 JobStore 时使用的空信号器，不经过 QuartzScheduler。
+ */
+public class NoopSignaler implements SchedulerSignaler {
+
+	@Override
+	public void notifyTriggerListenersMisfired(Trigger trigger) {
+	}
+
+	@Override
+	public void notifySchedulerListenersFinalized(Trigger trigger) {
+	}
+
+	@Override
+	public void notifySchedulerListenersJobDeleted(JobKey jobKey) {
+	}
+
+	@Override
+	public void signalSchedulingChange(long candidateNewNextFireTime) {
+	}
+
+	@Override
+	public void notifySchedulerListenersError(String string, SchedulerException jpe) {
+	}
+}
@@ -0,0 +1,141 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 同一时刻触发的 jobCount 个触发器在 SimpleThreadPool 与 PriorityStealingThreadPool 上全部执行完的时间。
+ *
+ * 所有触发器的计划触发时间相同(调度器启动前的同一个时刻)，优先级依次是 10、5、1，作业是 workMicros 微秒的 CPU 计算(SpinJob)。
+ * 两种线程池都使用 batchTriggerAcquisitionMaxCount = 1000；SimpleThreadPool 每次最多只能取出空闲线程数个触发器。
+ * 辅助计数器 highRankPct / lowRankPct 是优先级 10 / 1 的作业在开始执行顺序中的平均位置(百分比)，
+ * 完全按优先级执行时约为 17 / 83，与优先级无关时都约为 50。
+ *
+ * java -jar benchmarks.jar PriorityPipelineBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+@State(Scope.Thread)
+public class PriorityPipelineBenchmark {
+
+	private static final int[] PRIORITIES = {10, 5, 1};
+
+	@Param({"org.quartz.simpl.SimpleThreadPool", "quartzDemo.pool.PriorityStealingThreadPool"})
+	public String pool;
+
+	@Param({"8"})
+	public int threadCount;
+
+	@Param({"5000"})
+	public int jobCount;
+
+	@Param({"20"})
+	public long workMicros;
+
+	private Scheduler scheduler;
+
+	private CountDownLatch done;
+
+	private AtomicInteger started;
+
+	/** 每种优先级的开始顺序之和 */
+	private AtomicLongArray rankSums;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class OrderStats {
+
+		public long highRankPct;
+
+		public long lowRankPct;
+	}
+
+	/**
+	 * 在工作线程上计算 workMicros 微秒。
+	 */
+	public static class SpinJob implements Job {
+
+		@Override
+		public void execute(JobExecutionContext context) throws JobExecutionException {
+			long end = System.nanoTime() + context.getMergedJobDataMap().getLongValue("workMicros") * 1000;
+			while (System.nanoTime() < end) {
+				// busy
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setUp() throws Exception {
+		done = new CountDownLatch(jobCount);
+		started = new AtomicInteger();
+		rankSums = new AtomicLongArray(PRIORITIES.length);
+
+		Properties props = Fixtures.schedulerProperties(threadCount);
+		props.setProperty("org.quartz.threadPool.class", pool);
+		props.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "1000");
+		scheduler = Fixtures.newScheduler(props);
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "order";
+			}
+
+			@Override
+			public void jobToBeExecuted(JobExecutionContext context) {
+				int rank = started.getAndIncrement();
+				int priority = context.getTrigger().getPriority();
+				for (int i = 0; i < PRIORITIES.length; i++) {
+					if (PRIORITIES[i] == priority) {
+						rankSums.addAndGet(i, rank);
+					}
+				}
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				done.countDown();
+			}
+		}, EverythingMatcher.allJobs());
+
+		Date moment = new Date();
+		for (int i = 0; i < jobCount; i++) {
+			JobDetail job = JobBuilder.newJob(SpinJob.class)
+					.withIdentity("job" + i, "group1")
+					.usingJobData("workMicros", workMicros)
+					.build();
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group1")
+					.withPriority(PRIORITIES[i % PRIORITIES.length])
+					.startAt(moment)
+					.build();
+			scheduler.scheduleJob(job, trigger);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+	}
+
+	@Benchmark
+	public void fireAll(OrderStats stats) throws Exception {
+		scheduler.start();
+		done.await();
+
+		long perPriority = (jobCount + PRIORITIES.length - 1) / PRIORITIES.length;
+		stats.highRankPct = rankSums.get(0) * 100 / perPriority / jobCount;
+		stats.lowRankPct = rankSums.get(PRIORITIES.length - 1) * 100 / (jobCount / PRIORITIES.length) / jobCount;
+	}
+}
@@ -0,0 +1,62 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调度 N 对 JobDetail/Trigger 所需的时间，即 AppMain 中 scheduler.scheduleJob(job, trigger) 的路径。
+ * 作业和触发器在 @Setup 中预先构造好，测量的只是 scheduleJob 本身。
+ *
+ * java -jar benchmarks.jar SchedulingBenchmark -p triggerCount=1000000
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SchedulingBenchmark {
+
+	@Param({"10000", "100000", "1000000"})
+	public int triggerCount;
+
+	@Param({"APP_MAIN", "SIMPLE", "CRON"})
+	public Fixtures.Shape shape;
+
+	private JobDetail[] jobs;
+
+	private Trigger[] triggers;
+
+	private Scheduler scheduler;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws Exception {
+		jobs = new JobDetail[triggerCount];
+		triggers = new Trigger[triggerCount];
+		for (int i = 0; i < triggerCount; i++) {
+			jobs[i] = Fixtures.job(i);
+			triggers[i] = Fixtures.trigger(shape, i, jobs[i]);
+		}
+		// 调度器不启动，只测存储路径，避免工作线程和调度线程的干扰
+		scheduler = Fixtures.newScheduler(Fixtures.schedulerProperties(1));
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+		jobs = null;
+		triggers = null;
+	}
+
+	@Benchmark
+	public Scheduler scheduleAll() throws Exception {
+		for (int i = 0; i < triggerCount; i++) {
+			scheduler.scheduleJob(jobs[i], triggers[i]);
+		}
+		return scheduler;
+	}
+}
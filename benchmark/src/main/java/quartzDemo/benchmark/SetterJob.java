@@ -0,0 +1,30 @@
+package quartzDemo.benchmark;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * 与 MyJob 读取相同的参数，但通过 setter 注入(name/value)，用来测 JobFactory 的注入路径。
+ */
+public class SetterJob implements Job {
+
+	private String name;
+
+	private int value;
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public void setValue(int value) {
+		this.value = value;
+	}
+
+	@Override
+	public void execute(JobExecutionContext context) throws JobExecutionException {
+		if (name == null || value < 0) {
+			throw new JobExecutionException("missing parameters");
+		}
+	}
+}
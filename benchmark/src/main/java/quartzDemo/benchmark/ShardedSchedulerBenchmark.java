@@ -0,0 +1,117 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.quartz.*;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import quartzDemo.MyJob;
+import quartzDemo.shard.ShardedSchedulerFactory;
+
+import java.io.PrintStream;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ShardedScheduler 在不同分片数下的吞吐量，shards = 1 相当于单个 StdSchedulerFactory 调度器(多一层门面)。
+ *
+ * fire：与 FiringThroughputBenchmark 相同，triggerCount 个间隔 1ms 的 repeatForever 触发器，ops/s 就是 firings/s。
+ * 总工作线程数固定为 totalThreads，平均分给各个分片，只比较调度线程和 JobStore 锁的个数。
+ * schedule：4 个线程同时 scheduleJob + deleteJob(每次一个新的作业)，调度器没有启动，测的是 JobStore 锁的竞争。
+ *
+ * 分片之间没有共享的锁，吞吐量的上限随分片数增长到 CPU 数为止；CPU 数少于分片数时只剩下线程切换的开销。
+ *
+ * java -jar benchmarks.jar ShardedSchedulerBenchmark -p shards=1,2,4,8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedSchedulerBenchmark {
+
+	private static final AtomicInteger JOB_SEQ = new AtomicInteger();
+
+	@Param({"1", "2", "4"})
+	public int shards;
+
+	@Param({"8"})
+	public int totalThreads;
+
+	@Param({"1000"})
+	public int triggerCount;
+
+	private final Semaphore firings = new Semaphore(0);
+
+	private Scheduler scheduler;
+
+	private PrintStream stdout;
+
+	private Scheduler newScheduler() throws SchedulerException {
+		Properties props = Fixtures.schedulerProperties(Math.max(1, totalThreads / shards));
+		props.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME,
+				props.getProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME) + "-sharded");
+		return new ShardedSchedulerFactory(props, shards).getScheduler();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp(BenchmarkParams params) throws Exception {
+		stdout = Fixtures.silenceStdout();
+		scheduler = newScheduler();
+		if (!params.getBenchmark().endsWith(".fire")) {
+			return;
+		}
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "firingCounter";
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				firings.release();
+			}
+		}, EverythingMatcher.allJobs());
+
+		for (int i = 0; i < triggerCount; i++) {
+			JobDetail job = JobBuilder.newJob(MyJob.class)
+					.withIdentity("job" + i, "group1")
+					.usingJobData("name", "hyman")
+					.usingJobData("value", 331)
+					.build();
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group1")
+					.startNow()
+					.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInMilliseconds(1)
+							.repeatForever())
+					.build();
+			scheduler.scheduleJob(job, trigger);
+		}
+		scheduler.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	public void fire() throws InterruptedException {
+		firings.acquire();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean schedule() throws SchedulerException {
+		int i = JOB_SEQ.incrementAndGet();
+		JobDetail job = Fixtures.job(i);
+		scheduler.scheduleJob(job, Fixtures.trigger(Fixtures.Shape.APP_MAIN, i, job));
+		return scheduler.deleteJob(job.getKey());
+	}
+}
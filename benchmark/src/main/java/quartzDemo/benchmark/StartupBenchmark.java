@@ -0,0 +1,142 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.KeyMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import quartzDemo.MyJob;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 冷启动时间：从创建 StdSchedulerFactory 到第一次触发。triggerCount 对作业/触发器分布在之后的 24 小时内，另外有一个
+ * 每 100 毫秒触发一次的 probe 触发器，测量到 probe 的作业第一次执行完成为止。
+ *
+ * rebuild：AppMain 的方式，RAMJobStore，启动时逐个构建并 scheduleJob 全部作业和触发器，然后 start；
+ * snapshot：SnapshotJobStore 读取 Trial 开始时写出的快照(writeSnapshotOnShutdown = false，每次读同一个文件)，直接 start；
+ * snapshot-full：同上，第一次触发后再调用 getJobKeys，等待全部加载完成，即快照全部放进内存索引的时间。
+ *
+ * java -jar benchmarks.jar StartupBenchmark -p triggerCount=200000
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+	@Param({"200000"})
+	public int triggerCount;
+
+	@Param({"rebuild", "snapshot", "snapshot-full"})
+	public String mode;
+
+	private File dir;
+
+	private File snapshot;
+
+	private Scheduler scheduler;
+
+	private PrintStream stdout;
+
+	private final Semaphore fired = new Semaphore(0);
+
+	@Setup(Level.Trial)
+	public void writeSnapshot() throws Exception {
+		stdout = Fixtures.silenceStdout();
+		dir = Files.createTempDirectory("startup-bench").toFile();
+		snapshot = new File(dir, "quartz-snapshot.qs");
+		if (mode.equals("rebuild")) {
+			return;
+		}
+		Properties props = Fixtures.schedulerProperties(4);
+		props.setProperty("org.quartz.jobStore.class", "quartzDemo.store.SnapshotJobStore");
+		props.setProperty("org.quartz.jobStore.snapshotFile", snapshot.getAbsolutePath());
+		Scheduler writer = Fixtures.newScheduler(props);
+		scheduleAll(writer);
+		// 调度器没有启动过，关闭时写出快照
+		writer.shutdown(false);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteSnapshot() throws Exception {
+		Files.deleteIfExists(snapshot.toPath());
+		Files.deleteIfExists(dir.toPath());
+		System.setOut(stdout);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+		scheduler = null;
+		fired.drainPermits();
+	}
+
+	@Benchmark
+	public int startup() throws Exception {
+		Properties props = Fixtures.schedulerProperties(4);
+		if (!mode.equals("rebuild")) {
+			props.setProperty("org.quartz.jobStore.class", "quartzDemo.store.SnapshotJobStore");
+			props.setProperty("org.quartz.jobStore.snapshotFile", snapshot.getAbsolutePath());
+			props.setProperty("org.quartz.jobStore.writeSnapshotOnShutdown", "false");
+		}
+		scheduler = Fixtures.newScheduler(props);
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "probe";
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				fired.release();
+			}
+		}, KeyMatcher.keyEquals(JobKey.jobKey("probe")));
+		if (mode.equals("rebuild")) {
+			scheduleAll(scheduler);
+		}
+		scheduler.start();
+		fired.acquire();
+		if (mode.equals("snapshot-full")) {
+			return scheduler.getJobKeys(GroupMatcher.anyJobGroup()).size();
+		}
+		return 0;
+	}
+
+	private void scheduleAll(Scheduler target) throws SchedulerException {
+		long start = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+		for (int i = 0; i < triggerCount; i++) {
+			JobDetail job = Fixtures.job(i);
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group" + (i % 100))
+					.startAt(new Date(start + i * DAY / triggerCount))
+					.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInMilliseconds(DAY)
+							.repeatForever())
+					.build();
+			target.scheduleJob(job, trigger);
+		}
+		JobDetail probe = JobBuilder.newJob(MyJob.class)
+				.withIdentity("probe")
+				.usingJobData("name", "hyman")
+				.usingJobData("value", 331)
+				.build();
+		target.scheduleJob(probe, TriggerBuilder.newTrigger()
+				.withIdentity("probe")
+				.startNow()
+				.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+						.withIntervalInMilliseconds(100)
+						.repeatForever())
+				.build());
+	}
+}
@@ -0,0 +1,144 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.JobListenerSupport;
+import org.quartz.listeners.TriggerListenerSupport;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SimpleThreadPool 与 VirtualThreadPool 在 10k 个同时触发的阻塞作业下的对比。
+ *
+ * 每次迭代新建一个调度器，放入 jobCount 个 startNow 的一次性触发器(BlockingJob，休眠 blockMillis)，
+ * 基准方法调用 start() 并等待全部作业执行完，得分是这批作业的总耗时。
+ * 同时以辅助计数器输出 misfire 次数和触发延迟(实际触发时间 - 计划触发时间)的 p50/p99。
+ *
+ * 虚拟线程需要在 JDK 21 上运行，否则 VirtualThreadPool 退化为平台线程：
+ * java -jar benchmarks.jar ThreadPoolBenchmark -p threadCount=10,50
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Thread)
+public class ThreadPoolBenchmark {
+
+	@Param({"org.quartz.simpl.SimpleThreadPool", "quartzDemo.pool.VirtualThreadPool"})
+	public String pool;
+
+	/** SimpleThreadPool 的线程数 */
+	@Param({"50"})
+	public int threadCount;
+
+	@Param({"10000"})
+	public int jobCount;
+
+	@Param({"100"})
+	public long blockMillis;
+
+	private Scheduler scheduler;
+
+	private CountDownLatch done;
+
+	private AtomicInteger misfireCount;
+
+	private long[] lags;
+
+	private AtomicInteger lagCount;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class FiringStats {
+
+		public long misfires;
+
+		public long lagP50Millis;
+
+		public long lagP99Millis;
+	}
+
+	@Setup(Level.Invocation)
+	public void setUp() throws Exception {
+		done = new CountDownLatch(jobCount);
+		misfireCount = new AtomicInteger();
+		lags = new long[jobCount];
+		lagCount = new AtomicInteger();
+
+		Properties props = Fixtures.schedulerProperties(threadCount);
+		props.setProperty("org.quartz.threadPool.class", pool);
+		if (!pool.endsWith("SimpleThreadPool")) {
+			props.remove("org.quartz.threadPool.threadCount");
+			props.setProperty("org.quartz.threadPool.maxConcurrency", String.valueOf(jobCount));
+		}
+		props.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "1000");
+		scheduler = Fixtures.newScheduler(props);
+
+		scheduler.getListenerManager().addTriggerListener(new TriggerListenerSupport() {
+			@Override
+			public String getName() {
+				return "lagRecorder";
+			}
+
+			@Override
+			public void triggerFired(Trigger trigger, JobExecutionContext context) {
+				int i = lagCount.getAndIncrement();
+				if (i < lags.length) {
+					lags[i] = context.getFireTime().getTime() - context.getScheduledFireTime().getTime();
+				}
+			}
+
+			@Override
+			public void triggerMisfired(Trigger trigger) {
+				misfireCount.incrementAndGet();
+			}
+		}, EverythingMatcher.allTriggers());
+		scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+			@Override
+			public String getName() {
+				return "completion";
+			}
+
+			@Override
+			public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+				done.countDown();
+			}
+		}, EverythingMatcher.allJobs());
+
+		for (int i = 0; i < jobCount; i++) {
+			JobDetail job = JobBuilder.newJob(BlockingJob.class)
+					.withIdentity("job" + i, "group1")
+					.usingJobData("blockMillis", blockMillis)
+					.build();
+			Trigger trigger = TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, "group1")
+					.startNow()
+					.build();
+			scheduler.scheduleJob(job, trigger);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws Exception {
+		scheduler.shutdown(false);
+	}
+
+	@Benchmark
+	public void fireAll(FiringStats stats) throws Exception {
+		scheduler.start();
+		done.await();
+
+		int n = Math.min(lagCount.get(), lags.length);
+		long[] sorted = Arrays.copyOf(lags, n);
+		Arrays.sort(sorted);
+		stats.misfires += misfireCount.get();
+		stats.lagP50Millis = n == 0 ? 0 : sorted[n / 2];
+		stats.lagP99Millis = n == 0 ? 0 : sorted[Math.min(n - 1, (int) (n * 0.99))];
+	}
+}
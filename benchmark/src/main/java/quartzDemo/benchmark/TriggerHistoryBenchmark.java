@@ -0,0 +1,103 @@
+package quartzDemo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.*;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+import quartzDemo.MyJob;
+import quartzDemo.history.HistoryQuery;
+import quartzDemo.history.HistoryRecord;
+import quartzDemo.history.TriggerHistory;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TriggerHistory 的记录和查询开销。
+ *
+ * record / recordShared：一次 jobWasExecuted 的记录时间(recordShared 是 4 个线程同时记录)；
+ * slowestInGroup：records 条记录(100 个组、每组 10 个作业，触发时间均匀分布在最近 2 小时内)中查询最近一小时某个组最慢的 100 次执行；
+ * latestFailed：最近 100 次失败的执行(约 1% 失败)。
+ * 加 -prof gc 可以看到每次操作分配的内存：记录为 0，查询只有结果列表和 limit 条 HistoryRecord。
+ *
+ * java -jar benchmarks.jar TriggerHistoryBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-XX:MaxDirectMemorySize=1g"})
+@State(Scope.Benchmark)
+public class TriggerHistoryBenchmark {
+
+	private static final int GROUPS = 100;
+
+	private static final int JOBS_PER_GROUP = 10;
+
+	private static final long WINDOW = TimeUnit.HOURS.toMillis(2);
+
+	@Param({"4194304"})
+	public int records;
+
+	private TriggerHistory history;
+
+	private JobExecutionContextImpl[] contexts;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		history = new TriggerHistory("bench", records);
+		Random random = new Random(42);
+		int chunks = records / (GROUPS * JOBS_PER_GROUP);
+		long start = System.currentTimeMillis() - WINDOW;
+		for (int c = 0; c < chunks; c++) {
+			JobExecutionContextImpl[] chunk = contexts(new Date(start + c * WINDOW / chunks));
+			for (JobExecutionContextImpl context : chunk) {
+				context.setJobRunTime(random.nextInt(1000));
+				history.jobWasExecuted(context, random.nextInt(100) == 0 ? new JobExecutionException("failed") : null);
+			}
+		}
+		contexts = contexts(new Date());
+	}
+
+	private static JobExecutionContextImpl[] contexts(Date fireTime) {
+		JobExecutionContextImpl[] result = new JobExecutionContextImpl[GROUPS * JOBS_PER_GROUP];
+		for (int i = 0; i < result.length; i++) {
+			String group = "group" + (i % GROUPS);
+			JobDetail job = JobBuilder.newJob(MyJob.class).withIdentity("job" + i, group).build();
+			OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+					.withIdentity("trigger" + i, group)
+					.forJob(job)
+					.build();
+			TriggerFiredBundle bundle = new TriggerFiredBundle(job, trigger, null, false, fireTime, fireTime, null, null);
+			result[i] = new JobExecutionContextImpl(null, bundle, new MyJob());
+		}
+		return result;
+	}
+
+	@Benchmark
+	public void record() {
+		history.jobWasExecuted(contexts[ThreadLocalRandom.current().nextInt(contexts.length)], null);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void recordShared() {
+		history.jobWasExecuted(contexts[ThreadLocalRandom.current().nextInt(contexts.length)], null);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public List<HistoryRecord> slowestInGroup() {
+		return history.query(HistoryQuery.slowest(100).jobGroup("group7").lastMillis(TimeUnit.HOURS.toMillis(1)));
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public List<HistoryRecord> latestFailed() {
+		return history.query(HistoryQuery.latest(100).outcome(HistoryRecord.Outcome.FAILED));
+	}
+}
@@ -2,6 +2,12 @@ package quartzDemo;
 
 import org.quartz.*;
 import org.quartz.impl.StdSchedulerFactory;
+import quartzDemo.bulk.BulkScheduleLoader;
+import quartzDemo.job.JobParamsRegistry;
+import quartzDemo.job.PoolingJobFactory;
+
+import java.io.File;
+import java.io.IOException;
 
 public class AppMain {
 
@@ -71,12 +77,23 @@ public class AppMain {
              *
              */
             Scheduler scheduler = StdSchedulerFactory.getDefaultScheduler();
+            // 复用 @StatelessJob 作业的实例，并缓存 setter，避免每次触发都创建实例和反射查找
+            scheduler.setJobFactory(new PoolingJobFactory());
+            // 存入作业时就把 JobDataMap 编译成 JobParams，作业中用 JobParams.of(context) 读取
+            JobParamsRegistry.install(scheduler);
             scheduler.start();
             scheduler.scheduleJob(job,trigger);
+            // 大量的作业定义放在文件中时(格式见 ScheduleFileReader)，用 BulkScheduleLoader 分批加载
+            if (args.length > 0) {
+                new BulkScheduleLoader(scheduler).load(new File(args[0]));
+            }
 
         } catch (SchedulerException e) {
             e.printStackTrace();
             System.out.println("========= error ============");
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("========= error ============");
         }
     }
 }
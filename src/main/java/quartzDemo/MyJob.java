@@ -1,6 +1,9 @@
 package quartzDemo;
 
 import org.quartz.*;
+import quartzDemo.job.JobParams;
+import quartzDemo.job.StatelessJob;
+import quartzDemo.log.JobLogger;
 
 /**
  * @DisallowConcurrentExecution， 注解在工作类上,使 Quartz 不要执行一个给定的工作定义的多个实例(即给定的工作类)。
@@ -10,8 +13,23 @@ import org.quartz.*;
  *
  * 并且如果使用 @PersistJobDataAfterExecution 注释,您还应该考虑使用 @DisallowConcurrentExecution 注释，以避免可能的混乱。
  * 即竞争条件下的数据被存储在相同的工作的两个实例(JobDetail)而又并发执行。
+ *
+ * @StatelessJob，MyJob 没有任何字段，参数都从 JobExecutionContext 中读取，所以 PoolingJobFactory 可以一直复用同一个实例。
+ *
+ * 参数通过 JobParams 读取：调度器安装了 JobParamsRegistry(见 AppMain)时，合并后的 JobDataMap 在存入时已经编译好，
+ * 执行时只是数组访问；没有安装时与原来一样从 getMergedJobDataMap() 读取，不为每次执行现场编译。
+ *
+ * 输出使用 JobLogger：安装了 AsyncLogWriter(AsyncLogPlugin)时由后台线程格式化并批量写入文件，否则与原来一样 println。
  */
+@StatelessJob
 public class MyJob implements Job{
+
+    private static final JobLogger LOG = JobLogger.getLogger(MyJob.class);
+
+    private static final JobParams.Slot NAME = JobParams.slot("name");
+
+    private static final JobParams.Slot VALUE = JobParams.slot("value");
+
     @Override
     public void execute(JobExecutionContext context) throws JobExecutionException {
 
@@ -30,13 +48,21 @@ public class MyJob implements Job{
          * 触发器还可以有与之关联的 JobDataMaps。如果您有一个在调度器中存储的作业，它可以通过多个触发器定期/重复地使用，
          * 但是每个独立触发，您想要提供不同数据输入的作业，这一点很有用。
          *
-         * 在作业执行期间用 JobExecutionContext 找到 JobDataMap。
+         * 在作业执行期间用 JobExecutionContext 找到 JobDataMap(context.getMergedJobDataMap())，安装了 JobParamsRegistry 时
+         * 读取的是它编译后的 JobParams。
          */
-        JobDataMap dataMap = context.getMergedJobDataMap();
-
-        String name = dataMap.getString("name");
-        int value = dataMap.getIntValue("value");
-        System.out.println("Instance " + key +"："+name+ " = " +value);
+        String name;
+        int value;
+        JobParams params = JobParams.cached(context);
+        if (params != null) {
+            name = params.getString(NAME);
+            value = params.getInt(VALUE);
+        } else {
+            JobDataMap dataMap = context.getMergedJobDataMap();
+            name = dataMap.getString("name");
+            value = dataMap.getIntValue("value");
+        }
+        LOG.info("Instance {}：{} = {}", key, name, value);
 
         /**
          * JobStore 负责跟踪您给调度器的所有“工作数据”:作业、触发器、日历等等。为 Quartz scheduler实例选择合适的 JobStore
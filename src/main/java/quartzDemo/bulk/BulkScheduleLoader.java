@@ -0,0 +1,198 @@
+package quartzDemo.bulk;
+
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 启动时批量加载大量作业/触发器。
+ *
+ * AppMain 中逐个调用 scheduler.scheduleJob(job, trigger)，每一对都要单独获取一次 JobStore 的锁(JDBC JobStore
+ * 是一个事务)、唤醒一次调度线程(调度器已启动时，调度线程醒来后又要去抢同一把锁)。这里把作业定义按 batchSize
+ * 个触发器分批，每批调用一次 scheduler.scheduleJobs(...)：
+ * 1，一批在 JobStore 的一次加锁(一个事务)中存入；
+ * 2，每批只唤醒一次调度线程；
+ * 3，SchedulerListener 的 jobAdded/jobScheduled 在整批存入、释放锁之后才依次通知，不再与存储交替进行。
+ *    QuartzScheduler 对每个作业和触发器各通知一次，不能通过公开的 API 合并成一次。
+ * 作业定义从 Iterator 或文件(格式见 ScheduleFileReader)中逐项读取，内存中最多只有一批。
+ *
+ * 一批中的触发器按 JobKey 分组(不要求同一个作业的几项相邻)，分批只发生在开始一个新作业时，因此一批可能略多于
+ * batchSize 个触发器。同一个作业的几项分散在不同的批次中时，作业只在第一批中存入(JobDetail 以第一项为准)，之后的
+ * 触发器用 scheduleJob(trigger) 逐个存入；为此每个已存入的作业保留一个 JobKey。replace 为 true 时仍然整批存入，
+ * 作业按这一批中的第一项再存入一次(ScheduleFileReader 对同一个作业总是给出第一行生成的 JobDetail)。
+ * replace 为 false 时，调度器中已存在的作业或触发器会使所在的一批整体失败(ObjectAlreadyExistsException)，之前的批次已经存入。
+ *
+ * 使用：
+ * int count = new BulkScheduleLoader(scheduler).load(new File("jobs.txt"));
+ */
+public class BulkScheduleLoader {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Scheduler scheduler;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private boolean replace;
+
+    public BulkScheduleLoader(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public BulkScheduleLoader setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be > 0");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public boolean isReplace() {
+        return replace;
+    }
+
+    /**
+     * 为 true 时覆盖已存在的同名作业和触发器。
+     */
+    public BulkScheduleLoader setReplace(boolean replace) {
+        this.replace = replace;
+        return this;
+    }
+
+    /**
+     * 加载 entries 中的全部作业定义，返回存入的触发器个数。
+     */
+    public int load(Iterator<? extends ScheduleEntry> entries) throws SchedulerException {
+        Batch batch = new Batch();
+        while (entries.hasNext()) {
+            batch.add(entries.next());
+        }
+        return batch.finish();
+    }
+
+    /**
+     * 逐行读取 UTF-8 编码的作业定义文件并加载，返回存入的触发器个数。
+     */
+    public int load(File file) throws SchedulerException, IOException {
+        Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            return load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    public int load(Reader in) throws SchedulerException, IOException {
+        ScheduleFileReader reader = new ScheduleFileReader(in);
+        Batch batch = new Batch();
+        ScheduleEntry entry;
+        while ((entry = reader.read()) != null) {
+            batch.add(entry);
+        }
+        return batch.finish();
+    }
+
+    /**
+     * 正在积累的一批，按 JobKey 分组，保持作业第一次出现的顺序。
+     */
+    private final class Batch {
+
+        private final Map<JobKey, JobDetail> jobs = new LinkedHashMap<JobKey, JobDetail>();
+
+        private final Map<JobKey, Set<Trigger>> triggersByJob = new LinkedHashMap<JobKey, Set<Trigger>>();
+
+        /** 在之前的批次中已经存入的作业的触发器(replace 为 false 时) */
+        private final List<Trigger> laterTriggers = new ArrayList<Trigger>();
+
+        /** 之前的批次中已经存入的作业 */
+        private final Set<JobKey> stored = new HashSet<JobKey>();
+
+        private int pending;
+
+        private int loaded;
+
+        private int batches;
+
+        private final long start = System.currentTimeMillis();
+
+        void add(ScheduleEntry entry) throws SchedulerException {
+            JobDetail job = entry.getJobDetail();
+            JobKey key = job.getKey();
+            Set<Trigger> triggers = triggersByJob.get(key);
+            if (triggers == null) {
+                if (!replace && stored.contains(key)) {
+                    laterTriggers.add(entry.getTrigger());
+                    pending++;
+                    return;
+                }
+                // 只在开始一个新作业时分批，同一个作业的触发器不会拆到两批中
+                if (pending >= batchSize) {
+                    flush();
+                }
+                triggers = new LinkedHashSet<Trigger>(2);
+                triggersByJob.put(key, triggers);
+                jobs.put(key, job);
+            }
+            triggers.add(entry.getTrigger());
+            pending++;
+        }
+
+        int finish() throws SchedulerException {
+            if (pending > 0) {
+                flush();
+            }
+            log.info("Bulk loaded " + loaded + " triggers in " + batches + " batches, "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return loaded;
+        }
+
+        private void flush() throws SchedulerException {
+            Map<JobDetail, Set<? extends Trigger>> batch = new LinkedHashMap<JobDetail, Set<? extends Trigger>>();
+            for (Map.Entry<JobKey, Set<Trigger>> e : triggersByJob.entrySet()) {
+                batch.put(jobs.get(e.getKey()), e.getValue());
+            }
+            if (!batch.isEmpty()) {
+                scheduler.scheduleJobs(batch, replace);
+            }
+            for (Trigger trigger : laterTriggers) {
+                scheduler.scheduleJob(trigger);
+            }
+            loaded += pending;
+            batches++;
+            if (log.isDebugEnabled()) {
+                log.debug("Bulk batch " + batches + ": " + batch.size() + " jobs, " + pending + " triggers");
+            }
+            if (!replace) {
+                stored.addAll(triggersByJob.keySet());
+            }
+            jobs.clear();
+            triggersByJob.clear();
+            laterTriggers.clear();
+            pending = 0;
+        }
+    }
+}
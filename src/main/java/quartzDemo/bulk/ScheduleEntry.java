@@ -0,0 +1,31 @@
+package quartzDemo.bulk;
+
+import org.quartz.JobDetail;
+import org.quartz.Trigger;
+
+/**
+ * 批量加载的一项：一个作业和它的一个触发器。同一个作业有多个触发器时给出多项(JobDetail 的 key 相同，不必相邻，
+ * BulkScheduleLoader 按 JobKey 归并)。
+ */
+public class ScheduleEntry {
+
+    private final JobDetail jobDetail;
+
+    private final Trigger trigger;
+
+    public ScheduleEntry(JobDetail jobDetail, Trigger trigger) {
+        if (jobDetail == null || trigger == null) {
+            throw new IllegalArgumentException("JobDetail and Trigger cannot be null.");
+        }
+        this.jobDetail = jobDetail;
+        this.trigger = trigger;
+    }
+
+    public JobDetail getJobDetail() {
+        return jobDetail;
+    }
+
+    public Trigger getTrigger() {
+        return trigger;
+    }
+}
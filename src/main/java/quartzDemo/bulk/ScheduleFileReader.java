@@ -0,0 +1,169 @@
+package quartzDemo.bulk;
+
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import quartzDemo.cron.CompiledCronScheduleBuilder;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 逐行读取作业定义文件，每行生成一个 ScheduleEntry，不会把整个文件读入内存。
+ *
+ * 每行的格式(字段之间用 | 分隔，# 开头的行和空行忽略)：
+ * 作业组 | 作业名 | 作业类 | 调度 | 参数
+ *
+ * group1 | job1 | quartzDemo.MyJob | 0 0/2 8-17 * * ? | name=hyman,value=331
+ * group1 | job2 | quartzDemo.MyJob | every 5s
+ *
+ * 调度是 cron 表达式(使用 CompiledCronScheduleBuilder，相同的表达式只解析一次)，或者 every 加间隔(ms/s/m/h)，
+ * 表示从现在开始按固定间隔一直重复。参数可以省略，值都按字符串放入 JobDataMap，可以用 getIntValue 等方法或
+ * JobParams 按类型读取。
+ * 触发器与作业同名同组；作业组和作业名相同的几行(不必相邻)是同一个作业的多个触发器，第二个起触发器名后加 #2、#3...，
+ * 作业类和参数以第一行为准，之后的行只使用调度。为此每个作业保留第一行生成的 JobDetail 和一个计数，
+ * 占用的内存与作业数成正比。
+ */
+public class ScheduleFileReader implements Closeable {
+
+    private final BufferedReader reader;
+
+    private final ClassLoader classLoader;
+
+    private final Map<String, Class<? extends Job>> jobClasses = new HashMap<String, Class<? extends Job>>();
+
+    private int lineNumber;
+
+    /** 每个作业第一行生成的 JobDetail，之后的行都使用它 */
+    private final Map<JobKey, JobDetail> jobs = new HashMap<JobKey, JobDetail>();
+
+    /** 每个作业已经读到的触发器个数 */
+    private final Map<JobKey, Integer> triggerCounts = new HashMap<JobKey, Integer>();
+
+    public ScheduleFileReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        this.classLoader = loader != null ? loader : getClass().getClassLoader();
+    }
+
+    /**
+     * 读取下一项，文件结束时返回 null。格式错误时抛出 SchedulerConfigException，消息中带有行号。
+     */
+    public ScheduleEntry read() throws IOException, SchedulerConfigException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.length() > 0 && line.charAt(0) != '#') {
+                try {
+                    return parse(line);
+                } catch (RuntimeException e) {
+                    throw new SchedulerConfigException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return null;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private ScheduleEntry parse(String line) {
+        String[] fields = line.split("\\|");
+        if (fields.length < 4 || fields.length > 5) {
+            throw new IllegalArgumentException("Expected 'group | name | jobClass | schedule [| key=value,...]'");
+        }
+        String group = fields[0].trim();
+        String name = fields[1].trim();
+        JobKey jobKey = new JobKey(name, group);
+        JobDetail job = jobs.get(jobKey);
+        if (job == null) {
+            JobBuilder builder = JobBuilder.newJob(jobClass(fields[2].trim())).withIdentity(jobKey);
+            if (fields.length == 5) {
+                for (String pair : fields[4].split(",")) {
+                    int eq = pair.indexOf('=');
+                    if (eq <= 0) {
+                        throw new IllegalArgumentException("Bad job data '" + pair.trim() + "', expected key=value");
+                    }
+                    builder.usingJobData(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+                }
+            }
+            job = builder.build();
+            jobs.put(jobKey, job);
+        }
+        Integer count = triggerCounts.get(jobKey);
+        int triggers = count == null ? 1 : count + 1;
+        triggerCounts.put(jobKey, triggers);
+        String triggerName = triggers == 1 ? name : name + "#" + triggers;
+        Trigger trigger = TriggerBuilder.newTrigger()
+                .withIdentity(triggerName, group)
+                .forJob(job)
+                .startNow()
+                .withSchedule(schedule(fields[3].trim()))
+                .build();
+        return new ScheduleEntry(job, trigger);
+    }
+
+    private Class<? extends Job> jobClass(String className) {
+        Class<? extends Job> jobClass = jobClasses.get(className);
+        if (jobClass == null) {
+            try {
+                jobClass = Class.forName(className, false, classLoader).asSubclass(Job.class);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Job class not found: " + className, e);
+            } catch (ClassCastException e) {
+                throw new IllegalArgumentException(className + " does not implement org.quartz.Job", e);
+            }
+            jobClasses.put(className, jobClass);
+        }
+        return jobClass;
+    }
+
+    private static ScheduleBuilder<? extends Trigger> schedule(String schedule) {
+        if (!schedule.startsWith("every ")) {
+            return CompiledCronScheduleBuilder.cronSchedule(schedule);
+        }
+        String interval = schedule.substring("every ".length()).trim();
+        long unit;
+        int digits;
+        if (interval.endsWith("ms")) {
+            unit = 1L;
+            digits = interval.length() - 2;
+        } else {
+            digits = interval.length() - 1;
+            switch (interval.charAt(digits)) {
+                case 's':
+                    unit = 1000L;
+                    break;
+                case 'm':
+                    unit = 60 * 1000L;
+                    break;
+                case 'h':
+                    unit = 60 * 60 * 1000L;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Bad interval '" + interval + "', expected e.g. 500ms, 5s, 10m, 1h");
+            }
+        }
+        long millis = Long.parseLong(interval.substring(0, digits).trim()) * unit;
+        return SimpleScheduleBuilder.simpleSchedule()
+                .withIntervalInMilliseconds(millis)
+                .repeatForever();
+    }
+}
@@ -0,0 +1,358 @@
+package quartzDemo.calendar;
+
+import org.quartz.Calendar;
+import org.quartz.impl.calendar.AnnualCalendar;
+import org.quartz.impl.calendar.BaseCalendar;
+import org.quartz.impl.calendar.CronCalendar;
+import org.quartz.impl.calendar.DailyCalendar;
+import org.quartz.impl.calendar.HolidayCalendar;
+import org.quartz.impl.calendar.MonthlyCalendar;
+import org.quartz.impl.calendar.WeeklyCalendar;
+
+import java.util.BitSet;
+import java.util.TimeZone;
+
+/**
+ * 预编译的日历：把一个或多个 Quartz Calendar 在 [horizonStart, horizonEnd) 范围内按分钟展开成一个 BitSet，
+ * 置位表示这一分钟被包含。
+ *
+ * CalendarDemo 中的 HolidayCalendar 每次 isTimeIncluded 都要新建一个 java.util.Calendar 算出当天零点，再去
+ * TreeSet 中查找；多个日历串成 baseCalendar 链时逐个判断，getNextIncludedTime 还要一天一天地循环。
+ * 编译之后 isTimeIncluded 只是一次位测试，getNextIncludedTime 是一次 BitSet.nextSetBit 扫描，与排除的日期数和
+ * 链的长度都无关。
+ *
+ * 编译方式：
+ * 1，baseCalendar 链先拆开，每一环单独编译后按位与(与 BaseCalendar 的语义相同：任何一环排除即排除)；
+ * 2，HolidayCalendar、WeeklyCalendar、MonthlyCalendar、AnnualCalendar 是按天的日历，每天只判断一次；
+ * 3，其他日历(DailyCalendar、CronCalendar 以及自定义日历)逐分钟采样。
+ * 精度是分钟：一分钟内的包含/排除以这一分钟开始时刻的结果为准。范围之外的时间仍交给原来的日历计算。
+ *
+ * 使用：
+ * HolidayCalendar holidays = new HolidayCalendar(new WeeklyCalendar());
+ * ...
+ * Calendar cal = BitsetCalendar.compile(holidays, from, to);
+ * sched.addCalendar("myHolidays", cal, false, false);
+ *
+ * 多个日历合并成一个：BitsetCalendar.compose(from, to, holidays, workingHours)，或 cal.and(other)。
+ */
+public class BitsetCalendar extends BaseCalendar {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final long MINUTE = 60 * 1000L;
+
+    /** 范围之外查找下一个包含时间时最多向后找一年 */
+    private static final long MAX_SEARCH_MINUTES = 366 * 24 * 60L;
+
+    /** 范围起点，按分钟对齐 */
+    private final long origin;
+
+    /** 范围内的分钟数 */
+    private final int length;
+
+    /** 第 i 位表示 [origin + i * MINUTE, origin + (i + 1) * MINUTE) 被包含 */
+    private final BitSet included;
+
+    /** 范围之外按这些日历计算(全部包含才算包含) */
+    private final Calendar[] sources;
+
+    private BitsetCalendar(long origin, int length, BitSet included, Calendar[] sources) {
+        this.origin = origin;
+        this.length = length;
+        this.included = included;
+        this.sources = sources;
+    }
+
+    /**
+     * 把 source(连同它的 baseCalendar 链)在 [from, to) 范围内编译成位图。
+     */
+    public static BitsetCalendar compile(Calendar source, long from, long to) {
+        return compose(from, to, source);
+    }
+
+    /**
+     * 把多个日历在 [from, to) 范围内合并编译成一个位图：只有所有日历都包含的时间才被包含。
+     */
+    public static BitsetCalendar compose(long from, long to, Calendar... calendars) {
+        if (calendars.length == 0) {
+            throw new IllegalArgumentException("At least one calendar is required");
+        }
+        long origin = floorMinute(from);
+        long minutes = (to - origin + MINUTE - 1) / MINUTE;
+        if (from <= 0 || minutes <= 0 || minutes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid calendar horizon [" + from + ", " + to + ")");
+        }
+        int length = (int) minutes;
+
+        BitSet bits = null;
+        for (Calendar calendar : calendars) {
+            BitSet next = includedMinutes(calendar, origin, length);
+            if (bits == null) {
+                bits = next;
+            } else {
+                bits.and(next);
+            }
+        }
+        return new BitsetCalendar(origin, length, bits, calendars.clone());
+    }
+
+    /**
+     * 与另一个日历合并，范围与本日历相同。
+     */
+    public BitsetCalendar and(Calendar other) {
+        return compose(getHorizonStart(), getHorizonEnd(), this, other);
+    }
+
+    public long getHorizonStart() {
+        return origin;
+    }
+
+    public long getHorizonEnd() {
+        return origin + length * MINUTE;
+    }
+
+    /**
+     * 范围内被包含的分钟数。
+     */
+    public int getIncludedMinutes() {
+        return included.cardinality();
+    }
+
+    @Override
+    public boolean isTimeIncluded(long timeStamp) {
+        if (timeStamp <= 0) {
+            throw new IllegalArgumentException("timeStamp must be greater 0");
+        }
+        Calendar base = getBaseCalendar();
+        if (base != null && !base.isTimeIncluded(timeStamp)) {
+            return false;
+        }
+        long i = (timeStamp - origin) / MINUTE;
+        if (timeStamp >= origin && i < length) {
+            return included.get((int) i);
+        }
+        return isIncludedBySources(timeStamp);
+    }
+
+    /**
+     * timeStamp 被包含时返回它本身，否则返回之后第一个被包含的分钟的开始时刻；全部被排除时返回 0。
+     */
+    @Override
+    public long getNextIncludedTime(long timeStamp) {
+        if (timeStamp <= 0) {
+            throw new IllegalArgumentException("timeStamp must be greater 0");
+        }
+        Calendar base = getBaseCalendar();
+        long t = timeStamp;
+        while (true) {
+            t = nextIncluded(t);
+            if (t <= 0 || base == null || base.isTimeIncluded(t)) {
+                return t;
+            }
+            long next = base.getNextIncludedTime(t);
+            if (next <= 0) {
+                return 0;
+            }
+            t = next > t ? next : floorMinute(t) + MINUTE;
+        }
+    }
+
+    private long nextIncluded(long t) {
+        if (t < origin) {
+            long found = nextIncludedBySources(t, origin);
+            if (found != 0) {
+                return found;
+            }
+            t = origin;
+        }
+        long end = getHorizonEnd();
+        if (t < end) {
+            int i = (int) ((t - origin) / MINUTE);
+            int next = included.nextSetBit(i);
+            if (next >= 0 && next < length) {
+                return next == i ? t : origin + next * MINUTE;
+            }
+            t = end;
+        }
+        return nextIncludedBySources(t, Long.MAX_VALUE);
+    }
+
+    private boolean isIncludedBySources(long timeStamp) {
+        for (Calendar source : sources) {
+            if (!source.isTimeIncluded(timeStamp)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 范围之外的慢路径：逐分钟检查所有日历，最多向后找 MAX_SEARCH_MINUTES 分钟，找不到(或到达 limit)返回 0。
+     * 不使用各日历自己的 getNextIncludedTime：例如 HolidayCalendar 只检查每天零点，链上有排除零点的
+     * DailyCalendar 时它会一直循环下去。
+     */
+    private long nextIncludedBySources(long t, long limit) {
+        if (isIncludedBySources(t)) {
+            return t;
+        }
+        long minute = floorMinute(t) + MINUTE;
+        long last = Math.min(limit, minute + MAX_SEARCH_MINUTES * MINUTE);
+        for (; minute < last; minute += MINUTE) {
+            if (isIncludedBySources(minute)) {
+                return minute;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public Object clone() {
+        // 位图编译后不再修改，可以共享
+        return super.clone();
+    }
+
+    private static long floorMinute(long t) {
+        return t - ((t % MINUTE) + MINUTE) % MINUTE;
+    }
+
+    /**
+     * calendar 在 [origin, origin + length 分钟) 范围内每一分钟是否被包含。
+     */
+    static BitSet includedMinutes(Calendar calendar, long origin, int length) {
+        Calendar base = calendar.getBaseCalendar();
+        if (base != null && isDecomposable(calendar)) {
+            // 拆开链：本环去掉 baseCalendar 单独编译，再与 baseCalendar 的结果按位与
+            Calendar own = (Calendar) calendar.clone();
+            own.setBaseCalendar(null);
+            BitSet bits = includedMinutes(own, origin, length);
+            bits.and(includedMinutes(base, origin, length));
+            return bits;
+        }
+
+        if (calendar instanceof BitsetCalendar && base == null) {
+            return ((BitsetCalendar) calendar).slice(origin, length);
+        }
+        if (isDayGranular(calendar)) {
+            return includedDays((BaseCalendar) calendar, origin, length);
+        }
+        if (calendar.getClass() == DailyCalendar.class) {
+            return includedDaily((DailyCalendar) calendar, origin, length);
+        }
+        BitSet bits = new BitSet(length);
+        for (int i = 0; i < length; i++) {
+            if (calendar.isTimeIncluded(origin + i * MINUTE)) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 取本日历在另一个分钟网格上的位图，重叠部分直接复制位，其余部分按 isTimeIncluded 计算。
+     */
+    private BitSet slice(long from, int count) {
+        BitSet bits = new BitSet(count);
+        for (int i = 0; i < count; ) {
+            long t = from + i * MINUTE;
+            if (t >= origin && t < getHorizonEnd()) {
+                int src = (int) ((t - origin) / MINUTE);
+                int n = Math.min(count - i, length - src);
+                BitSet part = included.get(src, src + n);
+                for (int b = part.nextSetBit(0); b >= 0; b = part.nextSetBit(b + 1)) {
+                    bits.set(i + b);
+                }
+                i += n;
+            } else {
+                if (isIncludedBySources(t)) {
+                    bits.set(i);
+                }
+                i++;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 按天的日历：在日历自己的时区中逐天判断一次，把整天的分钟一起置位。
+     */
+    private static BitSet includedDays(BaseCalendar calendar, long origin, int length) {
+        BitSet bits = new BitSet(length);
+        long end = origin + length * MINUTE;
+        java.util.Calendar day = startOfDay(calendar, origin);
+        long dayStart = day.getTimeInMillis();
+        while (dayStart < end) {
+            day.add(java.util.Calendar.DATE, 1);
+            long nextDayStart = day.getTimeInMillis();
+            if (calendar.isTimeIncluded(Math.max(dayStart, origin))) {
+                setMinutes(bits, origin, length, dayStart, nextDayStart - 1);
+            }
+            dayStart = nextDayStart;
+        }
+        return bits;
+    }
+
+    /**
+     * DailyCalendar：每天按它自己给出的时间范围置位，边界与 DailyCalendar.isTimeIncluded 一致
+     * (不反转时当天零点和 23:59:59.999 也被排除，反转时范围两端都被包含)。
+     */
+    private static BitSet includedDaily(DailyCalendar calendar, long origin, int length) {
+        BitSet bits = new BitSet(length);
+        long end = origin + length * MINUTE;
+        java.util.Calendar day = startOfDay(calendar, origin);
+        long dayStart = day.getTimeInMillis();
+        while (dayStart < end) {
+            day.add(java.util.Calendar.DATE, 1);
+            long nextDayStart = day.getTimeInMillis();
+            long rangeStart = calendar.getTimeRangeStartingTimeInMillis(dayStart);
+            long rangeEnd = calendar.getTimeRangeEndingTimeInMillis(dayStart);
+            if (calendar.getInvertTimeRange()) {
+                setMinutes(bits, origin, length, rangeStart, rangeEnd);
+            } else {
+                setMinutes(bits, origin, length, dayStart + 1, rangeStart - 1);
+                setMinutes(bits, origin, length, rangeEnd + 1, nextDayStart - 2);
+            }
+            dayStart = nextDayStart;
+        }
+        return bits;
+    }
+
+    private static java.util.Calendar startOfDay(BaseCalendar calendar, long timeInMillis) {
+        TimeZone timeZone = calendar.getTimeZone() == null ? TimeZone.getDefault() : calendar.getTimeZone();
+        java.util.Calendar day = java.util.Calendar.getInstance(timeZone);
+        day.setTimeInMillis(timeInMillis);
+        day.set(java.util.Calendar.HOUR_OF_DAY, 0);
+        day.set(java.util.Calendar.MINUTE, 0);
+        day.set(java.util.Calendar.SECOND, 0);
+        day.set(java.util.Calendar.MILLISECOND, 0);
+        return day;
+    }
+
+    /**
+     * 把开始时刻落在 [from, to] 内的分钟置位。
+     */
+    private static void setMinutes(BitSet bits, long origin, int length, long from, long to) {
+        if (to < from) {
+            return;
+        }
+        long first = from <= origin ? 0 : (from - origin + MINUTE - 1) / MINUTE;
+        long last = to < origin ? -1 : (to - origin) / MINUTE;
+        if (first <= last && first < length) {
+            bits.set((int) first, (int) Math.min(length - 1, last) + 1);
+        }
+    }
+
+    /**
+     * Quartz 自带的日历都在 isTimeIncluded 中先检查 baseCalendar，再检查自己，因此可以拆开单独编译。
+     */
+    private static boolean isDecomposable(Calendar calendar) {
+        Class<?> type = calendar.getClass();
+        return isDayGranular(calendar) || type == BaseCalendar.class || type == DailyCalendar.class
+                || type == CronCalendar.class || type == BitsetCalendar.class;
+    }
+
+    private static boolean isDayGranular(Calendar calendar) {
+        Class<?> type = calendar.getClass();
+        return type == HolidayCalendar.class || type == WeeklyCalendar.class || type == MonthlyCalendar.class
+                || type == AnnualCalendar.class || type == BaseCalendar.class;
+    }
+}
@@ -0,0 +1,395 @@
+package quartzDemo.cron;
+
+import org.quartz.CronExpression;
+
+import java.lang.reflect.Field;
+import java.text.ParseException;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编译后的 cron 表达式。
+ *
+ * CronExpression.getTimeAfter 每次调用都新建一个 GregorianCalendar，并在各字段的 TreeSet 上 tailSet 查找，
+ * CronTriggerImpl 的 computeFirstFireTime、triggered 都要调用它。这里先用 CronExpression 解析(语法与校验
+ * 完全相同)，再把解析出的秒、分、时、日、月、星期各字段转成位掩码，年份转成 BitSet；计算下一次触发时间时在
+ * "本地时间的秒数"上做整数运算，日期换算用公历的日数公式，不创建 Calendar 对象。
+ *
+ * 只在下面的情况下退回到 CronExpression.getTimeAfter，保证结果完全一致：
+ * 1，表达式中使用了 L、W、# 等特殊字符；
+ * 2，从开始时间到结果之后几个小时内时区偏移发生了变化(夏令时切换)，或者两者相隔超过 MAX_FAST_SPAN_DAYS 天；
+ * 3，在 CronExpression.MAX_YEAR 之前找不到结果。
+ *
+ * 相同的表达式(和时区)只编译一次：compile() 返回共享的实例，成千上万个使用同一表达式的触发器共用它。
+ * 它还缓存了最近一次计算的结果，同一时刻触发的一批触发器只需要计算一次。
+ */
+public final class CompiledCronExpression {
+
+    /** 超过这个跨度时不假定中间没有时区偏移变化 */
+    static final int MAX_FAST_SPAN_DAYS = 28;
+
+    /** 夏令时调整量的上限 */
+    private static final long MAX_DST_SAVINGS = 3 * 60 * 60 * 1000L;
+
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60L;
+
+    private static final int FIRST_YEAR = 1970;
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private static final ConcurrentHashMap<String, CompiledCronExpression> CACHE =
+            new ConcurrentHashMap<String, CompiledCronExpression>();
+
+    private final String cronExpression;
+
+    private final TimeZone timeZone;
+
+    /** 无法编译的表达式以及需要精确处理的边界情况都交给它 */
+    private final CronExpression delegate;
+
+    private final boolean compiled;
+
+    private final long secondsMask;
+
+    private final long minutesMask;
+
+    private final long hoursMask;
+
+    /** 第 1 到 31 位，0 表示日期字段是 ? */
+    private final long daysOfMonthMask;
+
+    /** 第 1(周日) 到 7(周六) 位，0 表示星期字段是 ? */
+    private final long daysOfWeekMask;
+
+    /** 第 1 到 12 位 */
+    private final long monthsMask;
+
+    /** 第 i 位表示 1970 + i 年 */
+    private final BitSet years;
+
+    private final int firstSecond;
+
+    private final int firstMinute;
+
+    private volatile Memo last;
+
+    private CompiledCronExpression(String cronExpression, TimeZone timeZone) throws ParseException {
+        CronExpression expression = new CronExpression(cronExpression);
+        expression.setTimeZone(timeZone);
+        Fields fields = new Fields(expression);
+        this.cronExpression = cronExpression;
+        this.timeZone = timeZone;
+        this.delegate = expression;
+        this.compiled = fields.isCompilable();
+        this.secondsMask = mask(fields.set("seconds"), 0, 59);
+        this.minutesMask = mask(fields.set("minutes"), 0, 59);
+        this.hoursMask = mask(fields.set("hours"), 0, 23);
+        this.daysOfMonthMask = mask(fields.set("daysOfMonth"), 1, 31);
+        this.daysOfWeekMask = mask(fields.set("daysOfWeek"), 1, 7);
+        this.monthsMask = mask(fields.set("months"), 1, 12);
+        this.years = new BitSet();
+        for (Integer year : fields.set("years")) {
+            if (year >= FIRST_YEAR && year <= CronExpression.MAX_YEAR) {
+                years.set(year - FIRST_YEAR);
+            }
+        }
+        this.firstSecond = Long.numberOfTrailingZeros(secondsMask);
+        this.firstMinute = Long.numberOfTrailingZeros(minutesMask);
+    }
+
+    /**
+     * 取得(必要时编译)表达式在指定时区下的共享实例，timeZone 为 null 时使用默认时区。
+     */
+    public static CompiledCronExpression compile(String cronExpression, TimeZone timeZone) throws ParseException {
+        if (timeZone == null) {
+            timeZone = TimeZone.getDefault();
+        }
+        String key = timeZone.getID() + '|' + cronExpression;
+        CompiledCronExpression compiled = CACHE.get(key);
+        if (compiled == null) {
+            compiled = new CompiledCronExpression(cronExpression, timeZone);
+            CompiledCronExpression existing = CACHE.putIfAbsent(key, compiled);
+            if (existing != null) {
+                compiled = existing;
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * 当前共享的编译实例数。
+     */
+    public static int cachedCount() {
+        return CACHE.size();
+    }
+
+    public String getCronExpression() {
+        return cronExpression;
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * 是否走编译后的快速路径(表达式中没有 L、W、#)。
+     */
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * 与 CronExpression.getNextValidTimeAfter 相同。
+     */
+    public Date getNextValidTimeAfter(Date date) {
+        return getTimeAfter(date);
+    }
+
+    /**
+     * 与 CronExpression.getTimeAfter 相同：afterTime 之后(精确到秒)第一个满足表达式的时间，没有时返回 null。
+     */
+    public Date getTimeAfter(Date afterTime) {
+        if (!compiled) {
+            return delegate.getTimeAfter(afterTime);
+        }
+        long after = afterTime.getTime();
+        long from = after - ((after % 1000) + 1000) % 1000 + 1000;
+
+        Memo memo = last;
+        if (memo == null || memo.from != from) {
+            long result = next(from);
+            if (result == NONE) {
+                return delegate.getTimeAfter(afterTime);
+            }
+            memo = new Memo(from, result);
+            last = memo;
+        }
+        return new Date(memo.result);
+    }
+
+    /**
+     * 快速路径：from(整秒)及之后第一个满足表达式的时间，无法保证与 CronExpression 一致时返回 NONE。
+     */
+    private long next(long from) {
+        int offset = timeZone.getOffset(from);
+        long local = floorDiv(from + offset, 1000);
+        long found = nextLocal(local);
+        if (found == NONE) {
+            return NONE;
+        }
+        long result = (found * 1000) - offset;
+        // 结果之后 MAX_DST_SAVINGS 内偏移也不变，才能排除夏令时结束时同一本地时间出现两次的情况
+        if (timeZone.getOffset(result) != offset || timeZone.getOffset(result + MAX_DST_SAVINGS) != offset
+                || result - from > MAX_FAST_SPAN_DAYS * SECONDS_PER_DAY * 1000) {
+            return NONE;
+        }
+        return result;
+    }
+
+    /**
+     * 在本地时间(自 1970-01-01 00:00:00 起的秒数)上查找 ls 及之后第一个满足表达式的秒。
+     */
+    long nextLocal(long ls) {
+        while (true) {
+            long days = floorDiv(ls, SECONDS_PER_DAY);
+            int secondOfDay = (int) (ls - days * SECONDS_PER_DAY);
+            int yearMonthDay = civilFromDays(days);
+            int year = yearMonthDay >>> 9;
+            int month = (yearMonthDay >>> 5) & 0xF;
+            int day = yearMonthDay & 0x1F;
+
+            if (year < FIRST_YEAR || year > CronExpression.MAX_YEAR) {
+                return NONE;
+            }
+            if (!years.get(year - FIRST_YEAR)) {
+                int nextYear = years.nextSetBit(year - FIRST_YEAR);
+                if (nextYear < 0) {
+                    return NONE;
+                }
+                ls = daysFromCivil(FIRST_YEAR + nextYear, 1, 1) * SECONDS_PER_DAY;
+                continue;
+            }
+            if ((monthsMask & (1L << month)) == 0) {
+                int nextMonth = nextBit(monthsMask, month + 1);
+                ls = nextMonth < 0 || nextMonth > 12
+                        ? daysFromCivil(year + 1, 1, 1) * SECONDS_PER_DAY
+                        : daysFromCivil(year, nextMonth, 1) * SECONDS_PER_DAY;
+                continue;
+            }
+            if (daysOfMonthMask != 0) {
+                if ((daysOfMonthMask & (1L << day)) == 0) {
+                    int nextDay = nextBit(daysOfMonthMask, day + 1);
+                    ls = nextDay < 0 || nextDay > lengthOfMonth(year, month)
+                            ? firstDayOfNextMonth(year, month) * SECONDS_PER_DAY
+                            : (days + nextDay - day) * SECONDS_PER_DAY;
+                    continue;
+                }
+            } else if ((daysOfWeekMask & (1L << dayOfWeek(days))) == 0) {
+                ls = (days + 1) * SECONDS_PER_DAY;
+                continue;
+            }
+
+            long dayStart = days * SECONDS_PER_DAY;
+            int hour = secondOfDay / 3600;
+            int nextHour = nextBit(hoursMask, hour);
+            if (nextHour < 0 || nextHour > 23) {
+                ls = dayStart + SECONDS_PER_DAY;
+                continue;
+            }
+            if (nextHour > hour) {
+                return dayStart + nextHour * 3600L + firstMinute * 60L + firstSecond;
+            }
+            int minute = (secondOfDay / 60) % 60;
+            int nextMinute = nextBit(minutesMask, minute);
+            if (nextMinute < 0 || nextMinute > 59) {
+                ls = dayStart + (hour + 1) * 3600L;
+                continue;
+            }
+            if (nextMinute > minute) {
+                return dayStart + hour * 3600L + nextMinute * 60L + firstSecond;
+            }
+            int second = secondOfDay % 60;
+            int nextSecond = nextBit(secondsMask, second);
+            if (nextSecond < 0 || nextSecond > 59) {
+                ls = dayStart + hour * 3600L + (minute + 1) * 60L;
+                continue;
+            }
+            return dayStart + hour * 3600L + minute * 60L + nextSecond;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return cronExpression;
+    }
+
+    private static long mask(TreeSet<Integer> values, int min, int max) {
+        long mask = 0;
+        for (Integer value : values) {
+            if (value >= min && value <= max) {
+                mask |= 1L << value;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * mask 中 from 及之后第一个置位的位，没有时返回 -1。
+     */
+    private static int nextBit(long mask, int from) {
+        if (from > 63) {
+            return -1;
+        }
+        long rest = mask & (-1L << from);
+        return rest == 0 ? -1 : Long.numberOfTrailingZeros(rest);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    /**
+     * 1 表示周日，7 表示周六，与 Calendar.DAY_OF_WEEK 相同(1970-01-01 是周四)。
+     */
+    private static int dayOfWeek(long days) {
+        return (int) ((days % 7 + 11) % 7) + 1;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static long firstDayOfNextMonth(int year, int month) {
+        return month == 12 ? daysFromCivil(year + 1, 1, 1) : daysFromCivil(year, month + 1, 1);
+    }
+
+    /**
+     * 公历日期到 1970-01-01 起的天数。
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = (int) (year - era * 400);
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * 1970-01-01 起的天数到公历日期，按 year << 9 | month << 5 | day 打包返回，避免分配对象。
+     */
+    static int civilFromDays(long days) {
+        days += 719468;
+        long era = (days >= 0 ? days : days - 146096) / 146097;
+        int dayOfEra = (int) (days - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+        return year << 9 | month << 5 | day;
+    }
+
+    private static final class Memo {
+
+        final long from;
+
+        final long result;
+
+        Memo(long from, long result) {
+            this.from = from;
+            this.result = result;
+        }
+    }
+
+    /**
+     * CronExpression 是 final 类，解析出的各字段集合是 protected 的，编译时通过反射读取一次。
+     */
+    private static final class Fields {
+
+        private final CronExpression expression;
+
+        Fields(CronExpression expression) {
+            this.expression = expression;
+        }
+
+        boolean isCompilable() {
+            return !(Boolean) get("lastdayOfWeek") && (Integer) get("nthdayOfWeek") == 0
+                    && !(Boolean) get("lastdayOfMonth") && !(Boolean) get("nearestWeekday");
+        }
+
+        @SuppressWarnings("unchecked")
+        TreeSet<Integer> set(String name) {
+            return (TreeSet<Integer>) get(name);
+        }
+
+        private Object get(String name) {
+            try {
+                Field field = CronExpression.class.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(expression);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unsupported CronExpression implementation", e);
+            }
+        }
+    }
+}
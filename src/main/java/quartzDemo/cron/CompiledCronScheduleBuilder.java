@@ -0,0 +1,104 @@
+package quartzDemo.cron;
+
+import org.quartz.CronExpression;
+import org.quartz.CronTrigger;
+import org.quartz.DateBuilder;
+import org.quartz.ScheduleBuilder;
+import org.quartz.spi.MutableTrigger;
+
+import java.text.ParseException;
+import java.util.TimeZone;
+
+/**
+ * 用法与 CronScheduleBuilder 相同，生成的是 CompiledCronTriggerImpl：
+ *
+ * Trigger trigger = newTrigger()
+ *     .withIdentity("trigger3", "group1")
+ *     .withSchedule(CompiledCronScheduleBuilder.cronSchedule("0 0/2 8-17 * * ?"))
+ *     .forJob("myJob", "group1")
+ *     .build();
+ *
+ * 相同的表达式(和时区)在所有触发器之间共享同一个 CompiledCronExpression。
+ */
+public class CompiledCronScheduleBuilder extends ScheduleBuilder<CronTrigger> {
+
+    private final CronExpression cronExpression;
+
+    private int misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_SMART_POLICY;
+
+    protected CompiledCronScheduleBuilder(CronExpression cronExpression) {
+        if (cronExpression == null) {
+            throw new NullPointerException("cronExpression cannot be null");
+        }
+        this.cronExpression = cronExpression;
+    }
+
+    @Override
+    public MutableTrigger build() {
+        CompiledCronTriggerImpl ct = new CompiledCronTriggerImpl();
+        ct.setCronExpression(cronExpression);
+        ct.setTimeZone(cronExpression.getTimeZone());
+        ct.setMisfireInstruction(misfireInstruction);
+        return ct;
+    }
+
+    /**
+     * 表达式无效时抛出 RuntimeException(包装 ParseException)。
+     */
+    public static CompiledCronScheduleBuilder cronSchedule(String cronExpression) {
+        try {
+            return cronSchedule(new CronExpression(cronExpression));
+        } catch (ParseException e) {
+            throw new RuntimeException("CronExpression '" + cronExpression + "' is invalid.", e);
+        }
+    }
+
+    public static CompiledCronScheduleBuilder cronScheduleNonvalidatedExpression(String cronExpression)
+            throws ParseException {
+        return cronSchedule(new CronExpression(cronExpression));
+    }
+
+    public static CompiledCronScheduleBuilder cronSchedule(CronExpression cronExpression) {
+        return new CompiledCronScheduleBuilder(cronExpression);
+    }
+
+    public static CompiledCronScheduleBuilder dailyAtHourAndMinute(int hour, int minute) {
+        DateBuilder.validateHour(hour);
+        DateBuilder.validateMinute(minute);
+        return cronSchedule(String.format("0 %d %d ? * *", minute, hour));
+    }
+
+    public static CompiledCronScheduleBuilder weeklyOnDayAndHourAndMinute(int dayOfWeek, int hour, int minute) {
+        DateBuilder.validateDayOfWeek(dayOfWeek);
+        DateBuilder.validateHour(hour);
+        DateBuilder.validateMinute(minute);
+        return cronSchedule(String.format("0 %d %d ? * %d", minute, hour, dayOfWeek));
+    }
+
+    public static CompiledCronScheduleBuilder monthlyOnDayAndHourAndMinute(int dayOfMonth, int hour, int minute) {
+        DateBuilder.validateDayOfMonth(dayOfMonth);
+        DateBuilder.validateHour(hour);
+        DateBuilder.validateMinute(minute);
+        return cronSchedule(String.format("0 %d %d %d * ?", minute, hour, dayOfMonth));
+    }
+
+    public CompiledCronScheduleBuilder inTimeZone(TimeZone timezone) {
+        cronExpression.setTimeZone(timezone);
+        return this;
+    }
+
+    public CompiledCronScheduleBuilder withMisfireHandlingInstructionIgnoreMisfires() {
+        misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY;
+        return this;
+    }
+
+    public CompiledCronScheduleBuilder withMisfireHandlingInstructionDoNothing() {
+        misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING;
+        return this;
+    }
+
+    public CompiledCronScheduleBuilder withMisfireHandlingInstructionFireAndProceed() {
+        misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_FIRE_ONCE_NOW;
+        return this;
+    }
+}
@@ -0,0 +1,118 @@
+package quartzDemo.cron;
+
+import org.quartz.CronExpression;
+import org.quartz.CronTrigger;
+import org.quartz.ScheduleBuilder;
+import org.quartz.impl.triggers.CronTriggerImpl;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * 用 CompiledCronExpression 计算触发时间的 CronTrigger。
+ *
+ * CronTriggerImpl.clone() 会 new CronExpression(cronEx) 重新解析一遍表达式，而 RAMJobStore 存入触发器和每次
+ * acquireNextTriggers 都要 clone。这里表达式由子类自己保存(父类中的 cronEx 始终为 null)，clone 时直接共享
+ * CronExpression 和编译结果；setTimeZone 时复制一份新的 CronExpression 而不是修改共享的那一份。
+ *
+ * getTimeAfter(computeFirstFireTime、triggered、updateAfterMisfire 等都经由它)使用编译结果，getTimeBefore
+ * 仍交给 CronExpression。编译结果不参与序列化，反序列化后第一次使用时重新取得共享实例。
+ *
+ * 注意 JDBC JobStore 按 CronTriggerImpl 的表结构保存 cron 触发器，重新加载后得到的是普通的 CronTriggerImpl。
+ */
+public class CompiledCronTriggerImpl extends CronTriggerImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    private CronExpression expression;
+
+    private transient CompiledCronExpression compiled;
+
+    public CompiledCronTriggerImpl() {
+        super();
+    }
+
+    @Override
+    public void setCronExpression(String cronExpression) throws ParseException {
+        CronExpression parsed = new CronExpression(cronExpression);
+        parsed.setTimeZone(getTimeZone());
+        expression = parsed;
+        compiled = null;
+    }
+
+    @Override
+    public void setCronExpression(CronExpression cronExpression) {
+        expression = cronExpression;
+        compiled = null;
+        super.setTimeZone(cronExpression.getTimeZone());
+    }
+
+    @Override
+    public String getCronExpression() {
+        return expression == null ? null : expression.getCronExpression();
+    }
+
+    @Override
+    public void setTimeZone(TimeZone timeZone) {
+        if (expression != null && !timeZone.equals(expression.getTimeZone())) {
+            CronExpression copy = new CronExpression(expression);
+            copy.setTimeZone(timeZone);
+            expression = copy;
+        }
+        compiled = null;
+        super.setTimeZone(timeZone);
+    }
+
+    @Override
+    public String getExpressionSummary() {
+        return expression == null ? null : expression.getExpressionSummary();
+    }
+
+    @Override
+    protected Date getTimeAfter(Date afterTime) {
+        CompiledCronExpression cron = compiled();
+        return cron == null ? null : cron.getTimeAfter(afterTime);
+    }
+
+    @Override
+    protected Date getTimeBefore(Date eTime) {
+        return expression == null ? null : expression.getTimeBefore(eTime);
+    }
+
+    @Override
+    public ScheduleBuilder<CronTrigger> getScheduleBuilder() {
+        CompiledCronScheduleBuilder cb = CompiledCronScheduleBuilder.cronSchedule(getCronExpression())
+                .inTimeZone(getTimeZone());
+        switch (getMisfireInstruction()) {
+            case MISFIRE_INSTRUCTION_DO_NOTHING:
+                cb.withMisfireHandlingInstructionDoNothing();
+                break;
+            case MISFIRE_INSTRUCTION_FIRE_ONCE_NOW:
+                cb.withMisfireHandlingInstructionFireAndProceed();
+                break;
+            case MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY:
+                cb.withMisfireHandlingInstructionIgnoreMisfires();
+                break;
+        }
+        return cb;
+    }
+
+    public CompiledCronExpression getCompiledCronExpression() {
+        return compiled();
+    }
+
+    private CompiledCronExpression compiled() {
+        CompiledCronExpression cron = compiled;
+        if (cron == null && expression != null) {
+            try {
+                cron = CompiledCronExpression.compile(expression.getCronExpression(), expression.getTimeZone());
+            } catch (ParseException e) {
+                // 表达式已经被 CronExpression 解析过，不会到这里
+                return null;
+            }
+            compiled = cron;
+        }
+        return cron;
+    }
+}
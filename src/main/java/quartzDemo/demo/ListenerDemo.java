@@ -6,6 +6,7 @@ import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.impl.matchers.KeyMatcher;
 import org.quartz.listeners.JobListenerSupport;
 import quartzDemo.MyJob;
+import quartzDemo.log.JobLogger;
 
 public class ListenerDemo {
 
@@ -56,6 +57,10 @@ public class ListenerDemo {
 					// .addJobListener(new MyJobListener(),matchers);
 					// 可以根据组的名字匹配开头和结尾或包含
 					.addJobListener(new MyJobListener(),containsmatcher);
+
+			// 也可以注册在 JobListenerBus 上：按 JobKey 缓存匹配结果，ASYNC 模式下回调由消费线程批量执行，不占用工作线程
+			// JobListenerBus.install(StdSchedulerFactory.getDefaultScheduler(), JobListenerBus.Mode.ASYNC)
+			//		.addJobListener(new MyJobListener(),containsmatcher);
 		} catch (SchedulerException e) {
 			e.printStackTrace();
 		}
@@ -76,6 +81,9 @@ public class ListenerDemo {
 }
 
 class MyJobListener extends JobListenerSupport {
+
+	private static final JobLogger LOG = JobLogger.getLogger(MyJobListener.class);
+
 	@Override
 	public String getName() {
 		return "MyJobListener";
@@ -87,7 +95,7 @@ class MyJobListener extends JobListenerSupport {
       */
      @Override
      public void jobToBeExecuted(JobExecutionContext context) {
-         System.out.println("MyJobListener.jobToBeExecuted()");
+         LOG.info("MyJobListener.jobToBeExecuted()");
      }
 
      /**
@@ -98,7 +106,7 @@ class MyJobListener extends JobListenerSupport {
       */
      @Override
      public void jobExecutionVetoed(JobExecutionContext context) {
-         System.out.println("MyJobListener.jobExecutionVetoed()");
+         LOG.info("MyJobListener.jobExecutionVetoed()");
      }
 
      /**
@@ -109,6 +117,6 @@ class MyJobListener extends JobListenerSupport {
      @Override
      public void jobWasExecuted(JobExecutionContext context,
              JobExecutionException jobException) {
-         System.out.println("MyJobListener.jobWasExecuted()");
+         LOG.info("MyJobListener.jobWasExecuted()");
      }
 }
\ No newline at end of file
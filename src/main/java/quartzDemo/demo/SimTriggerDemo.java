@@ -2,6 +2,8 @@ package quartzDemo.demo;
 
 import org.quartz.*;
 import quartzDemo.MyJob;
+import quartzDemo.cron.CompiledCronScheduleBuilder;
+import quartzDemo.trigger.FireTimeCursor;
 
 import java.util.Date;
 
@@ -85,6 +87,16 @@ public class SimTriggerDemo {
 						.repeatForever()
 						.withMisfireHandlingInstructionNextWithExistingCount())
 				.build();
+
+		/**
+		 * 查看触发器接下来的触发时间：TriggerUtils.computeFireTimes 会把结果全部放进 List，repeatForever 的触发器
+		 * 窗口越长列表越大。FireTimeCursor 逐个计算，用多少算多少；多个触发器按时间合并用 MergedFireTimes。
+		 */
+		FireTimeCursor fireTimes = FireTimeCursor.of(trigger, null, starttime,
+				new Date(starttime.getTime() + 60 * 60 * 1000L));
+		while (fireTimes.hasNext()) {
+			System.out.println(fireTimes.next());
+		}
 	}
 
 	public static void crontrigger(JobDetail job){
@@ -132,6 +144,16 @@ public class SimTriggerDemo {
                 .forJob("myJob", "group1")
 				.build();
 
+		/**
+		 * 大量触发器使用相同的 cron 表达式时，可以用 CompiledCronScheduleBuilder 代替 CronScheduleBuilder，用法相同。
+		 * 表达式被编译成位掩码，计算下一次触发时间不再创建 Calendar 对象，相同的表达式只编译一次。
+		 */
+		trigger = TriggerBuilder.newTrigger()
+				.withIdentity("trigger3", "group1")
+				.withSchedule(CompiledCronScheduleBuilder.cronSchedule("0 0/2 8-17 * * ?"))
+				.forJob("myJob", "group1")
+				.build();
+
 	}
 
 	// 返回指定的时间
@@ -0,0 +1,197 @@
+package quartzDemo.history;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 堆外的定长记录环形缓冲区，TriggerHistory 的存储。
+ *
+ * 每条记录 48 字节，放在一块 allocateDirect 的内存中，GC 不扫描也不复制；满了之后覆盖最旧的记录。
+ * 多个工作线程同时写入：在 tail 上 getAndIncrement 抢到序号(index)，槽位是 index & mask。
+ * 每个槽位的序号放在并列的 AtomicLongArray 中(一个 long[]，同样不含引用)：写入前置为 -1，写完后置为 index + 1。
+ * 读取时先后两次检查序号都等于 index + 1 才使用读到的字段，否则说明这条记录还没写完或者已经被覆盖，跳过。
+ * 序号的 volatile 读写不能阻止普通读写越过它们，所以写入时置为 -1 之后要有 store-store 屏障，读取时第二次检查之前
+ * 要有 load-load 屏障：Java 9 起用 VarHandle 的 storeStoreFence / loadLoadFence，Java 8 用 Unsafe 的
+ * storeFence / loadFence(都通过反射取得，不依赖编译时的 JDK)；都取不到时(Java 7)用同一个序号上的 CAS 代替，
+ * HotSpot 上 CAS 是完整的屏障。
+ *
+ * 记录格式：
+ *   0  scheduledFireTime   long，没有时为 0
+ *   8  fireTime            long，misfire 时是发现 misfire 的时间
+ *   16 duration            long，毫秒，没有执行时为 0
+ *   24 jobId               int，TriggerHistory 中 JobKey 的编号
+ *   28 triggerId           int，TriggerKey 的编号
+ *   32 groupId             int，作业组名的编号
+ *   36 outcome             byte，HistoryRecord.Outcome 的 ordinal
+ *   37 保留
+ */
+final class HistoryBuffer {
+
+    static final int RECORD_SIZE = 48;
+
+    private static final int SCHEDULED = 0;
+
+    private static final int FIRED = 8;
+
+    private static final int DURATION = 16;
+
+    private static final int JOB = 24;
+
+    private static final int TRIGGER = 28;
+
+    private static final int GROUP = 32;
+
+    private static final int OUTCOME = 36;
+
+    private static final long WRITING = -1L;
+
+    private static final MethodHandle LOAD_FENCE = fence("loadLoadFence", "loadFence");
+
+    private static final MethodHandle STORE_FENCE = fence("storeStoreFence", "storeFence");
+
+    private final ByteBuffer data;
+
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity 向上取整为 2 的幂
+     */
+    HistoryBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        if (size <= 0 || (long) size * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("History capacity too large: " + capacity);
+        }
+        this.mask = size - 1;
+        this.data = ByteBuffer.allocateDirect(size * RECORD_SIZE).order(ByteOrder.nativeOrder());
+        this.sequences = new AtomicLongArray(size);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 已经写入(包括正在写入)的记录总数，下一条记录的序号。
+     */
+    long tail() {
+        return tail.get();
+    }
+
+    void append(long scheduled, long fired, long duration, int jobId, int triggerId, int groupId, byte outcome) {
+        long index = tail.getAndIncrement();
+        int slot = (int) (index & mask);
+        int base = slot * RECORD_SIZE;
+        if (STORE_FENCE != null) {
+            sequences.set(slot, WRITING);
+            storeFence();
+        } else {
+            sequences.getAndSet(slot, WRITING);
+        }
+        data.putLong(base + SCHEDULED, scheduled);
+        data.putLong(base + FIRED, fired);
+        data.putLong(base + DURATION, duration);
+        data.putInt(base + JOB, jobId);
+        data.putInt(base + TRIGGER, triggerId);
+        data.putInt(base + GROUP, groupId);
+        data.put(base + OUTCOME, outcome);
+        sequences.set(slot, index + 1);
+    }
+
+    /**
+     * 序号为 index 的记录是否完整可读，读取字段之前检查；读取之后用 stillValid 再检查一次。
+     */
+    boolean valid(long index) {
+        return sequences.get((int) (index & mask)) == index + 1;
+    }
+
+    /**
+     * 读取字段之后再次检查：之前读到的字段属于序号为 index 的完整记录。
+     */
+    boolean stillValid(long index) {
+        if (LOAD_FENCE != null) {
+            loadFence();
+            return valid(index);
+        }
+        int slot = (int) (index & mask);
+        return sequences.compareAndSet(slot, index + 1, index + 1);
+    }
+
+    int base(long index) {
+        return (int) (index & mask) * RECORD_SIZE;
+    }
+
+    long scheduled(int base) {
+        return data.getLong(base + SCHEDULED);
+    }
+
+    long fired(int base) {
+        return data.getLong(base + FIRED);
+    }
+
+    long duration(int base) {
+        return data.getLong(base + DURATION);
+    }
+
+    int jobId(int base) {
+        return data.getInt(base + JOB);
+    }
+
+    int triggerId(int base) {
+        return data.getInt(base + TRIGGER);
+    }
+
+    int groupId(int base) {
+        return data.getInt(base + GROUP);
+    }
+
+    byte outcome(int base) {
+        return data.get(base + OUTCOME);
+    }
+
+    private static void loadFence() {
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void storeFence() {
+        try {
+            STORE_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * VarHandle 的静态方法 varHandleFence(Java 9 起)或 Unsafe 的 unsafeFence(Java 8)，都没有时返回 null。
+     */
+    private static MethodHandle fence(String varHandleFence, String unsafeFence) {
+        MethodType type = MethodType.methodType(void.class);
+        try {
+            Class<?> varHandle = Class.forName("java.lang.invoke.VarHandle");
+            return MethodHandles.publicLookup().findStatic(varHandle, varHandleFence, type);
+        } catch (Exception ignore) {
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.publicLookup().findVirtual(unsafeClass, unsafeFence, type)
+                    .bindTo(theUnsafe.get(null));
+        } catch (Exception ignore) {
+        }
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+package quartzDemo.history;
+
+/**
+ * TriggerHistory 的查询条件。
+ *
+ * 例如最近一小时 group1 组中最慢的 100 次执行：
+ * history.query(HistoryQuery.slowest(100).jobGroup("group1").lastMillis(60 * 60 * 1000L));
+ */
+public final class HistoryQuery {
+
+    /**
+     * 结果的顺序
+     */
+    public enum Order {
+        /** 最近的在前 */
+        LATEST,
+        /** 执行时间最长的在前 */
+        SLOWEST
+    }
+
+    private final Order order;
+
+    private final int limit;
+
+    private String jobGroup;
+
+    private String jobName;
+
+    private HistoryRecord.Outcome outcome;
+
+    private long since = Long.MIN_VALUE;
+
+    private long until = Long.MAX_VALUE;
+
+    private HistoryQuery(Order order, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be > 0");
+        }
+        this.order = order;
+        this.limit = limit;
+    }
+
+    /**
+     * 最近的 limit 条记录。
+     */
+    public static HistoryQuery latest(int limit) {
+        return new HistoryQuery(Order.LATEST, limit);
+    }
+
+    /**
+     * 执行时间最长的 limit 条记录。
+     */
+    public static HistoryQuery slowest(int limit) {
+        return new HistoryQuery(Order.SLOWEST, limit);
+    }
+
+    /**
+     * 只查询这个作业组。
+     */
+    public HistoryQuery jobGroup(String jobGroup) {
+        this.jobGroup = jobGroup;
+        return this;
+    }
+
+    /**
+     * 只查询这个作业，需要同时指定 jobGroup(默认组是 DEFAULT)。
+     */
+    public HistoryQuery jobName(String jobName) {
+        this.jobName = jobName;
+        return this;
+    }
+
+    public HistoryQuery outcome(HistoryRecord.Outcome outcome) {
+        this.outcome = outcome;
+        return this;
+    }
+
+    /**
+     * 触发时间不早于 since。
+     */
+    public HistoryQuery since(long since) {
+        this.since = since;
+        return this;
+    }
+
+    /**
+     * 触发时间早于 until。
+     */
+    public HistoryQuery until(long until) {
+        this.until = until;
+        return this;
+    }
+
+    /**
+     * 最近 millis 毫秒内触发的。
+     */
+    public HistoryQuery lastMillis(long millis) {
+        return since(System.currentTimeMillis() - millis);
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public String getJobGroup() {
+        return jobGroup;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public HistoryRecord.Outcome getOutcome() {
+        return outcome;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public long getUntil() {
+        return until;
+    }
+}
@@ -0,0 +1,97 @@
+package quartzDemo.history;
+
+import org.quartz.JobKey;
+import org.quartz.TriggerKey;
+
+/**
+ * TriggerHistory 查询结果中的一条记录。
+ */
+public final class HistoryRecord {
+
+    /**
+     * 触发的结果
+     */
+    public enum Outcome {
+        /** 作业执行完成 */
+        SUCCESS,
+        /** 作业抛出了 JobExecutionException(或其他异常) */
+        FAILED,
+        /** 被 TriggerListener 否决，没有执行 */
+        VETOED,
+        /** misfire，scheduledFireTime 是错过的触发时间 */
+        MISFIRED
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final long sequence;
+
+    private final JobKey jobKey;
+
+    private final TriggerKey triggerKey;
+
+    private final long scheduledFireTime;
+
+    private final long fireTime;
+
+    private final long duration;
+
+    private final Outcome outcome;
+
+    HistoryRecord(long sequence, JobKey jobKey, TriggerKey triggerKey, long scheduledFireTime, long fireTime,
+                  long duration, byte outcome) {
+        this.sequence = sequence;
+        this.jobKey = jobKey;
+        this.triggerKey = triggerKey;
+        this.scheduledFireTime = scheduledFireTime;
+        this.fireTime = fireTime;
+        this.duration = duration;
+        this.outcome = OUTCOMES[outcome];
+    }
+
+    /**
+     * 记录的序号，从 0 开始递增。
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public JobKey getJobKey() {
+        return jobKey;
+    }
+
+    public TriggerKey getTriggerKey() {
+        return triggerKey;
+    }
+
+    /**
+     * 计划触发时间，没有时为 0。
+     */
+    public long getScheduledFireTime() {
+        return scheduledFireTime;
+    }
+
+    /**
+     * 实际触发时间；misfire 时是发现 misfire 的时间。
+     */
+    public long getFireTime() {
+        return fireTime;
+    }
+
+    /**
+     * 执行时间(毫秒)，没有执行时为 0。
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    @Override
+    public String toString() {
+        return jobKey + " (" + triggerKey + ") " + outcome + ", scheduled " + scheduledFireTime + ", fired "
+                + fireTime + ", " + duration + "ms";
+    }
+}
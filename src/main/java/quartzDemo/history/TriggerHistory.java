@@ -0,0 +1,472 @@
+package quartzDemo.history;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.TriggerListener;
+import org.quartz.impl.matchers.EverythingMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把最近的触发记录(作业、触发器、计划触发时间、实际触发时间、执行时间、结果)保存在堆外环形缓冲区中并提供查询的
+ * JobListener / TriggerListener。
+ *
+ * ConfigDemo 中的 LoggingJobHistoryPlugin / LoggingTriggerHistoryPlugin 和 ListenerDemo 中的 MyJobListener 只是写日志，
+ * 事后无法按条件查询；把每次触发保存成对象，几百万条会一直留在老年代里增加 GC 的负担。这里每条记录是堆外的 48 字节
+ * (见 HistoryBuffer)，作业和触发器的 key 只保存编号，key 本身在字典中只保存一份，记录时不分配内存。
+ *
+ * 记录的内容：
+ *   作业执行完成(jobWasExecuted)：SUCCESS 或 FAILED，执行时间是 JobRunShell 测得的 getJobRunTime()；
+ *   作业被否决(jobExecutionVetoed)：VETOED；
+ *   misfire(triggerMisfired，在调度线程上)：MISFIRED，计划触发时间是错过的那次。
+ *
+ * 查询(query)从最新的记录向前扫描，每条记录只读取用到的几个字段并与条件中的编号比较，不创建对象；
+ * 按时间过滤时扫描到足够早的记录就停止，只为最后返回的 limit 条记录创建 HistoryRecord。
+ * 字典中不再被任何记录引用的 key(例如 triggerJob 产生的 MT_ 触发器、只触发一次的触发器)在字典满时回收，
+ * 占用的内存只与缓冲区中的记录涉及的作业、触发器数有关，与运行时间无关。
+ *
+ * 使用：
+ * TriggerHistory history = TriggerHistory.install(scheduler, 1 << 20);
+ * List<HistoryRecord> slow = history.query(HistoryQuery.slowest(100).jobGroup("group1").lastMillis(3600000L));
+ * 或者通过 TriggerHistoryPlugin 在配置文件中开启；webapp 中的 TriggerHistoryServlet(/metrics/history)以 JSON 输出查询结果。
+ */
+public class TriggerHistory implements JobListener, TriggerListener {
+
+    /** 保存在 SchedulerContext 中的 key */
+    public static final String CONTEXT_KEY = TriggerHistory.class.getName();
+
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * 记录是在执行完成时按顺序写入的，完成时间早于 since 这么多时，之前写入的记录都不会在 since 之后触发。
+     */
+    private static final long SCAN_SLACK_MILLIS = 60 * 1000L;
+
+    private static final byte SUCCESS = (byte) HistoryRecord.Outcome.SUCCESS.ordinal();
+
+    private static final byte FAILED = (byte) HistoryRecord.Outcome.FAILED.ordinal();
+
+    private static final byte VETOED = (byte) HistoryRecord.Outcome.VETOED.ordinal();
+
+    private static final byte MISFIRED = (byte) HistoryRecord.Outcome.MISFIRED.ordinal();
+
+    private final String name;
+
+    private final HistoryBuffer buffer;
+
+    private final Dictionary<JobKey> jobs;
+
+    private final Dictionary<TriggerKey> triggers;
+
+    private final Dictionary<String> groups;
+
+    public TriggerHistory(String name, int capacity) {
+        this.name = name;
+        this.buffer = new HistoryBuffer(capacity);
+        this.jobs = new Dictionary<JobKey>(buffer);
+        this.triggers = new Dictionary<TriggerKey>(buffer);
+        this.groups = new Dictionary<String>(buffer);
+    }
+
+    /**
+     * 创建 TriggerHistory 并注册到调度器上，capacity 向上取整为 2 的幂。
+     */
+    public static TriggerHistory install(Scheduler scheduler, int capacity) throws SchedulerException {
+        TriggerHistory history = new TriggerHistory("triggerHistory", capacity);
+        history.register(scheduler);
+        return history;
+    }
+
+    /**
+     * 调度器上已安装的 TriggerHistory，没有时返回 null。
+     */
+    public static TriggerHistory of(Scheduler scheduler) throws SchedulerException {
+        return (TriggerHistory) scheduler.getContext().get(CONTEXT_KEY);
+    }
+
+    /**
+     * 作为 JobListener 和 TriggerListener 注册到调度器上，并放入 SchedulerContext。
+     */
+    public void register(Scheduler scheduler) throws SchedulerException {
+        scheduler.getListenerManager().addJobListener(this, EverythingMatcher.allJobs());
+        scheduler.getListenerManager().addTriggerListener(this, EverythingMatcher.allTriggers());
+        scheduler.getContext().put(CONTEXT_KEY, this);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 最多保存的记录数。
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 一共记录过的次数(包括已经被覆盖的)。
+     */
+    public long getRecorded() {
+        return buffer.tail();
+    }
+
+    @Override
+    public void jobToBeExecuted(JobExecutionContext context) {
+    }
+
+    @Override
+    public void jobExecutionVetoed(JobExecutionContext context) {
+        record(context, 0, VETOED);
+    }
+
+    @Override
+    public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+        record(context, Math.max(0, context.getJobRunTime()), jobException == null ? SUCCESS : FAILED);
+    }
+
+    @Override
+    public void triggerFired(Trigger trigger, JobExecutionContext context) {
+    }
+
+    @Override
+    public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+        return false;
+    }
+
+    @Override
+    public void triggerMisfired(Trigger trigger) {
+        JobKey jobKey = trigger.getJobKey();
+        Date missed = trigger.getNextFireTime();
+        long tail = buffer.tail();
+        buffer.append(missed != null ? missed.getTime() : 0, System.currentTimeMillis(), 0, jobs.id(jobKey, tail),
+                triggers.id(trigger.getKey(), tail), groups.id(jobKey.getGroup(), tail), MISFIRED);
+    }
+
+    @Override
+    public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                Trigger.CompletedExecutionInstruction triggerInstructionCode) {
+    }
+
+    private void record(JobExecutionContext context, long duration, byte outcome) {
+        JobKey jobKey = context.getJobDetail().getKey();
+        Date scheduled = context.getScheduledFireTime();
+        long tail = buffer.tail();
+        buffer.append(scheduled != null ? scheduled.getTime() : 0, context.getFireTime().getTime(), duration,
+                jobs.id(jobKey, tail), triggers.id(context.getTrigger().getKey(), tail), groups.id(jobKey.getGroup(), tail),
+                outcome);
+    }
+
+    /**
+     * 按条件查询，结果按 query 的顺序排列，最多 limit 条。
+     */
+    public List<HistoryRecord> query(HistoryQuery query) {
+        int group = -1;
+        if (query.getJobGroup() != null) {
+            group = groups.lookup(query.getJobGroup());
+            if (group < 0) {
+                return Collections.emptyList();
+            }
+        }
+        int job = -1;
+        if (query.getJobName() != null) {
+            String jobGroup = query.getJobGroup() != null ? query.getJobGroup() : JobKey.DEFAULT_GROUP;
+            job = jobs.lookup(new JobKey(query.getJobName(), jobGroup));
+            if (job < 0) {
+                return Collections.emptyList();
+            }
+        }
+        int outcome = query.getOutcome() != null ? query.getOutcome().ordinal() : -1;
+        long since = query.getSince();
+        long until = query.getUntil();
+        long stopBefore = since == Long.MIN_VALUE ? Long.MIN_VALUE : since - SCAN_SLACK_MILLIS;
+        boolean slowest = query.getOrder() == HistoryQuery.Order.SLOWEST;
+
+        int limit = query.getLimit();
+        long[] indexes = new long[limit];
+        long[] durations = new long[limit];
+        int found = 0;
+
+        long tail = buffer.tail();
+        long oldest = Math.max(0, tail - buffer.capacity());
+        for (long i = tail - 1; i >= oldest; i--) {
+            if (!buffer.valid(i)) {
+                continue;
+            }
+            int base = buffer.base(i);
+            long fired = buffer.fired(base);
+            long duration = buffer.duration(base);
+            int g = buffer.groupId(base);
+            int j = buffer.jobId(base);
+            int o = buffer.outcome(base);
+            if (!buffer.stillValid(i)) {
+                continue;
+            }
+            if (fired + duration < stopBefore) {
+                break;
+            }
+            if ((group >= 0 && g != group) || (job >= 0 && j != job) || (outcome >= 0 && o != outcome)
+                    || fired < since || fired >= until) {
+                continue;
+            }
+            if (!slowest) {
+                indexes[found++] = i;
+                if (found == limit) {
+                    break;
+                }
+            } else if (found < limit) {
+                indexes[found] = i;
+                durations[found] = duration;
+                siftUp(indexes, durations, found++);
+            } else if (duration > durations[0]) {
+                indexes[0] = i;
+                durations[0] = duration;
+                siftDown(indexes, durations, 0, found);
+            }
+        }
+
+        if (slowest) {
+            // 小顶堆依次把最小的换到末尾，得到按执行时间从长到短的顺序
+            for (int end = found - 1; end > 0; end--) {
+                swap(indexes, durations, 0, end);
+                siftDown(indexes, durations, 0, end);
+            }
+        }
+        List<HistoryRecord> result = new ArrayList<HistoryRecord>(found);
+        for (int k = 0; k < found; k++) {
+            HistoryRecord record = read(indexes[k]);
+            if (record != null) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 读取一条完整的记录，已经被覆盖(或者引用的 key 已经被回收)时返回 null。
+     */
+    private HistoryRecord read(long index) {
+        int base = buffer.base(index);
+        long scheduled = buffer.scheduled(base);
+        long fired = buffer.fired(base);
+        long duration = buffer.duration(base);
+        int job = buffer.jobId(base);
+        int trigger = buffer.triggerId(base);
+        byte outcome = buffer.outcome(base);
+        if (!buffer.stillValid(index)) {
+            return null;
+        }
+        JobKey jobKey = jobs.get(job);
+        TriggerKey triggerKey = triggers.get(trigger);
+        if (jobKey == null || triggerKey == null) {
+            return null;
+        }
+        return new HistoryRecord(index, jobKey, triggerKey, scheduled, fired, duration, outcome);
+    }
+
+    private static void siftUp(long[] indexes, long[] durations, int k) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (durations[parent] <= durations[k]) {
+                return;
+            }
+            swap(indexes, durations, parent, k);
+            k = parent;
+        }
+    }
+
+    private static void siftDown(long[] indexes, long[] durations, int k, int size) {
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && durations[child + 1] < durations[child]) {
+                child++;
+            }
+            if (durations[k] <= durations[child]) {
+                return;
+            }
+            swap(indexes, durations, k, child);
+            k = child;
+        }
+    }
+
+    private static void swap(long[] indexes, long[] durations, int a, int b) {
+        long index = indexes[a];
+        indexes[a] = indexes[b];
+        indexes[b] = index;
+        long duration = durations[a];
+        durations[a] = durations[b];
+        durations[b] = duration;
+    }
+
+    /**
+     * key 与编号的双向映射：key -> 编号查 ConcurrentHashMap(已有的 key 不分配内存)，编号 -> key 查数组。
+     * 新的 key 在锁内分配编号，先写入数组再放入 Map，拿到编号的线程一定能从数组中读到 key。
+     *
+     * 编号的低 SLOT_BITS 位是数组下标，高位是这个下标被重新使用的代数。每个 key 记下最近一次记录时缓冲区的 tail
+     * (lastSeen，相差不到 slack 时不更新，避免每次记录都写共享的字段)。数组满时先回收 lastSeen 早于
+     * tail - capacity - 2 * slack 的 key，引用它们的记录都已经被覆盖；回收得太少时数组再加倍，所以回收的开销是均摊的。
+     * 回收后的下标换一代再分配：万一有线程在回收时还拿着旧的编号写入记录，get 按代比较返回 null，这条记录在查询时
+     * 被跳过，不会读成别的 key。
+     */
+    private static final class Dictionary<K> {
+
+        private static final int SLOT_BITS = 24;
+
+        private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+        private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+
+        /** 同时存活的 key 超过 2^SLOT_BITS 个时，新的 key 得到这个编号，它的记录在查询时被跳过 */
+        private static final int NONE = -1;
+
+        private final HistoryBuffer buffer;
+
+        private final long slack;
+
+        private final ConcurrentHashMap<K, Entry<K>> ids = new ConcurrentHashMap<K, Entry<K>>();
+
+        private volatile Object[] entries = new Object[64];
+
+        // 以下由 this 保护
+
+        private int[] generations = new int[64];
+
+        private int[] free = new int[64];
+
+        private int freeCount;
+
+        private int size;
+
+        Dictionary(HistoryBuffer buffer) {
+            this.buffer = buffer;
+            this.slack = buffer.capacity() >> 3;
+        }
+
+        /**
+         * key 的编号，tail 是记录之前读到的 buffer.tail()。
+         */
+        int id(K key, long tail) {
+            Entry<K> entry = ids.get(key);
+            if (entry == null) {
+                return add(key, tail);
+            }
+            if (entry.lastSeen < tail - slack) {
+                entry.lastSeen = tail;
+                // sweep 先从 Map 中删除再检查 lastSeen，这里先写 lastSeen 再检查 Map，两边至少有一边能看到对方
+                if (ids.get(key) != entry) {
+                    return add(key, tail);
+                }
+            }
+            return entry.id;
+        }
+
+        /**
+         * 没有出现过(或已经被回收)时返回 -1。
+         */
+        int lookup(K key) {
+            Entry<K> entry = ids.get(key);
+            return entry != null ? entry.id : -1;
+        }
+
+        /**
+         * 编号对应的 key，已经被回收时返回 null。
+         */
+        @SuppressWarnings("unchecked")
+        K get(int id) {
+            if (id < 0) {
+                return null;
+            }
+            Object[] current = entries;
+            int slot = id & SLOT_MASK;
+            Entry<K> entry = slot < current.length ? (Entry<K>) current[slot] : null;
+            return entry != null && entry.id == id ? entry.key : null;
+        }
+
+        private synchronized int add(K key, long tail) {
+            Entry<K> entry = ids.get(key);
+            if (entry != null) {
+                entry.lastSeen = Math.max(entry.lastSeen, tail);
+                return entry.id;
+            }
+            Object[] current = entries;
+            if (freeCount == 0 && size == current.length) {
+                // 回收的不到四分之一时加倍，避免数组接近满时每次 add 都扫描一遍
+                if (sweep(current) < current.length / 4 && current.length < SLOT_MASK + 1) {
+                    int length = Math.min(current.length * 2, SLOT_MASK + 1);
+                    current = Arrays.copyOf(current, length);
+                    generations = Arrays.copyOf(generations, length);
+                    free = Arrays.copyOf(free, length);
+                }
+            }
+            int slot;
+            if (freeCount > 0) {
+                slot = free[--freeCount];
+            } else if (size < current.length) {
+                slot = size++;
+            } else {
+                return NONE;
+            }
+            entry = new Entry<K>(key, (generations[slot] << SLOT_BITS) | slot, tail);
+            current[slot] = entry;
+            entries = current;
+            ids.put(key, entry);
+            return entry.id;
+        }
+
+        /**
+         * 回收不再被记录引用的 key，返回回收的个数。调用方持有 this。
+         */
+        @SuppressWarnings("unchecked")
+        private int sweep(Object[] current) {
+            long horizon = buffer.tail() - buffer.capacity() - 2 * slack;
+            int reclaimed = 0;
+            for (int slot = 0; slot < size; slot++) {
+                Entry<K> entry = (Entry<K>) current[slot];
+                if (entry == null || entry.lastSeen >= horizon) {
+                    continue;
+                }
+                ids.remove(entry.key, entry);
+                if (entry.lastSeen >= horizon) {
+                    // 删除的同时又被记录了一次
+                    ids.put(entry.key, entry);
+                    continue;
+                }
+                current[slot] = null;
+                generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+                free[freeCount++] = slot;
+                reclaimed++;
+            }
+            return reclaimed;
+        }
+
+        private static final class Entry<K> {
+
+            final K key;
+
+            final int id;
+
+            volatile long lastSeen;
+
+            Entry(K key, int id, long lastSeen) {
+                this.key = key;
+                this.id = id;
+                this.lastSeen = lastSeen;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package quartzDemo.history;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 通过配置文件开启 TriggerHistory，可以代替 LoggingJobHistoryPlugin / LoggingTriggerHistoryPlugin。
+ *
+ * 配置：
+ * org.quartz.plugin.triggerHistory.class = quartzDemo.history.TriggerHistoryPlugin
+ * org.quartz.plugin.triggerHistory.capacity = 1048576     (可选，每条记录 48 字节堆外内存加 8 字节序号)
+ *
+ * 堆外内存受 -XX:MaxDirectMemorySize 限制(默认与最大堆相同)。
+ * 之后通过 TriggerHistory.of(scheduler) 查询，或者访问 webapp 中的 TriggerHistoryServlet。
+ */
+public class TriggerHistoryPlugin implements SchedulerPlugin {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private int capacity = TriggerHistory.DEFAULT_CAPACITY;
+
+    private TriggerHistory history;
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public TriggerHistory getHistory() {
+        return history;
+    }
+
+    @Override
+    public void initialize(String name, Scheduler scheduler, ClassLoadHelper loadHelper)
+            throws SchedulerException {
+        if (capacity <= 0) {
+            throw new SchedulerConfigException("TriggerHistory capacity must be > 0");
+        }
+        try {
+            history = new TriggerHistory(name, capacity);
+        } catch (IllegalArgumentException e) {
+            throw new SchedulerConfigException(e.getMessage());
+        } catch (OutOfMemoryError e) {
+            throw new SchedulerConfigException("Can't allocate " + capacity + " history records off-heap", e);
+        }
+        history.register(scheduler);
+        log.info("TriggerHistory '" + name + "' initialized, " + history.getCapacity() + " records");
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
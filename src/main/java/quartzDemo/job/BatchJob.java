@@ -0,0 +1,53 @@
+package quartzDemo.job;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+import java.util.List;
+
+/**
+ * 可以合并执行的作业：同时触发的多个同类作业(例如 SimTriggerDemo 中作业类和间隔相同、只有 JobDataMap 不同的触发器)
+ * 合并成一次 execute(List) 调用，例如一次批量写库或一次网络请求。
+ *
+ * 合并由线程池完成(PriorityStealingThreadPool，maxBatchSize 大于 1 时)：排队中的同类作业组成一个 JobBatch，
+ * 由一个工作线程执行。每个触发器仍然有自己的 JobRunShell，监听器通知、JobStore 中的 triggeredJobComplete、
+ * misfire 和恢复都和单独执行时一样逐个进行，只是作业本身只执行一次。
+ * 在不合并的线程池中(或者 JobExecutionException 要求 refireImmediately 时)，每次触发单独调用 execute(List)，列表中只有一个元素。
+ *
+ * 注意：
+ * 1，合并执行时只使用第一个作业实例，JobFactory 注入到其他实例的属性不会被使用，参数应从每个 context 的
+ *    MergedJobDataMap 中读取(与 @StatelessJob 的要求相同)；
+ * 2，execute(List) 抛出的异常作为列表中每个作业的执行结果，单个作业的失败用 failed(context, e) 标记；
+ * 3，每个作业的 getJobRunTime() 是整批的执行时间。
+ */
+public abstract class BatchJob implements Job {
+
+    /**
+     * 由 JobRunShell 调用，子类实现 execute(List)。
+     */
+    @Override
+    public final void execute(JobExecutionContext context) throws JobExecutionException {
+        JobBatch batch = JobBatch.current();
+        if (batch != null && batch.join(context)) {
+            batch.execute(this, context);
+        } else {
+            JobBatch.executeAlone(this, context);
+        }
+    }
+
+    /**
+     * 执行一批作业，contexts 按触发顺序排列，至少有一个元素。
+     */
+    public abstract void execute(List<JobExecutionContext> contexts) throws JobExecutionException;
+
+    /**
+     * 在 execute(List) 中标记其中一个作业失败，这个作业的执行结果是 e，其他作业不受影响。
+     */
+    protected final void failed(JobExecutionContext context, JobExecutionException e) {
+        JobBatch batch = JobBatch.current();
+        if (batch != null) {
+            batch.fail(context, e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package quartzDemo.job;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 合并成一次执行的一批 BatchJob 的 JobRunShell，由线程池作为一个任务交给工作线程。
+ *
+ * JobRunShell.run() 从通知监听器、执行作业到 triggeredJobComplete 是一个整体，不能只执行其中一部分，所以这里在同一个
+ * 线程中嵌套执行：第一个 JobRunShell 调用作业的 execute(context) 时，BatchJob 把 context 加入这一批，再执行下一个
+ * JobRunShell，直到最后一个；最内层执行一次 execute(List)，之后逐层返回，每个 JobRunShell 拿到自己的执行结果，
+ * 各自完成监听器通知和 JobStore 中的记录。被监听器否决(vetoed)的作业不会调用 execute，也就不在这一批中。
+ * 嵌套深度与批的大小成正比，maxBatchSize 不宜过大。
+ *
+ * 创建后、开始执行前可以继续 offer 同类作业，直到满了或者被 seal；开始执行时先等到 sealAt(合并窗口结束)再 seal。
+ */
+public final class JobBatch implements Runnable {
+
+    private static final ThreadLocal<JobBatch> CURRENT = new ThreadLocal<JobBatch>();
+
+    private final Class<? extends Job> jobClass;
+
+    private final Runnable[] shells;
+
+    private final long sealAt;
+
+    private int size;
+
+    private boolean sealed;
+
+    // 以下只由执行这一批的线程访问
+
+    private final List<JobExecutionContext> contexts = new ArrayList<JobExecutionContext>();
+
+    private Map<JobExecutionContext, JobExecutionException> failures;
+
+    private BatchJob job;
+
+    private int next;
+
+    private boolean executed;
+
+    private Throwable batchError;
+
+    /**
+     * @param sealAt 合并窗口的结束时间(System.currentTimeMillis())，开始执行时等到这个时间才不再接收
+     */
+    public JobBatch(Class<? extends Job> jobClass, int maxBatchSize, long sealAt, Runnable first) {
+        this.jobClass = jobClass;
+        this.shells = new Runnable[maxBatchSize];
+        this.sealAt = sealAt;
+        shells[size++] = first;
+    }
+
+    private JobBatch(BatchJob job, JobExecutionContext context) {
+        this.jobClass = job.getClass();
+        this.shells = new Runnable[0];
+        this.sealAt = 0;
+        this.sealed = true;
+        this.job = job;
+        contexts.add(context);
+    }
+
+    /**
+     * 当前线程正在执行的一批，没有时返回 null。
+     */
+    static JobBatch current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 不合并，单独执行一个作业。
+     */
+    static void executeAlone(BatchJob job, JobExecutionContext context) throws JobExecutionException {
+        JobBatch previous = CURRENT.get();
+        JobBatch alone = new JobBatch(job, context);
+        CURRENT.set(alone);
+        try {
+            alone.execute(job, context);
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public Class<? extends Job> getJobClass() {
+        return jobClass;
+    }
+
+    /**
+     * 加入一个同类作业的 JobRunShell，已满或者已经 seal 时返回 false。
+     */
+    public synchronized boolean offer(Runnable shell) {
+        if (sealed || size == shells.length) {
+            return false;
+        }
+        shells[size++] = shell;
+        return true;
+    }
+
+    /**
+     * 等到合并窗口结束，之后不再接收，返回这一批的作业数。
+     */
+    public int seal() {
+        long wait = sealAt - System.currentTimeMillis();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            sealed = true;
+            return size;
+        }
+    }
+
+    @Override
+    public void run() {
+        seal();
+        JobBatch previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            runShells();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    private void runShells() {
+        while (!executed && next < size) {
+            shells[next++].run();
+        }
+    }
+
+    /**
+     * JobRunShell 第一次执行作业时加入这一批；refireImmediately 重新执行时这一批已经执行过，返回 false。
+     */
+    boolean join(JobExecutionContext context) {
+        if (executed) {
+            return false;
+        }
+        contexts.add(context);
+        return true;
+    }
+
+    void fail(JobExecutionContext context, JobExecutionException e) {
+        if (failures == null) {
+            failures = new IdentityHashMap<JobExecutionContext, JobExecutionException>();
+        }
+        failures.put(context, e);
+    }
+
+    /**
+     * 先执行后面的 JobRunShell，最内层执行整批，然后返回 context 自己的结果。
+     */
+    void execute(BatchJob instance, JobExecutionContext context) throws JobExecutionException {
+        if (job == null) {
+            job = instance;
+        }
+        runShells();
+        if (!executed) {
+            executed = true;
+            try {
+                job.execute(contexts);
+            } catch (Throwable t) {
+                batchError = t;
+            }
+        }
+        JobExecutionException failure = failures != null ? failures.get(context) : null;
+        if (failure != null) {
+            throw failure;
+        }
+        if (batchError instanceof JobExecutionException) {
+            throw (JobExecutionException) batchError;
+        } else if (batchError instanceof RuntimeException) {
+            throw (RuntimeException) batchError;
+        } else if (batchError instanceof Error) {
+            throw (Error) batchError;
+        } else if (batchError != null) {
+            throw new JobExecutionException(batchError);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package quartzDemo.job;
+
+import org.quartz.JobExecutionContext;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 编译后的、不可变的作业参数视图，代替 MyJob 中 context.getMergedJobDataMap() + getIntValue("value") 的读法。
+ *
+ * 参数名在类加载时注册成 Slot(全局编号)，JobDetail/Trigger 存入调度器时由 JobParamsRegistry 把合并后的
+ * JobDataMap 编译成一个 JobParams：原始类型放在 long[] 中，对象放在 Object[] 中，通过 Layout 把 Slot 编号映射到
+ * 数组下标。执行时只是查表和数组访问，不装箱拆箱、不再解析字符串，也不分配对象：
+ *
+ *     private static final JobParams.Slot NAME = JobParams.slot("name");
+ *     private static final JobParams.Slot VALUE = JobParams.slot("value");
+ *
+ *     public void execute(JobExecutionContext context) {
+ *         JobParams params = JobParams.of(context);
+ *         String name = params.getString(NAME);
+ *         int value = params.getInt(VALUE);
+ *     }
+ *
+ * 与 JobDataMap 的 getIntValue 等方法一样，字符串形式的数字(org.quartz.jobStore.useProperties = true 时)
+ * 也能按原始类型读取，只是解析发生在编译时而不是每次读取时。同样不做有损的转换：getInt 只接受 Integer/Short/Byte
+ * 和 int 范围内的整数字符串，getLong 还接受 Long 和 long 范围内的整数字符串，Long、Double 或 "1.5" 这样的字符串
+ * 按 int 读取时抛出 ClassCastException。
+ */
+public final class JobParams {
+
+    private static final ConcurrentHashMap<String, Slot> SLOTS = new ConcurrentHashMap<String, Slot>();
+
+    private static final AtomicInteger SLOT_SEQ = new AtomicInteger();
+
+    private static final ConcurrentHashMap<Layout, Layout> LAYOUTS = new ConcurrentHashMap<Layout, Layout>();
+
+    static final byte TYPE_NULL = 0;
+
+    static final byte TYPE_INT = 1;
+
+    static final byte TYPE_LONG = 2;
+
+    static final byte TYPE_DOUBLE = 3;
+
+    static final byte TYPE_BOOLEAN = 4;
+
+    static final byte TYPE_CHAR = 5;
+
+    static final byte TYPE_STRING = 6;
+
+    static final byte TYPE_OBJECT = 7;
+
+    /** 字符串可以解析为整数，prims 中保存解析后的值 */
+    static final byte FLAG_NUMERIC = 8;
+
+    /** 字符串可以解析为浮点数，prims 中保存 double 的位模式 */
+    static final byte FLAG_DECIMAL = 16;
+
+    private final Layout layout;
+
+    private final long[] prims;
+
+    private final Object[] refs;
+
+    private final byte[] types;
+
+    private JobParams(Layout layout, long[] prims, Object[] refs, byte[] types) {
+        this.layout = layout;
+        this.prims = prims;
+        this.refs = refs;
+        this.types = types;
+    }
+
+    /**
+     * 参数名对应的 Slot，同名总是返回同一个实例。应当在类加载时取得并保存在静态字段中。
+     */
+    public static Slot slot(String name) {
+        Slot slot = SLOTS.get(name);
+        if (slot == null) {
+            slot = new Slot(name, SLOT_SEQ.getAndIncrement());
+            Slot existing = SLOTS.putIfAbsent(name, slot);
+            if (existing != null) {
+                slot = existing;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * 当前执行对应的参数视图。调度器安装了 JobParamsRegistry 时直接返回缓存的编译结果，否则现场编译一次。
+     * 现场编译比直接读 getMergedJobDataMap() 分配得更多，没有安装注册表时可以用 cached 判断后改用 JobDataMap(见 MyJob)。
+     */
+    public static JobParams of(JobExecutionContext context) {
+        JobParams params = cached(context);
+        return params != null ? params : compile(context.getMergedJobDataMap());
+    }
+
+    /**
+     * 调度器安装了 JobParamsRegistry 时返回缓存的编译结果，否则返回 null。
+     */
+    public static JobParams cached(JobExecutionContext context) {
+        JobParamsRegistry registry = JobParamsRegistry.of(context);
+        return registry != null ? registry.get(context) : null;
+    }
+
+    /**
+     * 把一个(已经合并好的)参数 Map 编译成 JobParams。
+     */
+    public static JobParams compile(Map<String, ?> data) {
+        TreeMap<String, Object> sorted = new TreeMap<String, Object>(data);
+        Slot[] slots = new Slot[sorted.size()];
+        long[] prims = new long[slots.length];
+        Object[] refs = new Object[slots.length];
+        byte[] types = new byte[slots.length];
+
+        int i = 0;
+        for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+            slots[i] = slot(entry.getKey());
+            Object o = entry.getValue();
+            refs[i] = o;
+            if (o == null) {
+                types[i] = TYPE_NULL;
+            } else if (o instanceof Integer || o instanceof Short || o instanceof Byte) {
+                types[i] = TYPE_INT;
+                prims[i] = ((Number) o).intValue();
+            } else if (o instanceof Long) {
+                types[i] = TYPE_LONG;
+                prims[i] = (Long) o;
+            } else if (o instanceof Double || o instanceof Float) {
+                types[i] = TYPE_DOUBLE;
+                prims[i] = Double.doubleToRawLongBits(((Number) o).doubleValue());
+            } else if (o instanceof Boolean) {
+                types[i] = TYPE_BOOLEAN;
+                prims[i] = (Boolean) o ? 1L : 0L;
+            } else if (o instanceof Character) {
+                types[i] = TYPE_CHAR;
+                prims[i] = (Character) o;
+            } else if (o instanceof String) {
+                types[i] = (byte) (TYPE_STRING | parseFlags((String) o, prims, i));
+            } else {
+                types[i] = TYPE_OBJECT;
+            }
+            i++;
+        }
+        return new JobParams(Layout.intern(slots), prims, refs, types);
+    }
+
+    private static int parseFlags(String s, long[] prims, int i) {
+        try {
+            prims[i] = Long.parseLong(s.trim());
+            return FLAG_NUMERIC;
+        } catch (NumberFormatException notLong) {
+            try {
+                prims[i] = Double.doubleToRawLongBits(Double.parseDouble(s.trim()));
+                return FLAG_DECIMAL;
+            } catch (NumberFormatException notDouble) {
+                return 0;
+            }
+        }
+    }
+
+    public boolean has(Slot slot) {
+        return layout.index(slot) >= 0;
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    public int getInt(Slot slot) {
+        int i = require(slot);
+        int type = types[i];
+        if (type == TYPE_INT) {
+            return (int) prims[i];
+        }
+        if ((type & FLAG_NUMERIC) != 0 && prims[i] == (int) prims[i]) {
+            return (int) prims[i];
+        }
+        throw wrongType(slot, "int");
+    }
+
+    public int getInt(Slot slot, int defaultValue) {
+        return has(slot) ? getInt(slot) : defaultValue;
+    }
+
+    public long getLong(Slot slot) {
+        int i = require(slot);
+        int type = types[i];
+        if (type == TYPE_INT || type == TYPE_LONG || (type & FLAG_NUMERIC) != 0) {
+            return prims[i];
+        }
+        throw wrongType(slot, "long");
+    }
+
+    public long getLong(Slot slot, long defaultValue) {
+        return has(slot) ? getLong(slot) : defaultValue;
+    }
+
+    public double getDouble(Slot slot) {
+        int i = require(slot);
+        int type = types[i];
+        if (type == TYPE_DOUBLE || (type & FLAG_DECIMAL) != 0) {
+            return Double.longBitsToDouble(prims[i]);
+        }
+        if (type == TYPE_INT || type == TYPE_LONG || (type & FLAG_NUMERIC) != 0) {
+            return prims[i];
+        }
+        throw wrongType(slot, "double");
+    }
+
+    public boolean getBoolean(Slot slot) {
+        int i = require(slot);
+        if (types[i] == TYPE_BOOLEAN) {
+            return prims[i] != 0;
+        }
+        if ((types[i] & ~(FLAG_NUMERIC | FLAG_DECIMAL)) == TYPE_STRING) {
+            return Boolean.valueOf((String) refs[i]);
+        }
+        throw wrongType(slot, "boolean");
+    }
+
+    public boolean getBoolean(Slot slot, boolean defaultValue) {
+        return has(slot) ? getBoolean(slot) : defaultValue;
+    }
+
+    public String getString(Slot slot) {
+        int i = layout.index(slot);
+        if (i < 0) {
+            return null;
+        }
+        Object o = refs[i];
+        if (o == null || o instanceof String) {
+            return (String) o;
+        }
+        throw wrongType(slot, "String");
+    }
+
+    public Object get(Slot slot) {
+        int i = layout.index(slot);
+        return i < 0 ? null : refs[i];
+    }
+
+    /**
+     * 转回普通的 Map，只用于调试和兼容旧代码。
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < layout.slots.length; i++) {
+            map.put(layout.slots[i].name, refs[i]);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "JobParams" + toMap();
+    }
+
+    private int require(Slot slot) {
+        int i = layout.index(slot);
+        if (i < 0) {
+            throw new NoSuchElementException("No job parameter '" + slot.name + "'");
+        }
+        return i;
+    }
+
+    private ClassCastException wrongType(Slot slot, String expected) {
+        return new ClassCastException("Job parameter '" + slot.name + "' can't be read as " + expected
+                + ": " + refs[layout.index(slot)]);
+    }
+
+    /**
+     * 参数名的全局编号。
+     */
+    public static final class Slot {
+
+        final String name;
+
+        final int id;
+
+        private Slot(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * 一组参数名到数组下标的映射。参数名集合相同的 JobParams 共享同一个 Layout。
+     */
+    static final class Layout {
+
+        final Slot[] slots;
+
+        private final int[] indexBySlot;
+
+        private final int hash;
+
+        private Layout(Slot[] slots) {
+            this.slots = slots;
+            int max = -1;
+            for (Slot slot : slots) {
+                max = Math.max(max, slot.id);
+            }
+            indexBySlot = new int[max + 1];
+            Arrays.fill(indexBySlot, -1);
+            for (int i = 0; i < slots.length; i++) {
+                indexBySlot[slots[i].id] = i;
+            }
+            hash = Arrays.hashCode(slots);
+        }
+
+        static Layout intern(Slot[] slots) {
+            Layout layout = new Layout(slots);
+            Layout existing = LAYOUTS.putIfAbsent(layout, layout);
+            return existing == null ? layout : existing;
+        }
+
+        int index(Slot slot) {
+            return slot.id < indexBySlot.length ? indexBySlot[slot.id] : -1;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Layout && Arrays.equals(slots, ((Layout) obj).slots);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package quartzDemo.job;
+
+import org.quartz.*;
+import org.quartz.listeners.SchedulerListenerSupport;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按 TriggerKey 缓存编译好的 JobParams(JobDetail 与 Trigger 的 JobDataMap 合并后的结果)。
+ *
+ * 作为 SchedulerListener 注册在调度器上：作业/触发器存入调度器时(jobAdded、jobScheduled)编译，
+ * 删除、替换或不再触发(triggerFinalized，例如只触发一次的触发器执行完成后被删除)时作废。
+ * 调度器重启后从持久化 JobStore 中恢复的触发器不会产生这些事件，它们在第一次执行时由 get() 编译一次并缓存。
+ *
+ * 标注了 @PersistJobDataAfterExecution 的作业每次执行后数据都可能变化，不做缓存，每次现场编译。
+ *
+ * 使用：JobParamsRegistry.install(scheduler)(见 AppMain)；作业中通过 JobParams.of(context) 读取(见 MyJob)。
+ */
+public class JobParamsRegistry extends SchedulerListenerSupport {
+
+    /** 保存在 SchedulerContext 中的 key，JobParams.of(context) 通过它找到当前调度器的注册表 */
+    public static final String CONTEXT_KEY = JobParamsRegistry.class.getName();
+
+    private final ConcurrentHashMap<JobKey, JobDataMap> jobData = new ConcurrentHashMap<JobKey, JobDataMap>();
+
+    private final ConcurrentHashMap<TriggerKey, Entry> byTrigger = new ConcurrentHashMap<TriggerKey, Entry>();
+
+    /** 每个作业已缓存的触发器，作业替换或删除时不用遍历整个 byTrigger(批量加载时每个作业都有一次 jobAdded) */
+    private final ConcurrentHashMap<JobKey, Set<TriggerKey>> triggersByJob = new ConcurrentHashMap<JobKey, Set<TriggerKey>>();
+
+    /** JobDetail.isPersistJobDataAfterExecution() 每次都反射读取注解，按作业类缓存结果 */
+    private final ConcurrentHashMap<Class<?>, Boolean> persistentClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    public static JobParamsRegistry install(Scheduler scheduler) throws SchedulerException {
+        JobParamsRegistry registry = new JobParamsRegistry();
+        scheduler.getListenerManager().addSchedulerListener(registry);
+        scheduler.getContext().put(CONTEXT_KEY, registry);
+        return registry;
+    }
+
+    static JobParamsRegistry of(JobExecutionContext context) {
+        try {
+            return (JobParamsRegistry) context.getScheduler().getContext().get(CONTEXT_KEY);
+        } catch (SchedulerException e) {
+            return null;
+        }
+    }
+
+    public JobParams get(JobExecutionContext context) {
+        JobDetail jobDetail = context.getJobDetail();
+        if (isPersistJobData(jobDetail)) {
+            return JobParams.compile(context.getMergedJobDataMap());
+        }
+        TriggerKey triggerKey = context.getTrigger().getKey();
+        Entry entry = byTrigger.get(triggerKey);
+        if (entry == null) {
+            entry = new Entry(jobDetail.getKey(), JobParams.compile(context.getMergedJobDataMap()));
+            put(triggerKey, entry);
+        }
+        return entry.params;
+    }
+
+    public int size() {
+        return byTrigger.size();
+    }
+
+    @Override
+    public void jobAdded(JobDetail jobDetail) {
+        JobKey jobKey = jobDetail.getKey();
+        jobData.put(jobKey, (JobDataMap) jobDetail.getJobDataMap().clone());
+        // addJob(replace = true) 会改变已有触发器的合并结果
+        invalidateJob(jobKey);
+    }
+
+    @Override
+    public void jobDeleted(JobKey jobKey) {
+        jobData.remove(jobKey);
+        invalidateJob(jobKey);
+    }
+
+    @Override
+    public void jobScheduled(Trigger trigger) {
+        JobDataMap data = jobData.get(trigger.getJobKey());
+        if (data == null) {
+            remove(trigger.getKey());
+            return;
+        }
+        JobDataMap merged = new JobDataMap();
+        merged.putAll(data);
+        merged.putAll(trigger.getJobDataMap());
+        put(trigger.getKey(), new Entry(trigger.getJobKey(), JobParams.compile(merged)));
+    }
+
+    @Override
+    public void jobUnscheduled(TriggerKey triggerKey) {
+        if (triggerKey == null) {
+            byTrigger.clear();
+            triggersByJob.clear();
+        } else {
+            remove(triggerKey);
+        }
+    }
+
+    @Override
+    public void triggerFinalized(Trigger trigger) {
+        // 触发器执行完最后一次后由 JobStore 直接删除，不会有 jobUnscheduled；持久的作业还在，不会由 jobDeleted 清理
+        remove(trigger.getKey());
+    }
+
+    @Override
+    public void schedulingDataCleared() {
+        jobData.clear();
+        byTrigger.clear();
+        triggersByJob.clear();
+    }
+
+    private boolean isPersistJobData(JobDetail jobDetail) {
+        Class<?> jobClass = jobDetail.getJobClass();
+        Boolean persistent = persistentClasses.get(jobClass);
+        if (persistent == null) {
+            persistent = jobDetail.isPersistJobDataAfterExecution();
+            persistentClasses.put(jobClass, persistent);
+        }
+        return persistent;
+    }
+
+    private void put(TriggerKey triggerKey, Entry entry) {
+        Entry old = byTrigger.put(triggerKey, entry);
+        if (old != null && !old.jobKey.equals(entry.jobKey)) {
+            Set<TriggerKey> keys = triggersByJob.get(old.jobKey);
+            if (keys != null) {
+                keys.remove(triggerKey);
+            }
+        }
+        Set<TriggerKey> keys = triggersByJob.get(entry.jobKey);
+        if (keys == null) {
+            keys = Collections.newSetFromMap(new ConcurrentHashMap<TriggerKey, Boolean>(2));
+            Set<TriggerKey> existing = triggersByJob.putIfAbsent(entry.jobKey, keys);
+            if (existing != null) {
+                keys = existing;
+            }
+        }
+        keys.add(triggerKey);
+    }
+
+    private void remove(TriggerKey triggerKey) {
+        Entry old = byTrigger.remove(triggerKey);
+        if (old != null) {
+            Set<TriggerKey> keys = triggersByJob.get(old.jobKey);
+            if (keys != null) {
+                keys.remove(triggerKey);
+            }
+        }
+    }
+
+    private void invalidateJob(JobKey jobKey) {
+        Set<TriggerKey> keys = triggersByJob.remove(jobKey);
+        if (keys == null) {
+            return;
+        }
+        for (TriggerKey triggerKey : keys) {
+            Entry entry = byTrigger.get(triggerKey);
+            if (entry != null && entry.jobKey.equals(jobKey)) {
+                byTrigger.remove(triggerKey, entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        final JobKey jobKey;
+
+        final JobParams params;
+
+        Entry(JobKey jobKey, JobParams params) {
+            this.jobKey = jobKey;
+            this.params = params;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package quartzDemo.job;
+
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.spi.JobFactory;
+import org.quartz.spi.TriggerFiredBundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 可以代替默认 PropertySettingJobFactory 的 JobFactory。
+ *
+ * Instruc 中提到，默认的 JobFactory 每次触发都会 newInstance() 一个新的作业实例，再把 scheduler context、
+ * JobDetail 和 Trigger 的 JobDataMap 合并成一个新的 Map，对其中每个 key 用 Introspector 查找 setter 并反射调用。
+ * 这里的做法是：
+ * 1，标注了 @StatelessJob 的类只创建一个实例，之后每次触发都直接返回它，不做任何注入；
+ * 2，其他类的构造方法和 setter 在第一次遇到时解析成 MethodHandle 并按类缓存，之后每次触发只是查表调用，
+ *    也不再构造合并后的 JobDataMap(按 context、JobDetail、Trigger 的顺序依次注入，后者覆盖前者，结果与合并相同)。
+ * 类型转换规则与 PropertySettingJobFactory 相同；找不到 setter 或类型不匹配时默认忽略，与它的默认行为一致。
+ *
+ * 使用：scheduler.setJobFactory(new PoolingJobFactory());
+ */
+public class PoolingJobFactory implements JobFactory {
+
+    private static final Binding NO_SETTER = new Binding(null, null);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentHashMap<Class<?>, JobClassInfo> jobClasses = new ConcurrentHashMap<Class<?>, JobClassInfo>();
+
+    private boolean warnIfNotFound = false;
+
+    private boolean throwIfNotFound = false;
+
+    public void setWarnIfPropertyNotFound(boolean warnIfNotFound) {
+        this.warnIfNotFound = warnIfNotFound;
+    }
+
+    public void setThrowIfPropertyNotFound(boolean throwIfNotFound) {
+        this.throwIfNotFound = throwIfNotFound;
+    }
+
+    @Override
+    public Job newJob(TriggerFiredBundle bundle, Scheduler scheduler) throws SchedulerException {
+        Class<? extends Job> jobClass = bundle.getJobDetail().getJobClass();
+        JobClassInfo info = jobClassInfo(jobClass);
+
+        if (info.shared != null) {
+            return info.shared;
+        }
+
+        Job job = info.newInstance();
+        inject(info, job, scheduler.getContext());
+        inject(info, job, bundle.getJobDetail().getJobDataMap());
+        inject(info, job, bundle.getTrigger().getJobDataMap());
+        return job;
+    }
+
+    private JobClassInfo jobClassInfo(Class<? extends Job> jobClass) throws SchedulerException {
+        JobClassInfo info = jobClasses.get(jobClass);
+        if (info == null) {
+            info = new JobClassInfo(jobClass);
+            JobClassInfo existing = jobClasses.putIfAbsent(jobClass, info);
+            if (existing != null) {
+                info = existing;
+            }
+        }
+        return info;
+    }
+
+    private void inject(JobClassInfo info, Job job, Map<String, Object> data) throws SchedulerException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        // 只读访问，取被包装的 Map 以免 DirtyFlagMap 为每个 entry 再包一层
+        Map<?, ?> wrapped = data instanceof JobDataMap ? ((JobDataMap) data).getWrappedMap() : data;
+        for (Map.Entry<?, ?> entry : wrapped.entrySet()) {
+            String name = (String) entry.getKey();
+            Binding binding = info.binding(name);
+            if (binding == NO_SETTER) {
+                handleError("No setter on Job class " + info.jobClass.getName() + " for property '" + name + "'", null);
+                continue;
+            }
+            Object value = entry.getValue();
+            Object param = binding.convert(value);
+            if (param == null && (value != null || binding.primitive)) {
+                handleError("The setter on Job class " + info.jobClass.getName() + " for property '" + name
+                        + "' expects a " + binding.paramType + " but was given " + value, null);
+                continue;
+            }
+            try {
+                binding.setter.invokeExact((Object) job, param);
+            } catch (Throwable t) {
+                handleError("The setter on Job class " + info.jobClass.getName() + " for property '" + name
+                        + "' threw exception when processing.", t);
+            }
+        }
+    }
+
+    private void handleError(String message, Throwable cause) throws SchedulerException {
+        if (throwIfNotFound) {
+            throw new SchedulerException(message, cause);
+        }
+        if (warnIfNotFound) {
+            if (cause == null) {
+                log.warn(message);
+            } else {
+                log.warn(message, cause);
+            }
+        }
+    }
+
+    /**
+     * 每个作业类的缓存：构造方法、共享实例(@StatelessJob)、按 JobDataMap key 解析出的 setter。
+     */
+    private static final class JobClassInfo {
+
+        final Class<? extends Job> jobClass;
+
+        final MethodHandle constructor;
+
+        final Job shared;
+
+        final Map<String, Method> writeMethods = new HashMap<String, Method>();
+
+        final ConcurrentHashMap<String, Binding> bindings = new ConcurrentHashMap<String, Binding>();
+
+        JobClassInfo(Class<? extends Job> jobClass) throws SchedulerException {
+            this.jobClass = jobClass;
+            try {
+                Constructor<? extends Job> ctor = jobClass.getDeclaredConstructor();
+                ctor.setAccessible(true);
+                constructor = MethodHandles.lookup().unreflectConstructor(ctor)
+                        .asType(MethodType.methodType(Job.class));
+            } catch (Exception e) {
+                throw new SchedulerException("Problem instantiating class '" + jobClass.getName() + "'", e);
+            }
+
+            if (jobClass.isAnnotationPresent(StatelessJob.class)) {
+                shared = newInstance();
+                return;
+            }
+            shared = null;
+
+            try {
+                BeanInfo bi = Introspector.getBeanInfo(jobClass);
+                for (PropertyDescriptor pd : bi.getPropertyDescriptors()) {
+                    Method write = pd.getWriteMethod();
+                    if (write != null) {
+                        writeMethods.put(write.getName(), write);
+                    }
+                }
+            } catch (IntrospectionException e) {
+                throw new SchedulerException("Unable to introspect Job class.", e);
+            }
+        }
+
+        Job newInstance() throws SchedulerException {
+            try {
+                return (Job) constructor.invokeExact();
+            } catch (Throwable t) {
+                throw new SchedulerException("Problem instantiating class '" + jobClass.getName() + "'", t);
+            }
+        }
+
+        Binding binding(String name) {
+            Binding binding = bindings.get(name);
+            if (binding == null) {
+                binding = resolve(name);
+                bindings.putIfAbsent(name, binding);
+            }
+            return binding;
+        }
+
+        private Binding resolve(String name) {
+            if (name.isEmpty()) {
+                return NO_SETTER;
+            }
+            String methName = "set" + name.substring(0, 1).toUpperCase(Locale.US) + name.substring(1);
+            Method write = writeMethods.get(methName);
+            if (write == null) {
+                return NO_SETTER;
+            }
+            try {
+                write.setAccessible(true);
+                MethodHandle setter = MethodHandles.lookup().unreflect(write)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                return new Binding(setter, write.getParameterTypes()[0]);
+            } catch (IllegalAccessException e) {
+                return NO_SETTER;
+            }
+        }
+    }
+
+    /**
+     * 一个 setter 的调用方式和参数转换规则。
+     */
+    private static final class Binding {
+
+        final MethodHandle setter;
+
+        final Class<?> paramType;
+
+        final boolean primitive;
+
+        Binding(MethodHandle setter, Class<?> paramType) {
+            this.setter = setter;
+            this.paramType = paramType;
+            this.primitive = paramType != null && paramType.isPrimitive();
+        }
+
+        /**
+         * 返回 null 表示无法转换(或值本身就是 null)。
+         */
+        Object convert(Object o) {
+            if (o == null) {
+                return null;
+            }
+            if (!primitive) {
+                return paramType.isInstance(o) ? o : null;
+            }
+            try {
+                if (paramType == int.class) {
+                    return o instanceof String ? Integer.valueOf((String) o) : o instanceof Integer ? o : null;
+                } else if (paramType == long.class) {
+                    return o instanceof String ? Long.valueOf((String) o) : o instanceof Long ? o : null;
+                } else if (paramType == float.class) {
+                    return o instanceof String ? Float.valueOf((String) o) : o instanceof Float ? o : null;
+                } else if (paramType == double.class) {
+                    return o instanceof String ? Double.valueOf((String) o) : o instanceof Double ? o : null;
+                } else if (paramType == boolean.class) {
+                    return o instanceof String ? Boolean.valueOf((String) o) : o instanceof Boolean ? o : null;
+                } else if (paramType == byte.class) {
+                    return o instanceof String ? Byte.valueOf((String) o) : o instanceof Byte ? o : null;
+                } else if (paramType == short.class) {
+                    return o instanceof String ? Short.valueOf((String) o) : o instanceof Short ? o : null;
+                } else if (paramType == char.class) {
+                    if (o instanceof String) {
+                        String str = (String) o;
+                        return str.length() == 1 ? Character.valueOf(str.charAt(0)) : null;
+                    }
+                    return o instanceof Character ? o : null;
+                }
+            } catch (NumberFormatException nfe) {
+                return null;
+            }
+            return null;
+        }
+    }
+}
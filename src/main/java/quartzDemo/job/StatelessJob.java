@@ -0,0 +1,16 @@
+package quartzDemo.job;
+
+import java.lang.annotation.*;
+
+/**
+ * 注解在工作类上，声明该类的实例不保存任何执行状态(即没有在执行之间或执行过程中使用的字段)，
+ * 同一个实例可以被多个工作线程同时执行。
+ *
+ * PoolingJobFactory 对这样的类只创建一个实例并一直复用，也不会调用 setter 注入 JobDataMap 中的值
+ * (共享实例上的字段就是共享状态)，参数需要在 execute() 中从 JobExecutionContext 读取，就像 MyJob 那样。
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface StatelessJob {
+}
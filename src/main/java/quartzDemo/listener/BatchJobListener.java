@@ -0,0 +1,14 @@
+package quartzDemo.listener;
+
+import org.quartz.JobListener;
+
+/**
+ * 可以按批处理回调的 JobListener，例如把一批执行记录合并成一次写库或一次网络请求。
+ *
+ * 注册在 JobListenerBus 上时，ASYNC 模式下消费线程每取出一批事件、逐个回调之后，对收到过事件的监听器调用一次
+ * endOfBatch()；SYNC 模式下每个回调之后都调用一次。
+ */
+public interface BatchJobListener extends JobListener {
+
+    void endOfBatch();
+}
@@ -0,0 +1,159 @@
+package quartzDemo.listener;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多生产者、单消费者的有界无锁环形缓冲区，保存 JobListener 回调事件。
+ *
+ * 每个槽位有一个序号：序号等于生产者游标时可写，等于游标 + 1 时可读，消费后加上容量交还给生产者。
+ * 生产者只在 tail 上 CAS 抢占槽位，事件对象预先分配(三个并列数组)，发布时不分配内存。
+ * 缓冲区满时生产者先自旋让出 CPU，再短暂休眠重试，不会丢弃事件。
+ */
+final class EventRing {
+
+    static final byte TO_BE_EXECUTED = 1;
+
+    static final byte EXECUTION_VETOED = 2;
+
+    static final byte WAS_EXECUTED = 3;
+
+    /**
+     * 消费者逐个处理取出的事件。
+     */
+    interface Sink {
+
+        void onEvent(byte type, JobExecutionContext context, JobExecutionException jobException);
+    }
+
+    private final int mask;
+
+    private final AtomicLongArray sequences;
+
+    private final byte[] types;
+
+    private final JobExecutionContext[] contexts;
+
+    private final JobExecutionException[] exceptions;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /** 缓冲区满、生产者不得不等待的次数 */
+    private final AtomicLong fullWaits = new AtomicLong();
+
+    /** 只由消费者线程读写 */
+    private long head;
+
+    private volatile Thread consumer;
+
+    private volatile boolean consumerParked;
+
+    EventRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        types = new byte[capacity];
+        contexts = new JobExecutionContext[capacity];
+        exceptions = new JobExecutionException[capacity];
+    }
+
+    void setConsumer(Thread consumer) {
+        this.consumer = consumer;
+    }
+
+    void publish(byte type, JobExecutionContext context, JobExecutionException jobException) {
+        int spins = 0;
+        while (true) {
+            long t = tail.get();
+            int index = (int) (t & mask);
+            long seq = sequences.get(index);
+            if (seq == t) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    types[index] = type;
+                    contexts[index] = context;
+                    exceptions[index] = jobException;
+                    sequences.set(index, t + 1);
+                    if (consumerParked) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return;
+                }
+            } else if (seq < t) {
+                // 缓冲区满
+                if (spins == 0) {
+                    fullWaits.incrementAndGet();
+                }
+                if (++spins < 64) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, 50000L);
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出最多 max 个事件交给 sink，返回取出的个数。只能由消费者线程调用。
+     */
+    int drain(Sink sink, int max) {
+        int count = 0;
+        while (count < max) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            byte type = types[index];
+            JobExecutionContext context = contexts[index];
+            JobExecutionException jobException = exceptions[index];
+            contexts[index] = null;
+            exceptions[index] = null;
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            count++;
+            sink.onEvent(type, context, jobException);
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * 没有事件时休眠，直到生产者发布事件或超时。只能由消费者线程调用。
+     */
+    void await(long timeoutNanos) {
+        consumerParked = true;
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+        consumerParked = false;
+    }
+
+    void wakeUp() {
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 已发布但还没有消费的事件数(近似值)。
+     */
+    long size() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    long getFullWaits() {
+        return fullWaits.get();
+    }
+}
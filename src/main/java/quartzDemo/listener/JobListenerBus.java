@@ -0,0 +1,427 @@
+package quartzDemo.listener;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Matcher;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * JobListener 的分发总线，代替直接在 ListenerManager 上注册 JobListener。
+ *
+ * ListenerDemo 中的 MyJobListener 注册在 ListenerManager 上时，每次 jobToBeExecuted/jobWasExecuted 都在工作线程上
+ * 同步执行，并且每次都要把所有监听器的 Matcher 重新计算一遍。总线本身作为一个 JobListener 注册在调度器上，
+ * 监听器改为注册在总线上：
+ * 1，按 JobKey 缓存匹配结果，只在第一次遇到某个作业或监听器变化后查找一次；查找使用按 Matcher 建立的
+ *    MatcherIndex，几百个监听器时也不用逐个计算 Matcher；
+ * 2，ASYNC 模式下工作线程只把回调事件放入无锁环形缓冲区(EventRing)，由消费线程批量取出后调用监听器，
+ *    慢的监听器不再占用工作线程；同一个作业的事件总是由同一个消费线程按顺序处理；实现了 BatchJobListener
+ *    的监听器在每批结束时收到 endOfBatch()，可以把一批事件合并成一次 I/O；
+ * 3，SYNC 模式下与 ListenerManager 的行为相同(在工作线程上调用，异常会传给 Quartz)，只是匹配结果有缓存。
+ *
+ * ASYNC 模式的注意事项：监听器收到回调时作业可能已经执行完；监听器抛出的异常只记录日志，不影响作业执行；
+ * consumerThreads 大于 1 时，同一个监听器会被多个消费线程调用，需要是线程安全的。
+ *
+ * 使用：
+ * JobListenerBus bus = JobListenerBus.install(scheduler, JobListenerBus.Mode.ASYNC);
+ * bus.addJobListener(new MyJobListener(), GroupMatcher.groupContains("g"));
+ * 或者通过 JobListenerBusPlugin 在配置文件中开启。
+ */
+public class JobListenerBus implements JobListener {
+
+    /** 保存在 SchedulerContext 中的 key */
+    public static final String CONTEXT_KEY = JobListenerBus.class.getName();
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * 分发方式。
+     */
+    public enum Mode {
+        /** 在工作线程上直接调用监听器 */
+        SYNC,
+        /** 放入环形缓冲区，由消费线程调用监听器 */
+        ASYNC
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String name;
+
+    private final Mode mode;
+
+    private final int batchSize;
+
+    private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<Registration>();
+
+    /** 监听器变化时重新建立，先于 version 更新 */
+    private volatile MatcherIndex<JobKey, Registration> index = new MatcherIndex<JobKey, Registration>();
+
+    private final ConcurrentHashMap<JobKey, Matched> matchCache = new ConcurrentHashMap<JobKey, Matched>();
+
+    /** 注册的监听器每变化一次加一，缓存中版本不同的匹配结果作废 */
+    private volatile int version;
+
+    private final EventRing[] rings;
+
+    private final Thread[] consumers;
+
+    private volatile boolean running;
+
+    public JobListenerBus(String name, Mode mode) {
+        this(name, mode, 1, DEFAULT_BUFFER_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    public JobListenerBus(String name, Mode mode, int consumerThreads, int bufferSize, int batchSize) {
+        this.name = name;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        if (mode == Mode.ASYNC) {
+            if (consumerThreads < 1) {
+                throw new IllegalArgumentException("consumerThreads must be > 0");
+            }
+            rings = new EventRing[consumerThreads];
+            consumers = new Thread[consumerThreads];
+            for (int i = 0; i < consumerThreads; i++) {
+                rings[i] = new EventRing(bufferSize);
+            }
+        } else {
+            rings = new EventRing[0];
+            consumers = new Thread[0];
+        }
+    }
+
+    /**
+     * 创建总线，注册到调度器上并启动消费线程。调度器关闭时总线处理完剩余事件后停止。
+     */
+    public static JobListenerBus install(Scheduler scheduler, Mode mode) throws SchedulerException {
+        JobListenerBus bus = new JobListenerBus(JobListenerBus.class.getSimpleName(), mode);
+        bus.register(scheduler);
+        bus.start();
+        return bus;
+    }
+
+    /**
+     * 调度器上已安装的总线，没有时返回 null。
+     */
+    public static JobListenerBus of(Scheduler scheduler) throws SchedulerException {
+        return (JobListenerBus) scheduler.getContext().get(CONTEXT_KEY);
+    }
+
+    /**
+     * 把总线作为 JobListener 注册到调度器上，并放入 SchedulerContext。
+     */
+    public void register(Scheduler scheduler) throws SchedulerException {
+        scheduler.getListenerManager().addJobListener(this, EverythingMatcher.allJobs());
+        scheduler.getListenerManager().addSchedulerListener(new SchedulerListenerSupport() {
+            @Override
+            public void jobDeleted(JobKey jobKey) {
+                matchCache.remove(jobKey);
+            }
+
+            @Override
+            public void schedulingDataCleared() {
+                matchCache.clear();
+            }
+
+            @Override
+            public void schedulerShutdown() {
+                shutdown();
+            }
+        });
+        scheduler.getContext().put(CONTEXT_KEY, this);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < consumers.length; i++) {
+            Thread thread = new Thread(new Consumer(rings[i]), name + "-Consumer-" + i);
+            thread.setDaemon(true);
+            rings[i].setConsumer(thread);
+            consumers[i] = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * 停止消费线程，已经发布的事件会先处理完。之后发布的事件在调用线程上直接处理。
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (EventRing ring : rings) {
+            ring.wakeUp();
+        }
+        for (int i = 0; i < consumers.length; i++) {
+            try {
+                consumers[i].join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // 消费线程退出前后仍可能有工作线程发布事件，在这里处理掉
+            if (!consumers[i].isAlive()) {
+                rings[i].setConsumer(Thread.currentThread());
+                new Consumer(rings[i]).drainAll();
+            }
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void addJobListener(JobListener listener) {
+        addJobListener(listener, EverythingMatcher.allJobs());
+    }
+
+    @SafeVarargs
+    public final void addJobListener(JobListener listener, Matcher<JobKey>... matchers) {
+        // 逐个复制，不把 matchers 数组本身传给 Arrays.asList(否则 -Xlint:varargs 仍然报告)
+        List<Matcher<JobKey>> list = new ArrayList<Matcher<JobKey>>(matchers.length);
+        for (Matcher<JobKey> matcher : matchers) {
+            list.add(matcher);
+        }
+        addJobListener(listener, list);
+    }
+
+    /**
+     * 与 ListenerManager.addJobListener 相同：同名的监听器会被替换，任何一个 Matcher 匹配即通知。
+     */
+    public synchronized void addJobListener(JobListener listener, List<Matcher<JobKey>> matchers) {
+        if (listener.getName() == null || listener.getName().length() == 0) {
+            throw new IllegalArgumentException("JobListener name cannot be empty.");
+        }
+        removeJobListener(listener.getName());
+        List<Matcher<JobKey>> copy = new ArrayList<Matcher<JobKey>>(matchers);
+        if (copy.isEmpty()) {
+            copy.add(EverythingMatcher.allJobs());
+        }
+        registrations.add(new Registration(listener, copy));
+        reindex();
+    }
+
+    public synchronized boolean removeJobListener(String listenerName) {
+        for (Registration registration : registrations) {
+            if (registration.listener.getName().equals(listenerName)) {
+                registrations.remove(registration);
+                reindex();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<JobListener> getJobListeners() {
+        List<JobListener> listeners = new ArrayList<JobListener>();
+        for (Registration registration : registrations) {
+            listeners.add(registration.listener);
+        }
+        return listeners;
+    }
+
+    /**
+     * 已发布但还没有处理的事件数。
+     */
+    public long getPendingEvents() {
+        long pending = 0;
+        for (EventRing ring : rings) {
+            pending += ring.size();
+        }
+        return pending;
+    }
+
+    /**
+     * 缓冲区满、工作线程不得不等待的次数，持续增长说明需要调大 bufferSize 或 consumerThreads。
+     */
+    public long getFullWaits() {
+        long waits = 0;
+        for (EventRing ring : rings) {
+            waits += ring.getFullWaits();
+        }
+        return waits;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void jobToBeExecuted(JobExecutionContext context) {
+        dispatch(EventRing.TO_BE_EXECUTED, context, null);
+    }
+
+    @Override
+    public void jobExecutionVetoed(JobExecutionContext context) {
+        dispatch(EventRing.EXECUTION_VETOED, context, null);
+    }
+
+    @Override
+    public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+        dispatch(EventRing.WAS_EXECUTED, context, jobException);
+    }
+
+    private void dispatch(byte type, JobExecutionContext context, JobExecutionException jobException) {
+        if (mode == Mode.SYNC || !running) {
+            deliver(type, context, jobException);
+            return;
+        }
+        int hash = context.getJobDetail().getKey().hashCode();
+        rings[(hash & Integer.MAX_VALUE) % rings.length].publish(type, context, jobException);
+    }
+
+    private void deliver(byte type, JobExecutionContext context, JobExecutionException jobException) {
+        for (Registration registration : matching(context.getJobDetail().getKey())) {
+            invoke(registration.listener, type, context, jobException);
+            if (registration.listener instanceof BatchJobListener) {
+                ((BatchJobListener) registration.listener).endOfBatch();
+            }
+        }
+    }
+
+    private static void invoke(JobListener listener, byte type, JobExecutionContext context,
+            JobExecutionException jobException) {
+        switch (type) {
+            case EventRing.TO_BE_EXECUTED:
+                listener.jobToBeExecuted(context);
+                break;
+            case EventRing.EXECUTION_VETOED:
+                listener.jobExecutionVetoed(context);
+                break;
+            default:
+                listener.jobWasExecuted(context, jobException);
+                break;
+        }
+    }
+
+    private Registration[] matching(JobKey key) {
+        int current = version;
+        Matched matched = matchCache.get(key);
+        if (matched != null && matched.version == current) {
+            return matched.registrations;
+        }
+        List<Registration> result = index.match(key);
+        matched = new Matched(current, result.toArray(new Registration[result.size()]));
+        matchCache.put(key, matched);
+        return matched.registrations;
+    }
+
+    private void reindex() {
+        MatcherIndex<JobKey, Registration> rebuilt = new MatcherIndex<JobKey, Registration>();
+        for (Registration registration : registrations) {
+            rebuilt.add(registration, registration.matchers);
+        }
+        index = rebuilt;
+        version++;
+    }
+
+    /**
+     * 消费线程：批量取出事件并回调，每批结束后通知收到过事件的 BatchJobListener。
+     * 监听器抛出的异常只记录日志，不影响后续事件。
+     */
+    private final class Consumer implements Runnable, EventRing.Sink {
+
+        private final EventRing ring;
+
+        private final List<BatchJobListener> touched = new ArrayList<BatchJobListener>();
+
+        Consumer(EventRing ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                if (drainBatch() > 0) {
+                    continue;
+                }
+                if (!running) {
+                    if (ring.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                ring.await(100 * 1000 * 1000L);
+            }
+        }
+
+        void drainAll() {
+            while (drainBatch() > 0) {
+            }
+        }
+
+        private int drainBatch() {
+            int count = ring.drain(this, batchSize);
+            if (!touched.isEmpty()) {
+                for (BatchJobListener listener : touched) {
+                    try {
+                        listener.endOfBatch();
+                    } catch (Throwable t) {
+                        log.error("JobListener '" + listener.getName() + "' threw exception: " + t.getMessage(), t);
+                    }
+                }
+                touched.clear();
+            }
+            return count;
+        }
+
+        @Override
+        public void onEvent(byte type, JobExecutionContext context, JobExecutionException jobException) {
+            for (Registration registration : matching(context.getJobDetail().getKey())) {
+                JobListener listener = registration.listener;
+                try {
+                    invoke(listener, type, context, jobException);
+                } catch (Throwable t) {
+                    log.error("JobListener '" + listener.getName() + "' threw exception: " + t.getMessage(), t);
+                }
+                if (listener instanceof BatchJobListener && !touched.contains(listener)) {
+                    touched.add((BatchJobListener) listener);
+                }
+            }
+        }
+    }
+
+    private static final class Registration {
+
+        final JobListener listener;
+
+        final List<Matcher<JobKey>> matchers;
+
+        Registration(JobListener listener, List<Matcher<JobKey>> matchers) {
+            this.listener = listener;
+            this.matchers = matchers;
+        }
+    }
+
+    private static final class Matched {
+
+        final int version;
+
+        final Registration[] registrations;
+
+        Matched(int version, Registration[] registrations) {
+            this.version = version;
+            this.registrations = registrations;
+        }
+    }
+}
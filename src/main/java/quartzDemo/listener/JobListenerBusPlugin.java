@@ -0,0 +1,110 @@
+package quartzDemo.listener;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * 通过配置文件开启 JobListenerBus。
+ *
+ * 配置：
+ * org.quartz.plugin.listenerBus.class = quartzDemo.listener.JobListenerBusPlugin
+ * # async(默认) 或 sync
+ * org.quartz.plugin.listenerBus.mode = async
+ * org.quartz.plugin.listenerBus.consumerThreads = 1
+ * org.quartz.plugin.listenerBus.bufferSize = 8192
+ * org.quartz.plugin.listenerBus.batchSize = 256
+ *
+ * 之后通过 JobListenerBus.of(scheduler).addJobListener(...) 注册监听器。
+ */
+public class JobListenerBusPlugin implements SchedulerPlugin {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private String mode = "async";
+
+    private int consumerThreads = 1;
+
+    private int bufferSize = JobListenerBus.DEFAULT_BUFFER_SIZE;
+
+    private int batchSize = JobListenerBus.DEFAULT_BATCH_SIZE;
+
+    private JobListenerBus bus;
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public int getConsumerThreads() {
+        return consumerThreads;
+    }
+
+    public void setConsumerThreads(int consumerThreads) {
+        this.consumerThreads = consumerThreads;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 每个消费线程的环形缓冲区大小，必须是 2 的幂。
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 消费线程每次最多连续处理的事件数。
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public JobListenerBus getBus() {
+        return bus;
+    }
+
+    @Override
+    public void initialize(String name, Scheduler scheduler, ClassLoadHelper loadHelper)
+            throws SchedulerException {
+        JobListenerBus.Mode busMode;
+        try {
+            busMode = JobListenerBus.Mode.valueOf(mode.trim().toUpperCase(Locale.US));
+        } catch (IllegalArgumentException e) {
+            throw new SchedulerConfigException("Unknown JobListenerBus mode '" + mode + "', expected sync or async");
+        }
+        try {
+            bus = new JobListenerBus(name, busMode, consumerThreads, bufferSize, batchSize);
+        } catch (IllegalArgumentException e) {
+            throw new SchedulerConfigException(e.getMessage());
+        }
+        bus.register(scheduler);
+        log.info("JobListenerBus '" + name + "' initialized, mode " + busMode
+                + (busMode == JobListenerBus.Mode.ASYNC ? ", " + consumerThreads + " consumer thread(s)" : ""));
+    }
+
+    @Override
+    public void start() {
+        bus.start();
+    }
+
+    @Override
+    public void shutdown() {
+        bus.shutdown();
+    }
+}
@@ -0,0 +1,269 @@
+package quartzDemo.listener;
+
+import org.quartz.Matcher;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.KeyMatcher;
+import org.quartz.impl.matchers.NameMatcher;
+import org.quartz.impl.matchers.OrMatcher;
+import org.quartz.impl.matchers.StringMatcher;
+import org.quartz.utils.Key;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按 Matcher 建立的索引，回答"哪些监听器适用于这个 JobKey/TriggerKey"，不用把每个 Matcher 都计算一遍。
+ *
+ * ListenerDemo 中用到的几种 Matcher 分别放入不同的结构：
+ * 1，KeyMatcher.keyEquals、GroupMatcher/NameMatcher 的 EQUALS：HashMap，一次查找；
+ * 2，STARTS_WITH：按字符建立的前缀树(trie)，沿着 group/name 走一遍，经过的节点上登记的都匹配；
+ *    ENDS_WITH 同样处理，只是倒着建树、倒着走；
+ * 3，CONTAINS：没有合适的索引结构，按 group/name 字符串记住计算结果，同一个 group 下的作业只算一次；
+ * 4，EverythingMatcher、ANYTHING 总是匹配；OrMatcher 拆成左右两边分别建索引；
+ * 5，其它 Matcher(AndMatcher、NotMatcher、自定义 Matcher 以及上面几种类的子类)仍然逐个调用 isMatch。
+ *
+ * 查找结果按值加入索引的顺序排列，同一个值只出现一次，与逐个计算的结果相同。
+ * 索引建好后只读，可以被多个线程同时查找；加入值(add)不是线程安全的，监听器变化时应重新建一个索引。
+ *
+ * @param <K> JobKey 或 TriggerKey
+ * @param <V> 登记的值，例如监听器
+ */
+public final class MatcherIndex<K extends Key<K>, V> {
+
+    /** CONTAINS 记忆的 group/name 个数上限，超过后清空重新记 */
+    private static final int MAX_MEMO_SIZE = 64 * 1024;
+
+    private static final BitSet NONE = new BitSet();
+
+    private final List<V> values = new ArrayList<V>();
+
+    private final BitSet everything = new BitSet();
+
+    private final Map<K, BitSet> keyEquals = new HashMap<K, BitSet>();
+
+    private final Field group = new Field();
+
+    private final Field name = new Field();
+
+    private final List<Fallback<K>> fallbacks = new ArrayList<Fallback<K>>();
+
+    /**
+     * 加入一个值，任何一个 Matcher 匹配即认为这个值适用。
+     */
+    public void add(V value, Collection<? extends Matcher<K>> matchers) {
+        int ordinal = values.size();
+        values.add(value);
+        for (Matcher<K> matcher : matchers) {
+            index(ordinal, matcher);
+        }
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * 无法建索引、每次查找都要调用 isMatch 的 Matcher 个数。
+     */
+    public int getFallbackCount() {
+        return fallbacks.size();
+    }
+
+    /**
+     * 适用于 key 的值，按加入的顺序排列。
+     */
+    public List<V> match(K key) {
+        BitSet result = (BitSet) everything.clone();
+        BitSet exact = keyEquals.get(key);
+        if (exact != null) {
+            result.or(exact);
+        }
+        group.collect(key.getGroup(), result);
+        name.collect(key.getName(), result);
+        for (Fallback<K> fallback : fallbacks) {
+            if (!result.get(fallback.ordinal) && fallback.matcher.isMatch(key)) {
+                result.set(fallback.ordinal);
+            }
+        }
+        if (result.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<V> matched = new ArrayList<V>(result.cardinality());
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            matched.add(values.get(i));
+        }
+        return matched;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void index(int ordinal, Matcher<K> matcher) {
+        // 只识别这几个类本身，子类可能改写了 isMatch
+        Class<?> type = matcher.getClass();
+        if (type == EverythingMatcher.class) {
+            everything.set(ordinal);
+        } else if (type == KeyMatcher.class) {
+            K compareTo = ((KeyMatcher<K>) matcher).getCompareToValue();
+            bits(keyEquals, compareTo).set(ordinal);
+        } else if (type == GroupMatcher.class) {
+            index(ordinal, (StringMatcher<K>) matcher, group);
+        } else if (type == NameMatcher.class) {
+            index(ordinal, (StringMatcher<K>) matcher, name);
+        } else if (type == OrMatcher.class) {
+            index(ordinal, ((OrMatcher<K>) matcher).getLeftOperand());
+            index(ordinal, ((OrMatcher<K>) matcher).getRightOperand());
+        } else {
+            fallbacks.add(new Fallback<K>(ordinal, matcher));
+        }
+    }
+
+    private void index(int ordinal, StringMatcher<K> matcher, Field field) {
+        String compareTo = matcher.getCompareToValue();
+        switch (matcher.getCompareWithOperator()) {
+            case EQUALS:
+                bits(field.equals, compareTo).set(ordinal);
+                break;
+            case STARTS_WITH:
+                field.prefixes.add(compareTo, false, ordinal);
+                break;
+            case ENDS_WITH:
+                field.suffixes.add(compareTo, true, ordinal);
+                break;
+            case CONTAINS:
+                field.contains.add(compareTo);
+                field.containsOrdinals.add(ordinal);
+                break;
+            case ANYTHING:
+                everything.set(ordinal);
+                break;
+            default:
+                fallbacks.add(new Fallback<K>(ordinal, matcher));
+                break;
+        }
+    }
+
+    private static <T> BitSet bits(Map<T, BitSet> map, T key) {
+        BitSet bits = map.get(key);
+        if (bits == null) {
+            bits = new BitSet();
+            map.put(key, bits);
+        }
+        return bits;
+    }
+
+    /**
+     * group 或 name 上的索引。
+     */
+    private static final class Field {
+
+        final Map<String, BitSet> equals = new HashMap<String, BitSet>();
+
+        final Trie prefixes = new Trie();
+
+        final Trie suffixes = new Trie();
+
+        final List<String> contains = new ArrayList<String>();
+
+        final List<Integer> containsOrdinals = new ArrayList<Integer>();
+
+        final ConcurrentHashMap<String, BitSet> containsMemo = new ConcurrentHashMap<String, BitSet>();
+
+        void collect(String value, BitSet result) {
+            BitSet exact = equals.get(value);
+            if (exact != null) {
+                result.or(exact);
+            }
+            prefixes.collect(value, false, result);
+            suffixes.collect(value, true, result);
+            if (!contains.isEmpty()) {
+                result.or(containing(value));
+            }
+        }
+
+        private BitSet containing(String value) {
+            BitSet bits = containsMemo.get(value);
+            if (bits != null) {
+                return bits;
+            }
+            bits = NONE;
+            for (int i = 0; i < contains.size(); i++) {
+                if (value.contains(contains.get(i))) {
+                    if (bits == NONE) {
+                        bits = new BitSet();
+                    }
+                    bits.set(containsOrdinals.get(i));
+                }
+            }
+            if (containsMemo.size() >= MAX_MEMO_SIZE) {
+                containsMemo.clear();
+            }
+            containsMemo.put(value, bits);
+            return bits;
+        }
+    }
+
+    /**
+     * 字符前缀树，每个节点记录以从根到该节点的字符串为前缀(或后缀)的值。
+     */
+    private static final class Trie {
+
+        private final Node root = new Node();
+
+        void add(String s, boolean reverse, int ordinal) {
+            Node node = root;
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                Character c = s.charAt(reverse ? length - 1 - i : i);
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.ordinals.set(ordinal);
+        }
+
+        void collect(String s, boolean reverse, BitSet result) {
+            Node node = root;
+            int length = s.length();
+            for (int i = 0; ; i++) {
+                if (!node.ordinals.isEmpty()) {
+                    result.or(node.ordinals);
+                }
+                if (i == length || node.children.isEmpty()) {
+                    return;
+                }
+                node = node.children.get(s.charAt(reverse ? length - 1 - i : i));
+                if (node == null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Node {
+
+        final Map<Character, Node> children = new HashMap<Character, Node>(4);
+
+        final BitSet ordinals = new BitSet();
+    }
+
+    private static final class Fallback<K extends Key<K>> {
+
+        final int ordinal;
+
+        final Matcher<K> matcher;
+
+        Fallback(int ordinal, Matcher<K> matcher) {
+            this.ordinal = ordinal;
+            this.matcher = matcher;
+        }
+    }
+}
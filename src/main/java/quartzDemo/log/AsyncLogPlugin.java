@@ -0,0 +1,94 @@
+package quartzDemo.log;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 通过配置文件开启 AsyncLogWriter，调度器关闭时写完并关闭日志文件。
+ *
+ * 配置：
+ * org.quartz.plugin.asyncLog.class = quartzDemo.log.AsyncLogPlugin
+ * org.quartz.plugin.asyncLog.file = logs/jobs.log
+ * org.quartz.plugin.asyncLog.bufferSize = 65536
+ * org.quartz.plugin.asyncLog.batchSize = 1024
+ *
+ * AsyncLogWriter 在进程内只有一个，多个调度器中只能有一个配置这个插件。
+ */
+public class AsyncLogPlugin implements SchedulerPlugin {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private String file = "logs/jobs.log";
+
+    private int bufferSize = AsyncLogWriter.DEFAULT_BUFFER_SIZE;
+
+    private int batchSize = AsyncLogWriter.DEFAULT_BATCH_SIZE;
+
+    private AsyncLogWriter writer;
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 环形缓冲区的记录数，必须是 2 的幂。
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 写线程每次最多连续取出的记录数，之后写出一次。
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public AsyncLogWriter getWriter() {
+        return writer;
+    }
+
+    @Override
+    public void initialize(String name, Scheduler scheduler, ClassLoadHelper loadHelper)
+            throws SchedulerException {
+        try {
+            writer = AsyncLogWriter.start(new File(file), bufferSize, batchSize);
+        } catch (IOException e) {
+            throw new SchedulerConfigException("Couldn't open job log " + file, e);
+        } catch (IllegalArgumentException e) {
+            throw new SchedulerConfigException(e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new SchedulerConfigException(e.getMessage());
+        }
+        log.info("AsyncLogWriter '" + name + "' initialized, writing to " + writer.getFile().getAbsolutePath());
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+        writer.shutdown();
+    }
+}
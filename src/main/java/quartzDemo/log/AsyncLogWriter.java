@@ -0,0 +1,303 @@
+package quartzDemo.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JobLogger 的后台写线程：从 LogRing 中批量取出记录，在写线程上格式化，编码到一个 64KB 的缓冲区，
+ * 每批(最多 batchSize 条)用 FileChannel 写出一次，缓冲区写满时提前写出。只写入操作系统的页缓存，不 fsync。
+ * 写线程空闲时每 10 毫秒检查一次，所以记录最多延迟约 10 毫秒出现在文件中。
+ *
+ * 每行的格式：2019-06-01 10:42:00.123 [线程名] INFO  logger - 消息
+ *
+ * 进程内同时只有一个 AsyncLogWriter(JobLogger 通过 current() 找到它)。缓冲区满时工作线程等待写线程，不丢弃记录。
+ * shutdown 先让 JobLogger 退回 System.out，再写完缓冲区中的记录并关闭文件；与 shutdown 同时发布的少量记录可能丢失。
+ *
+ * 使用：
+ * AsyncLogWriter writer = AsyncLogWriter.start(new File("logs/jobs.log"));
+ * ...
+ * writer.shutdown();
+ * 或者通过 AsyncLogPlugin 在配置文件中开启。
+ */
+public final class AsyncLogWriter {
+
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private static final long IDLE_PARK_NANOS = 10 * 1000 * 1000L;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private static final Object START_LOCK = new Object();
+
+    private static volatile AsyncLogWriter current;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    private final LogRing ring;
+
+    private final int batchSize;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private final AtomicLong writtenRecords = new AtomicLong();
+
+    /** 以下只由写线程(关闭时由调用 shutdown 的线程)使用 */
+    private final Formatter formatter = new Formatter();
+
+    private AsyncLogWriter(File file, int bufferSize, int batchSize) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be > 0");
+        }
+        this.file = file;
+        this.ring = new LogRing(bufferSize);
+        this.batchSize = batchSize;
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Couldn't create log directory " + dir);
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "AsyncLogWriter");
+        thread.setDaemon(true);
+        ring.setConsumer(thread);
+    }
+
+    public static AsyncLogWriter start(File file) throws IOException {
+        return start(file, DEFAULT_BUFFER_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * 打开(追加写入)日志文件并启动写线程，之后 JobLogger 的记录都写到这个文件。
+     *
+     * @param bufferSize 环形缓冲区的记录数，必须是 2 的幂
+     * @param batchSize  写线程每次最多连续取出的记录数，之后写出一次
+     * @throws IllegalStateException 已经有一个运行中的 AsyncLogWriter
+     */
+    public static AsyncLogWriter start(File file, int bufferSize, int batchSize) throws IOException {
+        synchronized (START_LOCK) {
+            if (current != null) {
+                throw new IllegalStateException("AsyncLogWriter already started, writing to " + current.file);
+            }
+            AsyncLogWriter writer = new AsyncLogWriter(file, bufferSize, batchSize);
+            writer.thread.start();
+            current = writer;
+            return writer;
+        }
+    }
+
+    /**
+     * 运行中的 AsyncLogWriter，没有时返回 null。
+     */
+    public static AsyncLogWriter current() {
+        return current;
+    }
+
+    /**
+     * 停止写线程，写完已经发布的记录后关闭文件。
+     */
+    public void shutdown() {
+        synchronized (START_LOCK) {
+            if (!running) {
+                return;
+            }
+            if (current == this) {
+                current = null;
+            }
+            running = false;
+        }
+        ring.wakeUp();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive()) {
+            // 写线程退出前后仍可能有工作线程发布记录，在这里写完
+            ring.setConsumer(Thread.currentThread());
+            while (ring.drain(formatter, batchSize) > 0) {
+                formatter.flush();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error("Couldn't close " + file, e);
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 已经写出的记录数。
+     */
+    public long getWrittenRecords() {
+        return writtenRecords.get();
+    }
+
+    /**
+     * 缓冲区满、工作线程不得不等待的次数，持续增长说明需要调大 bufferSize 或者日志写得太多。
+     */
+    public long getFullWaits() {
+        return ring.getFullWaits();
+    }
+
+    boolean publish(byte level, String logger, String pattern, int argCount, Object arg0, Object arg1, Object arg2,
+                    Object[] args, Throwable thrown) {
+        if (!running) {
+            return false;
+        }
+        ring.publish(level, logger, pattern, argCount, arg0, arg1, arg2, args, thrown);
+        return true;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            if (ring.drain(formatter, batchSize) > 0) {
+                formatter.flush();
+                continue;
+            }
+            if (!running) {
+                if (ring.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            ring.await(IDLE_PARK_NANOS);
+        }
+    }
+
+    private final class Formatter implements LogRing.Sink {
+
+        private final StringBuilder line = new StringBuilder(256);
+
+        private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        /** 编码器只有在源和目标都是数组时才走快速路径，所以行先复制到 chars，buffer 也不用直接缓冲区 */
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+        private CharBuffer chars = CharBuffer.allocate(1024);
+
+        private final SimpleDateFormat secondFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.");
+
+        private long second = Long.MIN_VALUE;
+
+        private String secondPrefix;
+
+        private long pending;
+
+        @Override
+        public void onRecord(long timeMillis, byte level, String logger, String thread, String pattern,
+                             int argCount, Object arg0, Object arg1, Object arg2, Object[] args, Throwable thrown) {
+            line.setLength(0);
+            appendTime(timeMillis);
+            line.append(" [").append(thread).append("] ");
+            line.append(level == JobLogger.ERROR ? "ERROR" : level == JobLogger.WARN ? "WARN " : "INFO ");
+            line.append(' ').append(logger).append(" - ");
+            LogFormat.appendMessage(line, pattern, argCount, arg0, arg1, arg2, args);
+            line.append(LINE_SEPARATOR);
+            if (thrown != null) {
+                StringWriter trace = new StringWriter();
+                thrown.printStackTrace(new PrintWriter(trace));
+                line.append(trace);
+            }
+            encode();
+            pending++;
+        }
+
+        private void appendTime(long timeMillis) {
+            long s = timeMillis / 1000;
+            if (s != second) {
+                second = s;
+                secondPrefix = secondFormat.format(new Date(s * 1000));
+            }
+            line.append(secondPrefix);
+            int millis = (int) (timeMillis % 1000);
+            if (millis < 100) {
+                line.append('0');
+            }
+            if (millis < 10) {
+                line.append('0');
+            }
+            line.append(millis);
+        }
+
+        private void encode() {
+            int length = line.length();
+            if (chars.capacity() < length) {
+                chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+            }
+            line.getChars(0, length, chars.array(), 0);
+            // 转成 Buffer 再调用：JDK 9 起 CharBuffer/ByteBuffer 覆盖了这些方法(返回子类)，在新 JDK 上编译后
+            // 会在 Java 7/8 上抛出 NoSuchMethodError
+            ((Buffer) chars).clear();
+            ((Buffer) chars).limit(length);
+            encoder.reset();
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    write();
+                    continue;
+                }
+                if (encoder.flush(buffer).isOverflow()) {
+                    write();
+                    encoder.flush(buffer);
+                }
+                return;
+            }
+        }
+
+        void flush() {
+            write();
+            writtenRecords.addAndGet(pending);
+            pending = 0;
+        }
+
+        private void write() {
+            ((Buffer) buffer).flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                log.error("Couldn't write to " + file + ", " + buffer.remaining() + " bytes dropped", e);
+            }
+            ((Buffer) buffer).clear();
+        }
+    }
+}
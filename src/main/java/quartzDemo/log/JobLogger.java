@@ -0,0 +1,111 @@
+package quartzDemo.log;
+
+/**
+ * 作业和监听器使用的日志，代替在工作线程上拼接字符串后 System.out.println。
+ *
+ * 消息使用 "{}" 占位符，格式化推迟到 AsyncLogWriter 的写线程上进行：工作线程只把模板和参数放入无锁环形缓冲区，
+ * 不拼接字符串，也不竞争 PrintStream 的锁。参数不超过 3 个时不分配内存(超过 3 个时是一次可变参数数组)。
+ * 参数的 toString 在写线程上调用，所以参数应该是不可变的(String、数字、JobKey 等)，否则输出的可能是之后的值。
+ *
+ * 没有安装 AsyncLogWriter 时(或已经关闭)，在调用线程上格式化后 System.out.println，与原来的行为相同。
+ *
+ * 使用：
+ * private static final JobLogger LOG = JobLogger.getLogger(MyJob.class);
+ * LOG.info("Instance {}：{} = {}", key, name, value);
+ */
+public final class JobLogger {
+
+    static final byte INFO = 1;
+
+    static final byte WARN = 2;
+
+    static final byte ERROR = 3;
+
+    private final String name;
+
+    private JobLogger(String name) {
+        this.name = name;
+    }
+
+    public static JobLogger getLogger(Class<?> type) {
+        return new JobLogger(type.getName());
+    }
+
+    public static JobLogger getLogger(String name) {
+        return new JobLogger(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void info(String message) {
+        log(INFO, message, 0, null, null, null, null, null);
+    }
+
+    public void info(String pattern, Object arg) {
+        log(INFO, pattern, 1, arg, null, null, null, null);
+    }
+
+    public void info(String pattern, Object arg0, Object arg1) {
+        log(INFO, pattern, 2, arg0, arg1, null, null, null);
+    }
+
+    public void info(String pattern, Object arg0, Object arg1, Object arg2) {
+        log(INFO, pattern, 3, arg0, arg1, arg2, null, null);
+    }
+
+    public void info(String pattern, Object... args) {
+        log(INFO, pattern, args.length, null, null, null, args, null);
+    }
+
+    public void warn(String message) {
+        log(WARN, message, 0, null, null, null, null, null);
+    }
+
+    public void warn(String pattern, Object arg) {
+        log(WARN, pattern, 1, arg, null, null, null, null);
+    }
+
+    public void warn(String pattern, Object arg0, Object arg1) {
+        log(WARN, pattern, 2, arg0, arg1, null, null, null);
+    }
+
+    public void warn(String pattern, Object... args) {
+        log(WARN, pattern, args.length, null, null, null, args, null);
+    }
+
+    public void error(String message) {
+        log(ERROR, message, 0, null, null, null, null, null);
+    }
+
+    public void error(String message, Throwable thrown) {
+        log(ERROR, message, 0, null, null, null, null, thrown);
+    }
+
+    public void error(String pattern, Object arg) {
+        log(ERROR, pattern, 1, arg, null, null, null, null);
+    }
+
+    public void error(String pattern, Object arg0, Object arg1) {
+        log(ERROR, pattern, 2, arg0, arg1, null, null, null);
+    }
+
+    public void error(String pattern, Object... args) {
+        log(ERROR, pattern, args.length, null, null, null, args, null);
+    }
+
+    private void log(byte level, String pattern, int argCount, Object arg0, Object arg1, Object arg2,
+                     Object[] args, Throwable thrown) {
+        AsyncLogWriter writer = AsyncLogWriter.current();
+        if (writer != null && writer.publish(level, name, pattern, argCount, arg0, arg1, arg2, args, thrown)) {
+            return;
+        }
+        StringBuilder message = new StringBuilder(64);
+        LogFormat.appendMessage(message, pattern, argCount, arg0, arg1, arg2, args);
+        System.out.println(message);
+        if (thrown != null) {
+            thrown.printStackTrace(System.out);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package quartzDemo.log;
+
+import java.util.Arrays;
+
+/**
+ * "{}" 占位符的格式化(与 SLF4J 相同的写法)：依次用参数的 String.valueOf 替换，多余的占位符原样保留，
+ * 多余的参数忽略；数组参数按 Arrays.toString 输出。
+ */
+final class LogFormat {
+
+    private LogFormat() {
+    }
+
+    static void appendMessage(StringBuilder out, String pattern, int argCount, Object arg0, Object arg1, Object arg2,
+                              Object[] args) {
+        if (pattern == null) {
+            out.append("null");
+            return;
+        }
+        if (args != null) {
+            argCount = args.length;
+        }
+        int from = 0;
+        for (int i = 0; i < argCount; i++) {
+            int at = pattern.indexOf("{}", from);
+            if (at < 0) {
+                break;
+            }
+            out.append(pattern, from, at);
+            appendArg(out, args != null ? args[i] : i == 0 ? arg0 : i == 1 ? arg1 : arg2);
+            from = at + 2;
+        }
+        out.append(pattern, from, pattern.length());
+    }
+
+    private static void appendArg(StringBuilder out, Object arg) {
+        if (arg instanceof Object[]) {
+            out.append(Arrays.deepToString((Object[]) arg));
+        } else if (arg instanceof int[]) {
+            out.append(Arrays.toString((int[]) arg));
+        } else if (arg instanceof long[]) {
+            out.append(Arrays.toString((long[]) arg));
+        } else if (arg instanceof byte[]) {
+            out.append(Arrays.toString((byte[]) arg));
+        } else {
+            try {
+                out.append(arg);
+            } catch (RuntimeException e) {
+                out.append("[toString() failed: ").append(e).append(']');
+            }
+        }
+    }
+}
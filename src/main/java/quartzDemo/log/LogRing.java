@@ -0,0 +1,193 @@
+package quartzDemo.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多生产者、单消费者的有界无锁环形缓冲区，保存还没有格式化的日志记录(与 listener.EventRing 的算法相同)。
+ *
+ * 每个槽位有一个序号：序号等于生产者游标时可写，等于游标 + 1 时可读，消费后加上容量交还给生产者。
+ * 生产者只在 tail 上 CAS 抢占槽位，记录的字段放在预先分配的并列数组中，参数不超过 3 个时发布不分配内存。
+ * 缓冲区满时生产者先让出 CPU，再短暂休眠重试，不会丢弃记录。
+ *
+ * 与 EventRing 不同，生产者不在每次发布后唤醒消费者(日志不需要立即写出，每条记录一次 unpark 的系统调用
+ * 比记录本身还贵)：消费者空闲时定时醒来，生产者只在每发布四分之一容量或缓冲区满时唤醒它。
+ */
+final class LogRing {
+
+    /**
+     * 消费者逐条处理取出的记录。
+     */
+    interface Sink {
+
+        void onRecord(long timeMillis, byte level, String logger, String thread, String pattern,
+                      int argCount, Object arg0, Object arg1, Object arg2, Object[] args, Throwable thrown);
+    }
+
+    private final int mask;
+
+    private final int wakeMask;
+
+    private final AtomicLongArray sequences;
+
+    private final long[] times;
+
+    private final byte[] levels;
+
+    private final String[] loggers;
+
+    private final String[] threads;
+
+    private final String[] patterns;
+
+    private final byte[] argCounts;
+
+    private final Object[] args0;
+
+    private final Object[] args1;
+
+    private final Object[] args2;
+
+    private final Object[][] argArrays;
+
+    private final Throwable[] throwns;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /** 缓冲区满、生产者不得不等待的次数 */
+    private final AtomicLong fullWaits = new AtomicLong();
+
+    /** 只由消费者线程读写 */
+    private long head;
+
+    private volatile Thread consumer;
+
+    private volatile boolean consumerParked;
+
+    LogRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        wakeMask = Math.max(1, capacity >> 2) - 1;
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        times = new long[capacity];
+        levels = new byte[capacity];
+        loggers = new String[capacity];
+        threads = new String[capacity];
+        patterns = new String[capacity];
+        argCounts = new byte[capacity];
+        args0 = new Object[capacity];
+        args1 = new Object[capacity];
+        args2 = new Object[capacity];
+        argArrays = new Object[capacity][];
+        throwns = new Throwable[capacity];
+    }
+
+    void setConsumer(Thread consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * 发布一条记录；args 不为 null 时忽略 arg0 ~ arg2。
+     */
+    void publish(byte level, String logger, String pattern, int argCount, Object arg0, Object arg1, Object arg2,
+                 Object[] args, Throwable thrown) {
+        long now = System.currentTimeMillis();
+        String thread = Thread.currentThread().getName();
+        int spins = 0;
+        while (true) {
+            long t = tail.get();
+            int index = (int) (t & mask);
+            long seq = sequences.get(index);
+            if (seq == t) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    times[index] = now;
+                    levels[index] = level;
+                    loggers[index] = logger;
+                    threads[index] = thread;
+                    patterns[index] = pattern;
+                    argCounts[index] = (byte) argCount;
+                    args0[index] = arg0;
+                    args1[index] = arg1;
+                    args2[index] = arg2;
+                    argArrays[index] = args;
+                    throwns[index] = thrown;
+                    sequences.set(index, t + 1);
+                    if ((t & wakeMask) == wakeMask && consumerParked) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return;
+                }
+            } else if (seq < t) {
+                // 缓冲区满
+                if (spins == 0) {
+                    fullWaits.incrementAndGet();
+                    wakeUp();
+                }
+                if (++spins < 64) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, 50000L);
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出最多 max 条记录交给 sink，返回取出的条数。只能由消费者线程调用。
+     */
+    int drain(Sink sink, int max) {
+        int count = 0;
+        while (count < max) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            sink.onRecord(times[index], levels[index], loggers[index], threads[index], patterns[index],
+                    argCounts[index], args0[index], args1[index], args2[index], argArrays[index], throwns[index]);
+            loggers[index] = null;
+            threads[index] = null;
+            patterns[index] = null;
+            args0[index] = null;
+            args1[index] = null;
+            args2[index] = null;
+            argArrays[index] = null;
+            throwns[index] = null;
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * 没有记录时休眠，直到超时或被生产者唤醒。只能由消费者线程调用。
+     */
+    void await(long timeoutNanos) {
+        consumerParked = true;
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+        consumerParked = false;
+    }
+
+    void wakeUp() {
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    long getFullWaits() {
+        return fullWaits.get();
+    }
+}
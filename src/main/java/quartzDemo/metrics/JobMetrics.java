@@ -0,0 +1,210 @@
+package quartzDemo.metrics;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerListener;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按 JobKey 记录执行统计(JobStats)的 JobListener / TriggerListener。
+ *
+ * 回调都在工作线程(misfire 在调度线程)上同步执行，每次只做一次 ConcurrentHashMap 查找和几次直方图记录，
+ * 不加锁、不分配内存(每个作业第一次执行时创建一个 JobStats，约 13KB)。作业的开始时间保存在 ThreadLocal 中，
+ * jobToBeExecuted 和 jobWasExecuted 由 JobRunShell 在同一个线程上调用。
+ *
+ * 作业被删除时(包括非持久作业的最后一个触发器完成)，它的统计并入所在组的 retired 汇总后移除，
+ * 所以长期运行时内存只与现存的作业数有关，按组汇总的数据不会丢失。
+ *
+ * 使用：
+ * JobMetrics metrics = JobMetrics.install(scheduler);
+ * 或者通过 JobMetricsPlugin 在配置文件中开启；JobMetricsServlet 把所有调度器的统计输出为 JSON。
+ */
+public class JobMetrics implements JobListener, TriggerListener {
+
+    /** 保存在 SchedulerContext 中的 key */
+    public static final String CONTEXT_KEY = JobMetrics.class.getName();
+
+    private final String name;
+
+    private final ConcurrentMap<JobKey, JobStats> jobs = new ConcurrentHashMap<JobKey, JobStats>();
+
+    private final ConcurrentMap<String, JobStats> retired = new ConcurrentHashMap<String, JobStats>();
+
+    private final ThreadLocal<long[]> startNanos = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    public JobMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 创建 JobMetrics 并注册到调度器上。
+     */
+    public static JobMetrics install(Scheduler scheduler) throws SchedulerException {
+        JobMetrics metrics = new JobMetrics("jobMetrics");
+        metrics.register(scheduler);
+        return metrics;
+    }
+
+    /**
+     * 调度器上已安装的 JobMetrics，没有时返回 null。
+     */
+    public static JobMetrics of(Scheduler scheduler) throws SchedulerException {
+        return (JobMetrics) scheduler.getContext().get(CONTEXT_KEY);
+    }
+
+    /**
+     * 作为 JobListener 和 TriggerListener 注册到调度器上，并放入 SchedulerContext。
+     */
+    public void register(Scheduler scheduler) throws SchedulerException {
+        scheduler.getListenerManager().addJobListener(this, EverythingMatcher.allJobs());
+        scheduler.getListenerManager().addTriggerListener(this, EverythingMatcher.allTriggers());
+        scheduler.getListenerManager().addSchedulerListener(new SchedulerListenerSupport() {
+            @Override
+            public void jobDeleted(JobKey jobKey) {
+                retire(jobKey);
+            }
+
+            @Override
+            public void schedulingDataCleared() {
+                for (JobKey jobKey : jobs.keySet()) {
+                    retire(jobKey);
+                }
+            }
+        });
+        scheduler.getContext().put(CONTEXT_KEY, this);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void jobToBeExecuted(JobExecutionContext context) {
+        long now = System.currentTimeMillis();
+        JobStats stats = stats(context.getJobDetail().getKey());
+        Date fireTime = context.getFireTime();
+        Date scheduledFireTime = context.getScheduledFireTime();
+        if (scheduledFireTime != null) {
+            stats.fireLag.record((fireTime.getTime() - scheduledFireTime.getTime()) * 1000);
+        }
+        stats.queueWait.record((now - fireTime.getTime()) * 1000);
+        startNanos.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void jobExecutionVetoed(JobExecutionContext context) {
+    }
+
+    @Override
+    public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+        long end = System.nanoTime();
+        JobStats stats = stats(context.getJobDetail().getKey());
+        stats.runTime.record((end - startNanos.get()[0]) / 1000);
+        if (jobException != null) {
+            stats.failures.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void triggerFired(Trigger trigger, JobExecutionContext context) {
+    }
+
+    @Override
+    public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+        return false;
+    }
+
+    @Override
+    public void triggerMisfired(Trigger trigger) {
+        stats(trigger.getJobKey()).misfires.incrementAndGet();
+    }
+
+    @Override
+    public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                Trigger.CompletedExecutionInstruction triggerInstructionCode) {
+    }
+
+    /**
+     * 现存作业的统计快照，按 JobKey 排序。
+     */
+    public Map<JobKey, JobStats.Snapshot> snapshotJobs() {
+        Map<JobKey, JobStats.Snapshot> result = new TreeMap<JobKey, JobStats.Snapshot>();
+        for (Map.Entry<JobKey, JobStats> e : jobs.entrySet()) {
+            result.put(e.getKey(), e.getValue().snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * 按组汇总的统计快照(现存作业加上已删除的作业)，按组名排序。
+     */
+    public Map<String, JobStats.Snapshot> snapshotGroups() {
+        Map<String, JobStats.Snapshot> result = new TreeMap<String, JobStats.Snapshot>();
+        synchronized (retired) {
+            for (Map.Entry<String, JobStats> e : retired.entrySet()) {
+                groupSnapshot(result, e.getKey()).merge(e.getValue().snapshot());
+            }
+            for (Map.Entry<JobKey, JobStats> e : jobs.entrySet()) {
+                groupSnapshot(result, e.getKey().getGroup()).merge(e.getValue().snapshot());
+            }
+        }
+        return result;
+    }
+
+    private static JobStats.Snapshot groupSnapshot(Map<String, JobStats.Snapshot> groups, String group) {
+        JobStats.Snapshot snapshot = groups.get(group);
+        if (snapshot == null) {
+            snapshot = new JobStats.Snapshot();
+            groups.put(group, snapshot);
+        }
+        return snapshot;
+    }
+
+    private JobStats stats(JobKey jobKey) {
+        JobStats stats = jobs.get(jobKey);
+        if (stats == null) {
+            stats = new JobStats();
+            JobStats existing = jobs.putIfAbsent(jobKey, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 把作业的统计并入组的汇总；与 snapshotGroups 互斥，避免同一份数据在快照中出现两次或一次都不出现。
+     */
+    private void retire(JobKey jobKey) {
+        synchronized (retired) {
+            JobStats stats = jobs.remove(jobKey);
+            if (stats == null) {
+                return;
+            }
+            JobStats group = retired.get(jobKey.getGroup());
+            if (group == null) {
+                group = new JobStats();
+                retired.put(jobKey.getGroup(), group);
+            }
+            group.add(stats);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package quartzDemo.metrics;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 通过配置文件开启 JobMetrics。
+ *
+ * 配置：
+ * org.quartz.plugin.jobMetrics.class = quartzDemo.metrics.JobMetricsPlugin
+ *
+ * 之后通过 JobMetrics.of(scheduler) 读取统计，或者访问 webapp 中的 JobMetricsServlet。
+ */
+public class JobMetricsPlugin implements SchedulerPlugin {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private JobMetrics metrics;
+
+    public JobMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void initialize(String name, Scheduler scheduler, ClassLoadHelper loadHelper)
+            throws SchedulerException {
+        metrics = new JobMetrics(name);
+        metrics.register(scheduler);
+        log.info("JobMetrics '" + name + "' initialized");
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
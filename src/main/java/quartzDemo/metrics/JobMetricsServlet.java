@@ -0,0 +1,172 @@
+package quartzDemo.metrics;
+
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.impl.SchedulerRepository;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 以 JSON 输出本 webapp 中所有安装了 JobMetrics 的调度器的统计(web.xml 中映射到 /metrics/jobs)。
+ *
+ * 参数：scheduler = 只输出这个调度器；group = 只输出这个组；jobs = false 时只输出按组汇总的数据。
+ * 时间单位是毫秒，每个直方图输出 count、mean、p50、p90、p99、p999 和 max：
+ *
+ * {"schedulers":[{"name":"MyScheduler","groups":[{"group":"group1","executions":120,"misfires":0,"failures":0,
+ *   "fireLagMs":{"count":120,"mean":0.512,"p50":0.000,"p90":1.000,"p99":3.000,"p999":3.000,"max":3.000},
+ *   "queueWaitMs":{...},"runTimeMs":{...}}],"jobs":[{"group":"group1","name":"job1",...}]}]}
+ */
+public class JobMetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String schedulerName = req.getParameter("scheduler");
+        String group = req.getParameter("group");
+        boolean includeJobs = !"false".equalsIgnoreCase(req.getParameter("jobs"));
+
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\"schedulers\":[");
+        boolean first = true;
+        for (Scheduler scheduler : SchedulerRepository.getInstance().lookupAll()) {
+            JobMetrics metrics;
+            String name;
+            try {
+                name = scheduler.getSchedulerName();
+                metrics = JobMetrics.of(scheduler);
+            } catch (SchedulerException e) {
+                throw new ServletException(e);
+            }
+            if (metrics == null || (schedulerName != null && !schedulerName.equals(name))) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendScheduler(json, name, metrics, group, includeJobs);
+        }
+        json.append("]}");
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        PrintWriter out = resp.getWriter();
+        out.write(json.toString());
+        out.flush();
+    }
+
+    private static void appendScheduler(StringBuilder json, String name, JobMetrics metrics, String group,
+                                        boolean includeJobs) {
+        json.append("{\"name\":");
+        appendString(json, name);
+        json.append(",\"groups\":[");
+        boolean first = true;
+        for (Map.Entry<String, JobStats.Snapshot> e : metrics.snapshotGroups().entrySet()) {
+            if (group != null && !group.equals(e.getKey())) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"group\":");
+            appendString(json, e.getKey());
+            appendStats(json, e.getValue());
+            json.append('}');
+        }
+        json.append(']');
+        if (includeJobs) {
+            json.append(",\"jobs\":[");
+            first = true;
+            for (Map.Entry<JobKey, JobStats.Snapshot> e : metrics.snapshotJobs().entrySet()) {
+                if (group != null && !group.equals(e.getKey().getGroup())) {
+                    continue;
+                }
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                json.append("{\"group\":");
+                appendString(json, e.getKey().getGroup());
+                json.append(",\"name\":");
+                appendString(json, e.getKey().getName());
+                appendStats(json, e.getValue());
+                json.append('}');
+            }
+            json.append(']');
+        }
+        json.append('}');
+    }
+
+    private static void appendStats(StringBuilder json, JobStats.Snapshot stats) {
+        json.append(",\"executions\":").append(stats.getExecutions());
+        json.append(",\"misfires\":").append(stats.getMisfires());
+        json.append(",\"failures\":").append(stats.getFailures());
+        json.append(",\"fireLagMs\":");
+        appendHistogram(json, stats.getFireLag());
+        json.append(",\"queueWaitMs\":");
+        appendHistogram(json, stats.getQueueWait());
+        json.append(",\"runTimeMs\":");
+        appendHistogram(json, stats.getRunTime());
+    }
+
+    private static void appendHistogram(StringBuilder json, LatencyHistogram.Snapshot histogram) {
+        json.append("{\"count\":").append(histogram.getTotalCount());
+        json.append(",\"mean\":").append(millis(histogram.getMean()));
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            json.append(",\"").append(PERCENTILE_NAMES[i]).append("\":")
+                    .append(millis(histogram.getValueAtPercentile(PERCENTILES[i])));
+        }
+        json.append(",\"max\":").append(millis(histogram.getMax()));
+        json.append('}');
+    }
+
+    private static String millis(double micros) {
+        return String.format(Locale.US, "%.3f", micros / 1000.0);
+    }
+
+    static void appendString(StringBuilder json, String s) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,94 @@
+package quartzDemo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个作业(或一个组中已删除作业的汇总)的执行统计，时间单位是微秒：
+ * fireLag    计划触发时间(scheduledFireTime)到 JobStore 实际触发(fireTime)的延迟，反映调度线程和 JobStore 跟不上的程度；
+ * queueWait  fireTime 到工作线程开始执行(jobToBeExecuted)的等待，包括交给线程池和之前的监听器；
+ * runTime    作业 execute 的耗时；
+ * misfires   错过触发的次数，failures 执行时抛出 JobExecutionException 的次数。
+ *
+ * fireTime 和 scheduledFireTime 是毫秒精度的 Date，所以 fireLag 和 queueWait 的精度是 1 毫秒。
+ */
+public final class JobStats {
+
+    final LatencyHistogram fireLag = new LatencyHistogram();
+
+    final LatencyHistogram queueWait = new LatencyHistogram();
+
+    final LatencyHistogram runTime = new LatencyHistogram();
+
+    final AtomicLong misfires = new AtomicLong();
+
+    final AtomicLong failures = new AtomicLong();
+
+    void add(JobStats other) {
+        fireLag.add(other.fireLag);
+        queueWait.add(other.queueWait);
+        runTime.add(other.runTime);
+        misfires.addAndGet(other.misfires.get());
+        failures.addAndGet(other.failures.get());
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.fireLag = fireLag.snapshot();
+        snapshot.queueWait = queueWait.snapshot();
+        snapshot.runTime = runTime.snapshot();
+        snapshot.misfires = misfires.get();
+        snapshot.failures = failures.get();
+        return snapshot;
+    }
+
+    public static final class Snapshot {
+
+        private LatencyHistogram.Snapshot fireLag = new LatencyHistogram.Snapshot();
+
+        private LatencyHistogram.Snapshot queueWait = new LatencyHistogram.Snapshot();
+
+        private LatencyHistogram.Snapshot runTime = new LatencyHistogram.Snapshot();
+
+        private long misfires;
+
+        private long failures;
+
+        public Snapshot() {
+        }
+
+        public void merge(Snapshot other) {
+            fireLag.merge(other.fireLag);
+            queueWait.merge(other.queueWait);
+            runTime.merge(other.runTime);
+            misfires += other.misfires;
+            failures += other.failures;
+        }
+
+        public LatencyHistogram.Snapshot getFireLag() {
+            return fireLag;
+        }
+
+        public LatencyHistogram.Snapshot getQueueWait() {
+            return queueWait;
+        }
+
+        public LatencyHistogram.Snapshot getRunTime() {
+            return runTime;
+        }
+
+        /**
+         * 执行完成的次数
+         */
+        public long getExecutions() {
+            return runTime.getTotalCount();
+        }
+
+        public long getMisfires() {
+            return misfires;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+    }
+}
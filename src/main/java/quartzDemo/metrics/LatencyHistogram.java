@@ -0,0 +1,173 @@
+package quartzDemo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的对数-线性直方图(HdrHistogram 的桶划分方式)，记录微秒数。
+ *
+ * 0 ~ 31 每个值一个桶；之后每个 2 的幂区间 [2^m, 2^(m+1)) 平分成 16 个桶，相对误差不超过 1/16。
+ * 能区分的最大值是 2^37 - 1 微秒(约 38 小时)，更大的值计入最后一个桶，max 仍然是准确的。
+ * 每个直方图 544 个 long(约 4KB)。
+ *
+ * record 只做一次桶下标计算和一次 AtomicLongArray 自增，只有出现新的最大值时才 CAS，不分配内存；
+ * 多个线程同时记录时不会丢失计数。snapshot 逐个读取桶，与并发的 record 之间没有原子性，
+ * 快照中的计数可能比 max 晚一步，对监控用途没有影响。
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+    private static final int MAX_MAGNITUDE = 36;
+
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一个值，负数按 0 记录。
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts.incrementAndGet(bucketIndex(micros));
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * 把 other 当前的计数加到这个直方图上。
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        long otherMax = other.max.get();
+        long current = max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = counts.get(i);
+            snapshot.counts[i] = c;
+            snapshot.totalCount += c;
+        }
+        snapshot.max = max.get();
+        return snapshot;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        return SUB_BUCKET_COUNT + (magnitude - SUB_BUCKET_BITS) * SUB_BUCKET_HALF
+                + (int) (value >>> shift) - SUB_BUCKET_HALF;
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int k = index - SUB_BUCKET_COUNT;
+        int shift = k / SUB_BUCKET_HALF + 1;
+        return (long) (k % SUB_BUCKET_HALF + SUB_BUCKET_HALF) << shift;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        if (index == BUCKET_COUNT - 1) {
+            // 超出范围的值也在最后一个桶中
+            return Long.MAX_VALUE;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        return lowestValue(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * 某一时刻的计数副本，可以合并(按组汇总)后计算百分位数。
+     */
+    public static final class Snapshot {
+
+        private final long[] counts = new long[BUCKET_COUNT];
+
+        private long totalCount;
+
+        private long max;
+
+        public Snapshot() {
+        }
+
+        public void merge(Snapshot other) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += other.counts[i];
+            }
+            totalCount += other.totalCount;
+            max = Math.max(max, other.max);
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * 不超过 percentile% 的记录所在桶的上界(不大于 max)，没有记录时为 0。
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (totalCount == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * 按每个桶的中点估算的平均值。
+         */
+        public double getMean() {
+            if (totalCount == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                if (counts[i] != 0) {
+                    sum += counts[i] * ((lowestValue(i) + Math.min(highestValue(i), max)) / 2.0);
+                }
+            }
+            return sum / totalCount;
+        }
+    }
+}
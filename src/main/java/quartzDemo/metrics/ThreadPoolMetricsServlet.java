@@ -0,0 +1,108 @@
+package quartzDemo.metrics;
+
+import quartzDemo.pool.AdaptiveThreadPool;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 以 JSON 输出本 webapp 中所有使用 AdaptiveThreadPool 的调度器的线程池状态(web.xml 中映射到 /metrics/pool)。
+ *
+ * 参数：scheduler = 只输出这个调度器；decisions = false 时不输出调整记录。
+ * last 是最近一次观察，decisions 是最近的调整记录(从旧到新)，cpu 为 -1 表示取不到：
+ *
+ * {"pools":[{"scheduler":"MyScheduler","min":2,"max":100,"size":8,"target":8,"busy":3,"queued":0,
+ *   "grows":2,"shrinks":0,"cpuHolds":0,
+ *   "last":{"time":1700000000000,"from":8,"to":8,"reason":null,"jobs":41,"lagP90Ms":3,"lagMaxMs":12,
+ *   "queued":0,"peakBusy":6,"blockedPct":0.0,"cpu":0.35},"decisions":[{...}]}]}
+ */
+public class ThreadPoolMetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String schedulerName = req.getParameter("scheduler");
+        boolean includeDecisions = !"false".equalsIgnoreCase(req.getParameter("decisions"));
+
+        StringBuilder json = new StringBuilder(2048);
+        json.append("{\"pools\":[");
+        boolean first = true;
+        for (AdaptiveThreadPool pool : AdaptiveThreadPool.all()) {
+            if (schedulerName != null && !schedulerName.equals(pool.getSchedulerInstanceName())) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendPool(json, pool, includeDecisions);
+        }
+        json.append("]}");
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        PrintWriter out = resp.getWriter();
+        out.write(json.toString());
+        out.flush();
+    }
+
+    private static void appendPool(StringBuilder json, AdaptiveThreadPool pool, boolean includeDecisions) {
+        json.append("{\"scheduler\":");
+        JobMetricsServlet.appendString(json, pool.getSchedulerInstanceName());
+        json.append(",\"min\":").append(pool.getMinThreads());
+        json.append(",\"max\":").append(pool.getMaxThreads());
+        json.append(",\"size\":").append(pool.getPoolSize());
+        json.append(",\"target\":").append(pool.getTargetSize());
+        json.append(",\"busy\":").append(pool.getBusyCount());
+        json.append(",\"queued\":").append(pool.getQueued());
+        json.append(",\"grows\":").append(pool.getGrowCount());
+        json.append(",\"shrinks\":").append(pool.getShrinkCount());
+        json.append(",\"cpuHolds\":").append(pool.getCpuHoldCount());
+        json.append(",\"last\":");
+        appendDecision(json, pool.getLastSample());
+        if (includeDecisions) {
+            json.append(",\"decisions\":[");
+            List<AdaptiveThreadPool.Decision> decisions = pool.getDecisions();
+            for (int i = 0; i < decisions.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                appendDecision(json, decisions.get(i));
+            }
+            json.append(']');
+        }
+        json.append('}');
+    }
+
+    private static void appendDecision(StringBuilder json, AdaptiveThreadPool.Decision decision) {
+        if (decision == null) {
+            json.append("null");
+            return;
+        }
+        json.append("{\"time\":").append(decision.getTime());
+        json.append(",\"from\":").append(decision.getFrom());
+        json.append(",\"to\":").append(decision.getTo());
+        json.append(",\"reason\":");
+        if (decision.getReason() == null) {
+            json.append("null");
+        } else {
+            JobMetricsServlet.appendString(json, decision.getReason());
+        }
+        json.append(",\"jobs\":").append(decision.getJobs());
+        json.append(",\"lagP90Ms\":").append(decision.getLagP90Millis());
+        json.append(",\"lagMaxMs\":").append(decision.getLagMaxMillis());
+        json.append(",\"queued\":").append(decision.getQueued());
+        json.append(",\"peakBusy\":").append(decision.getPeakBusy());
+        json.append(",\"blockedPct\":").append(String.format(Locale.US, "%.1f", decision.getBlockedPct()));
+        json.append(",\"cpu\":").append(String.format(Locale.US, "%.2f", decision.getCpu()));
+        json.append('}');
+    }
+}
@@ -0,0 +1,141 @@
+package quartzDemo.metrics;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.impl.SchedulerRepository;
+import quartzDemo.history.HistoryQuery;
+import quartzDemo.history.HistoryRecord;
+import quartzDemo.history.TriggerHistory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * 以 JSON 输出本 webapp 中所有安装了 TriggerHistory 的调度器的触发记录查询结果(web.xml 中映射到 /metrics/history)。
+ *
+ * 参数(都是可选的)：
+ * scheduler = 只查询这个调度器；group = 作业组；job = 作业名(与 group 一起使用，默认组 DEFAULT)；
+ * outcome = SUCCESS / FAILED / VETOED / MISFIRED；order = latest(默认) / slowest；
+ * lastMillis = 最近多少毫秒内触发的(默认 3600000)；limit = 最多返回的条数(默认 100，最大 10000)。
+ * 例如 /metrics/history?group=group1&order=slowest&limit=100 是最近一小时 group1 组中最慢的 100 次执行。
+ * 时间是毫秒时间戳，duration 是毫秒：
+ *
+ * {"schedulers":[{"name":"MyScheduler","capacity":1048576,"recorded":5230,"records":[{"seq":5229,
+ *   "group":"group1","job":"job1","triggerGroup":"group1","trigger":"trigger1","scheduled":1700000000000,
+ *   "fired":1700000000003,"duration":12,"outcome":"SUCCESS"}]}]}
+ */
+public class TriggerHistoryServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_LIMIT = 10000;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String schedulerName = req.getParameter("scheduler");
+        HistoryQuery query;
+        try {
+            query = query(req);
+        } catch (IllegalArgumentException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        StringBuilder json = new StringBuilder(8192);
+        json.append("{\"schedulers\":[");
+        boolean first = true;
+        for (Scheduler scheduler : SchedulerRepository.getInstance().lookupAll()) {
+            TriggerHistory history;
+            String name;
+            try {
+                name = scheduler.getSchedulerName();
+                history = TriggerHistory.of(scheduler);
+            } catch (SchedulerException e) {
+                throw new ServletException(e);
+            }
+            if (history == null || (schedulerName != null && !schedulerName.equals(name))) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"name\":");
+            JobMetricsServlet.appendString(json, name);
+            json.append(",\"capacity\":").append(history.getCapacity());
+            json.append(",\"recorded\":").append(history.getRecorded());
+            json.append(",\"records\":[");
+            boolean firstRecord = true;
+            for (HistoryRecord record : history.query(query)) {
+                if (!firstRecord) {
+                    json.append(',');
+                }
+                firstRecord = false;
+                appendRecord(json, record);
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        PrintWriter out = resp.getWriter();
+        out.write(json.toString());
+        out.flush();
+    }
+
+    private static HistoryQuery query(HttpServletRequest req) {
+        int limit = Math.min(MAX_LIMIT, (int) longParameter(req, "limit", 100));
+        String order = req.getParameter("order");
+        HistoryQuery query;
+        if (order == null || "latest".equalsIgnoreCase(order)) {
+            query = HistoryQuery.latest(limit);
+        } else if ("slowest".equalsIgnoreCase(order)) {
+            query = HistoryQuery.slowest(limit);
+        } else {
+            throw new IllegalArgumentException("Unknown order '" + order + "'");
+        }
+        query.jobGroup(req.getParameter("group")).jobName(req.getParameter("job"));
+        String outcome = req.getParameter("outcome");
+        if (outcome != null) {
+            query.outcome(HistoryRecord.Outcome.valueOf(outcome.toUpperCase(Locale.US)));
+        }
+        query.lastMillis(longParameter(req, "lastMillis", 60 * 60 * 1000L));
+        return query;
+    }
+
+    private static long longParameter(HttpServletRequest req, String name, long defaultValue) {
+        String value = req.getParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + value + "'");
+        }
+    }
+
+    private static void appendRecord(StringBuilder json, HistoryRecord record) {
+        json.append("{\"seq\":").append(record.getSequence());
+        json.append(",\"group\":");
+        JobMetricsServlet.appendString(json, record.getJobKey().getGroup());
+        json.append(",\"job\":");
+        JobMetricsServlet.appendString(json, record.getJobKey().getName());
+        json.append(",\"triggerGroup\":");
+        JobMetricsServlet.appendString(json, record.getTriggerKey().getGroup());
+        json.append(",\"trigger\":");
+        JobMetricsServlet.appendString(json, record.getTriggerKey().getName());
+        json.append(",\"scheduled\":").append(record.getScheduledFireTime());
+        json.append(",\"fired\":").append(record.getFireTime());
+        json.append(",\"duration\":").append(record.getDuration());
+        json.append(",\"outcome\":\"").append(record.getOutcome().name()).append('"');
+        json.append('}');
+    }
+}
@@ -0,0 +1,849 @@
+package quartzDemo.pool;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import quartzDemo.metrics.LatencyHistogram;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按触发延迟、队列深度和 CPU 使用率在 [minThreads, maxThreads] 之间自动增减工作线程的 ThreadPool。
+ *
+ * ConfigDemo 中说线程数"没有真正的规则"：SimpleThreadPool 的线程固定，设大了浪费内存和上下文切换，设小了在
+ * 0 0/2 8-17 * * ? 这样大量触发器同时触发的时刻，触发器在 JobStore 中等待线程，超过 misfireThreshold 就 misfire。
+ * 这里的接收方式与 SimpleThreadPool 相同(有空闲线程才接收，maxQueued 默认为 0)，另外有一个控制线程每
+ * adjustIntervalMillis 毫秒观察一次这段时间内的：
+ *   触发延迟：每个作业开始执行的时间 - 计划触发时间(scheduledFireTime)的 p90；
+ *   队列深度：maxQueued 大于 0 时已经接收、还没有开始执行的作业数；
+ *   调度线程等待空闲线程的时间占比(blockedPct)；
+ *   CPU 使用率：整个系统的(com.sun.management.OperatingSystemMXBean 的 getCpuLoad / getSystemCpuLoad，反射调用，
+ *   不依赖 com.sun 的类)，取不到时用 1 分钟平均负载 / CPU 个数代替，都取不到时不参考。
+ * 延迟的 p90 超过 lagTargetMillis 或队列中有作业时，目标线程数翻倍(不超过 maxThreads)，新线程立即启动；
+ * 但是 CPU 使用率已经超过 cpuCeiling 时不再增加(作业在争抢 CPU，加线程只会更慢)，只记录一次 hold。
+ * 连续 keepAliveMillis 没有上述压力、调度线程也没有等待空闲线程时，目标线程数减到
+ * max(这段时间内同时执行的最大作业数, 当前的一半)，不少于 minThreads，多余的线程空闲时退出，
+ * 之后每 keepAliveMillis 最多再减半一次。
+ *
+ * 关闭之后调度线程交来的任务由一个临时线程执行，runInThread 不返回 false。
+ *
+ * 每次调整(以及因 CPU 不增加)都记录为一个 Decision，最近 decisionHistory 个、最近一次观察和累计次数可以通过
+ * getDecisions / getLastSample 等方法读取，ThreadPoolMetricsServlet 以 JSON 输出(web.xml 中映射到 /metrics/pool)。
+ *
+ * 配置：
+ * org.quartz.threadPool.class = quartzDemo.pool.AdaptiveThreadPool
+ * org.quartz.threadPool.minThreads = 2
+ * org.quartz.threadPool.maxThreads = 100
+ * org.quartz.threadPool.maxQueued = 0                (可选，默认与 SimpleThreadPool 一样只交给空闲线程)
+ * org.quartz.threadPool.lagTargetMillis = 200        (可选)
+ * org.quartz.threadPool.cpuCeiling = 0.9             (可选)
+ * org.quartz.threadPool.adjustIntervalMillis = 200   (可选)
+ * org.quartz.threadPool.keepAliveMillis = 10000      (可选)
+ */
+public class AdaptiveThreadPool implements ThreadPool {
+
+    public static final int DEFAULT_MIN_THREADS = 2;
+
+    public static final int DEFAULT_MAX_THREADS = 100;
+
+    public static final long DEFAULT_LAG_TARGET_MILLIS = 200L;
+
+    public static final double DEFAULT_CPU_CEILING = 0.9;
+
+    public static final long DEFAULT_ADJUST_INTERVAL_MILLIS = 200L;
+
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 10000L;
+
+    public static final int DEFAULT_DECISION_HISTORY = 64;
+
+    /** 调度器名称 -> 线程池，供 ThreadPoolMetricsServlet 查找 */
+    private static final ConcurrentMap<String, AdaptiveThreadPool> POOLS =
+            new ConcurrentHashMap<String, AdaptiveThreadPool>();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** 有新任务，或者需要检查是否退出 */
+    private final Condition work = lock.newCondition();
+
+    /** 有空闲线程或队列空位 */
+    private final Condition capacity = lock.newCondition();
+
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<Runnable>();
+
+    private final List<Worker> workers = new ArrayList<Worker>();
+
+    private int minThreads = DEFAULT_MIN_THREADS;
+
+    private int maxThreads = DEFAULT_MAX_THREADS;
+
+    private int maxQueued;
+
+    private long lagTargetMillis = DEFAULT_LAG_TARGET_MILLIS;
+
+    private double cpuCeiling = DEFAULT_CPU_CEILING;
+
+    private long adjustIntervalMillis = DEFAULT_ADJUST_INTERVAL_MILLIS;
+
+    private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+
+    private int decisionHistory = DEFAULT_DECISION_HISTORY;
+
+    private int threadPriority = Thread.NORM_PRIORITY;
+
+    private boolean makeThreadsDaemons = false;
+
+    private String threadNamePrefix;
+
+    private String schedulerInstanceName;
+
+    // 以下由 lock 保护
+
+    private int size;
+
+    private int target;
+
+    private int idle;
+
+    private int busy;
+
+    private int peakBusy;
+
+    private long blockedNanos;
+
+    /** 正在等待空闲线程的调用数，和开始等待(或上次统计)的时间 */
+    private int waiters;
+
+    private long blockedSince;
+
+    private boolean isShutdown = false;
+
+    private int workerSeq;
+
+    // 以下只由控制线程修改
+
+    private volatile LatencyHistogram lagWindow = new LatencyHistogram();
+
+    private long lastChange;
+
+    private long lastPressure;
+
+    private int periodPeakBusy;
+
+    private boolean cpuHolding;
+
+    private final ArrayDeque<Decision> decisions = new ArrayDeque<Decision>();
+
+    private volatile Decision lastSample;
+
+    private volatile long grows;
+
+    private volatile long shrinks;
+
+    private volatile long cpuHolds;
+
+    private Thread controller;
+
+    private OperatingSystemMXBean osBean;
+
+    /** com.sun.management.OperatingSystemMXBean 的 getCpuLoad(JDK 14 起) 或 getSystemCpuLoad，没有时为 null */
+    private Method cpuLoadMethod;
+
+    public AdaptiveThreadPool() {
+    }
+
+    public AdaptiveThreadPool(int minThreads, int maxThreads) {
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * 调度器 schedName 使用的 AdaptiveThreadPool，没有时返回 null。
+     */
+    public static AdaptiveThreadPool of(String schedName) {
+        return POOLS.get(schedName);
+    }
+
+    public static Collection<AdaptiveThreadPool> all() {
+        return Collections.unmodifiableCollection(POOLS.values());
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public void setMinThreads(int minThreads) {
+        this.minThreads = minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * 没有空闲线程时还能接收、排队等待线程的作业数。大于 0 时调度线程可以多取出一些触发器，排队的数量作为增加线程的依据。
+     */
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public long getLagTargetMillis() {
+        return lagTargetMillis;
+    }
+
+    /**
+     * 作业开始执行时允许的延迟(p90)，超过时增加线程。应该远小于 misfireThreshold。
+     */
+    public void setLagTargetMillis(long lagTargetMillis) {
+        this.lagTargetMillis = lagTargetMillis;
+    }
+
+    public double getCpuCeiling() {
+        return cpuCeiling;
+    }
+
+    /**
+     * 系统 CPU 使用率(0 ~ 1)超过这个值时不再增加线程。
+     */
+    public void setCpuCeiling(double cpuCeiling) {
+        this.cpuCeiling = cpuCeiling;
+    }
+
+    public long getAdjustIntervalMillis() {
+        return adjustIntervalMillis;
+    }
+
+    public void setAdjustIntervalMillis(long adjustIntervalMillis) {
+        this.adjustIntervalMillis = adjustIntervalMillis;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * 持续多久没有压力后减少线程。
+     */
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    public int getDecisionHistory() {
+        return decisionHistory;
+    }
+
+    public void setDecisionHistory(int decisionHistory) {
+        this.decisionHistory = decisionHistory;
+    }
+
+    public int getThreadPriority() {
+        return threadPriority;
+    }
+
+    public void setThreadPriority(int threadPriority) {
+        this.threadPriority = threadPriority;
+    }
+
+    public void setMakeThreadsDaemons(boolean makeThreadsDaemons) {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    public String getThreadNamePrefix() {
+        if (threadNamePrefix == null) {
+            threadNamePrefix = schedulerInstanceName + "-AdaptiveWorker";
+        }
+        return threadNamePrefix;
+    }
+
+    public void setThreadNamePrefix(String prfx) {
+        this.threadNamePrefix = prfx;
+    }
+
+    public String getSchedulerInstanceName() {
+        return schedulerInstanceName;
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        this.schedulerInstanceName = schedName;
+    }
+
+    /**
+     * 当前的工作线程数。
+     */
+    @Override
+    public int getPoolSize() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 控制线程决定的目标线程数，减少时多余的线程在空闲后才退出。
+     */
+    public int getTargetSize() {
+        lock.lock();
+        try {
+            return target;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 正在执行作业的线程数。
+     */
+    public int getBusyCount() {
+        lock.lock();
+        try {
+            return busy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 已经接收、还没有开始执行的作业数。
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getGrowCount() {
+        return grows;
+    }
+
+    public long getShrinkCount() {
+        return shrinks;
+    }
+
+    /**
+     * 有延迟但因为 CPU 使用率超过 cpuCeiling 没有增加线程的次数(连续的只算一次)。
+     */
+    public long getCpuHoldCount() {
+        return cpuHolds;
+    }
+
+    /**
+     * 最近一次观察(不论是否调整)，还没有观察过时返回 null。
+     */
+    public Decision getLastSample() {
+        return lastSample;
+    }
+
+    /**
+     * 最近的调整记录，从旧到新。
+     */
+    public List<Decision> getDecisions() {
+        synchronized (decisions) {
+            return new ArrayList<Decision>(decisions);
+        }
+    }
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if (controller != null) {
+            return;
+        }
+        if (minThreads <= 0) {
+            throw new SchedulerConfigException("Min threads must be > 0");
+        }
+        if (maxThreads < minThreads) {
+            throw new SchedulerConfigException("Max threads must be >= min threads");
+        }
+        if (maxQueued < 0) {
+            throw new SchedulerConfigException("Max queued must be >= 0");
+        }
+        if (adjustIntervalMillis <= 0 || keepAliveMillis < 0 || lagTargetMillis < 0) {
+            throw new SchedulerConfigException("adjustIntervalMillis must be > 0, keepAliveMillis and lagTargetMillis >= 0");
+        }
+        if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY) {
+            throw new SchedulerConfigException("Thread priority must be > 0 and <= 10");
+        }
+        osBean = ManagementFactory.getOperatingSystemMXBean();
+        cpuLoadMethod = cpuLoadMethod(osBean);
+        if (cpuLoadMethod == null) {
+            if (osBean.getSystemLoadAverage() < 0) {
+                log.warn("System CPU load is not available, AdaptiveThreadPool sizes on lag and queue depth only.");
+            } else {
+                log.info("System CPU load is not available, AdaptiveThreadPool uses load average / processors.");
+            }
+        }
+        long now = System.currentTimeMillis();
+        lastChange = now;
+        lastPressure = now;
+        lock.lock();
+        try {
+            resize(minThreads);
+        } finally {
+            lock.unlock();
+        }
+        controller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                control();
+            }
+        }, getThreadNamePrefix() + "-Sizer");
+        controller.setDaemon(true);
+        controller.start();
+        if (schedulerInstanceName != null) {
+            POOLS.put(schedulerInstanceName, this);
+        }
+        log.info("AdaptiveThreadPool initialized, " + minThreads + " - " + maxThreads + " threads, max queued "
+                + maxQueued + ", lag target " + lagTargetMillis + "ms");
+    }
+
+    @Override
+    public boolean runInThread(Runnable runnable) {
+        if (runnable == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (awaitCapacity()) {
+                queue.addLast(runnable);
+                work.signal();
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        runAfterShutdown(runnable);
+        return true;
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        lock.lock();
+        try {
+            if (!awaitCapacity()) {
+                return 0;
+            }
+            return idle + maxQueued - queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) {
+        List<Worker> current;
+        lock.lock();
+        try {
+            if (isShutdown) {
+                return;
+            }
+            isShutdown = true;
+            if (!waitForJobsToComplete && !queue.isEmpty()) {
+                log.warn(queue.size() + " queued jobs dropped at shutdown.");
+                queue.clear();
+            }
+            work.signalAll();
+            capacity.signalAll();
+            current = new ArrayList<Worker>(workers);
+        } finally {
+            lock.unlock();
+        }
+        if (schedulerInstanceName != null) {
+            POOLS.remove(schedulerInstanceName, this);
+        }
+        if (controller != null) {
+            controller.interrupt();
+        }
+        if (waitForJobsToComplete) {
+            for (Worker worker : current) {
+                try {
+                    worker.join();
+                } catch (InterruptedException ignore) {
+                }
+            }
+        }
+        log.debug("AdaptiveThreadPool shutdown complete");
+    }
+
+    /**
+     * 关闭后交来的任务(已经在 JobStore 中触发过)与 SimpleThreadPool 一样交给一个临时线程执行：runInThread 返回 false 时
+     * QuartzSchedulerThread 会把这个作业的所有触发器置为 ERROR。
+     */
+    private void runAfterShutdown(Runnable runnable) {
+        Thread thread = new Thread(runnable, getThreadNamePrefix() + "-LastJob");
+        thread.setPriority(threadPriority);
+        thread.setDaemon(makeThreadsDaemons);
+        thread.start();
+    }
+
+    /**
+     * 等到有空闲线程或队列空位，调用方持有 lock；关闭后返回 false。
+     */
+    private boolean awaitCapacity() {
+        if (idle + maxQueued - queue.size() > 0 || isShutdown) {
+            return !isShutdown;
+        }
+        if (waiters++ == 0) {
+            blockedSince = System.nanoTime();
+        }
+        try {
+            while (idle + maxQueued - queue.size() <= 0 && !isShutdown) {
+                try {
+                    capacity.await(500, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ignore) {
+                }
+            }
+        } finally {
+            if (--waiters == 0) {
+                blockedNanos += System.nanoTime() - blockedSince;
+            }
+        }
+        return !isShutdown;
+    }
+
+    /**
+     * 调整目标线程数，增加时立即启动新线程，减少时唤醒空闲线程让多余的退出。调用方持有 lock。
+     */
+    private void resize(int newTarget) {
+        target = newTarget;
+        while (size < target) {
+            Worker worker = new Worker(getThreadNamePrefix() + "-" + workerSeq++);
+            workers.add(worker);
+            size++;
+            worker.start();
+        }
+        if (size > target) {
+            work.signalAll();
+        }
+    }
+
+    // ---------------------------------------------------------------- 控制
+
+    private void control() {
+        while (true) {
+            try {
+                Thread.sleep(adjustIntervalMillis);
+            } catch (InterruptedException e) {
+                // shutdown
+            }
+            lock.lock();
+            try {
+                if (isShutdown) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                adjust();
+            } catch (RuntimeException e) {
+                log.error("Error while sizing AdaptiveThreadPool", e);
+            }
+        }
+    }
+
+    private static Method cpuLoadMethod(OperatingSystemMXBean os) {
+        try {
+            Class<?> type = Class.forName("com.sun.management.OperatingSystemMXBean");
+            if (!type.isInstance(os)) {
+                return null;
+            }
+            try {
+                return type.getMethod("getCpuLoad");
+            } catch (NoSuchMethodException e) {
+                return type.getMethod("getSystemCpuLoad");
+            }
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 整个系统的 CPU 使用率(0 ~ 1)，取不到时返回负数。
+     */
+    private double cpuLoad() {
+        if (cpuLoadMethod != null) {
+            try {
+                return ((Number) cpuLoadMethod.invoke(osBean)).doubleValue();
+            } catch (Exception e) {
+                log.warn("Can't read system CPU load, using load average / processors.", e);
+                cpuLoadMethod = null;
+            }
+        }
+        double loadAverage = osBean.getSystemLoadAverage();
+        if (loadAverage < 0) {
+            return -1;
+        }
+        return Math.min(1.0, loadAverage / osBean.getAvailableProcessors());
+    }
+
+    private void adjust() {
+        long now = System.currentTimeMillis();
+        LatencyHistogram.Snapshot lag = lagWindow.snapshot();
+        lagWindow = new LatencyHistogram();
+        double cpu = cpuLoad();
+
+        lock.lock();
+        try {
+            long blocked = blockedNanos;
+            if (waiters > 0) {
+                long t = System.nanoTime();
+                blocked += t - blockedSince;
+                blockedSince = t;
+            }
+            blockedNanos = 0;
+            int queued = queue.size();
+            int windowPeakBusy = peakBusy;
+            peakBusy = busy;
+            periodPeakBusy = Math.max(periodPeakBusy, windowPeakBusy);
+            double blockedPct = Math.min(100.0, blocked / 1e4 / adjustIntervalMillis);
+
+            long lagP90 = lag.getTotalCount() == 0 ? 0 : lag.getValueAtPercentile(90) / 1000;
+            boolean lagging = lagP90 > lagTargetMillis;
+            boolean pressure = lagging || queued > 0;
+            int from = target;
+            int to = from;
+            String reason = null;
+            if (pressure) {
+                lastPressure = now;
+                if (target < maxThreads) {
+                    if (cpu > cpuCeiling) {
+                        if (!cpuHolding) {
+                            cpuHolding = true;
+                            cpuHolds++;
+                            reason = "cpu";
+                        }
+                    } else {
+                        cpuHolding = false;
+                        to = Math.min(maxThreads, Math.max(target + 1, target * 2));
+                        reason = lagging ? "lag" : "queue";
+                        grows++;
+                    }
+                }
+            } else {
+                cpuHolding = false;
+                if (blocked == 0 && target > minThreads && now - lastPressure >= keepAliveMillis
+                        && now - lastChange >= keepAliveMillis) {
+                    to = Math.max(minThreads, Math.max(periodPeakBusy, target / 2));
+                    if (to < target) {
+                        reason = "idle";
+                        shrinks++;
+                    } else {
+                        to = target;
+                    }
+                    // 重新开始统计下一段时间内的最大并发
+                    periodPeakBusy = busy;
+                    lastChange = now;
+                }
+            }
+            if (to != from) {
+                resize(to);
+                lastChange = now;
+                if (to > from) {
+                    periodPeakBusy = busy;
+                }
+            }
+            Decision sample = new Decision(now, from, to, reason, lag.getTotalCount(), lagP90,
+                    lag.getMax() / 1000, queued, windowPeakBusy, blockedPct, cpu);
+            lastSample = sample;
+            if (reason != null) {
+                synchronized (decisions) {
+                    if (decisions.size() >= decisionHistory) {
+                        decisions.pollFirst();
+                    }
+                    decisions.addLast(sample);
+                }
+                log.info("AdaptiveThreadPool " + sample);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 一次观察和调整：这段时间内开始执行的作业数、延迟的 p90 和最大值、观察时的队列深度、最大并发、
+     * 调度线程等待空闲线程的时间占比、系统 CPU 使用率(取不到时为负数)，以及调整前后的目标线程数和原因
+     * (lag / queue：增加；idle：减少；cpu：有延迟但 CPU 已满，没有增加；null：没有调整)。
+     */
+    public static final class Decision {
+
+        private final long time;
+
+        private final int from;
+
+        private final int to;
+
+        private final String reason;
+
+        private final long jobs;
+
+        private final long lagP90Millis;
+
+        private final long lagMaxMillis;
+
+        private final int queued;
+
+        private final int peakBusy;
+
+        private final double blockedPct;
+
+        private final double cpu;
+
+        Decision(long time, int from, int to, String reason, long jobs, long lagP90Millis, long lagMaxMillis,
+                 int queued, int peakBusy, double blockedPct, double cpu) {
+            this.time = time;
+            this.from = from;
+            this.to = to;
+            this.reason = reason;
+            this.jobs = jobs;
+            this.lagP90Millis = lagP90Millis;
+            this.lagMaxMillis = lagMaxMillis;
+            this.queued = queued;
+            this.peakBusy = peakBusy;
+            this.blockedPct = blockedPct;
+            this.cpu = cpu;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public long getJobs() {
+            return jobs;
+        }
+
+        public long getLagP90Millis() {
+            return lagP90Millis;
+        }
+
+        public long getLagMaxMillis() {
+            return lagMaxMillis;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getPeakBusy() {
+            return peakBusy;
+        }
+
+        public double getBlockedPct() {
+            return blockedPct;
+        }
+
+        public double getCpu() {
+            return cpu;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%tT %d -> %d (%s): jobs %d, lag p90 %dms max %dms, queued %d, "
+                            + "peak busy %d, blocked %.1f%%, cpu %.0f%%", new Date(time), from, to, reason, jobs,
+                    lagP90Millis, lagMaxMillis, queued, peakBusy, blockedPct, cpu * 100);
+        }
+    }
+
+    private final class Worker extends Thread {
+
+        Worker(String name) {
+            super(name);
+            setPriority(threadPriority);
+            setDaemon(makeThreadsDaemons);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task;
+                lock.lock();
+                try {
+                    while (queue.isEmpty()) {
+                        if (isShutdown || size > target) {
+                            size--;
+                            workers.remove(this);
+                            return;
+                        }
+                        idle++;
+                        capacity.signal();
+                        try {
+                            work.await();
+                        } catch (InterruptedException ignore) {
+                        } finally {
+                            idle--;
+                        }
+                    }
+                    task = queue.pollFirst();
+                    if (++busy > peakBusy) {
+                        peakBusy = busy;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                JobExecutionContext context = PriorityStealingThreadPool.contextOf(task);
+                if (context != null && context.getScheduledFireTime() != null) {
+                    lagWindow.record((System.currentTimeMillis() - context.getScheduledFireTime().getTime()) * 1000);
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Error while executing the Runnable: ", t);
+                } finally {
+                    lock.lock();
+                    try {
+                        busy--;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package quartzDemo.pool;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.SchedulerConfigException;
+import org.quartz.Trigger;
+import org.quartz.core.JobRunShell;
+import org.quartz.spi.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import quartzDemo.job.BatchJob;
+import quartzDemo.job.JobBatch;
+
+import java.lang.reflect.Field;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 把触发器的取出(调度线程)和执行分开的 ThreadPool：runInThread 只把 JobRunShell 放入队列就返回，
+ * 由固定数量的工作线程按优先级执行，工作线程之间互相窃取任务。
+ *
+ * SimpleThreadPool 只有空闲线程时才接收任务，调度线程每次只能取出空闲线程数个触发器，同一时刻触发的几千个触发器
+ * 要分成很多轮"取出 - 触发 - 等待线程"串行完成。这里 blockForAvailableThreads() 返回的是线程数加上队列的剩余容量
+ * (maxQueued)，调度线程可以一次取出整批触发器(需要调大 org.quartz.scheduler.batchTriggerAcquisitionMaxCount)，
+ * 之后的执行在所有工作线程上并行进行。
+ *
+ * 优先级：Instruc 中说明 N 个触发器同时触发、只有 Z 个线程可用时，优先级最高的 Z 个先执行。每个工作线程按
+ * priorityThresholds 分成几条优先级通道(默认 "6,5"：>= 6、= 5、< 5 三条)，提交时按触发器的优先级放入通道，
+ * 提交的任务轮流分给各个工作线程。工作线程从高到低检查通道：自己的通道(先进先出)为空时，先从其他线程的同一条通道
+ * 头部窃取(同样先进先出，按提交顺序即触发时间顺序)，都没有时才看下一条通道，所以只要还有高优先级的任务在排队，
+ * 就不会开始低优先级的任务。
+ * 触发器的优先级从 JobRunShell 内部的 JobExecutionContext 中读取(反射)，读取失败时按默认优先级 5 处理。
+ *
+ * 注意：在队列中等待的触发器已经在 JobStore 中触发过，等待时间不会导致 misfire(JobMetrics 的 queueWait 就是这段时间)；
+ * shutdown(false) 时还没有开始执行的任务被丢弃(记录警告)，与 SimpleThreadPool 一样不等待正在执行的作业。
+ * 关闭之后调度线程交来的任务(已经在 JobStore 中触发过)与 SimpleThreadPool 一样由一个额外的线程执行，runInThread
+ * 不返回 false：返回 false 时 QuartzSchedulerThread 会把这个作业的所有触发器置为 ERROR，JDBC/Journal 存储重启后还是 ERROR。
+ *
+ * 合并执行：maxBatchSize 大于 1 时，作业类继承 BatchJob 的触发器在提交时如果同一条通道中已经有同类作业在排队
+ * (还没有开始执行，也没有满)，就加入那一批，整批由一个工作线程执行一次 BatchJob.execute(List)(见 JobBatch)。
+ * 调度线程一次取出、同时触发的触发器(包括 batchTriggerAcquisitionFireAheadTimeWindow 内提前取出的)是连续提交的，
+ * 工作线程开始执行一批之前再等到 batchWindowMillis(从这一批的第一个作业提交时算起)，空闲线程很多时也能合并。
+ * 排队容量(maxQueued)按作业数计算，不按批数。
+ *
+ * 配置：
+ * org.quartz.threadPool.class = quartzDemo.pool.PriorityStealingThreadPool
+ * org.quartz.threadPool.threadCount = 8
+ * org.quartz.threadPool.maxQueued = 4096
+ * org.quartz.threadPool.priorityThresholds = 6,5
+ * org.quartz.threadPool.maxBatchSize = 100           (可选，默认 1，不合并)
+ * org.quartz.threadPool.batchWindowMillis = 5        (可选，默认 0)
+ * org.quartz.scheduler.batchTriggerAcquisitionMaxCount = 1000
+ */
+public class PriorityStealingThreadPool implements ThreadPool {
+
+    public static final int DEFAULT_MAX_QUEUED = 4096;
+
+    private static final Field JEC_FIELD = jecField();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Object capacityLock = new Object();
+
+    /** 已提交但还没有执行完的任务数(排队的加上正在执行的) */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicInteger nextWorker = new AtomicInteger();
+
+    private volatile boolean capacityWaiting;
+
+    private volatile boolean isShutdown = false;
+
+    private volatile boolean halted = false;
+
+    private int threadCount = -1;
+
+    private int maxQueued = DEFAULT_MAX_QUEUED;
+
+    private String priorityThresholds = "6,5";
+
+    private int maxBatchSize = 1;
+
+    private long batchWindowMillis = 0L;
+
+    private int threadPriority = Thread.NORM_PRIORITY;
+
+    private boolean makeThreadsDaemons = false;
+
+    private String threadNamePrefix;
+
+    private String schedulerInstanceName;
+
+    private int[] thresholds;
+
+    private Worker[] workers;
+
+    /** 每条通道中正在排队、还可以加入的批，按作业类 */
+    private ConcurrentHashMap<Class<? extends Job>, JobBatch>[] openBatches;
+
+    public PriorityStealingThreadPool() {
+    }
+
+    public PriorityStealingThreadPool(int threadCount, int maxQueued) {
+        this.threadCount = threadCount;
+        this.maxQueued = maxQueued;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * 已经交给线程池、还没有开始执行的任务数上限。
+     */
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public String getPriorityThresholds() {
+        return priorityThresholds;
+    }
+
+    /**
+     * 从高到低的通道下限，逗号分隔："6,5" 表示 >= 6、>= 5、其余共三条通道。
+     */
+    public void setPriorityThresholds(String priorityThresholds) {
+        this.priorityThresholds = priorityThresholds;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * 合并执行的 BatchJob 的最大个数，1 表示不合并。
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getBatchWindowMillis() {
+        return batchWindowMillis;
+    }
+
+    /**
+     * 一批从第一个作业提交起，至少等待多久才开始执行。
+     */
+    public void setBatchWindowMillis(long batchWindowMillis) {
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    public int getThreadPriority() {
+        return threadPriority;
+    }
+
+    public void setThreadPriority(int threadPriority) {
+        this.threadPriority = threadPriority;
+    }
+
+    public void setMakeThreadsDaemons(boolean makeThreadsDaemons) {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    public String getThreadNamePrefix() {
+        if (threadNamePrefix == null) {
+            threadNamePrefix = schedulerInstanceName + "-PriorityWorker";
+        }
+        return threadNamePrefix;
+    }
+
+    public void setThreadNamePrefix(String prfx) {
+        this.threadNamePrefix = prfx;
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        this.schedulerInstanceName = schedName;
+    }
+
+    @Override
+    public int getPoolSize() {
+        return threadCount;
+    }
+
+    /**
+     * 正在排队或执行的任务数。
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if (workers != null) {
+            return;
+        }
+        if (threadCount <= 0) {
+            throw new SchedulerConfigException("Thread count must be > 0");
+        }
+        if (maxQueued < 0) {
+            throw new SchedulerConfigException("Max queued must be >= 0");
+        }
+        if (maxBatchSize <= 0 || batchWindowMillis < 0) {
+            throw new SchedulerConfigException("Max batch size must be > 0 and batch window >= 0");
+        }
+        if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY) {
+            throw new SchedulerConfigException("Thread priority must be > 0 and <= 10");
+        }
+        thresholds = parseThresholds(priorityThresholds);
+        if (JEC_FIELD == null) {
+            log.warn("Can't read trigger priorities from JobRunShell, all jobs use the default lane.");
+        }
+        // 不能直接创建泛型数组，通配符数组中只会放入下面创建的 Map
+        @SuppressWarnings("unchecked")
+        ConcurrentHashMap<Class<? extends Job>, JobBatch>[] batches =
+                (ConcurrentHashMap<Class<? extends Job>, JobBatch>[]) new ConcurrentHashMap<?, ?>[thresholds.length + 1];
+        openBatches = batches;
+        for (int i = 0; i < openBatches.length; i++) {
+            openBatches[i] = new ConcurrentHashMap<Class<? extends Job>, JobBatch>();
+        }
+        workers = new Worker[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Worker(i, thresholds.length + 1);
+        }
+        for (Worker worker : workers) {
+            worker.start();
+        }
+        log.info("PriorityStealingThreadPool initialized, " + threadCount + " threads, " + (thresholds.length + 1)
+                + " priority lanes, max queued " + maxQueued + (maxBatchSize > 1 ? ", max batch " + maxBatchSize : ""));
+    }
+
+    @Override
+    public boolean runInThread(Runnable runnable) {
+        if (runnable == null) {
+            return false;
+        }
+        if (!awaitCapacity()) {
+            runAfterShutdown(runnable);
+            return true;
+        }
+        JobExecutionContext context = contextOf(runnable);
+        int lane = laneOf(context != null ? context.getTrigger().getPriority() : Trigger.DEFAULT_PRIORITY);
+        pending.incrementAndGet();
+        if (maxBatchSize > 1 && context != null && context.getJobInstance() instanceof BatchJob) {
+            Class<? extends Job> jobClass = context.getJobDetail().getJobClass();
+            JobBatch open = openBatches[lane].get(jobClass);
+            if (open != null && open.offer(runnable)) {
+                return true;
+            }
+            JobBatch batch = new JobBatch(jobClass, maxBatchSize, System.currentTimeMillis() + batchWindowMillis,
+                    runnable);
+            openBatches[lane].put(jobClass, batch);
+            runnable = batch;
+        }
+        Worker target = workers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
+        Deque<Runnable> queue = target.lanes[lane];
+        queue.addLast(runnable);
+        if (halted && queue.removeLastOccurrence(runnable)) {
+            // shutdown(false) 已经清空了队列，工作线程不会再取
+            pending.addAndGet(-(runnable instanceof JobBatch ? seal((JobBatch) runnable) : 1));
+            runAfterShutdown(runnable);
+            return true;
+        }
+        // 目标线程正忙时唤醒一个空闲线程来窃取
+        if (target.parked) {
+            LockSupport.unpark(target);
+        } else {
+            for (Worker worker : workers) {
+                if (worker.parked) {
+                    LockSupport.unpark(worker);
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        if (!awaitCapacity()) {
+            return 0;
+        }
+        return capacity() - pending.get();
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) {
+        synchronized (capacityLock) {
+            if (isShutdown) {
+                return;
+            }
+            isShutdown = true;
+            capacityLock.notifyAll();
+        }
+        if (workers == null) {
+            return;
+        }
+        if (!waitForJobsToComplete) {
+            halted = true;
+            int dropped = 0;
+            for (Worker worker : workers) {
+                for (Deque<Runnable> lane : worker.lanes) {
+                    Runnable task;
+                    while ((task = lane.pollFirst()) != null) {
+                        int n = task instanceof JobBatch ? seal((JobBatch) task) : 1;
+                        dropped += n;
+                        pending.addAndGet(-n);
+                    }
+                }
+            }
+            if (dropped > 0) {
+                log.warn(dropped + " queued jobs dropped at shutdown.");
+            }
+        }
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        if (waitForJobsToComplete) {
+            for (Worker worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException ignore) {
+                }
+            }
+        }
+        log.debug("PriorityStealingThreadPool shutdown complete");
+    }
+
+    /**
+     * 关闭后交来的任务，与 SimpleThreadPool 一样用一个额外的线程执行。
+     */
+    private void runAfterShutdown(Runnable runnable) {
+        Thread thread = new Thread(runnable, getThreadNamePrefix() + "-LastJob");
+        thread.setPriority(threadPriority);
+        thread.setDaemon(makeThreadsDaemons);
+        thread.start();
+    }
+
+    private int capacity() {
+        return threadCount + maxQueued;
+    }
+
+    /**
+     * 等到还能再接收一个任务，关闭后返回 false。
+     */
+    private boolean awaitCapacity() {
+        if (pending.get() < capacity() && !isShutdown) {
+            return true;
+        }
+        synchronized (capacityLock) {
+            while (pending.get() >= capacity() && !isShutdown) {
+                capacityWaiting = true;
+                try {
+                    capacityLock.wait(500);
+                } catch (InterruptedException ignore) {
+                }
+            }
+            capacityWaiting = false;
+            return !isShutdown;
+        }
+    }
+
+    /**
+     * 不再接收新的作业，返回这一批的作业数。
+     */
+    private int seal(JobBatch batch) {
+        int size = batch.seal();
+        for (ConcurrentHashMap<Class<? extends Job>, JobBatch> open : openBatches) {
+            open.remove(batch.getJobClass(), batch);
+        }
+        return size;
+    }
+
+    private void completed(int count) {
+        pending.addAndGet(-count);
+        if (capacityWaiting) {
+            synchronized (capacityLock) {
+                capacityLock.notifyAll();
+            }
+        }
+    }
+
+    private int laneOf(int priority) {
+        for (int i = 0; i < thresholds.length; i++) {
+            if (priority >= thresholds[i]) {
+                return i;
+            }
+        }
+        return thresholds.length;
+    }
+
+    static int[] parseThresholds(String spec) throws SchedulerConfigException {
+        if (spec == null || spec.trim().isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = spec.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                result[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new SchedulerConfigException("Invalid priorityThresholds '" + spec + "'");
+            }
+            if (i > 0 && result[i] >= result[i - 1]) {
+                throw new SchedulerConfigException("priorityThresholds must be descending: '" + spec + "'");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * JobRunShell 内部的 JobExecutionContext(initialize 之后才有)，其他 Runnable 或读取失败时返回 null。
+     */
+    static JobExecutionContext contextOf(Runnable runnable) {
+        if (JEC_FIELD != null && runnable instanceof JobRunShell) {
+            try {
+                return (JobExecutionContext) JEC_FIELD.get(runnable);
+            } catch (IllegalAccessException ignore) {
+            }
+        }
+        return null;
+    }
+
+    private static Field jecField() {
+        try {
+            Field field = JobRunShell.class.getDeclaredField("jec");
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private final class Worker extends Thread {
+
+        final Deque<Runnable>[] lanes;
+
+        private final int index;
+
+        volatile boolean parked;
+
+        Worker(int index, int laneCount) {
+            super(getThreadNamePrefix() + "-" + index);
+            this.index = index;
+            // 不能直接创建泛型数组，通配符数组中只会放入下面创建的 Deque<Runnable>
+            @SuppressWarnings("unchecked")
+            Deque<Runnable>[] created = (Deque<Runnable>[]) new Deque<?>[laneCount];
+            lanes = created;
+            for (int i = 0; i < laneCount; i++) {
+                lanes[i] = new ConcurrentLinkedDeque<Runnable>();
+            }
+            setPriority(threadPriority);
+            setDaemon(makeThreadsDaemons);
+        }
+
+        @Override
+        public void run() {
+            while (!halted) {
+                Runnable task = next();
+                if (task == null) {
+                    if (isShutdown && pending.get() == 0) {
+                        return;
+                    }
+                    parked = true;
+                    task = next();
+                    if (task == null) {
+                        LockSupport.parkNanos(this, 100 * 1000 * 1000L);
+                        parked = false;
+                        continue;
+                    }
+                    parked = false;
+                }
+                int count = task instanceof JobBatch ? seal((JobBatch) task) : 1;
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Error while executing the Runnable: ", t);
+                } finally {
+                    completed(count);
+                }
+            }
+        }
+
+        /**
+         * 从高到低每条通道：先取自己的，再从其他线程的通道头部窃取最早提交的任务。
+         */
+        private Runnable next() {
+            for (int lane = 0; lane < lanes.length; lane++) {
+                Runnable task = lanes[lane].pollFirst();
+                if (task != null) {
+                    return task;
+                }
+                for (int i = 1; i < workers.length; i++) {
+                    task = workers[(index + i) % workers.length].lanes[lane].pollFirst();
+                    if (task != null) {
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
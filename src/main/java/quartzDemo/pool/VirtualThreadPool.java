@@ -0,0 +1,227 @@
+package quartzDemo.pool;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每次触发都在一个新的虚拟线程上执行的 ThreadPool。
+ *
+ * ConfigDemo 中提到 SimpleThreadPool 的线程数是固定的，没有空闲线程时 Quartz 会阻塞，时间长了就会 misfire。
+ * 对于大部分时间都在等待 I/O 的作业，线程本身并不是稀缺资源，真正要限制的只是同时执行的作业数。这里用
+ * maxConcurrency 作为并发上限，blockForAvailableThreads() 返回剩余的真实容量，而不是一个很小的固定线程数，
+ * 调度线程因此可以一次取出更多触发器(同时需要调大 org.quartz.scheduler.batchTriggerAcquisitionMaxCount)。
+ *
+ * 虚拟线程需要 JDK 21，这里通过反射调用 Thread.ofVirtual()，源码仍可以按 1.7 编译；运行在不支持虚拟线程的
+ * JDK 上时退化为每次触发一个新的平台线程，并打印警告。
+ *
+ * 关闭之后 runInThread 仍然执行交来的任务(不受 maxConcurrency 限制)，shutdown(true) 也会等待它们执行完。
+ *
+ * 配置：
+ * org.quartz.threadPool.class = quartzDemo.pool.VirtualThreadPool
+ * org.quartz.threadPool.maxConcurrency = 10000
+ * org.quartz.scheduler.batchTriggerAcquisitionMaxCount = 1000
+ */
+public class VirtualThreadPool implements ThreadPool {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 10000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Object capacityLock = new Object();
+
+    private final AtomicLong threadSeq = new AtomicLong();
+
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    private int available;
+
+    private boolean isShutdown = false;
+
+    private boolean makeThreadsDaemons = true;
+
+    private String threadNamePrefix;
+
+    private String schedulerInstanceName;
+
+    private ThreadFactory threadFactory;
+
+    private boolean virtual;
+
+    public VirtualThreadPool() {
+    }
+
+    public VirtualThreadPool(int maxConcurrency) {
+        setMaxConcurrency(maxConcurrency);
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 同时执行的作业数上限。
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public String getThreadNamePrefix() {
+        if (threadNamePrefix == null) {
+            threadNamePrefix = schedulerInstanceName + "-VirtualWorker";
+        }
+        return threadNamePrefix;
+    }
+
+    public void setThreadNamePrefix(String prfx) {
+        this.threadNamePrefix = prfx;
+    }
+
+    /**
+     * 只对退化后的平台线程有效，虚拟线程总是守护线程。
+     */
+    public void setMakeThreadsDaemons(boolean makeThreadsDaemons) {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        this.schedulerInstanceName = schedName;
+    }
+
+    @Override
+    public int getPoolSize() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if (threadFactory != null) {
+            return;
+        }
+        if (maxConcurrency <= 0) {
+            throw new SchedulerConfigException("Max concurrency must be > 0");
+        }
+        available = maxConcurrency;
+        threadFactory = virtualThreadFactory(getThreadNamePrefix());
+        virtual = threadFactory != null;
+        if (!virtual) {
+            log.warn("Virtual threads are not available on this JVM (" + System.getProperty("java.version")
+                    + "), VirtualThreadPool falls back to one platform thread per firing.");
+            threadFactory = new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, getThreadNamePrefix() + "-" + threadSeq.incrementAndGet());
+                    thread.setDaemon(makeThreadsDaemons);
+                    return thread;
+                }
+            };
+        }
+        log.info("VirtualThreadPool initialized, max concurrency " + maxConcurrency + ", virtual = " + virtual);
+    }
+
+    @Override
+    public boolean runInThread(final Runnable runnable) {
+        if (runnable == null) {
+            return false;
+        }
+
+        synchronized (capacityLock) {
+            while (available < 1 && !isShutdown) {
+                try {
+                    capacityLock.wait(500);
+                } catch (InterruptedException ignore) {
+                }
+            }
+            // 关闭之后交来的任务(已经在 JobStore 中触发过)与 SimpleThreadPool 一样照常执行，不受并发上限限制：
+            // 返回 false 时 QuartzSchedulerThread 会把这个作业的所有触发器置为 ERROR
+            available--;
+        }
+
+        try {
+            threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runnable.run();
+                    } catch (Throwable t) {
+                        log.error("Error while executing the Runnable: ", t);
+                    } finally {
+                        release();
+                    }
+                }
+            }).start();
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        return true;
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        synchronized (capacityLock) {
+            while (available < 1 && !isShutdown) {
+                try {
+                    capacityLock.wait(500);
+                } catch (InterruptedException ignore) {
+                }
+            }
+            return Math.max(available, 0);
+        }
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) {
+        synchronized (capacityLock) {
+            isShutdown = true;
+            capacityLock.notifyAll();
+
+            if (waitForJobsToComplete) {
+                while (available < maxConcurrency) {
+                    log.debug("Waiting for " + (maxConcurrency - available) + " jobs to complete.");
+                    try {
+                        capacityLock.wait(100);
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            }
+        }
+        log.debug("VirtualThreadPool shutdown complete");
+    }
+
+    private void release() {
+        synchronized (capacityLock) {
+            available++;
+            capacityLock.notifyAll();
+        }
+    }
+
+    /**
+     * Thread.ofVirtual().name(prefix, 0).factory()，JDK 21 以下(或 19/20 未开启 preview)返回 null。
+     */
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
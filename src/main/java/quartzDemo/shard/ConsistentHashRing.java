@@ -0,0 +1,101 @@
+package quartzDemo.shard;
+
+import java.util.Arrays;
+
+/**
+ * 一致性哈希环：每个分片在环上占 virtualNodes 个位置，键落在顺时针方向的第一个位置所属的分片上。
+ * 分片数从 N 变为 N + 1 时只有约 1 / (N + 1) 的键换分片(持久化的 JobStore 按分片分库时，迁移的数据最少)。
+ *
+ * 键是 Quartz 的 group + name，哈希用 64 位 FNV-1a 加 MurmurHash3 的 fmix64；不可变，线程安全。
+ */
+public final class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final long[] points;
+
+    private final int[] shards;
+
+    private final int shardCount;
+
+    public ConsistentHashRing(int shardCount) {
+        this(shardCount, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be > 0");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be > 0");
+        }
+        this.shardCount = shardCount;
+        int n = shardCount * virtualNodes;
+        long[] unsorted = new long[n];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                unsorted[shard * virtualNodes + v] = hash("shard-" + shard, "#" + v);
+            }
+        }
+        // 按位置排序，同时保持位置与分片的对应关系
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        final long[] keys = unsorted;
+        Arrays.sort(order, new java.util.Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(keys[a], keys[b]);
+            }
+        });
+        points = new long[n];
+        shards = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = unsorted[order[i]];
+            shards[i] = order[i] / virtualNodes;
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int shardOf(String group, String name) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        int i = Arrays.binarySearch(points, hash(group, name));
+        if (i < 0) {
+            i = -i - 1;
+            if (i == points.length) {
+                i = 0;
+            }
+        }
+        return shards[i];
+    }
+
+    static long hash(String group, String name) {
+        long h = 0xcbf29ce484222325L;
+        h = fnv(h, group);
+        h = (h ^ '.') * 0x100000001b3L;
+        h = fnv(h, name);
+        // fmix64，让相近的键在环上分散开
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long fnv(long h, String s) {
+        if (s == null) {
+            return h;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,220 @@
+package quartzDemo.shard;
+
+import org.quartz.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ShardedScheduler 的 ListenerManager：注册、删除和修改匹配器都作用于每个分片(同一个监听器实例注册到所有分片上，
+ * 所以监听器要能被多个调度线程同时调用)，查询读取第一个分片(各个分片上的注册是一样的)。
+ */
+class ShardedListenerManager implements ListenerManager {
+
+    private final Scheduler[] shards;
+
+    ShardedListenerManager(Scheduler[] shards) {
+        this.shards = shards;
+    }
+
+    private ListenerManager manager(int index) {
+        try {
+            return shards[index].getListenerManager();
+        } catch (SchedulerException e) {
+            // StdScheduler 直接返回 QuartzScheduler 的 ListenerManager，不会抛出
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void addJobListener(JobListener jobListener) {
+        for (int i = 0; i < shards.length; i++) {
+            manager(i).addJobListener(jobListener);
+        }
+    }
+
+    @Override
+    public void addJobListener(JobListener jobListener, Matcher<JobKey> matcher) {
+        for (int i = 0; i < shards.length; i++) {
+            manager(i).addJobListener(jobListener, matcher);
+        }
+    }
+
+    @Override
+    @SafeVarargs
+    public final void addJobListener(JobListener jobListener, Matcher<JobKey>... matchers) {
+        // 逐个复制成 List 交给各分片，不把泛型数组传给其他方法
+        List<Matcher<JobKey>> list = new ArrayList<Matcher<JobKey>>(matchers.length);
+        for (Matcher<JobKey> matcher : matchers) {
+            list.add(matcher);
+        }
+        addJobListener(jobListener, list);
+    }
+
+    @Override
+    public void addJobListener(JobListener jobListener, List<Matcher<JobKey>> matchers) {
+        for (int i = 0; i < shards.length; i++) {
+            manager(i).addJobListener(jobListener, matchers);
+        }
+    }
+
+    @Override
+    public boolean addJobListenerMatcher(String listenerName, Matcher<JobKey> matcher) {
+        boolean result = false;
+        for (int i = 0; i < shards.length; i++) {
+            result |= manager(i).addJobListenerMatcher(listenerName, matcher);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean removeJobListenerMatcher(String listenerName, Matcher<JobKey> matcher) {
+        boolean result = false;
+        for (int i = 0; i < shards.length; i++) {
+            result |= manager(i).removeJobListenerMatcher(listenerName, matcher);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean setJobListenerMatchers(String listenerName, List<Matcher<JobKey>> matchers) {
+        boolean result = false;
+        for (int i = 0; i < shards.length; i++) {
+            result |= manager(i).setJobListenerMatchers(listenerName, matchers);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Matcher<JobKey>> getJobListenerMatchers(String listenerName) {
+        return manager(0).getJobListenerMatchers(listenerName);
+    }
+
+    @Override
+    public boolean removeJobListener(String name) {
+        boolean result = false;
+        for (int i = 0; i < shards.length; i++) {
+            result |= manager(i).removeJobListener(name);
+        }
+        return result;
+    }
+
+    @Override
+    public List<JobListener> getJobListeners() {
+        return manager(0).getJobListeners();
+    }
+
+    @Override
+    public JobListener getJobListener(String name) {
+        return manager(0).getJobListener(name);
+    }
+
+    @Override
+    public void addTriggerListener(TriggerListener triggerListener) {
+        for (int i = 0; i < shards.length; i++) {
+            manager(i).addTriggerListener(triggerListener);
+        }
+    }
+
+    @Override
+    public void addTriggerListener(TriggerListener triggerListener, Matcher<TriggerKey> matcher) {
+        for (int i = 0; i < shards.length; i++) {
+            manager(i).addTriggerListener(triggerListener, matcher);
+        }
+    }
+
+    @Override
+    @SafeVarargs
+    public final void addTriggerListener(TriggerListener triggerListener, Matcher<TriggerKey>... matchers) {
+        List<Matcher<TriggerKey>> list = new ArrayList<Matcher<TriggerKey>>(matchers.length);
+        for (Matcher<TriggerKey> matcher : matchers) {
+            list.add(matcher);
+        }
+        addTriggerListener(triggerListener, list);
+    }
+
+    @Override
+    public void addTriggerListener(TriggerListener triggerListener, List<Matcher<TriggerKey>> matchers) {
+        for (int i = 0; i < shards.length; i++) {
+            manager(i).addTriggerListener(triggerListener, matchers);
+        }
+    }
+
+    @Override
+    public boolean addTriggerListenerMatcher(String listenerName, Matcher<TriggerKey> matcher) {
+        boolean result = false;
+        for (int i = 0; i < shards.length; i++) {
+            result |= manager(i).addTriggerListenerMatcher(listenerName, matcher);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean removeTriggerListenerMatcher(String listenerName, Matcher<TriggerKey> matcher) {
+        boolean result = false;
+        for (int i = 0; i < shards.length; i++) {
+            result |= manager(i).removeTriggerListenerMatcher(listenerName, matcher);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean setTriggerListenerMatchers(String listenerName, List<Matcher<TriggerKey>> matchers) {
+        boolean result = false;
+        for (int i = 0; i < shards.length; i++) {
+            result |= manager(i).setTriggerListenerMatchers(listenerName, matchers);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Matcher<TriggerKey>> getTriggerListenerMatchers(String listenerName) {
+        return manager(0).getTriggerListenerMatchers(listenerName);
+    }
+
+    @Override
+    public boolean removeTriggerListener(String name) {
+        boolean result = false;
+        for (int i = 0; i < shards.length; i++) {
+            result |= manager(i).removeTriggerListener(name);
+        }
+        return result;
+    }
+
+    @Override
+    public List<TriggerListener> getTriggerListeners() {
+        return manager(0).getTriggerListeners();
+    }
+
+    @Override
+    public TriggerListener getTriggerListener(String name) {
+        return manager(0).getTriggerListener(name);
+    }
+
+    /**
+     * 监听器会收到每个分片的调度器事件。
+     */
+    @Override
+    public void addSchedulerListener(SchedulerListener schedulerListener) {
+        for (int i = 0; i < shards.length; i++) {
+            manager(i).addSchedulerListener(schedulerListener);
+        }
+    }
+
+    @Override
+    public boolean removeSchedulerListener(SchedulerListener schedulerListener) {
+        boolean result = false;
+        for (int i = 0; i < shards.length; i++) {
+            result |= manager(i).removeSchedulerListener(schedulerListener);
+        }
+        return result;
+    }
+
+    /**
+     * 第一个分片上的调度器监听器，包括 ShardedScheduler 内部用来维护触发器索引的监听器。
+     */
+    @Override
+    public List<SchedulerListener> getSchedulerListeners() {
+        return manager(0).getSchedulerListeners();
+    }
+}
@@ -0,0 +1,728 @@
+package quartzDemo.shard;
+
+import org.quartz.*;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.quartz.spi.JobFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 由 N 个独立的 Quartz 调度器(分片)组成的 Scheduler 门面。每个分片有自己的调度线程、线程池和 JobStore(各自的锁)，
+ * 作业按 JobKey 的一致性哈希固定在一个分片上，作业的触发器都放在作业所在的分片上(Quartz 的触发器只能引用同一个
+ * JobStore 中的作业)，所以同一个作业的所有操作仍然只涉及一个调度器，语义与单个调度器相同。
+ *
+ * 路由：
+ * 1，JobKey：ConsistentHashRing，不需要查表。
+ * 2，TriggerKey：不能从触发器的键算出它的作业，门面维护 TriggerKey -> 分片 的索引，调度时写入，触发器结束或被删除时
+ *    由每个分片上的内部 SchedulerListener 清除。索引中没有的键(例如调度器重启后从持久化的 JobStore 中恢复的触发器、
+ *    triggerJob 生成的触发器)依次在各个分片上查找，找到后写入索引。
+ *    同一个 TriggerKey 在门面内唯一：已经在其他分片上存在的触发器键(包括索引中没有的)再次调度时抛出
+ *    ObjectAlreadyExistsException。调度前先写入索引，分片上的调度失败时恢复原来的记录。
+ *
+ * 广播到所有分片的操作：start / standby / shutdown、pauseAll / resumeAll、按组匹配的暂停和恢复(每个分片都记录暂停的组，
+ * 之后在任意分片上加入这个组的作业和触发器同样处于暂停状态)、日历的增删、setJobFactory、clear，以及 ListenerManager
+ * 的监听器注册。列表类的查询(组名、键、正在执行的作业、暂停的组)返回所有分片结果的并集。
+ *
+ * 注意：
+ * 1，作业执行时 JobExecutionContext.getScheduler() 是作业所在的分片，不是门面。
+ * 2，getContext() 返回第一个分片的 SchedulerContext；需要所有作业都能读到的数据用 org.quartz.context.key.* 配置，
+ *    每个分片都会读取。
+ * 3，注册的 SchedulerListener 会收到每个分片的事件，例如 schedulerStarted 调用 N 次。
+ *
+ * 使用：
+ * Scheduler scheduler = new ShardedSchedulerFactory(props).getScheduler();
+ * 与 StdSchedulerFactory.getDefaultScheduler() 返回的调度器用法相同。
+ */
+public class ShardedScheduler implements Scheduler {
+
+    private final String name;
+
+    private final Scheduler[] shards;
+
+    private final ConsistentHashRing ring;
+
+    private final ShardedListenerManager listenerManager;
+
+    private final ConcurrentHashMap<TriggerKey, Integer> triggerShards = new ConcurrentHashMap<TriggerKey, Integer>();
+
+    ShardedScheduler(String name, Scheduler[] shards) throws SchedulerException {
+        this.name = name;
+        this.shards = shards.clone();
+        this.ring = new ConsistentHashRing(shards.length);
+        this.listenerManager = new ShardedListenerManager(this.shards);
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].getListenerManager().addSchedulerListener(new TriggerIndexCleaner(i));
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public Scheduler getShard(int index) {
+        return shards[index];
+    }
+
+    /**
+     * 作业所在(或将要放入)的分片。
+     */
+    public int shardOf(JobKey jobKey) {
+        return ring.shardOf(jobKey.getGroup(), jobKey.getName());
+    }
+
+    /**
+     * 触发器所在的分片，不存在时返回 -1。
+     */
+    public int shardOf(TriggerKey triggerKey) throws SchedulerException {
+        Integer index = triggerShards.get(triggerKey);
+        if (index != null) {
+            return index;
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i].checkExists(triggerKey)) {
+                triggerShards.put(triggerKey, i);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Scheduler shard(JobKey jobKey) {
+        return shards[shardOf(jobKey)];
+    }
+
+    /**
+     * 触发器所在的分片，不存在时返回 null。
+     */
+    private Scheduler shard(TriggerKey triggerKey) throws SchedulerException {
+        int index = shardOf(triggerKey);
+        return index < 0 ? null : shards[index];
+    }
+
+    private int shardOfTrigger(Trigger trigger) throws SchedulerException {
+        if (trigger.getJobKey() == null) {
+            throw new SchedulerException("Trigger's related Job's name cannot be null");
+        }
+        return shardOf(trigger.getJobKey());
+    }
+
+    /**
+     * 触发器键当前实际所在的分片，不存在时返回 -1。先用 checkExists 确认索引中的记录，记录不存在或已经过时，
+     * 再在 target 以外的分片上查找(target 上的重复由分片自己的 scheduleJob 检查)。
+     */
+    private int ownerOf(TriggerKey triggerKey, int target) throws SchedulerException {
+        Integer indexed = triggerShards.get(triggerKey);
+        if (indexed != null && shards[indexed].checkExists(triggerKey)) {
+            return indexed;
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (i != target && (indexed == null || i != indexed) && shards[i].checkExists(triggerKey)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 检查触发器键在其他分片上不存在(replace 时删除其他分片上的触发器)，然后把它登记到目标分片，
+     * 返回原来的记录。分片上的调度失败时由 release 恢复。
+     */
+    private Integer claim(Trigger trigger, int target, boolean replace) throws SchedulerException {
+        int owner = ownerOf(trigger.getKey(), target);
+        if (owner >= 0 && owner != target) {
+            if (!replace) {
+                throw new ObjectAlreadyExistsException(trigger);
+            }
+            shards[owner].unscheduleJob(trigger.getKey());
+        }
+        return triggerShards.put(trigger.getKey(), target);
+    }
+
+    /**
+     * 撤销 claim 写入的记录；记录已被改为其他分片(并发的调度)时不动。
+     */
+    private void release(TriggerKey triggerKey, int target, Integer previous) {
+        if (previous == null) {
+            triggerShards.remove(triggerKey, target);
+        } else {
+            triggerShards.replace(triggerKey, target, previous);
+        }
+    }
+
+    /**
+     * 依次撤销 claims(TriggerKey -> 原来的记录)。
+     */
+    private void release(Map<TriggerKey, Integer> claims, int target) {
+        for (Map.Entry<TriggerKey, Integer> claim : claims.entrySet()) {
+            release(claim.getKey(), target, claim.getValue());
+        }
+    }
+
+    /**
+     * 把 triggers 登记到目标分片，返回 TriggerKey -> 原来的记录；其中一个失败时撤销已经写入的记录。
+     */
+    private Map<TriggerKey, Integer> claimAll(Set<? extends Trigger> triggers, int target, boolean replace)
+            throws SchedulerException {
+        Map<TriggerKey, Integer> claims = new LinkedHashMap<TriggerKey, Integer>();
+        try {
+            for (Trigger trigger : triggers) {
+                if (!claims.containsKey(trigger.getKey())) {
+                    claims.put(trigger.getKey(), claim(trigger, target, replace));
+                }
+            }
+        } catch (SchedulerException e) {
+            release(claims, target);
+            throw e;
+        }
+        return claims;
+    }
+
+    @Override
+    public String getSchedulerName() throws SchedulerException {
+        return name;
+    }
+
+    @Override
+    public String getSchedulerInstanceId() throws SchedulerException {
+        return shards[0].getSchedulerInstanceId();
+    }
+
+    @Override
+    public SchedulerContext getContext() throws SchedulerException {
+        return shards[0].getContext();
+    }
+
+    @Override
+    public void start() throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.start();
+        }
+    }
+
+    @Override
+    public void startDelayed(int seconds) throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.startDelayed(seconds);
+        }
+    }
+
+    @Override
+    public boolean isStarted() throws SchedulerException {
+        return shards[0].isStarted();
+    }
+
+    @Override
+    public void standby() throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.standby();
+        }
+    }
+
+    @Override
+    public boolean isInStandbyMode() throws SchedulerException {
+        return shards[0].isInStandbyMode();
+    }
+
+    @Override
+    public void shutdown() throws SchedulerException {
+        shutdown(false);
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) throws SchedulerException {
+        if (!waitForJobsToComplete) {
+            for (Scheduler shard : shards) {
+                shard.shutdown(false);
+            }
+            return;
+        }
+        // 先让所有分片停止触发，再逐个等待正在执行的作业，总等待时间是最慢的分片而不是所有分片之和
+        for (Scheduler shard : shards) {
+            shard.standby();
+        }
+        for (Scheduler shard : shards) {
+            shard.shutdown(true);
+        }
+    }
+
+    @Override
+    public boolean isShutdown() throws SchedulerException {
+        for (Scheduler shard : shards) {
+            if (!shard.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 汇总各个分片：线程池大小和已执行的作业数相加，runningSince 取最早的分片。
+     */
+    @Override
+    public SchedulerMetaData getMetaData() throws SchedulerException {
+        SchedulerMetaData first = shards[0].getMetaData();
+        Date runningSince = first.getRunningSince();
+        int executed = first.getNumberOfJobsExecuted();
+        int poolSize = first.getThreadPoolSize();
+        for (int i = 1; i < shards.length; i++) {
+            SchedulerMetaData meta = shards[i].getMetaData();
+            if (meta.getRunningSince() != null && (runningSince == null || meta.getRunningSince().before(runningSince))) {
+                runningSince = meta.getRunningSince();
+            }
+            executed += meta.getNumberOfJobsExecuted();
+            poolSize += meta.getThreadPoolSize();
+        }
+        return new SchedulerMetaData(name, first.getSchedulerInstanceId(), getClass(), false, isStarted(),
+                isInStandbyMode(), isShutdown(), runningSince, executed, first.getJobStoreClass(),
+                first.isJobStoreSupportsPersistence(), first.isJobStoreClustered(), first.getThreadPoolClass(),
+                poolSize, first.getVersion());
+    }
+
+    @Override
+    public List<JobExecutionContext> getCurrentlyExecutingJobs() throws SchedulerException {
+        List<JobExecutionContext> result = new ArrayList<JobExecutionContext>();
+        for (Scheduler shard : shards) {
+            result.addAll(shard.getCurrentlyExecutingJobs());
+        }
+        return result;
+    }
+
+    @Override
+    public void setJobFactory(JobFactory factory) throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.setJobFactory(factory);
+        }
+    }
+
+    @Override
+    public ListenerManager getListenerManager() throws SchedulerException {
+        return listenerManager;
+    }
+
+    @Override
+    public Date scheduleJob(JobDetail jobDetail, Trigger trigger) throws SchedulerException {
+        int index = shardOf(jobDetail.getKey());
+        Integer previous = claim(trigger, index, false);
+        try {
+            return shards[index].scheduleJob(jobDetail, trigger);
+        } catch (SchedulerException e) {
+            release(trigger.getKey(), index, previous);
+            throw e;
+        }
+    }
+
+    @Override
+    public Date scheduleJob(Trigger trigger) throws SchedulerException {
+        int index = shardOfTrigger(trigger);
+        Integer previous = claim(trigger, index, false);
+        try {
+            return shards[index].scheduleJob(trigger);
+        } catch (SchedulerException e) {
+            release(trigger.getKey(), index, previous);
+            throw e;
+        }
+    }
+
+    /**
+     * 按分片拆开后分别调用各个分片的 scheduleJobs；一个分片失败时，之前的分片已经写入的作业不会回滚，
+     * 这个分片和之后的分片的触发器从索引中撤销。
+     */
+    @Override
+    public void scheduleJobs(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, boolean replace)
+            throws SchedulerException {
+        List<Map<JobDetail, Set<? extends Trigger>>> parts = new ArrayList<Map<JobDetail, Set<? extends Trigger>>>();
+        List<Map<TriggerKey, Integer>> claims = new ArrayList<Map<TriggerKey, Integer>>();
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new LinkedHashMap<JobDetail, Set<? extends Trigger>>());
+            claims.add(new LinkedHashMap<TriggerKey, Integer>());
+        }
+        int next = 0;
+        try {
+            for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : triggersAndJobs.entrySet()) {
+                int index = shardOf(entry.getKey().getKey());
+                Map<TriggerKey, Integer> shardClaims = claims.get(index);
+                for (Map.Entry<TriggerKey, Integer> claim : claimAll(entry.getValue(), index, replace).entrySet()) {
+                    // 同一批中重复的键保留第一次之前的记录
+                    if (!shardClaims.containsKey(claim.getKey())) {
+                        shardClaims.put(claim.getKey(), claim.getValue());
+                    }
+                }
+                parts.get(index).put(entry.getKey(), entry.getValue());
+            }
+            for (; next < shards.length; next++) {
+                if (!parts.get(next).isEmpty()) {
+                    shards[next].scheduleJobs(parts.get(next), replace);
+                }
+            }
+        } catch (SchedulerException e) {
+            for (int i = next; i < shards.length; i++) {
+                release(claims.get(i), i);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void scheduleJob(JobDetail jobDetail, Set<? extends Trigger> triggersForJob, boolean replace)
+            throws SchedulerException {
+        int index = shardOf(jobDetail.getKey());
+        Map<TriggerKey, Integer> claims = claimAll(triggersForJob, index, replace);
+        try {
+            shards[index].scheduleJob(jobDetail, triggersForJob, replace);
+        } catch (SchedulerException e) {
+            release(claims, index);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean unscheduleJob(TriggerKey triggerKey) throws SchedulerException {
+        Scheduler shard = shard(triggerKey);
+        if (shard == null) {
+            return false;
+        }
+        boolean removed = shard.unscheduleJob(triggerKey);
+        triggerShards.remove(triggerKey);
+        return removed;
+    }
+
+    @Override
+    public boolean unscheduleJobs(List<TriggerKey> triggerKeys) throws SchedulerException {
+        List<List<TriggerKey>> parts = new ArrayList<List<TriggerKey>>();
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<TriggerKey>());
+        }
+        boolean result = true;
+        for (TriggerKey key : triggerKeys) {
+            int index = shardOf(key);
+            if (index < 0) {
+                result = false;
+            } else {
+                parts.get(index).add(key);
+            }
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (!parts.get(i).isEmpty()) {
+                result &= shards[i].unscheduleJobs(parts.get(i));
+                for (TriggerKey key : parts.get(i)) {
+                    triggerShards.remove(key);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Date rescheduleJob(TriggerKey triggerKey, Trigger newTrigger) throws SchedulerException {
+        int index = shardOf(triggerKey);
+        if (index < 0) {
+            return null;
+        }
+        if (triggerKey.equals(newTrigger.getKey())) {
+            return shards[index].rescheduleJob(triggerKey, newTrigger);
+        }
+        Integer previous = claim(newTrigger, index, false);
+        Date first;
+        try {
+            first = shards[index].rescheduleJob(triggerKey, newTrigger);
+        } catch (SchedulerException e) {
+            release(newTrigger.getKey(), index, previous);
+            throw e;
+        }
+        if (first == null) {
+            // 旧触发器已经不存在，新触发器没有调度
+            release(newTrigger.getKey(), index, previous);
+        } else {
+            triggerShards.remove(triggerKey);
+        }
+        return first;
+    }
+
+    @Override
+    public void addJob(JobDetail jobDetail, boolean replace) throws SchedulerException {
+        shard(jobDetail.getKey()).addJob(jobDetail, replace);
+    }
+
+    @Override
+    public void addJob(JobDetail jobDetail, boolean replace, boolean storeNonDurableWhileAwaitingScheduling)
+            throws SchedulerException {
+        shard(jobDetail.getKey()).addJob(jobDetail, replace, storeNonDurableWhileAwaitingScheduling);
+    }
+
+    @Override
+    public boolean deleteJob(JobKey jobKey) throws SchedulerException {
+        Scheduler shard = shard(jobKey);
+        List<? extends Trigger> triggers = shard.getTriggersOfJob(jobKey);
+        boolean deleted = shard.deleteJob(jobKey);
+        for (Trigger trigger : triggers) {
+            triggerShards.remove(trigger.getKey());
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean deleteJobs(List<JobKey> jobKeys) throws SchedulerException {
+        boolean result = true;
+        for (JobKey jobKey : jobKeys) {
+            result &= deleteJob(jobKey);
+        }
+        return result;
+    }
+
+    @Override
+    public void triggerJob(JobKey jobKey) throws SchedulerException {
+        shard(jobKey).triggerJob(jobKey);
+    }
+
+    @Override
+    public void triggerJob(JobKey jobKey, JobDataMap data) throws SchedulerException {
+        shard(jobKey).triggerJob(jobKey, data);
+    }
+
+    @Override
+    public void pauseJob(JobKey jobKey) throws SchedulerException {
+        shard(jobKey).pauseJob(jobKey);
+    }
+
+    @Override
+    public void pauseJobs(GroupMatcher<JobKey> matcher) throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.pauseJobs(matcher);
+        }
+    }
+
+    @Override
+    public void pauseTrigger(TriggerKey triggerKey) throws SchedulerException {
+        Scheduler shard = shard(triggerKey);
+        if (shard != null) {
+            shard.pauseTrigger(triggerKey);
+        }
+    }
+
+    @Override
+    public void pauseTriggers(GroupMatcher<TriggerKey> matcher) throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.pauseTriggers(matcher);
+        }
+    }
+
+    @Override
+    public void resumeJob(JobKey jobKey) throws SchedulerException {
+        shard(jobKey).resumeJob(jobKey);
+    }
+
+    @Override
+    public void resumeJobs(GroupMatcher<JobKey> matcher) throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.resumeJobs(matcher);
+        }
+    }
+
+    @Override
+    public void resumeTrigger(TriggerKey triggerKey) throws SchedulerException {
+        Scheduler shard = shard(triggerKey);
+        if (shard != null) {
+            shard.resumeTrigger(triggerKey);
+        }
+    }
+
+    @Override
+    public void resumeTriggers(GroupMatcher<TriggerKey> matcher) throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.resumeTriggers(matcher);
+        }
+    }
+
+    @Override
+    public void pauseAll() throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.pauseAll();
+        }
+    }
+
+    @Override
+    public void resumeAll() throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.resumeAll();
+        }
+    }
+
+    @Override
+    public List<String> getJobGroupNames() throws SchedulerException {
+        Set<String> names = new LinkedHashSet<String>();
+        for (Scheduler shard : shards) {
+            names.addAll(shard.getJobGroupNames());
+        }
+        return new ArrayList<String>(names);
+    }
+
+    @Override
+    public Set<JobKey> getJobKeys(GroupMatcher<JobKey> matcher) throws SchedulerException {
+        Set<JobKey> keys = new HashSet<JobKey>();
+        for (Scheduler shard : shards) {
+            keys.addAll(shard.getJobKeys(matcher));
+        }
+        return keys;
+    }
+
+    @Override
+    public List<? extends Trigger> getTriggersOfJob(JobKey jobKey) throws SchedulerException {
+        return shard(jobKey).getTriggersOfJob(jobKey);
+    }
+
+    @Override
+    public List<String> getTriggerGroupNames() throws SchedulerException {
+        Set<String> names = new LinkedHashSet<String>();
+        for (Scheduler shard : shards) {
+            names.addAll(shard.getTriggerGroupNames());
+        }
+        return new ArrayList<String>(names);
+    }
+
+    @Override
+    public Set<TriggerKey> getTriggerKeys(GroupMatcher<TriggerKey> matcher) throws SchedulerException {
+        Set<TriggerKey> keys = new HashSet<TriggerKey>();
+        for (Scheduler shard : shards) {
+            keys.addAll(shard.getTriggerKeys(matcher));
+        }
+        return keys;
+    }
+
+    @Override
+    public Set<String> getPausedTriggerGroups() throws SchedulerException {
+        Set<String> groups = new HashSet<String>();
+        for (Scheduler shard : shards) {
+            groups.addAll(shard.getPausedTriggerGroups());
+        }
+        return groups;
+    }
+
+    @Override
+    public JobDetail getJobDetail(JobKey jobKey) throws SchedulerException {
+        return shard(jobKey).getJobDetail(jobKey);
+    }
+
+    @Override
+    public Trigger getTrigger(TriggerKey triggerKey) throws SchedulerException {
+        Scheduler shard = shard(triggerKey);
+        return shard == null ? null : shard.getTrigger(triggerKey);
+    }
+
+    @Override
+    public Trigger.TriggerState getTriggerState(TriggerKey triggerKey) throws SchedulerException {
+        Scheduler shard = shard(triggerKey);
+        return shard == null ? Trigger.TriggerState.NONE : shard.getTriggerState(triggerKey);
+    }
+
+    @Override
+    public void resetTriggerFromErrorState(TriggerKey triggerKey) throws SchedulerException {
+        Scheduler shard = shard(triggerKey);
+        if (shard != null) {
+            shard.resetTriggerFromErrorState(triggerKey);
+        }
+    }
+
+    /**
+     * 任何分片上的触发器都可能引用这个日历，所以每个分片都保存一份。
+     */
+    @Override
+    public void addCalendar(String calName, Calendar calendar, boolean replace, boolean updateTriggers)
+            throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.addCalendar(calName, calendar, replace, updateTriggers);
+        }
+    }
+
+    @Override
+    public boolean deleteCalendar(String calName) throws SchedulerException {
+        boolean deleted = false;
+        for (Scheduler shard : shards) {
+            deleted |= shard.deleteCalendar(calName);
+        }
+        return deleted;
+    }
+
+    @Override
+    public Calendar getCalendar(String calName) throws SchedulerException {
+        return shards[0].getCalendar(calName);
+    }
+
+    @Override
+    public List<String> getCalendarNames() throws SchedulerException {
+        return shards[0].getCalendarNames();
+    }
+
+    @Override
+    public boolean interrupt(JobKey jobKey) throws UnableToInterruptJobException {
+        return shard(jobKey).interrupt(jobKey);
+    }
+
+    @Override
+    public boolean interrupt(String fireInstanceId) throws UnableToInterruptJobException {
+        for (Scheduler shard : shards) {
+            if (shard.interrupt(fireInstanceId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean checkExists(JobKey jobKey) throws SchedulerException {
+        return shard(jobKey).checkExists(jobKey);
+    }
+
+    @Override
+    public boolean checkExists(TriggerKey triggerKey) throws SchedulerException {
+        Scheduler shard = shard(triggerKey);
+        return shard != null && shard.checkExists(triggerKey);
+    }
+
+    @Override
+    public void clear() throws SchedulerException {
+        for (Scheduler shard : shards) {
+            shard.clear();
+        }
+        triggerShards.clear();
+    }
+
+    /**
+     * 触发器在分片上结束或被删除时清除索引；只删除仍然指向这个分片的记录。
+     */
+    private final class TriggerIndexCleaner extends SchedulerListenerSupport {
+
+        private final Integer shard;
+
+        TriggerIndexCleaner(int shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void triggerFinalized(Trigger trigger) {
+            triggerShards.remove(trigger.getKey(), shard);
+        }
+
+        @Override
+        public void jobUnscheduled(TriggerKey triggerKey) {
+            triggerShards.remove(triggerKey, shard);
+        }
+
+        @Override
+        public void schedulingDataCleared() {
+            for (Map.Entry<TriggerKey, Integer> entry : triggerShards.entrySet()) {
+                if (shard.equals(entry.getValue())) {
+                    triggerShards.remove(entry.getKey(), shard);
+                }
+            }
+        }
+    }
+}
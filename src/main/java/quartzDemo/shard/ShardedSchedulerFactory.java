@@ -0,0 +1,102 @@
+package quartzDemo.shard;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.SchedulerFactory;
+import org.quartz.impl.StdSchedulerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Properties;
+
+/**
+ * 用同一份 StdSchedulerFactory 配置创建 shardCount 个调度器，组成一个 ShardedScheduler。
+ *
+ * 每个分片的 org.quartz.scheduler.instanceName 是 "<instanceName>-shard-<i>"，其他配置(线程池、JobStore、插件)原样使用，
+ * 所以线程池的大小是每个分片的，总线程数是 shardCount * threadCount。使用 JDBC JobStore 时各个分片按 SCHED_NAME
+ * 区分自己的数据，可以共用同一组表；分片数改变后作业换了分片，已经持久化的数据需要自己迁移。
+ *
+ * 配置(其余与 StdSchedulerFactory 相同)：
+ * org.quartz.scheduler.instanceName = MyScheduler
+ * org.quartz.scheduler.shardCount = 4        默认是 CPU 数
+ */
+public class ShardedSchedulerFactory implements SchedulerFactory {
+
+    public static final String PROP_SHARD_COUNT = "org.quartz.scheduler.shardCount";
+
+    private static final String DEFAULT_INSTANCE_NAME = "QuartzScheduler";
+
+    private final Properties props;
+
+    private ShardedScheduler scheduler;
+
+    public ShardedSchedulerFactory(Properties props) {
+        this.props = props;
+    }
+
+    public ShardedSchedulerFactory(Properties props, int shardCount) {
+        this.props = new Properties();
+        this.props.putAll(props);
+        this.props.setProperty(PROP_SHARD_COUNT, String.valueOf(shardCount));
+    }
+
+    @Override
+    public synchronized Scheduler getScheduler() throws SchedulerException {
+        if (scheduler != null && !scheduler.isShutdown()) {
+            return scheduler;
+        }
+        String name = props.getProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, DEFAULT_INSTANCE_NAME);
+        int shardCount = shardCount();
+        Scheduler[] shards = new Scheduler[shardCount];
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                Properties shardProps = new Properties();
+                shardProps.putAll(props);
+                shardProps.remove(PROP_SHARD_COUNT);
+                shardProps.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, name + "-shard-" + i);
+                shards[i] = new StdSchedulerFactory(shardProps).getScheduler();
+            }
+        } catch (SchedulerException e) {
+            for (Scheduler shard : shards) {
+                if (shard != null) {
+                    shard.shutdown(false);
+                }
+            }
+            throw e;
+        }
+        scheduler = new ShardedScheduler(name, shards);
+        return scheduler;
+    }
+
+    @Override
+    public synchronized Scheduler getScheduler(String schedName) throws SchedulerException {
+        if (scheduler != null && scheduler.getSchedulerName().equals(schedName) && !scheduler.isShutdown()) {
+            return scheduler;
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized Collection<Scheduler> getAllSchedulers() throws SchedulerException {
+        if (scheduler == null || scheduler.isShutdown()) {
+            return Collections.emptyList();
+        }
+        return Collections.<Scheduler>singletonList(scheduler);
+    }
+
+    private int shardCount() throws SchedulerConfigException {
+        String value = props.getProperty(PROP_SHARD_COUNT);
+        if (value == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            int count = Integer.parseInt(value.trim());
+            if (count > 0) {
+                return count;
+            }
+        } catch (NumberFormatException ignore) {
+        }
+        throw new SchedulerConfigException("Invalid " + PROP_SHARD_COUNT + " '" + value + "'");
+    }
+}
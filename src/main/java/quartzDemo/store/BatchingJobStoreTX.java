@@ -0,0 +1,814 @@
+package quartzDemo.store;
+
+import org.quartz.Calendar;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerKey;
+import org.quartz.impl.jdbcjobstore.DB2v7Delegate;
+import org.quartz.impl.jdbcjobstore.DB2v8Delegate;
+import org.quartz.impl.jdbcjobstore.DriverDelegate;
+import org.quartz.impl.jdbcjobstore.FiredTriggerRecord;
+import org.quartz.impl.jdbcjobstore.JobStoreSupport;
+import org.quartz.impl.jdbcjobstore.StdJDBCConstants;
+import org.quartz.impl.jdbcjobstore.Util;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量读写数据库的 JobStoreTX。
+ *
+ * JobStoreTX 对每个触发器都要单独执行几条语句，每条语句都是一次到数据库的往返：
+ * 1，取出(acquire)：每个触发器一条 UPDATE(WAITING -> ACQUIRED)、一条 INSERT(QRTZ_FIRED_TRIGGERS)；
+ * 2，触发(triggersFired)：每个触发器一条查询状态的 SELECT、一条 UPDATE QRTZ_FIRED_TRIGGERS；
+ * 3，完成(triggeredJobComplete)：每次执行完都是一个单独的事务，获取一次 TRIGGER_ACCESS 锁(集群时是 QRTZ_LOCKS 的行锁)，
+ *    通常只删除一行 QRTZ_FIRED_TRIGGERS。
+ * 这里把这些语句合并成多行语句(UPDATE ... WHERE ... OR ...、INSERT ... VALUES (...), (...)、... IN (...))，每条语句一次往返。
+ * JDBC 批量语句(addBatch)在很多驱动中仍然是每行一次往返(例如 H2)，所以没有使用：
+ * 1，取出时先按 JobStoreTX 的规则选出一批触发器，再用一条 UPDATE 把它们从 WAITING 改为 ACQUIRED、一条 INSERT 写入
+ *    QRTZ_FIRED_TRIGGERS(允许并发执行的作业在这时就写入作业名)；
+ * 2，触发时一条 SELECT 查出这一批中仍为 ACQUIRED 的触发器代替逐个查询，允许并发、不请求恢复的作业的 QRTZ_FIRED_TRIGGERS
+ *    合并成一条 UPDATE ... IN (...)。读取触发器、作业和更新下次触发时间(storeTrigger)仍然逐个执行，它们涉及按触发器
+ *    类型区分的表(QRTZ_SIMPLE_TRIGGERS、QRTZ_CRON_TRIGGERS 等)和序列化的 JobDataMap；
+ *    作业不允许并发执行时，触发会改变同一作业其他触发器的状态，这种触发器与 JobStoreTX 完全相同；
+ * 3，执行结果为 NOOP、允许并发、不请求恢复、不需要保存 JobDataMap 的执行完成后(最常见的情况)，只需要删除一行
+ *    QRTZ_FIRED_TRIGGERS，这些删除先放入队列，由后台线程每 batchWindowMillis 毫秒或攒够 maxBatchSize 个时在一个事务中
+ *    用 DELETE ... IN (...) 删除。其他情况与 JobStoreTX 相同。
+ * 所有批量语句都在与 JobStoreTX 相同的锁(TRIGGER_ACCESS)和事务中执行，集群时的行锁语义不变。
+ *
+ * 延迟删除的 QRTZ_FIRED_TRIGGERS 行最多晚 batchWindowMillis 毫秒删除。这些作业不请求恢复，节点在删除前宕机时，
+ * 集群恢复(或本节点重启时的 recoverJobs)只会删除这些行，不会再次执行作业。shutdown 时会先删除队列中剩余的行。
+ *
+ * 取出时每批的触发器个数由调度器决定，默认每次只取一个，需要同时配置 batchTriggerAcquisitionMaxCount 才能批量取出。
+ *
+ * 配置：
+ * org.quartz.jobStore.class = quartzDemo.store.BatchingJobStoreTX
+ * org.quartz.jobStore.batchWindowMillis = 50     (可选，完成时批量删除的时间窗口，默认 50，0 表示不延迟，与 JobStoreTX 相同)
+ * org.quartz.jobStore.maxBatchSize = 500         (可选，一次批量删除的最大行数)
+ * org.quartz.jobStore.multiRowInsert = true      (可选，Oracle 需要设为 false)
+ * org.quartz.scheduler.batchTriggerAcquisitionMaxCount = 50        (建议，不超过线程池大小)
+ * org.quartz.scheduler.batchTriggerAcquisitionFireAheadTimeWindow = 0  (可选，取出一批时允许提前的毫秒数)
+ * 其他属性(dataSource、driverDelegateClass、isClustered 等)与 JobStoreTX 相同。
+ *
+ * 直接继承 JobStoreSupport，自己实现 JobStoreTX 仅有的几个方法：JobStoreTX 用原始类型覆盖了泛型的 executeInLock，
+ * 继承它时 javac 在子类上报告 unchecked，只能在整个类上忽略。
+ */
+public class BatchingJobStoreTX extends JobStoreSupport {
+
+    public static final long DEFAULT_BATCH_WINDOW_MILLIS = 50L;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    /** 一条多行语句最多包含的行数，使参数个数不超过常见数据库的限制(SQL Server 2100 个，Oracle IN 列表 1000 项) */
+    private static final int ROWS_PER_STATEMENT = 100;
+
+    private long batchWindowMillis = DEFAULT_BATCH_WINDOW_MILLIS;
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private boolean multiRowInsert = true;
+
+    private final LinkedBlockingQueue<String> completedFireIds = new LinkedBlockingQueue<String>();
+
+    private volatile CompletionFlusher flusher;
+
+    public long getBatchWindowMillis() {
+        return batchWindowMillis;
+    }
+
+    /**
+     * 执行完成后延迟删除 QRTZ_FIRED_TRIGGERS 的最长毫秒数，0 表示每次完成立即删除(与 JobStoreTX 相同)。
+     */
+    public void setBatchWindowMillis(long batchWindowMillis) {
+        if (batchWindowMillis < 0) {
+            throw new IllegalArgumentException("batchWindowMillis cannot be negative");
+        }
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be > 0");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public boolean isMultiRowInsert() {
+        return multiRowInsert;
+    }
+
+    /**
+     * 为 false 时 QRTZ_FIRED_TRIGGERS 的 INSERT 使用 JDBC 批量语句，用于不支持 INSERT ... VALUES (...), (...) 的数据库(Oracle)。
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler signaler) throws SchedulerConfigException {
+        super.initialize(loadHelper, signaler);
+        getLog().info("BatchingJobStoreTX initialized.");
+    }
+
+    @Override
+    protected Connection getNonManagedTXConnection() throws JobPersistenceException {
+        return getConnection();
+    }
+
+    @Override
+    protected <T> T executeInLock(String lockName, TransactionCallback<T> txCallback) throws JobPersistenceException {
+        return executeInNonManagedTXLock(lockName, txCallback, null);
+    }
+
+    @Override
+    public void schedulerStarted() throws SchedulerException {
+        super.schedulerStarted();
+        if (batchWindowMillis > 0 && flusher == null) {
+            flusher = new CompletionFlusher();
+            flusher.start();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        CompletionFlusher f = flusher;
+        if (f != null) {
+            flusher = null;
+            f.halt();
+        }
+        super.shutdown();
+    }
+
+    // ---------------------------------------------------------------- 取出
+
+    @Override
+    protected List<OperableTrigger> acquireNextTrigger(Connection conn, long noLaterThan, int maxCount, long timeWindow)
+            throws JobPersistenceException {
+        if (timeWindow < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        List<OperableTrigger> acquiredTriggers = new ArrayList<OperableTrigger>();
+        Set<JobKey> acquiredJobKeysForNoConcurrentExec = new HashSet<JobKey>();
+        final int MAX_DO_LOOP_RETRY = 3;
+        int currentLoopCount = 0;
+        do {
+            currentLoopCount++;
+            try {
+                List<TriggerKey> keys = getDelegate().selectTriggerToAcquire(conn, noLaterThan + timeWindow,
+                        getMisfireTime(), maxCount);
+
+                if (keys == null || keys.size() == 0) {
+                    return acquiredTriggers;
+                }
+
+                // 与 JobStoreTX 相同的规则选出候选，batchEnd 按第一个候选计算(候选按触发时间排序，只会比逐个取出时更窄)
+                List<OperableTrigger> candidates = new ArrayList<OperableTrigger>(keys.size());
+                List<JobDetail> candidateJobs = new ArrayList<JobDetail>(keys.size());
+                long batchEnd = noLaterThan;
+                for (TriggerKey triggerKey : keys) {
+                    OperableTrigger nextTrigger = retrieveTrigger(conn, triggerKey);
+                    if (nextTrigger == null) {
+                        continue;
+                    }
+
+                    JobKey jobKey = nextTrigger.getJobKey();
+                    JobDetail job;
+                    try {
+                        job = retrieveJob(conn, jobKey);
+                    } catch (JobPersistenceException jpe) {
+                        try {
+                            getLog().error("Error retrieving job, setting trigger state to ERROR.", jpe);
+                            getDelegate().updateTriggerState(conn, triggerKey, STATE_ERROR);
+                        } catch (SQLException sqle) {
+                            getLog().error("Unable to set trigger state to ERROR.", sqle);
+                        }
+                        continue;
+                    }
+
+                    if (job.isConcurrentExectionDisallowed()) {
+                        if (!acquiredJobKeysForNoConcurrentExec.add(jobKey)) {
+                            continue;
+                        }
+                    }
+
+                    Date nextFireTime = nextTrigger.getNextFireTime();
+                    if (nextFireTime == null) {
+                        getLog().warn("Trigger {} returned null on nextFireTime and yet still exists in DB!",
+                                nextTrigger.getKey());
+                        continue;
+                    }
+
+                    if (nextFireTime.getTime() > batchEnd) {
+                        break;
+                    }
+                    if (candidates.isEmpty()) {
+                        batchEnd = Math.max(nextFireTime.getTime(), System.currentTimeMillis()) + timeWindow;
+                    }
+                    candidates.add(nextTrigger);
+                    candidateJobs.add(job);
+                }
+
+                if (candidates.size() == 1) {
+                    // 只有一个时可能没有加锁(maxCount = 1)，与 JobStoreTX 相同逐条执行
+                    OperableTrigger trigger = candidates.get(0);
+                    if (getDelegate().updateTriggerStateFromOtherState(conn, trigger.getKey(), STATE_ACQUIRED,
+                            STATE_WAITING) > 0) {
+                        trigger.setFireInstanceId(getFiredTriggerRecordId());
+                        getDelegate().insertFiredTrigger(conn, trigger, STATE_ACQUIRED, null);
+                        acquiredTriggers.add(trigger);
+                    }
+                } else if (!candidates.isEmpty()) {
+                    updateStatesToAcquired(conn, candidates);
+                    for (OperableTrigger trigger : candidates) {
+                        trigger.setFireInstanceId(getFiredTriggerRecordId());
+                    }
+                    insertFiredTriggers(conn, candidates, candidateJobs);
+                    acquiredTriggers.addAll(candidates);
+                }
+
+                if (acquiredTriggers.size() == 0 && currentLoopCount < MAX_DO_LOOP_RETRY) {
+                    continue;
+                }
+                break;
+            } catch (Exception e) {
+                throw new JobPersistenceException("Couldn't acquire next trigger: " + e.getMessage(), e);
+            }
+        } while (true);
+
+        return acquiredTriggers;
+    }
+
+    /**
+     * 用多行 UPDATE 把候选从 WAITING 改为 ACQUIRED。
+     * 多个候选时 acquireNextTriggers 一定持有 TRIGGER_ACCESS 锁，候选的状态不会被其他节点或线程改变，
+     * 更新的行数不符时抛出异常回滚整个事务，调度线程稍后重试。
+     */
+    private void updateStatesToAcquired(Connection conn, List<OperableTrigger> candidates)
+            throws SQLException, JobPersistenceException {
+        for (int from = 0; from < candidates.size(); from += ROWS_PER_STATEMENT) {
+            List<OperableTrigger> chunk = candidates.subList(from, Math.min(candidates.size(), from + ROWS_PER_STATEMENT));
+            PreparedStatement ps = conn.prepareStatement(rtp(acquireSql(chunk.size())));
+            try {
+                int index = 1;
+                ps.setString(index++, STATE_ACQUIRED);
+                ps.setString(index++, STATE_WAITING);
+                for (OperableTrigger trigger : chunk) {
+                    ps.setString(index++, trigger.getKey().getName());
+                    ps.setString(index++, trigger.getKey().getGroup());
+                }
+                int rows = ps.executeUpdate();
+                if (rows != chunk.size()) {
+                    throw new JobPersistenceException("Acquired " + rows + " of " + chunk.size()
+                            + " triggers, trigger states changed while holding " + LOCK_TRIGGER_ACCESS);
+                }
+            } finally {
+                closeStatement(ps);
+            }
+        }
+    }
+
+    /**
+     * 用多行 INSERT 写入 QRTZ_FIRED_TRIGGERS。
+     * 允许并发执行的作业在这里就写入作业名(JobStoreTX 在触发时才写入)，触发时只需要一条不区分作业的多行 UPDATE；
+     * 这些记录的 IS_NONCONCURRENT 为 false，不影响 checkBlockedState 的判断。不允许并发的作业与 JobStoreTX 相同。
+     */
+    private void insertFiredTriggers(Connection conn, List<OperableTrigger> triggers, List<JobDetail> jobs)
+            throws SQLException, JobPersistenceException {
+        DriverDelegate delegate = getDelegate();
+        BigDecimal firedTime = new BigDecimal(String.valueOf(System.currentTimeMillis()));
+        if (!multiRowInsert) {
+            PreparedStatement ps = conn.prepareStatement(rtp(insertFiredSql(1)));
+            try {
+                for (int i = 0; i < triggers.size(); i++) {
+                    setFiredTrigger(delegate, ps, 1, triggers.get(i), jobs.get(i), firedTime);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            } finally {
+                closeStatement(ps);
+            }
+            return;
+        }
+        for (int from = 0; from < triggers.size(); from += ROWS_PER_STATEMENT) {
+            int to = Math.min(triggers.size(), from + ROWS_PER_STATEMENT);
+            PreparedStatement ps = conn.prepareStatement(rtp(insertFiredSql(to - from)));
+            try {
+                int index = 1;
+                for (int i = from; i < to; i++) {
+                    index = setFiredTrigger(delegate, ps, index, triggers.get(i), jobs.get(i), firedTime);
+                }
+                ps.executeUpdate();
+            } finally {
+                closeStatement(ps);
+            }
+        }
+    }
+
+    /**
+     * 从 index 开始设置一行 INSERT_FIRED_TRIGGER 的参数，返回下一行的起始位置。
+     */
+    private int setFiredTrigger(DriverDelegate delegate, PreparedStatement ps, int index, OperableTrigger trigger,
+                                JobDetail job, BigDecimal firedTime) throws SQLException {
+        boolean withJob = !job.isConcurrentExectionDisallowed();
+        ps.setString(index++, trigger.getFireInstanceId());
+        ps.setString(index++, trigger.getKey().getName());
+        ps.setString(index++, trigger.getKey().getGroup());
+        ps.setString(index++, getInstanceId());
+        ps.setBigDecimal(index++, firedTime);
+        ps.setBigDecimal(index++, new BigDecimal(String.valueOf(trigger.getNextFireTime().getTime())));
+        ps.setString(index++, STATE_ACQUIRED);
+        ps.setString(index++, withJob ? trigger.getJobKey().getName() : null);
+        ps.setString(index++, withJob ? trigger.getJobKey().getGroup() : null);
+        setBoolean(delegate, ps, index++, false);
+        setBoolean(delegate, ps, index++, false);
+        ps.setInt(index++, trigger.getPriority());
+        return index;
+    }
+
+    // ---------------------------------------------------------------- 触发
+
+    @Override
+    public List<TriggerFiredResult> triggersFired(final List<OperableTrigger> triggers) throws JobPersistenceException {
+        if (triggers.size() < 2) {
+            return super.triggersFired(triggers);
+        }
+        return executeInNonManagedTXLock(LOCK_TRIGGER_ACCESS,
+                new TransactionCallback<List<TriggerFiredResult>>() {
+                    public List<TriggerFiredResult> execute(Connection conn) throws JobPersistenceException {
+                        FireBatch batch = new FireBatch(conn, triggers);
+                        List<TriggerFiredResult> results = new ArrayList<TriggerFiredResult>(triggers.size());
+                        for (OperableTrigger trigger : triggers) {
+                            TriggerFiredResult result;
+                            try {
+                                result = new TriggerFiredResult(triggerFired(batch, trigger));
+                            } catch (JobPersistenceException jpe) {
+                                result = new TriggerFiredResult(jpe);
+                            } catch (RuntimeException re) {
+                                result = new TriggerFiredResult(re);
+                            }
+                            results.add(result);
+                        }
+                        batch.flush();
+                        return results;
+                    }
+                },
+                new TransactionValidator<List<TriggerFiredResult>>() {
+                    @Override
+                    public Boolean validate(Connection conn, List<TriggerFiredResult> result)
+                            throws JobPersistenceException {
+                        try {
+                            List<FiredTriggerRecord> acquired = getDelegate().selectInstancesFiredTriggerRecords(conn,
+                                    getInstanceId());
+                            Set<String> executingTriggers = new HashSet<String>();
+                            for (FiredTriggerRecord ft : acquired) {
+                                if (STATE_EXECUTING.equals(ft.getFireInstanceState())) {
+                                    executingTriggers.add(ft.getFireInstanceId());
+                                }
+                            }
+                            for (TriggerFiredResult tr : result) {
+                                if (tr.getTriggerFiredBundle() != null && executingTriggers.contains(
+                                        tr.getTriggerFiredBundle().getTrigger().getFireInstanceId())) {
+                                    return true;
+                                }
+                            }
+                            return false;
+                        } catch (SQLException e) {
+                            throw new JobPersistenceException("error validating trigger acquisition", e);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 与 JobStoreSupport.triggerFired 相同，只是状态查询和 QRTZ_FIRED_TRIGGERS 的更新由 FireBatch 合并。
+     */
+    private TriggerFiredBundle triggerFired(FireBatch batch, OperableTrigger trigger) throws JobPersistenceException {
+        Connection conn = batch.conn;
+        JobDetail job;
+        Calendar cal = null;
+
+        try {
+            if (!batch.isAcquired(trigger.getKey())) {
+                return null;
+            }
+        } catch (SQLException e) {
+            throw new JobPersistenceException("Couldn't select trigger state: " + e.getMessage(), e);
+        }
+
+        try {
+            job = retrieveJob(conn, trigger.getJobKey());
+            if (job == null) {
+                return null;
+            }
+        } catch (JobPersistenceException jpe) {
+            try {
+                getLog().error("Error retrieving job, setting trigger state to ERROR.", jpe);
+                getDelegate().updateTriggerState(conn, trigger.getKey(), STATE_ERROR);
+            } catch (SQLException sqle) {
+                getLog().error("Unable to set trigger state to ERROR.", sqle);
+            }
+            throw jpe;
+        }
+
+        if (trigger.getCalendarName() != null) {
+            cal = retrieveCalendar(conn, trigger.getCalendarName());
+            if (cal == null) {
+                return null;
+            }
+        }
+
+        try {
+            if (!job.isConcurrentExectionDisallowed() && !job.requestsRecovery()) {
+                batch.addExecuting(trigger);
+            } else {
+                // 与 JobStoreTX 相同逐条更新(作业名等在取出时没有写入)；不允许并发时其他触发器的状态也会改变
+                getDelegate().updateFiredTrigger(conn, trigger, STATE_EXECUTING, job);
+                if (job.isConcurrentExectionDisallowed()) {
+                    batch.invalidateStates();
+                }
+            }
+        } catch (SQLException e) {
+            throw new JobPersistenceException("Couldn't insert fired trigger: " + e.getMessage(), e);
+        }
+
+        Date prevFireTime = trigger.getPreviousFireTime();
+
+        trigger.triggered(cal);
+
+        String state = STATE_WAITING;
+        boolean force = true;
+
+        if (job.isConcurrentExectionDisallowed()) {
+            state = STATE_BLOCKED;
+            force = false;
+            try {
+                getDelegate().updateTriggerStatesForJobFromOtherState(conn, job.getKey(), STATE_BLOCKED, STATE_WAITING);
+                getDelegate().updateTriggerStatesForJobFromOtherState(conn, job.getKey(), STATE_BLOCKED, STATE_ACQUIRED);
+                getDelegate().updateTriggerStatesForJobFromOtherState(conn, job.getKey(), STATE_PAUSED_BLOCKED,
+                        STATE_PAUSED);
+            } catch (SQLException e) {
+                throw new JobPersistenceException("Couldn't update states of blocked triggers: " + e.getMessage(), e);
+            }
+        }
+
+        if (trigger.getNextFireTime() == null) {
+            state = STATE_COMPLETE;
+            force = true;
+        }
+
+        storeTrigger(conn, trigger, job, true, state, force, false);
+
+        job.getJobDataMap().clearDirtyFlag();
+
+        return new TriggerFiredBundle(job, trigger, cal, trigger.getKey().getGroup()
+                .equals(Scheduler.DEFAULT_RECOVERY_GROUP), new Date(), trigger
+                .getPreviousFireTime(), prevFireTime, trigger.getNextFireTime());
+    }
+
+    /**
+     * 一次 triggersFired 事务中合并的语句。
+     */
+    private final class FireBatch {
+
+        private final Connection conn;
+
+        private final List<OperableTrigger> triggers;
+
+        /** 这一批中仍为 ACQUIRED 的触发器，第一次用到时一起查询 */
+        private Set<TriggerKey> acquiredKeys;
+
+        private boolean statesValid = true;
+
+        private final List<String> executing = new ArrayList<String>();
+
+        FireBatch(Connection conn, List<OperableTrigger> triggers) {
+            this.conn = conn;
+            this.triggers = triggers;
+        }
+
+        boolean isAcquired(TriggerKey key) throws SQLException, JobPersistenceException {
+            if (!statesValid) {
+                return STATE_ACQUIRED.equals(getDelegate().selectTriggerState(conn, key));
+            }
+            if (acquiredKeys == null) {
+                acquiredKeys = selectAcquired();
+            }
+            return acquiredKeys.contains(key);
+        }
+
+        /**
+         * 只查询这一批的触发器(每条语句 ROWS_PER_STATEMENT 个)，不读取集群中其他 ACQUIRED 的触发器。
+         */
+        private Set<TriggerKey> selectAcquired() throws SQLException {
+            Set<TriggerKey> keys = new HashSet<TriggerKey>();
+            for (int from = 0; from < triggers.size(); from += ROWS_PER_STATEMENT) {
+                List<OperableTrigger> chunk = triggers.subList(from, Math.min(triggers.size(), from + ROWS_PER_STATEMENT));
+                PreparedStatement ps = conn.prepareStatement(rtp(selectAcquiredSql(chunk.size())));
+                try {
+                    int index = 1;
+                    ps.setString(index++, STATE_ACQUIRED);
+                    for (OperableTrigger trigger : chunk) {
+                        ps.setString(index++, trigger.getKey().getName());
+                        ps.setString(index++, trigger.getKey().getGroup());
+                    }
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        keys.add(new TriggerKey(rs.getString(1), rs.getString(2)));
+                    }
+                } finally {
+                    closeStatement(ps);
+                }
+            }
+            return keys;
+        }
+
+        void invalidateStates() {
+            statesValid = false;
+            acquiredKeys = null;
+        }
+
+        /**
+         * 允许并发、不请求恢复的作业：QRTZ_FIRED_TRIGGERS 中除状态和触发时间外的列在取出时已经写入。
+         */
+        void addExecuting(OperableTrigger trigger) {
+            executing.add(trigger.getFireInstanceId());
+        }
+
+        void flush() throws JobPersistenceException {
+            if (executing.isEmpty()) {
+                return;
+            }
+            try {
+                DriverDelegate delegate = getDelegate();
+                BigDecimal firedTime = new BigDecimal(String.valueOf(System.currentTimeMillis()));
+                for (int from = 0; from < executing.size(); from += ROWS_PER_STATEMENT) {
+                    List<String> chunk = executing.subList(from, Math.min(executing.size(), from + ROWS_PER_STATEMENT));
+                    PreparedStatement ps = conn.prepareStatement(rtp(executingSql(chunk.size())));
+                    try {
+                        int index = 1;
+                        ps.setString(index++, getInstanceId());
+                        ps.setBigDecimal(index++, firedTime);
+                        ps.setString(index++, STATE_EXECUTING);
+                        setBoolean(delegate, ps, index++, false);
+                        setBoolean(delegate, ps, index++, false);
+                        for (String id : chunk) {
+                            ps.setString(index++, id);
+                        }
+                        ps.executeUpdate();
+                    } finally {
+                        closeStatement(ps);
+                    }
+                }
+                executing.clear();
+            } catch (SQLException e) {
+                throw new JobPersistenceException("Couldn't update fired triggers: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 完成
+
+    @Override
+    public void triggeredJobComplete(OperableTrigger trigger, JobDetail jobDetail,
+                                     CompletedExecutionInstruction triggerInstCode) {
+        if (flusher != null && triggerInstCode == CompletedExecutionInstruction.NOOP
+                && !jobDetail.isConcurrentExectionDisallowed() && !jobDetail.requestsRecovery()
+                && !(jobDetail.isPersistJobDataAfterExecution() && jobDetail.getJobDataMap().isDirty())) {
+            completedFireIds.add(trigger.getFireInstanceId());
+            return;
+        }
+        super.triggeredJobComplete(trigger, jobDetail, triggerInstCode);
+    }
+
+    /**
+     * 在一个事务中批量删除 QRTZ_FIRED_TRIGGERS 中已完成的行。
+     */
+    private TransactionCallback<Void> deleteFiredTriggers(final List<String> fireInstanceIds) {
+        return new TransactionCallback<Void>() {
+            public Void execute(Connection conn) throws JobPersistenceException {
+                try {
+                    for (int from = 0; from < fireInstanceIds.size(); from += ROWS_PER_STATEMENT) {
+                        List<String> chunk = fireInstanceIds.subList(from,
+                                Math.min(fireInstanceIds.size(), from + ROWS_PER_STATEMENT));
+                        PreparedStatement ps = conn.prepareStatement(rtp(deleteFiredSql(chunk.size())));
+                        try {
+                            int index = 1;
+                            for (String id : chunk) {
+                                ps.setString(index++, id);
+                            }
+                            ps.executeUpdate();
+                        } finally {
+                            closeStatement(ps);
+                        }
+                    }
+                    return null;
+                } catch (SQLException e) {
+                    throw new JobPersistenceException("Couldn't delete fired triggers: " + e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "deleting " + fireInstanceIds.size() + " fired triggers";
+            }
+        };
+    }
+
+    /**
+     * 批量删除已完成执行的 QRTZ_FIRED_TRIGGERS 行的线程。
+     */
+    class CompletionFlusher extends Thread {
+
+        private volatile boolean halted;
+
+        CompletionFlusher() {
+            this.setName("QuartzScheduler_" + getInstanceName() + "-" + getInstanceId() + "_CompletionFlusher");
+            this.setDaemon(getMakeThreadsDaemons());
+        }
+
+        void halt() {
+            // 不中断线程：JDBC 驱动(例如 H2)在中断时可能关闭连接，等待正在执行的一批完成
+            halted = true;
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // 执行完成的作业在 shutdown 之后仍可能调用 triggeredJobComplete，剩余的行直接在这里删除
+            List<String> remaining = new ArrayList<String>();
+            completedFireIds.drainTo(remaining);
+            for (int from = 0; from < remaining.size(); from += maxBatchSize) {
+                List<String> chunk = remaining.subList(from, Math.min(remaining.size(), from + maxBatchSize));
+                try {
+                    executeInNonManagedTXLock(LOCK_TRIGGER_ACCESS, deleteFiredTriggers(chunk), null);
+                } catch (JobPersistenceException e) {
+                    getLog().error("Couldn't delete " + chunk.size()
+                            + " fired triggers on shutdown, they will be recovered on next start.", e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            List<String> batch = new ArrayList<String>(maxBatchSize);
+            while (!halted) {
+                try {
+                    String first = completedFireIds.poll(batchWindowMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.currentTimeMillis() + batchWindowMillis;
+                    while (batch.size() < maxBatchSize) {
+                        completedFireIds.drainTo(batch, maxBatchSize - batch.size());
+                        long wait = deadline - System.currentTimeMillis();
+                        if (batch.size() >= maxBatchSize || wait <= 0) {
+                            break;
+                        }
+                        String next = completedFireIds.poll(wait, TimeUnit.MILLISECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    halted = true;
+                }
+                if (!batch.isEmpty()) {
+                    try {
+                        retryExecuteInNonManagedTXLock(LOCK_TRIGGER_ACCESS, deleteFiredTriggers(batch));
+                    } catch (IllegalStateException e) {
+                        // JobStore 已经关闭，放回队列由 halt() 处理
+                        completedFireIds.addAll(batch);
+                    }
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 工具
+
+    private static String acquireSql(int rows) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(StdJDBCConstants.TABLE_PREFIX_SUBST).append(TABLE_TRIGGERS)
+                .append(" SET ").append(COL_TRIGGER_STATE).append(" = ? WHERE ")
+                .append(COL_SCHEDULER_NAME).append(" = ").append(StdJDBCConstants.SCHED_NAME_SUBST)
+                .append(" AND ").append(COL_TRIGGER_STATE).append(" = ? AND (");
+        return appendKeys(sql, rows).append(')').toString();
+    }
+
+    private static String selectAcquiredSql(int rows) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(COL_TRIGGER_NAME).append(", ").append(COL_TRIGGER_GROUP)
+                .append(" FROM ").append(StdJDBCConstants.TABLE_PREFIX_SUBST).append(TABLE_TRIGGERS).append(" WHERE ")
+                .append(COL_SCHEDULER_NAME).append(" = ").append(StdJDBCConstants.SCHED_NAME_SUBST)
+                .append(" AND ").append(COL_TRIGGER_STATE).append(" = ? AND (");
+        return appendKeys(sql, rows).append(')').toString();
+    }
+
+    /**
+     * (TRIGGER_NAME = ? AND TRIGGER_GROUP = ?) OR ... 重复 rows 次。
+     */
+    private static StringBuilder appendKeys(StringBuilder sql, int rows) {
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append('(').append(COL_TRIGGER_NAME).append(" = ? AND ").append(COL_TRIGGER_GROUP).append(" = ?)");
+        }
+        return sql;
+    }
+
+    /**
+     * INSERT_FIRED_TRIGGER 的 VALUES 重复 rows 次。
+     */
+    private static String insertFiredSql(int rows) {
+        String insert = StdJDBCConstants.INSERT_FIRED_TRIGGER;
+        int values = insert.indexOf(" VALUES(") + " VALUES".length();
+        StringBuilder sql = new StringBuilder(insert.substring(0, values)).append(' ');
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(insert, values, insert.length());
+        }
+        return sql.toString();
+    }
+
+    private static String executingSql(int rows) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(StdJDBCConstants.TABLE_PREFIX_SUBST).append(TABLE_FIRED_TRIGGERS)
+                .append(" SET ").append(COL_INSTANCE_NAME).append(" = ?, ").append(COL_FIRED_TIME).append(" = ?, ")
+                .append(COL_ENTRY_STATE).append(" = ?, ").append(COL_IS_NONCONCURRENT).append(" = ?, ")
+                .append(COL_REQUESTS_RECOVERY).append(" = ? WHERE ")
+                .append(COL_SCHEDULER_NAME).append(" = ").append(StdJDBCConstants.SCHED_NAME_SUBST)
+                .append(" AND ").append(COL_ENTRY_ID).append(" IN (");
+        return appendParams(sql, rows).append(')').toString();
+    }
+
+    private static String deleteFiredSql(int rows) {
+        StringBuilder sql = new StringBuilder("DELETE FROM ").append(StdJDBCConstants.TABLE_PREFIX_SUBST).append(TABLE_FIRED_TRIGGERS)
+                .append(" WHERE ").append(COL_SCHEDULER_NAME).append(" = ").append(StdJDBCConstants.SCHED_NAME_SUBST)
+                .append(" AND ").append(COL_ENTRY_ID).append(" IN (");
+        return appendParams(sql, rows).append(')').toString();
+    }
+
+    private static StringBuilder appendParams(StringBuilder sql, int count) {
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql;
+    }
+
+    private String rtp(String query) {
+        return Util.rtp(query, getTablePrefix(), "'" + getInstanceName() + "'");
+    }
+
+    /**
+     * 与各 DriverDelegate 的 setBoolean 相同。
+     */
+    private static void setBoolean(DriverDelegate delegate, PreparedStatement ps, int index, boolean val)
+            throws SQLException {
+        if (delegate instanceof DB2v7Delegate) {
+            ps.setString(index, val ? "1" : "0");
+        } else if (delegate instanceof DB2v8Delegate) {
+            ps.setInt(index, val ? 1 : 0);
+        } else {
+            ps.setBoolean(index, val);
+        }
+    }
+
+    private static void closeStatement(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException ignore) {
+            }
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package quartzDemo.store;
+
+import org.quartz.JobDataMap;
+import org.quartz.Scheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 紧凑的二进制 JobDataMap 格式：
+ *
+ *     'Q' 'M' 版本  条目数(varint)  { 键  值 }*
+ *
+ * 每个值以一个字节的类型标记开头，整数(int / long / short / char / Date 的毫秒数)用 zigzag varint，
+ * 浮点数用固定 4 / 8 字节，byte[] 原样保存；其他可序列化的对象退回 Java 序列化(SERIALIZED)。
+ * 键和字符串值进入字符串字典：第一次出现时写出 UTF-8 内容(STRING)，之后只写字典下标(STRING_REF)。
+ * 字典的前几项是固定的常用字符串(恢复触发器的 FAILED_JOB_ORIGINAL_TRIGGER_* 等)，它们从不写出内容。
+ * MyJob 的 {name = "hyman", value = 331} 编码后是 27 字节，Java 序列化的 JobDataMap 是 373 字节。
+ *
+ * 开头的 'Q' 'M' 与 Java 序列化的 0xAC 0xED 以及 useProperties 时的 Properties 文本都不同，accepts 据此区分旧数据。
+ * 字典的固定部分属于格式的一部分，只能在末尾追加。
+ */
+public class BinaryJobDataMapCodec implements JobDataMapCodec {
+
+    private static final byte MAGIC_0 = 'Q';
+
+    private static final byte MAGIC_1 = 'M';
+
+    private static final byte VERSION = 1;
+
+    static final byte NULL = 0;
+
+    static final byte TRUE = 1;
+
+    static final byte FALSE = 2;
+
+    static final byte INT = 3;
+
+    static final byte LONG = 4;
+
+    static final byte SHORT = 5;
+
+    static final byte BYTE = 6;
+
+    static final byte CHAR = 7;
+
+    static final byte FLOAT = 8;
+
+    static final byte DOUBLE = 9;
+
+    static final byte STRING = 10;
+
+    static final byte STRING_REF = 11;
+
+    static final byte DATE = 12;
+
+    static final byte BYTES = 13;
+
+    static final byte SERIALIZED = 14;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** 固定的字典项，下标从 0 开始 */
+    private static final String[] PRESET = {
+            Scheduler.FAILED_JOB_ORIGINAL_TRIGGER_NAME,
+            Scheduler.FAILED_JOB_ORIGINAL_TRIGGER_GROUP,
+            Scheduler.FAILED_JOB_ORIGINAL_TRIGGER_FIRETIME_IN_MILLISECONDS,
+            Scheduler.FAILED_JOB_ORIGINAL_TRIGGER_SCHEDULED_FIRETIME_IN_MILLISECONDS,
+            Scheduler.DEFAULT_GROUP,
+            Scheduler.DEFAULT_RECOVERY_GROUP,
+            "true",
+            "false",
+            ""
+    };
+
+    private static final Map<String, Integer> PRESET_INDEX = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < PRESET.length; i++) {
+            PRESET_INDEX.put(PRESET[i], i);
+        }
+    }
+
+    @Override
+    public boolean accepts(byte[] data) {
+        return data != null && data.length >= 3 && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+    }
+
+    @Override
+    public byte[] encode(Map<String, ?> data) throws IOException {
+        Output out = new Output(16 + data.size() * 12);
+        out.write(MAGIC_0);
+        out.write(MAGIC_1);
+        out.write(VERSION);
+        out.writeVarint(data.size());
+        for (Map.Entry<String, ?> e : data.entrySet()) {
+            out.writeString(e.getKey());
+            writeValue(out, e.getKey(), e.getValue());
+        }
+        return out.toByteArray();
+    }
+
+    private void writeValue(Output out, String key, Object value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            out.writeString((String) value);
+        } else if (type == Integer.class) {
+            out.write(INT);
+            out.writeVarlong(zigzag((Integer) value));
+        } else if (type == Long.class) {
+            out.write(LONG);
+            out.writeVarlong(zigzag((Long) value));
+        } else if (type == Boolean.class) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (type == Double.class) {
+            out.write(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (type == Float.class) {
+            out.write(FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) value));
+        } else if (type == Short.class) {
+            out.write(SHORT);
+            out.writeVarlong(zigzag((Short) value));
+        } else if (type == Byte.class) {
+            out.write(BYTE);
+            out.write((Byte) value);
+        } else if (type == Character.class) {
+            out.write(CHAR);
+            out.writeVarint((Character) value);
+        } else if (type == Date.class) {
+            out.write(DATE);
+            out.writeVarlong(zigzag(((Date) value).getTime()));
+        } else if (type == byte[].class) {
+            byte[] bytes = (byte[]) value;
+            out.write(BYTES);
+            out.writeVarint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        } else if (value instanceof Serializable) {
+            byte[] bytes = serialize(key, value);
+            out.write(SERIALIZED);
+            out.writeVarint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        } else {
+            throw new NotSerializableException("Unable to encode JobDataMap because the value of property '"
+                    + key + "' is not serializable: " + type.getName());
+        }
+    }
+
+    @Override
+    public JobDataMap decode(byte[] data) throws IOException {
+        if (!accepts(data)) {
+            throw new IOException("Not a binary JobDataMap");
+        }
+        if (data[2] != VERSION) {
+            throw new IOException("Unsupported binary JobDataMap version " + data[2]);
+        }
+        Input in = new Input(data, 3);
+        int size = in.readVarint();
+        JobDataMap map = new JobDataMap();
+        for (int i = 0; i < size; i++) {
+            byte tag = in.readByte();
+            if (tag != STRING && tag != STRING_REF) {
+                throw new IOException("Corrupt binary JobDataMap: key tag " + tag);
+            }
+            String key = in.readString(tag);
+            map.put(key, readValue(in));
+        }
+        map.clearDirtyFlag();
+        return map;
+    }
+
+    private Object readValue(Input in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return (int) unzigzag(in.readVarlong());
+            case LONG:
+                return unzigzag(in.readVarlong());
+            case SHORT:
+                return (short) unzigzag(in.readVarlong());
+            case BYTE:
+                return in.readByte();
+            case CHAR:
+                return (char) in.readVarint();
+            case FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case STRING:
+            case STRING_REF:
+                return in.readString(tag);
+            case DATE:
+                return new Date(unzigzag(in.readVarlong()));
+            case BYTES:
+                return in.readBytes(in.readVarint());
+            case SERIALIZED:
+                return deserialize(in.readBytes(in.readVarint()));
+            default:
+                throw new IOException("Corrupt binary JobDataMap: value tag " + tag);
+        }
+    }
+
+    /**
+     * Java 序列化的值，子类可以覆盖以使用其他类加载器。
+     */
+    protected Object deserialize(byte[] bytes) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Class not found while decoding JobDataMap: " + e.getMessage(), e);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] serialize(String key, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        try {
+            out.writeObject(value);
+        } catch (NotSerializableException e) {
+            throw new NotSerializableException("Unable to encode JobDataMap because the value of property '"
+                    + key + "' is not serializable: " + e.getMessage());
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * 编码缓冲区和本次编码的字符串字典。
+     */
+    private static final class Output {
+
+        private byte[] buf;
+
+        private int count;
+
+        /** 本次写出的字符串，下标从 PRESET.length 开始；项数少时线性查找，多了再建 HashMap */
+        private String[] strings = new String[8];
+
+        private int stringCount;
+
+        private Map<String, Integer> stringIndex;
+
+        Output(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            buf[count++] = (byte) (v >>> 24);
+            buf[count++] = (byte) (v >>> 16);
+            buf[count++] = (byte) (v >>> 8);
+            buf[count++] = (byte) v;
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        void writeVarint(int v) {
+            writeVarlong(v & 0xFFFFFFFFL);
+        }
+
+        void writeVarlong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[count++] = (byte) v;
+        }
+
+        /**
+         * STRING_REF 下标，或 STRING 长度和 UTF-8 内容(同时加入字典)。
+         */
+        void writeString(String s) {
+            int index = indexOf(s);
+            if (index >= 0) {
+                write(STRING_REF);
+                writeVarint(index);
+                return;
+            }
+            add(s);
+            write(STRING);
+            int length = s.length();
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                if (s.charAt(i) >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+            }
+            if (ascii) {
+                writeVarint(length);
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buf[count++] = (byte) s.charAt(i);
+                }
+            } else {
+                byte[] bytes = s.getBytes(UTF_8);
+                writeVarint(bytes.length);
+                write(bytes, 0, bytes.length);
+            }
+        }
+
+        private int indexOf(String s) {
+            Integer preset = PRESET_INDEX.get(s);
+            if (preset != null) {
+                return preset;
+            }
+            if (stringIndex != null) {
+                Integer index = stringIndex.get(s);
+                return index == null ? -1 : index;
+            }
+            for (int i = 0; i < stringCount; i++) {
+                if (strings[i].equals(s)) {
+                    return PRESET.length + i;
+                }
+            }
+            return -1;
+        }
+
+        private void add(String s) {
+            if (stringIndex != null) {
+                stringIndex.put(s, PRESET.length + stringIndex.size());
+                return;
+            }
+            if (stringCount == strings.length) {
+                stringIndex = new HashMap<String, Integer>();
+                for (int i = 0; i < stringCount; i++) {
+                    stringIndex.put(strings[i], PRESET.length + i);
+                }
+                stringIndex.put(s, PRESET.length + stringCount);
+                return;
+            }
+            strings[stringCount++] = s;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        private void ensure(int n) {
+            if (count + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+            }
+        }
+    }
+
+    /**
+     * 解码的读取位置和已经读到的字符串。
+     */
+    private static final class Input {
+
+        private final byte[] data;
+
+        private int pos;
+
+        private String[] strings = new String[8];
+
+        private int stringCount;
+
+        Input(byte[] data, int pos) {
+            this.data = data;
+            this.pos = pos;
+        }
+
+        byte readByte() throws IOException {
+            if (pos >= data.length) {
+                throw new IOException("Truncated binary JobDataMap");
+            }
+            return data[pos++];
+        }
+
+        int readInt() throws IOException {
+            return (readByte() & 0xFF) << 24 | (readByte() & 0xFF) << 16 | (readByte() & 0xFF) << 8
+                    | (readByte() & 0xFF);
+        }
+
+        long readLong() throws IOException {
+            return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+        }
+
+        int readVarint() throws IOException {
+            long v = readVarlong();
+            if (v < 0 || v > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt binary JobDataMap: varint out of range");
+            }
+            return (int) v;
+        }
+
+        long readVarlong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+            throw new IOException("Corrupt binary JobDataMap: varint too long");
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            if (length > data.length - pos) {
+                throw new IOException("Truncated binary JobDataMap");
+            }
+            byte[] b = Arrays.copyOfRange(data, pos, pos + length);
+            pos += length;
+            return b;
+        }
+
+        String readString(byte tag) throws IOException {
+            if (tag == STRING_REF) {
+                int index = readVarint();
+                if (index < PRESET.length) {
+                    return PRESET[index];
+                }
+                index -= PRESET.length;
+                if (index >= stringCount) {
+                    throw new IOException("Corrupt binary JobDataMap: string index " + index);
+                }
+                return strings[index];
+            }
+            int length = readVarint();
+            if (length > data.length - pos) {
+                throw new IOException("Truncated binary JobDataMap");
+            }
+            String s = new String(data, pos, length, UTF_8);
+            pos += length;
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount * 2);
+            }
+            strings[stringCount++] = s;
+            return s;
+        }
+    }
+}
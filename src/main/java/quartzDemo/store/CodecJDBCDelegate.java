@@ -0,0 +1,105 @@
+package quartzDemo.store;
+
+import org.quartz.JobDataMap;
+import org.quartz.impl.jdbcjobstore.NoSuchDelegateException;
+import org.quartz.impl.jdbcjobstore.StdJDBCDelegate;
+import org.quartz.spi.ClassLoadHelper;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 用 JobDataMapCodec(默认 BinaryJobDataMapCodec)读写 QRTZ_JOB_DETAILS 和 QRTZ_TRIGGERS 中 JOB_DATA 列的 StdJDBCDelegate。
+ *
+ * 写入时总是使用编解码器；读取时 accepts 的数据由编解码器解码，其他数据(升级之前保存的 Java 序列化 BLOB)按原来的方式
+ * 反序列化，下次更新该作业或触发器时改写成新格式。日历和 QRTZ_BLOB_TRIGGERS 仍然使用 Java 序列化。
+ * useProperties = true 时 JobDataMap 按 Properties 文本保存，与 StdJDBCDelegate 相同，不使用编解码器。
+ *
+ * 配置(适用于 JobStoreTX、BatchingJobStoreTX、OptimisticJobStoreTX 等所有 JobStoreSupport)：
+ * org.quartz.jobStore.driverDelegateClass = quartzDemo.store.CodecJDBCDelegate
+ * org.quartz.jobStore.driverDelegateInitString = jobDataMapCodec=quartzDemo.store.BinaryJobDataMapCodec  (可选)
+ * initString 中的其他设置(triggerPersistenceDelegateClasses)照常交给 StdJDBCDelegate。
+ */
+public class CodecJDBCDelegate extends StdJDBCDelegate {
+
+    public static final String PROP_JOB_DATA_MAP_CODEC = "jobDataMapCodec";
+
+    private JobDataMapCodec codec = new BinaryJobDataMapCodec();
+
+    @Override
+    public void initialize(Logger logger, String tablePrefix, String schedName, String instanceId,
+                           ClassLoadHelper classLoadHelper, boolean useProperties, String initString)
+            throws NoSuchDelegateException {
+        StringBuilder rest = new StringBuilder();
+        if (initString != null) {
+            for (String setting : initString.split("\\|")) {
+                String[] parts = setting.split("=", 2);
+                if (parts[0].trim().equals(PROP_JOB_DATA_MAP_CODEC)) {
+                    if (parts.length == 2 && !parts[1].trim().isEmpty()) {
+                        codec = newCodec(classLoadHelper, parts[1].trim());
+                    }
+                } else if (!setting.isEmpty()) {
+                    if (rest.length() > 0) {
+                        rest.append('|');
+                    }
+                    rest.append(setting);
+                }
+            }
+        }
+        super.initialize(logger, tablePrefix, schedName, instanceId, classLoadHelper, useProperties,
+                rest.length() == 0 ? null : rest.toString());
+    }
+
+    public JobDataMapCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    protected ByteArrayOutputStream serializeJobData(JobDataMap data) throws IOException {
+        if (canUseProperties()) {
+            return super.serializeJobData(data);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(0);
+        if (data != null) {
+            baos.write(codec.encode(data.getWrappedMap()));
+        }
+        return baos;
+    }
+
+    @Override
+    protected Object getObjectFromBlob(ResultSet rs, String colName)
+            throws ClassNotFoundException, IOException, SQLException {
+        if (!COL_JOB_DATAMAP.equals(colName)) {
+            return super.getObjectFromBlob(rs, colName);
+        }
+        Blob blob = rs.getBlob(colName);
+        if (blob == null || blob.length() == 0) {
+            return null;
+        }
+        byte[] bytes = blob.getBytes(1, (int) blob.length());
+        if (codec.accepts(bytes)) {
+            return codec.decode(bytes);
+        }
+        // 旧数据
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static JobDataMapCodec newCodec(ClassLoadHelper loadHelper, String className) throws NoSuchDelegateException {
+        try {
+            return JobDataMapCodecs.newInstance(loadHelper, className);
+        } catch (IllegalStateException e) {
+            throw new NoSuchDelegateException(e.getMessage(), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package quartzDemo.store;
+
+import org.quartz.JobDataMap;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * JobDataMap 的编解码器，JobStore 用它代替 Java 序列化保存作业和触发器的 JobDataMap。
+ *
+ * 实现必须有无参构造方法(按类名配置)，并且线程安全。已经保存的旧数据(Java 序列化的 BLOB 等)由调用方通过
+ * accepts 区分，不是本编解码器产生的数据按原来的方式读取。
+ */
+public interface JobDataMapCodec {
+
+    /**
+     * data 是否由这个编解码器编码(通常检查开头的魔数)。
+     */
+    boolean accepts(byte[] data);
+
+    byte[] encode(Map<String, ?> data) throws IOException;
+
+    JobDataMap decode(byte[] data) throws IOException;
+}
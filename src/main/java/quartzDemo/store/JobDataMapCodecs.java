@@ -0,0 +1,28 @@
+package quartzDemo.store;
+
+import org.quartz.spi.ClassLoadHelper;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * 按配置的类名创建 JobDataMapCodec，JournalJobStore、SnapshotJobStore 和 CodecJDBCDelegate 共用。
+ */
+final class JobDataMapCodecs {
+
+    private JobDataMapCodecs() {
+    }
+
+    /**
+     * 用 loadHelper 加载 className 并调用无参构造方法。加载、实例化失败或类型不是 JobDataMapCodec 时抛出
+     * IllegalStateException，构造方法抛出的异常作为它的 cause。
+     */
+    static JobDataMapCodec newInstance(ClassLoadHelper loadHelper, String className) {
+        try {
+            return (JobDataMapCodec) loadHelper.loadClass(className).getDeclaredConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Error instantiating JobDataMapCodec of type: " + className, e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("Error instantiating JobDataMapCodec of type: " + className, e);
+        }
+    }
+}
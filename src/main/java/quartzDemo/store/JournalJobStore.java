@@ -0,0 +1,1283 @@
+package quartzDemo.store;
+
+import org.quartz.Calendar;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import quartzDemo.store.MappedJournal.ExpandableBuffer;
+import quartzDemo.store.MappedJournal.RecordReader;
+
+/**
+ * 状态保存在内存中、每次变更追加到内存映射日志文件(MappedJournal)的 JobStore。
+ *
+ * Instruc 中的 RequestsRecovery 和 Durability 需要持久化的 JobStore，JobStoreTX 的每次状态变化(取出、触发、完成)
+ * 都是几条 SQL 和一次数据库提交。这里在 TimingWheelJobStore 之上，把每次变更写成一条很小的日志记录：
+ * 作业、触发器和日历的增删改记录 Java 序列化后的对象；每次触发只记录触发器的名称和前后两个触发时间(TRIGGERED)，
+ * 重启时重新执行 triggered()；请求恢复(requestsRecovery)的作业在触发时记录 FIRED，执行完成后记录 COMPLETED。
+ * ACQUIRED、EXECUTING、BLOCKED 这些只在运行期间有意义的状态不记录。
+ *
+ * 重启时先读取最新的快照和之后的记录，在内存中重建作业、触发器、日历、暂停的组和状态，然后立即压缩成新的一代。
+ * 调度器启动(schedulerStarted)时，对每个只有 FIRED 没有 COMPLETED 的记录(即宕机时正在执行)，与 JobStoreSupport
+ * 的集群恢复相同，在 Scheduler.DEFAULT_RECOVERY_GROUP 组中创建一个立即触发的 recover_&lt;instanceId&gt;_&lt;n&gt; 触发器，
+ * 并在 JobDataMap 中放入 FAILED_JOB_ORIGINAL_TRIGGER_* 参数，这些触发器触发时 JobExecutionContext.isRecovering() 为 true。
+ * 执行完成后才删除的触发器(只触发一次的 SimpleTrigger 等)在重启时下次触发时间为空，不再加载；
+ * 没有触发器、也没有正在执行的非持久(durable = false)作业也一起删除。
+ *
+ * 日志写在锁内(只是内存拷贝)，刷盘和等待在锁外：syncPolicy = group 时调用方(调度线程、工作线程、调用 Scheduler 的线程)
+ * 等到自己的记录刷盘后才返回，同时等待的调用方共用一次刷盘；periodic 时由后台线程每 syncIntervalMillis 毫秒刷盘一次，
+ * 调用方不等待，宕机时最多丢失这段时间的变更；none 只在压缩和关闭时刷盘。
+ * 当前文件中的变更超过文件大小的一半时，后台线程在锁内把当前状态写成新一代的快照(压缩)；文件写满时在写入的线程中压缩。
+ *
+ * 作业、触发器和日历用 Java 序列化保存，其中的 JobDataMap 由 jobDataMapCodec 单独编码(默认 BinaryJobDataMapCodec)；
+ * 不能编码时 storeJob / storeTrigger / storeCalendar 抛出 IllegalArgumentException。错过触发指令在取出时修改的触发器在下一次 acquireNextTriggers 时整条重新记录。
+ *
+ * 配置：
+ * org.quartz.jobStore.class = quartzDemo.store.JournalJobStore
+ * org.quartz.jobStore.journalDir = quartz-journal       (可选，日志目录)
+ * org.quartz.jobStore.journalFileSize = 67108864        (可选，每一代日志文件的大小，快照更大时自动加大)
+ * org.quartz.jobStore.syncPolicy = group                (可选，group / periodic / none)
+ * org.quartz.jobStore.syncIntervalMillis = 10           (可选，periodic 的刷盘间隔；group 时为空闲等待的间隔)
+ * org.quartz.jobStore.jobDataMapCodec = quartzDemo.store.BinaryJobDataMapCodec  (可选)
+ * 以及 TimingWheelJobStore 的配置。
+ */
+public class JournalJobStore extends TimingWheelJobStore {
+
+    public static final String DEFAULT_JOURNAL_DIR = "quartz-journal";
+
+    public static final long DEFAULT_JOURNAL_FILE_SIZE = 64L * 1024 * 1024;
+
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10L;
+
+    private static final byte JOB = 1;
+
+    private static final byte JOB_REMOVED = 2;
+
+    private static final byte TRIGGER = 3;
+
+    private static final byte TRIGGER_REMOVED = 4;
+
+    private static final byte TRIGGER_STATE = 5;
+
+    private static final byte TRIGGERED = 6;
+
+    private static final byte CALENDAR = 7;
+
+    private static final byte CALENDAR_REMOVED = 8;
+
+    private static final byte PAUSED_GROUPS = 9;
+
+    private static final byte FIRED = 10;
+
+    private static final byte COMPLETED = 11;
+
+    /** 与 JOB / TRIGGER 相同，但 JobDataMap 由 jobDataMapCodec 单独编码；JOB / TRIGGER 只在读取旧日志时出现 */
+    private static final byte JOB_CODEC = 12;
+
+    private static final byte TRIGGER_CODEC = 13;
+
+    /** 与 FIRED 相同，但带有触发器的 JobDataMap(由 jobDataMapCodec 编码)；FIRED 只在读取旧日志时出现 */
+    private static final byte FIRED_CODEC = 14;
+
+    /** 日志中记录的触发器状态 */
+    private static final byte NORMAL = 0;
+
+    private static final byte PAUSED = 1;
+
+    private static final byte COMPLETE = 2;
+
+    private static final byte ERROR = 3;
+
+    private String journalDir = DEFAULT_JOURNAL_DIR;
+
+    private long journalFileSize = DEFAULT_JOURNAL_FILE_SIZE;
+
+    private String syncPolicy = MappedJournal.SYNC_GROUP;
+
+    private long syncIntervalMillis = DEFAULT_SYNC_INTERVAL_MILLIS;
+
+    private String jobDataMapCodecClass = BinaryJobDataMapCodec.class.getName();
+
+    private JobDataMapCodec codec = new BinaryJobDataMapCodec();
+
+    private String instanceName = "QuartzScheduler";
+
+    private String instanceId = "NON_CLUSTERED";
+
+    private ClassLoadHelper loadHelper;
+
+    private MappedJournal journal;
+
+    /** 编码单条记录，由 lock 保护 */
+    private final ExpandableBuffer record = new ExpandableBuffer(512);
+
+    /** 请求恢复的作业正在执行的触发，fireInstanceId -> 记录，由 lock 保护 */
+    private final Map<String, FiredRecord> firedRecords = new LinkedHashMap<String, FiredRecord>();
+
+    /** 取出时执行了错过触发指令、还没有重新记录的触发器，由 lock 保护 */
+    private final Set<TriggerKey> misfired = new HashSet<TriggerKey>();
+
+    private int recoverIds;
+
+    private final MappedJournal.SnapshotWriter snapshotWriter = new MappedJournal.SnapshotWriter() {
+        @Override
+        public void writeSnapshot(MappedJournal journal) {
+            for (String name : calendarsByName.keySet()) {
+                logCalendar(name);
+            }
+            for (JobKey jobKey : jobsByKey.keySet()) {
+                logJob(retrieveJob(jobKey));
+            }
+            logPausedGroups();
+            for (TriggerKey triggerKey : triggersByKey.keySet()) {
+                logTrigger(triggerKey);
+            }
+            for (FiredRecord fired : firedRecords.values()) {
+                logFired(fired);
+            }
+            misfired.clear();
+        }
+    };
+
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler schedSignaler) {
+        super.initialize(loadHelper, new MisfireTrackingSignaler(schedSignaler));
+        this.loadHelper = loadHelper;
+        if (!BinaryJobDataMapCodec.class.getName().equals(jobDataMapCodecClass)) {
+            codec = JobDataMapCodecs.newInstance(loadHelper, jobDataMapCodecClass);
+        }
+        File dir = new File(journalDir);
+        journal = new MappedJournal(dir, journalFileSize, syncPolicy, syncIntervalMillis);
+        try {
+            Image image = new Image();
+            boolean existing = journal.replay(image);
+            synchronized (lock) {
+                if (existing) {
+                    load(image);
+                }
+                journal.compact(snapshotWriter);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't open journal in " + dir.getAbsolutePath(), e);
+        }
+        journal.start("QuartzScheduler_" + instanceName + "-" + instanceId + "_JournalWriter", true, new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    compact();
+                }
+            }
+        });
+        getLog().info("JournalJobStore initialized (dir = " + dir.getAbsolutePath() + ", syncPolicy = " + syncPolicy
+                + ", " + getNumberOfJobs() + " jobs, " + getNumberOfTriggers() + " triggers).");
+    }
+
+    @Override
+    public void schedulerStarted() {
+        recoverJobs();
+        super.schedulerStarted();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Override
+    public boolean supportsPersistence() {
+        return true;
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        this.instanceName = schedName;
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+        this.instanceId = schedInstId;
+    }
+
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    public void setJournalDir(String journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    public long getJournalFileSize() {
+        return journalFileSize;
+    }
+
+    public void setJournalFileSize(long journalFileSize) {
+        if (journalFileSize < 1024 * 1024) {
+            throw new IllegalArgumentException("journalFileSize must be at least 1MB");
+        }
+        this.journalFileSize = journalFileSize;
+    }
+
+    public String getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public void setSyncPolicy(String syncPolicy) {
+        if (!MappedJournal.SYNC_GROUP.equals(syncPolicy) && !MappedJournal.SYNC_PERIODIC.equals(syncPolicy)
+                && !MappedJournal.SYNC_NONE.equals(syncPolicy)) {
+            throw new IllegalArgumentException("syncPolicy must be one of group, periodic, none");
+        }
+        this.syncPolicy = syncPolicy;
+    }
+
+    public String getJobDataMapCodec() {
+        return jobDataMapCodecClass;
+    }
+
+    /**
+     * JobDataMapCodec 的类名，默认 BinaryJobDataMapCodec。
+     */
+    public void setJobDataMapCodec(String jobDataMapCodecClass) {
+        this.jobDataMapCodecClass = jobDataMapCodecClass;
+    }
+
+    public long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    public void setSyncIntervalMillis(long syncIntervalMillis) {
+        if (syncIntervalMillis < 1) {
+            throw new IllegalArgumentException("syncIntervalMillis must be > 0");
+        }
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
+
+    // ---------------------------------------------------------------- 变更：在锁内修改并写日志，在锁外等待刷盘
+
+    @Override
+    public void clearAllSchedulingData() throws JobPersistenceException {
+        long position;
+        synchronized (lock) {
+            super.clearAllSchedulingData();
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public void storeJobAndTrigger(JobDetail newJob, OperableTrigger newTrigger) throws JobPersistenceException {
+        long position;
+        synchronized (lock) {
+            super.storeJobAndTrigger(newJob, newTrigger);
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public void storeJobsAndTriggers(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, boolean replace)
+            throws JobPersistenceException {
+        long position;
+        synchronized (lock) {
+            super.storeJobsAndTriggers(triggersAndJobs, replace);
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public void storeJob(JobDetail newJob, boolean replaceExisting) throws ObjectAlreadyExistsException {
+        // 先序列化，不能序列化时不修改内存中的状态
+        Encoded encoded = encodeJob(newJob);
+        long position;
+        synchronized (lock) {
+            super.storeJob(newJob, replaceExisting);
+            logJob(encoded);
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public boolean removeJob(JobKey jobKey) {
+        boolean found;
+        long position;
+        synchronized (lock) {
+            found = super.removeJob(jobKey);
+            if (found) {
+                logJobRemoved(jobKey);
+            }
+            position = journal.position();
+        }
+        sync(position);
+        return found;
+    }
+
+    @Override
+    public boolean removeJobs(List<JobKey> jobKeys) throws JobPersistenceException {
+        boolean allFound;
+        long position;
+        synchronized (lock) {
+            allFound = super.removeJobs(jobKeys);
+            position = journal.position();
+        }
+        sync(position);
+        return allFound;
+    }
+
+    @Override
+    public void storeTrigger(OperableTrigger newTrigger, boolean replaceExisting) throws JobPersistenceException {
+        Encoded encoded = encodeTrigger(newTrigger);
+        long position;
+        synchronized (lock) {
+            super.storeTrigger(newTrigger, replaceExisting);
+            logTrigger(newTrigger.getKey(), encoded);
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public boolean removeTrigger(TriggerKey triggerKey) {
+        boolean found;
+        long position;
+        synchronized (lock) {
+            found = super.removeTrigger(triggerKey);
+            if (found) {
+                logTriggerRemoved(triggerKey);
+            }
+            position = journal.position();
+        }
+        sync(position);
+        return found;
+    }
+
+    @Override
+    public boolean removeTriggers(List<TriggerKey> triggerKeys) throws JobPersistenceException {
+        boolean allFound;
+        long position;
+        synchronized (lock) {
+            allFound = super.removeTriggers(triggerKeys);
+            position = journal.position();
+        }
+        sync(position);
+        return allFound;
+    }
+
+    @Override
+    public boolean replaceTrigger(TriggerKey triggerKey, OperableTrigger newTrigger) throws JobPersistenceException {
+        boolean found;
+        long position;
+        synchronized (lock) {
+            // 新触发器由 super 中调用的 storeTrigger 记录
+            found = super.replaceTrigger(triggerKey, newTrigger);
+            if (found && !triggerKey.equals(newTrigger.getKey())) {
+                logTriggerRemoved(triggerKey);
+            }
+            position = journal.position();
+        }
+        sync(position);
+        return found;
+    }
+
+    @Override
+    public void resetTriggerFromErrorState(TriggerKey triggerKey) throws JobPersistenceException {
+        long position;
+        synchronized (lock) {
+            super.resetTriggerFromErrorState(triggerKey);
+            logTriggerState(triggerKey);
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public void storeCalendar(String name, Calendar calendar, boolean replaceExisting, boolean updateTriggers)
+            throws ObjectAlreadyExistsException {
+        byte[] bytes = serialize(calendar);
+        long position;
+        synchronized (lock) {
+            super.storeCalendar(name, calendar, replaceExisting, updateTriggers);
+            record.reset();
+            record.writeString(name);
+            record.writeBytes(bytes);
+            append(CALENDAR);
+            if (updateTriggers) {
+                // 下次触发时间按新的日历重新计算过
+                logTriggers(triggerKeysForCalendar(name));
+            }
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public boolean removeCalendar(String calName) throws JobPersistenceException {
+        boolean found;
+        long position;
+        synchronized (lock) {
+            found = super.removeCalendar(calName);
+            if (found) {
+                record.reset();
+                record.writeString(calName);
+                append(CALENDAR_REMOVED);
+            }
+            position = journal.position();
+        }
+        sync(position);
+        return found;
+    }
+
+    @Override
+    public void pauseTrigger(TriggerKey triggerKey) {
+        long position;
+        synchronized (lock) {
+            super.pauseTrigger(triggerKey);
+            logTriggerState(triggerKey);
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public List<String> pauseTriggers(GroupMatcher<TriggerKey> matcher) {
+        List<String> groups;
+        long position;
+        synchronized (lock) {
+            groups = super.pauseTriggers(matcher);
+            logPausedGroups();
+            for (String group : groups) {
+                logTriggerStates(getTriggerKeys(GroupMatcher.triggerGroupEquals(group)));
+            }
+            position = journal.position();
+        }
+        sync(position);
+        return groups;
+    }
+
+    @Override
+    public void pauseJob(JobKey jobKey) {
+        long position;
+        synchronized (lock) {
+            super.pauseJob(jobKey);
+            logTriggerStates(triggerKeysForJob(jobKey));
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public List<String> pauseJobs(GroupMatcher<JobKey> matcher) {
+        List<String> groups;
+        long position;
+        synchronized (lock) {
+            groups = super.pauseJobs(matcher);
+            logPausedGroups();
+            for (String group : groups) {
+                for (JobKey jobKey : getJobKeys(GroupMatcher.jobGroupEquals(group))) {
+                    logTriggerStates(triggerKeysForJob(jobKey));
+                }
+            }
+            position = journal.position();
+        }
+        sync(position);
+        return groups;
+    }
+
+    @Override
+    public void resumeTrigger(TriggerKey triggerKey) {
+        long position;
+        synchronized (lock) {
+            super.resumeTrigger(triggerKey);
+            // 恢复时可能执行了错过触发指令，整条记录
+            logTrigger(triggerKey);
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public List<String> resumeTriggers(GroupMatcher<TriggerKey> matcher) {
+        List<String> groups;
+        long position;
+        synchronized (lock) {
+            Set<TriggerKey> keys = getTriggerKeys(matcher);
+            groups = super.resumeTriggers(matcher);
+            logPausedGroups();
+            logTriggers(keys);
+            position = journal.position();
+        }
+        sync(position);
+        return groups;
+    }
+
+    @Override
+    public void resumeJob(JobKey jobKey) {
+        long position;
+        synchronized (lock) {
+            super.resumeJob(jobKey);
+            logTriggers(triggerKeysForJob(jobKey));
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public Collection<String> resumeJobs(GroupMatcher<JobKey> matcher) {
+        Collection<String> groups;
+        long position;
+        synchronized (lock) {
+            List<TriggerKey> keys = new ArrayList<TriggerKey>();
+            for (JobKey jobKey : getJobKeys(matcher)) {
+                keys.addAll(triggerKeysForJob(jobKey));
+            }
+            groups = super.resumeJobs(matcher);
+            logPausedGroups();
+            logTriggers(keys);
+            position = journal.position();
+        }
+        sync(position);
+        return groups;
+    }
+
+    @Override
+    public void pauseAll() {
+        long position;
+        synchronized (lock) {
+            super.pauseAll();
+            logPausedGroups();
+            logTriggerStates(new ArrayList<TriggerKey>(triggersByKey.keySet()));
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public void resumeAll() {
+        long position;
+        synchronized (lock) {
+            super.resumeAll();
+            logPausedGroups();
+            logTriggers(new ArrayList<TriggerKey>(triggersByKey.keySet()));
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    @Override
+    public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow) {
+        List<OperableTrigger> acquired;
+        synchronized (lock) {
+            acquired = super.acquireNextTriggers(noLaterThan, maxCount, timeWindow);
+            if (!misfired.isEmpty()) {
+                logTriggers(new ArrayList<TriggerKey>(misfired));
+                misfired.clear();
+            }
+        }
+        // 取出的状态不记录，错过触发指令的结果不需要等待刷盘
+        return acquired;
+    }
+
+    @Override
+    public List<TriggerFiredResult> triggersFired(List<OperableTrigger> firedTriggers) {
+        List<TriggerFiredResult> results;
+        long position;
+        synchronized (lock) {
+            results = super.triggersFired(firedTriggers);
+            for (int i = 0; i < results.size(); i++) {
+                TriggerFiredBundle bundle = results.get(i).getTriggerFiredBundle();
+                if (bundle == null) {
+                    continue;
+                }
+                OperableTrigger trigger = bundle.getTrigger();
+                logTriggered(trigger.getKey(), bundle.getScheduledFireTime());
+                if (bundle.getJobDetail().requestsRecovery()) {
+                    FiredRecord fired = new FiredRecord(trigger.getFireInstanceId(), trigger.getKey(),
+                            trigger.getJobKey(), bundle.getScheduledFireTime().getTime(),
+                            bundle.getFireTime().getTime(), trigger.getPriority(), encodeData(trigger.getJobDataMap()));
+                    firedRecords.put(fired.fireInstanceId, fired);
+                    logFired(fired);
+                }
+                if (Scheduler.DEFAULT_RECOVERY_GROUP.equals(trigger.getKey().getGroup())) {
+                    results.set(i, new TriggerFiredResult(new TriggerFiredBundle(bundle.getJobDetail(), trigger,
+                            bundle.getCalendar(), true, bundle.getFireTime(), bundle.getScheduledFireTime(),
+                            bundle.getPrevFireTime(), bundle.getNextFireTime())));
+                }
+            }
+            position = journal.position();
+        }
+        // 作业开始执行之前，这次触发(以及需要恢复的 FIRED)已经刷盘
+        sync(position);
+        return results;
+    }
+
+    @Override
+    public void triggeredJobComplete(OperableTrigger trigger, JobDetail jobDetail,
+                                     Trigger.CompletedExecutionInstruction triggerInstCode) {
+        long position;
+        synchronized (lock) {
+            super.triggeredJobComplete(trigger, jobDetail, triggerInstCode);
+            if (firedRecords.remove(trigger.getFireInstanceId()) != null) {
+                record.reset();
+                record.writeString(trigger.getFireInstanceId());
+                append(COMPLETED);
+            }
+            if (jobDetail.isPersistJobDataAfterExecution()) {
+                JobDetail stored = retrieveJob(jobDetail.getKey());
+                if (stored != null) {
+                    try {
+                        logJob(stored);
+                    } catch (IllegalArgumentException e) {
+                        getLog().error("JobDataMap of " + jobDetail.getKey() + " is not serializable, not journaled.", e);
+                    }
+                }
+            }
+            // DELETE_TRIGGER 由 removeTrigger 记录
+            switch (triggerInstCode) {
+                case SET_TRIGGER_COMPLETE:
+                case SET_TRIGGER_ERROR:
+                    logTriggerState(trigger.getKey());
+                    break;
+                case SET_ALL_JOB_TRIGGERS_COMPLETE:
+                case SET_ALL_JOB_TRIGGERS_ERROR:
+                    logTriggerStates(triggerKeysForJob(trigger.getJobKey()));
+                    break;
+                default:
+                    break;
+            }
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    // ---------------------------------------------------------------- 恢复
+
+    /**
+     * 为宕机时正在执行、请求恢复的作业创建恢复触发器(与 JobStoreSupport.recoverJobs 相同)。
+     */
+    private void recoverJobs() {
+        long position;
+        synchronized (lock) {
+            if (firedRecords.isEmpty()) {
+                return;
+            }
+            int recovered = 0;
+            for (FiredRecord fired : new ArrayList<FiredRecord>(firedRecords.values())) {
+                firedRecords.remove(fired.fireInstanceId);
+                record.reset();
+                record.writeString(fired.fireInstanceId);
+                append(COMPLETED);
+
+                JobDetail job = retrieveJob(fired.jobKey);
+                if (job == null || !job.requestsRecovery()) {
+                    getLog().warn("Job " + fired.jobKey + " no longer exists or requests recovery, not recovered.");
+                    continue;
+                }
+                TriggerKey key;
+                do {
+                    key = new TriggerKey("recover_" + instanceId + "_" + recoverIds++, Scheduler.DEFAULT_RECOVERY_GROUP);
+                } while (triggersByKey.containsKey(key));
+
+                JobDataMap data = firedData(fired);
+                data.put(Scheduler.FAILED_JOB_ORIGINAL_TRIGGER_NAME, fired.triggerKey.getName());
+                data.put(Scheduler.FAILED_JOB_ORIGINAL_TRIGGER_GROUP, fired.triggerKey.getGroup());
+                data.put(Scheduler.FAILED_JOB_ORIGINAL_TRIGGER_FIRETIME_IN_MILLISECONDS, String.valueOf(fired.fireTime));
+                data.put(Scheduler.FAILED_JOB_ORIGINAL_TRIGGER_SCHEDULED_FIRETIME_IN_MILLISECONDS,
+                        String.valueOf(fired.scheduledTime));
+                OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+                        .withIdentity(key)
+                        .forJob(fired.jobKey)
+                        .startAt(new Date(fired.scheduledTime))
+                        .withPriority(fired.priority)
+                        .usingJobData(data)
+                        .withSchedule(SimpleScheduleBuilder.simpleSchedule().withMisfireHandlingInstructionIgnoreMisfires())
+                        .build();
+                trigger.computeFirstFireTime(null);
+                try {
+                    storeTrigger(trigger, false);
+                    recovered++;
+                } catch (JobPersistenceException e) {
+                    getLog().error("Couldn't store recovery trigger for job " + fired.jobKey, e);
+                }
+            }
+            getLog().info("Recovered " + recovered + " jobs that were in progress when the scheduler stopped.");
+            position = journal.position();
+        }
+        sync(position);
+    }
+
+    /**
+     * 触发时记录的触发器 JobDataMap。只触发一次的触发器在重启时已经不再加载，只能从 FIRED 记录中读取；
+     * 旧日志中的 FIRED 记录没有 JobDataMap，使用仍然存在的触发器的。
+     */
+    private JobDataMap firedData(FiredRecord fired) {
+        if (fired.data != null) {
+            try {
+                return new JobDataMap(decodeData(fired.data));
+            } catch (IOException e) {
+                getLog().error("Couldn't decode JobDataMap of trigger " + fired.triggerKey + ", recovering without it.", e);
+                return new JobDataMap();
+            }
+        }
+        OperableTrigger original = retrieveTrigger(fired.triggerKey);
+        return original == null ? new JobDataMap() : new JobDataMap(original.getJobDataMap());
+    }
+
+    /**
+     * 把读出的状态放进 store，调用方持有 lock。这里直接调用 super 的方法，不写日志(之后压缩成新的一代)。
+     */
+    private void load(Image image) {
+        for (Map.Entry<String, Calendar> e : image.calendars.entrySet()) {
+            try {
+                super.storeCalendar(e.getKey(), e.getValue(), true, false);
+            } catch (ObjectAlreadyExistsException ignore) {
+            }
+        }
+        pausedTriggerGroups.addAll(image.pausedTriggerGroups);
+        pausedJobGroups.addAll(image.pausedJobGroups);
+
+        // 非持久的作业只保留还有触发器或者正在执行(需要恢复)的
+        Set<JobKey> referencedJobs = new HashSet<JobKey>();
+        for (OperableTrigger trigger : image.triggers.values()) {
+            if (trigger.getNextFireTime() != null) {
+                referencedJobs.add(trigger.getJobKey());
+            }
+        }
+        for (FiredRecord fired : image.fired.values()) {
+            referencedJobs.add(fired.jobKey);
+        }
+        for (JobDetail job : image.jobs.values()) {
+            if (job.isDurable() || referencedJobs.contains(job.getKey())) {
+                try {
+                    super.storeJob(job, true);
+                } catch (ObjectAlreadyExistsException ignore) {
+                }
+            }
+        }
+        int dropped = 0;
+        for (Map.Entry<TriggerKey, OperableTrigger> e : image.triggers.entrySet()) {
+            TriggerKey key = e.getKey();
+            OperableTrigger trigger = e.getValue();
+            // 下次触发时间为空：只触发一次、执行完成后才删除的触发器
+            if (trigger.getNextFireTime() == null || !jobsByKey.containsKey(trigger.getJobKey())) {
+                dropped++;
+                continue;
+            }
+            try {
+                super.storeTrigger(trigger, true);
+            } catch (JobPersistenceException ex) {
+                getLog().warn("Couldn't restore trigger " + key, ex);
+                continue;
+            }
+            byte state = image.states.get(key);
+            if (state == PAUSED) {
+                super.pauseTrigger(key);
+            } else if (state == COMPLETE) {
+                restoreTriggerState(key, STATE_COMPLETE);
+            } else if (state == ERROR) {
+                restoreTriggerState(key, STATE_ERROR);
+            }
+        }
+        firedRecords.putAll(image.fired);
+        getLog().info("Replayed journal: " + jobsByKey.size() + " jobs, " + triggersByKey.size() + " triggers, "
+                + calendarsByName.size() + " calendars, " + firedRecords.size() + " jobs in progress"
+                + (dropped > 0 ? ", " + dropped + " completed triggers dropped." : "."));
+    }
+
+    // ---------------------------------------------------------------- 日志记录，调用方持有 lock
+
+    private void append(byte type) {
+        if (!journal.append(type, record.array(), 0, record.size())) {
+            // 文件写满：快照包含了刚才的变更，不再追加这条记录
+            compact();
+        }
+    }
+
+    private void compact() {
+        try {
+            journal.compact(snapshotWriter);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't compact journal in " + journalDir, e);
+        }
+    }
+
+    /**
+     * 等待 position 之前的记录刷盘。在锁内调用时(例如 super 的方法调用了被覆盖的方法)由最外层的调用等待。
+     */
+    private void sync(long position) {
+        if (!Thread.holdsLock(lock)) {
+            journal.awaitSynced(position);
+        }
+    }
+
+    private void logJob(JobDetail job) {
+        logJob(encodeJob(job));
+    }
+
+    private void logJob(Encoded job) {
+        record.reset();
+        record.writeBytes(job.object);
+        record.writeBytes(job.data);
+        append(JOB_CODEC);
+    }
+
+    private void logJobRemoved(JobKey jobKey) {
+        record.reset();
+        writeKey(jobKey.getName(), jobKey.getGroup());
+        append(JOB_REMOVED);
+    }
+
+    private void logTrigger(TriggerKey key) {
+        OperableTrigger trigger = triggerOf(key);
+        if (trigger == null) {
+            logTriggerRemoved(key);
+        } else {
+            logTrigger(key, encodeTrigger(trigger));
+        }
+    }
+
+    private void logTrigger(TriggerKey key, Encoded trigger) {
+        record.reset();
+        record.write(persistedState(key));
+        record.writeBytes(trigger.object);
+        record.writeBytes(trigger.data);
+        append(TRIGGER_CODEC);
+    }
+
+    private void logTriggers(Collection<TriggerKey> keys) {
+        for (TriggerKey key : keys) {
+            logTrigger(key);
+        }
+    }
+
+    private void logTriggerRemoved(TriggerKey key) {
+        record.reset();
+        writeKey(key.getName(), key.getGroup());
+        append(TRIGGER_REMOVED);
+    }
+
+    private void logTriggerState(TriggerKey key) {
+        if (triggerState(key) < 0) {
+            return;
+        }
+        record.reset();
+        writeKey(key.getName(), key.getGroup());
+        record.write(persistedState(key));
+        append(TRIGGER_STATE);
+    }
+
+    private void logTriggerStates(Collection<TriggerKey> keys) {
+        for (TriggerKey key : keys) {
+            logTriggerState(key);
+        }
+    }
+
+    /**
+     * 一次触发：scheduledFireTime 与触发后 store 中触发器的前后两个触发时间。
+     */
+    private void logTriggered(TriggerKey key, Date scheduledFireTime) {
+        OperableTrigger stored = triggerOf(key);
+        if (stored == null) {
+            return;
+        }
+        record.reset();
+        writeKey(key.getName(), key.getGroup());
+        record.writeLong(scheduledFireTime.getTime());
+        record.writeLong(timeOf(stored.getPreviousFireTime()));
+        record.writeLong(timeOf(stored.getNextFireTime()));
+        append(TRIGGERED);
+    }
+
+    private void logCalendar(String name) {
+        byte[] bytes = serialize(calendarsByName.get(name));
+        record.reset();
+        record.writeString(name);
+        record.writeBytes(bytes);
+        append(CALENDAR);
+    }
+
+    private void logPausedGroups() {
+        record.reset();
+        record.writeInt(pausedTriggerGroups.size());
+        for (String group : pausedTriggerGroups) {
+            record.writeString(group);
+        }
+        record.writeInt(pausedJobGroups.size());
+        for (String group : pausedJobGroups) {
+            record.writeString(group);
+        }
+        append(PAUSED_GROUPS);
+    }
+
+    private void logFired(FiredRecord fired) {
+        record.reset();
+        record.writeString(fired.fireInstanceId);
+        writeKey(fired.triggerKey.getName(), fired.triggerKey.getGroup());
+        writeKey(fired.jobKey.getName(), fired.jobKey.getGroup());
+        record.writeLong(fired.scheduledTime);
+        record.writeLong(fired.fireTime);
+        record.writeInt(fired.priority);
+        record.writeBytes(fired.data);
+        append(FIRED_CODEC);
+    }
+
+    private void writeKey(String name, String group) {
+        record.writeString(name);
+        record.writeString(group);
+    }
+
+    private byte persistedState(TriggerKey key) {
+        switch (triggerState(key)) {
+            case STATE_PAUSED:
+            case STATE_PAUSED_BLOCKED:
+                return PAUSED;
+            case STATE_COMPLETE:
+                return COMPLETE;
+            case STATE_ERROR:
+                return ERROR;
+            default:
+                return NORMAL;
+        }
+    }
+
+    /** store 中的触发器本身(不复制) */
+    private OperableTrigger triggerOf(TriggerKey key) {
+        Object wrapper = triggersByKey.get(key);
+        return wrapper == null ? null : TimingWheelTriggerSet.triggerOf(wrapper);
+    }
+
+    private List<TriggerKey> triggerKeysForJob(JobKey jobKey) {
+        List<TriggerKey> keys = new ArrayList<TriggerKey>();
+        for (OperableTrigger trigger : getTriggersForJob(jobKey)) {
+            keys.add(trigger.getKey());
+        }
+        return keys;
+    }
+
+    private List<TriggerKey> triggerKeysForCalendar(String calName) {
+        List<TriggerKey> keys = new ArrayList<TriggerKey>();
+        for (TriggerKey key : triggersByKey.keySet()) {
+            if (calName.equals(triggerOf(key).getCalendarName())) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static long timeOf(Date date) {
+        return date == null ? -1L : date.getTime();
+    }
+
+    private static Date dateOf(long time) {
+        return time < 0 ? null : new Date(time);
+    }
+
+    /**
+     * 不含 JobDataMap 的作业(Java 序列化)和单独编码的 JobDataMap。
+     */
+    private Encoded encodeJob(JobDetail job) {
+        JobDetail withoutData = job.getJobBuilder().setJobData(new JobDataMap()).build();
+        return new Encoded(serialize(withoutData), encodeData(job.getJobDataMap()));
+    }
+
+    private Encoded encodeTrigger(OperableTrigger trigger) {
+        OperableTrigger withoutData = (OperableTrigger) trigger.clone();
+        withoutData.setJobDataMap(new JobDataMap());
+        return new Encoded(serialize(withoutData), encodeData(trigger.getJobDataMap()));
+    }
+
+    private byte[] encodeData(JobDataMap data) {
+        if (data == null || data.isEmpty()) {
+            return new byte[0];
+        }
+        try {
+            return codec.encode(data.getWrappedMap());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Couldn't encode JobDataMap into the journal", e);
+        }
+    }
+
+    private JobDataMap decodeData(byte[] data) throws IOException {
+        return data.length == 0 ? new JobDataMap() : codec.decode(data);
+    }
+
+    private static byte[] serialize(Object o) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(o);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Couldn't serialize " + o + " into the journal", e);
+        }
+    }
+
+    private Object deserialize(byte[] bytes) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                try {
+                    return loadHelper.loadClass(desc.getName());
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(desc);
+                }
+            }
+        };
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Class not found while reading journal: " + e.getMessage(), e);
+        } finally {
+            in.close();
+        }
+    }
+
+    // ---------------------------------------------------------------- 重放
+
+    /**
+     * 重放日志得到的状态。
+     */
+    private final class Image implements MappedJournal.RecordHandler {
+
+        final Map<String, Calendar> calendars = new LinkedHashMap<String, Calendar>();
+
+        final Map<JobKey, JobDetail> jobs = new LinkedHashMap<JobKey, JobDetail>();
+
+        final Map<TriggerKey, OperableTrigger> triggers = new LinkedHashMap<TriggerKey, OperableTrigger>();
+
+        final Map<TriggerKey, Byte> states = new HashMap<TriggerKey, Byte>();
+
+        final Set<String> pausedTriggerGroups = new HashSet<String>();
+
+        final Set<String> pausedJobGroups = new HashSet<String>();
+
+        final Map<String, FiredRecord> fired = new LinkedHashMap<String, FiredRecord>();
+
+        @Override
+        public void record(byte type, byte[] data, int offset, int length) throws IOException {
+            RecordReader in = new RecordReader(data, offset);
+            switch (type) {
+                case JOB: {
+                    JobDetail job = (JobDetail) deserialize(in.readBytes());
+                    jobs.put(job.getKey(), job);
+                    break;
+                }
+                case JOB_REMOVED: {
+                    String name = in.readString();
+                    jobs.remove(new JobKey(name, in.readString()));
+                    break;
+                }
+                case JOB_CODEC: {
+                    JobDetail job = (JobDetail) deserialize(in.readBytes());
+                    job = job.getJobBuilder().setJobData(decodeData(in.readBytes())).build();
+                    jobs.put(job.getKey(), job);
+                    break;
+                }
+                case TRIGGER:
+                case TRIGGER_CODEC: {
+                    byte state = in.readByte();
+                    OperableTrigger trigger = (OperableTrigger) deserialize(in.readBytes());
+                    if (type == TRIGGER_CODEC) {
+                        trigger.setJobDataMap(decodeData(in.readBytes()));
+                    }
+                    triggers.put(trigger.getKey(), trigger);
+                    states.put(trigger.getKey(), state);
+                    break;
+                }
+                case TRIGGER_REMOVED: {
+                    TriggerKey key = readTriggerKey(in);
+                    triggers.remove(key);
+                    states.remove(key);
+                    break;
+                }
+                case TRIGGER_STATE: {
+                    TriggerKey key = readTriggerKey(in);
+                    byte state = in.readByte();
+                    if (triggers.containsKey(key)) {
+                        states.put(key, state);
+                    }
+                    break;
+                }
+                case TRIGGERED: {
+                    OperableTrigger trigger = triggers.get(readTriggerKey(in));
+                    long scheduled = in.readLong();
+                    Date previous = dateOf(in.readLong());
+                    Date next = dateOf(in.readLong());
+                    if (trigger == null) {
+                        break;
+                    }
+                    // 重新执行 triggered() 以更新触发次数等内部状态，触发时间以记录为准
+                    Date nextFireTime = trigger.getNextFireTime();
+                    if (nextFireTime != null && nextFireTime.getTime() == scheduled) {
+                        trigger.triggered(trigger.getCalendarName() == null ? null
+                                : calendars.get(trigger.getCalendarName()));
+                    }
+                    trigger.setPreviousFireTime(previous);
+                    trigger.setNextFireTime(next);
+                    break;
+                }
+                case CALENDAR: {
+                    String name = in.readString();
+                    calendars.put(name, (Calendar) deserialize(in.readBytes()));
+                    break;
+                }
+                case CALENDAR_REMOVED:
+                    calendars.remove(in.readString());
+                    break;
+                case PAUSED_GROUPS:
+                    pausedTriggerGroups.clear();
+                    for (int n = in.readInt(); n > 0; n--) {
+                        pausedTriggerGroups.add(in.readString());
+                    }
+                    pausedJobGroups.clear();
+                    for (int n = in.readInt(); n > 0; n--) {
+                        pausedJobGroups.add(in.readString());
+                    }
+                    break;
+                case FIRED:
+                case FIRED_CODEC: {
+                    String fireInstanceId = in.readString();
+                    TriggerKey triggerKey = readTriggerKey(in);
+                    String jobName = in.readString();
+                    JobKey jobKey = new JobKey(jobName, in.readString());
+                    long scheduledTime = in.readLong();
+                    long fireTime = in.readLong();
+                    int priority = in.readInt();
+                    byte[] triggerData = type == FIRED_CODEC ? in.readBytes() : null;
+                    fired.put(fireInstanceId, new FiredRecord(fireInstanceId, triggerKey, jobKey, scheduledTime,
+                            fireTime, priority, triggerData));
+                    break;
+                }
+                case COMPLETED:
+                    fired.remove(in.readString());
+                    break;
+                default:
+                    throw new IOException("Unknown journal record type " + type);
+            }
+        }
+
+        private TriggerKey readTriggerKey(RecordReader in) {
+            String name = in.readString();
+            return new TriggerKey(name, in.readString());
+        }
+    }
+
+    private static final class Encoded {
+
+        final byte[] object;
+
+        final byte[] data;
+
+        Encoded(byte[] object, byte[] data) {
+            this.object = object;
+            this.data = data;
+        }
+    }
+
+    /**
+     * 请求恢复的作业的一次触发(对应 QRTZ_FIRED_TRIGGERS 中的一行)。
+     */
+    private static final class FiredRecord {
+
+        final String fireInstanceId;
+
+        final TriggerKey triggerKey;
+
+        final JobKey jobKey;
+
+        final long scheduledTime;
+
+        final long fireTime;
+
+        final int priority;
+
+        /** 触发时触发器的 JobDataMap(已编码)，旧日志中的 FIRED 记录为 null */
+        final byte[] data;
+
+        FiredRecord(String fireInstanceId, TriggerKey triggerKey, JobKey jobKey, long scheduledTime, long fireTime,
+                    int priority, byte[] data) {
+            this.fireInstanceId = fireInstanceId;
+            this.triggerKey = triggerKey;
+            this.jobKey = jobKey;
+            this.scheduledTime = scheduledTime;
+            this.fireTime = fireTime;
+            this.priority = priority;
+            this.data = data;
+        }
+    }
+
+    /**
+     * 记录取出时执行了错过触发指令的触发器(RAMJobStore.applyMisfire 会通知 notifyTriggerListenersMisfired)，
+     * 由下一次 acquireNextTriggers 整条重新记录。
+     */
+    private final class MisfireTrackingSignaler implements SchedulerSignaler {
+
+        private final SchedulerSignaler delegate;
+
+        MisfireTrackingSignaler(SchedulerSignaler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void notifyTriggerListenersMisfired(Trigger trigger) {
+            synchronized (lock) {
+                misfired.add(trigger.getKey());
+            }
+            delegate.notifyTriggerListenersMisfired(trigger);
+        }
+
+        @Override
+        public void notifySchedulerListenersFinalized(Trigger trigger) {
+            delegate.notifySchedulerListenersFinalized(trigger);
+        }
+
+        @Override
+        public void notifySchedulerListenersJobDeleted(JobKey jobKey) {
+            delegate.notifySchedulerListenersJobDeleted(jobKey);
+        }
+
+        @Override
+        public void signalSchedulingChange(long candidateNewNextFireTime) {
+            delegate.signalSchedulingChange(candidateNewNextFireTime);
+        }
+
+        @Override
+        public void notifySchedulerListenersError(String string, SchedulerException jpe) {
+            delegate.notifySchedulerListenersError(string, jpe);
+        }
+    }
+}
@@ -0,0 +1,569 @@
+package quartzDemo.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * JournalJobStore 使用的内存映射、只追加的日志文件。
+ *
+ * 目录中每一代(generation)是一个文件 journal-<代>.qj：文件头之后先是一份完整的快照(以 SNAPSHOT_END 记录结束)，
+ * 之后是快照之后的变更记录。每条记录是 [长度][类型][内容][CRC32]，长度为 0 表示后面还没有写入(映射的文件预先填满 0)，
+ * CRC 不符说明是宕机时写了一半的记录，读到这里为止。
+ * 压缩(compact)时把当前状态写成新一代的快照，强制刷盘后再删除旧文件；新文件的快照不完整(压缩时宕机)时使用旧的一代。
+ *
+ * 刷盘策略(syncPolicy)：
+ * group：调用方等到自己的记录刷盘后才返回，后台线程每次 force 覆盖所有已经写入的记录，同时等待的调用方共用一次刷盘(组提交)；
+ * periodic：每 syncIntervalMillis 毫秒刷盘一次，调用方不等待，宕机时最多丢失这段时间的变更；
+ * none：只在压缩和关闭时刷盘，其他时候由操作系统决定。
+ *
+ * append 由调用方串行调用(JournalJobStore 在自己的锁内调用)，等待刷盘(awaitSynced)不能持有该锁。
+ */
+final class MappedJournal {
+
+    static final String SYNC_GROUP = "group";
+
+    static final String SYNC_PERIODIC = "periodic";
+
+    static final String SYNC_NONE = "none";
+
+    /** 快照结束标记 */
+    static final byte SNAPSHOT_END = 0;
+
+    private static final int MAGIC = 0x514A524E;
+
+    private static final int VERSION = 1;
+
+    /** magic、version、generation */
+    private static final int HEADER_SIZE = 16;
+
+    /** 长度、类型和 CRC */
+    private static final int FRAME_OVERHEAD = 9;
+
+    private static final String PREFIX = "journal-";
+
+    private static final String SUFFIX = ".qj";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedJournal.class);
+
+    /**
+     * 读取日志时的回调。
+     */
+    interface RecordHandler {
+
+        void record(byte type, byte[] data, int offset, int length) throws IOException;
+    }
+
+    /**
+     * 压缩时写出当前状态。
+     */
+    interface SnapshotWriter {
+
+        void writeSnapshot(MappedJournal journal) throws IOException;
+    }
+
+    private final File dir;
+
+    private final long fileSize;
+
+    private final String syncPolicy;
+
+    private final long syncIntervalMillis;
+
+    private final CRC32 crc = new CRC32();
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    /** 有调用方在等待刷盘(唤醒后台线程) */
+    private final Condition syncRequested = syncLock.newCondition();
+
+    /** synced 前进了(唤醒等待的调用方)；调用方之间不互相唤醒 */
+    private final Condition syncDone = syncLock.newCondition();
+
+    private long generation;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    /** 快照在当前文件中结束的位置 */
+    private int snapshotEnd;
+
+    /** 压缩时快照先写到这里 */
+    private ExpandableBuffer snapshot;
+
+    /** 写入的总字节数(跨越各代，只增不减)，由 syncLock 之外的 append 更新 */
+    private volatile long appended;
+
+    /** 已经刷盘的位置，由 syncLock 保护 */
+    private long synced;
+
+    private volatile boolean closed;
+
+    private Thread writer;
+
+    MappedJournal(File dir, long fileSize, String syncPolicy, long syncIntervalMillis) {
+        if (!SYNC_GROUP.equals(syncPolicy) && !SYNC_PERIODIC.equals(syncPolicy) && !SYNC_NONE.equals(syncPolicy)) {
+            throw new IllegalArgumentException("Unknown syncPolicy: " + syncPolicy);
+        }
+        this.dir = dir;
+        this.fileSize = fileSize;
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
+
+    /**
+     * 读取最新的完整一代，返回是否读到了已有的日志。之后必须先调用 compact 写出新的一代才能追加。
+     */
+    boolean replay(RecordHandler handler) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + dir);
+        }
+        long[] generations = listGenerations();
+        for (int i = generations.length - 1; i >= 0; i--) {
+            File file = fileOf(generations[i]);
+            byte[] data = readFile(file);
+            int end = scan(data, handler, true);
+            if (end < 0) {
+                LOG.warn("Journal " + file + " has no complete snapshot, falling back to the previous generation.");
+                continue;
+            }
+            scan(data, handler, false);
+            generation = generations[i];
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 逐条读取 data 中的记录，返回快照结束的位置(快照不完整时返回 -1)。dryRun 时只检查快照是否完整，
+     * 否则把所有完整的记录交给 handler。
+     */
+    private int scan(byte[] data, RecordHandler handler, boolean dryRun) throws IOException {
+        if (data.length < HEADER_SIZE || readInt(data, 0) != MAGIC || readInt(data, 4) != VERSION) {
+            return -1;
+        }
+        int pos = HEADER_SIZE;
+        int snapshotAt = -1;
+        CRC32 check = new CRC32();
+        while (pos + FRAME_OVERHEAD <= data.length) {
+            int length = readInt(data, pos);
+            if (length <= 0 || pos + 4 + length + 4 > data.length) {
+                break;
+            }
+            check.reset();
+            check.update(data, pos + 4, length);
+            if ((int) check.getValue() != readInt(data, pos + 4 + length)) {
+                break;
+            }
+            byte type = data[pos + 4];
+            if (type == SNAPSHOT_END) {
+                snapshotAt = pos + 4 + length + 4;
+            } else if (!dryRun) {
+                handler.record(type, data, pos + 5, length - 1);
+            }
+            pos += 4 + length + 4;
+        }
+        return snapshotAt;
+    }
+
+    /**
+     * 写出新的一代：snapshotWriter 写出当前的全部状态，强制刷盘后切换到新文件并删除旧文件。
+     * 调用方必须保证压缩期间没有并发的 append。
+     */
+    void compact(SnapshotWriter snapshotWriter) throws IOException {
+        snapshot = new ExpandableBuffer(64 * 1024);
+        try {
+            snapshotWriter.writeSnapshot(this);
+            appendTo(snapshot, SNAPSHOT_END, new byte[0], 0, 0);
+            long newGeneration = generation + 1;
+            long size = Math.max(fileSize, roundUp(HEADER_SIZE + 2L * snapshot.size()));
+            File file = fileOf(newGeneration);
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.setLength(size);
+            FileChannel newChannel = raf.getChannel();
+            MappedByteBuffer newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            newBuffer.putInt(MAGIC).putInt(VERSION).putLong(newGeneration);
+            newBuffer.put(snapshot.array(), 0, snapshot.size());
+            newBuffer.force();
+
+            FileChannel oldChannel = channel;
+            long oldGeneration = generation;
+            syncLock.lock();
+            try {
+                channel = newChannel;
+                buffer = newBuffer;
+                generation = newGeneration;
+                snapshotEnd = newBuffer.position();
+                // 快照包含了之前写入的所有记录
+                appended += snapshot.size();
+                synced = appended;
+                syncDone.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+            closeQuietly(oldChannel);
+            deleteGenerationsBefore(newGeneration);
+            LOG.debug("Compacted journal generation " + oldGeneration + " into " + file + " ("
+                    + snapshot.size() + " bytes).");
+        } finally {
+            snapshot = null;
+        }
+    }
+
+    /**
+     * 追加一条记录；压缩期间(在 SnapshotWriter 中)写入快照。当前文件放不下时返回 false，调用方应该压缩。
+     */
+    boolean append(byte type, byte[] data, int offset, int length) {
+        if (snapshot != null) {
+            appendTo(snapshot, type, data, offset, length);
+            return true;
+        }
+        if (buffer == null || buffer.remaining() < FRAME_OVERHEAD + length) {
+            return false;
+        }
+        int start = buffer.position();
+        buffer.putInt(length + 1).put(type).put(data, offset, length);
+        crc.reset();
+        crc.update(type);
+        crc.update(data, offset, length);
+        buffer.putInt((int) crc.getValue());
+        appended += buffer.position() - start;
+        return true;
+    }
+
+    private void appendTo(ExpandableBuffer out, byte type, byte[] data, int offset, int length) {
+        crc.reset();
+        crc.update(type);
+        crc.update(data, offset, length);
+        out.writeInt(length + 1);
+        out.write(type);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /** 已经追加的位置，作为 awaitSynced 的参数 */
+    long position() {
+        return appended;
+    }
+
+    /** 当前文件中快照之后的变更已经超过文件的一半 */
+    boolean needsCompaction() {
+        MappedByteBuffer b = buffer;
+        return b != null && b.position() - snapshotEnd > b.capacity() / 2;
+    }
+
+    /**
+     * group 策略时等待 position 之前的记录刷盘，其他策略直接返回。
+     */
+    void awaitSynced(long position) {
+        if (!SYNC_GROUP.equals(syncPolicy)) {
+            return;
+        }
+        boolean interrupted = false;
+        syncLock.lock();
+        try {
+            while (synced < position && !closed) {
+                syncRequested.signal();
+                try {
+                    syncDone.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 启动刷盘和压缩线程。
+     */
+    void start(String threadName, boolean daemon, final Runnable compactor) {
+        writer = new Thread(threadName) {
+            @Override
+            public void run() {
+                while (!closed) {
+                    try {
+                        syncOnce();
+                        if (needsCompaction()) {
+                            compactor.run();
+                        }
+                    } catch (RuntimeException e) {
+                        LOG.error("Journal writer failed", e);
+                    }
+                }
+            }
+        };
+        writer.setDaemon(daemon);
+        writer.start();
+    }
+
+    private void syncOnce() {
+        MappedByteBuffer target;
+        long position;
+        syncLock.lock();
+        try {
+            if (SYNC_GROUP.equals(syncPolicy)) {
+                // 有人等待时立即刷盘，否则最多等 syncIntervalMillis 后把已经写入的记录刷盘
+                if (appended <= synced) {
+                    awaitQuietly(syncRequested, syncIntervalMillis);
+                }
+            } else {
+                awaitQuietly(syncRequested, syncIntervalMillis);
+                if (SYNC_NONE.equals(syncPolicy)) {
+                    return;
+                }
+            }
+            if (appended <= synced || closed) {
+                return;
+            }
+            target = buffer;
+            position = appended;
+        } finally {
+            syncLock.unlock();
+        }
+        target.force();
+        syncLock.lock();
+        try {
+            if (position > synced) {
+                synced = position;
+            }
+            syncDone.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private static void awaitQuietly(Condition condition, long millis) {
+        try {
+            condition.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 停止后台线程，刷盘并关闭文件。
+     */
+    void close() {
+        syncLock.lock();
+        try {
+            closed = true;
+            syncRequested.signalAll();
+            syncDone.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (buffer != null) {
+            buffer.force();
+        }
+        closeQuietly(channel);
+    }
+
+    private long[] listGenerations() {
+        String[] names = dir.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File d, String name) {
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }
+        });
+        if (names == null) {
+            return new long[0];
+        }
+        long[] generations = new long[names.length];
+        int n = 0;
+        for (String name : names) {
+            try {
+                generations[n] = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                n++;
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        generations = Arrays.copyOf(generations, n);
+        Arrays.sort(generations);
+        return generations;
+    }
+
+    private void deleteGenerationsBefore(long keep) {
+        for (long g : listGenerations()) {
+            // 在 Windows 上仍被映射的文件不能删除，下次压缩时再删
+            if (g < keep && !fileOf(g).delete()) {
+                LOG.debug("Could not delete old journal " + fileOf(g));
+            }
+        }
+    }
+
+    private File fileOf(long g) {
+        return new File(dir, PREFIX + g + SUFFIX);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] data = new byte[(int) raf.length()];
+            raf.readFully(data);
+            return data;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int readInt(byte[] data, int pos) {
+        return (data[pos] & 0xFF) << 24 | (data[pos + 1] & 0xFF) << 16 | (data[pos + 2] & 0xFF) << 8
+                | (data[pos + 3] & 0xFF);
+    }
+
+    private static long roundUp(long size) {
+        long mb = 1L << 20;
+        return (size + mb - 1) / mb * mb;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * 读取一条记录的内容，与 ExpandableBuffer 的写法对应。
+     */
+    static final class RecordReader {
+
+        private final byte[] data;
+
+        private int pos;
+
+        RecordReader(byte[] data, int offset) {
+            this.data = data;
+            this.pos = offset;
+        }
+
+        byte readByte() {
+            return data[pos++];
+        }
+
+        int readInt() {
+            int v = MappedJournal.readInt(data, pos);
+            pos += 4;
+            return v;
+        }
+
+        long readLong() {
+            return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+        }
+
+        byte[] readBytes() {
+            int length = readInt();
+            byte[] b = Arrays.copyOfRange(data, pos, pos + length);
+            pos += length;
+            return b;
+        }
+
+        String readString() {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            String s = new String(data, pos, length, UTF_8);
+            pos += length;
+            return s;
+        }
+    }
+
+    /**
+     * 不加同步的 ByteArrayOutputStream，同时用来编码单条记录。
+     */
+    static final class ExpandableBuffer {
+
+        private byte[] buf;
+
+        private int count;
+
+        ExpandableBuffer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void reset() {
+            count = 0;
+        }
+
+        int size() {
+            return count;
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            buf[count++] = (byte) (v >>> 24);
+            buf[count++] = (byte) (v >>> 16);
+            buf[count++] = (byte) (v >>> 8);
+            buf[count++] = (byte) v;
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        void writeBytes(byte[] b) {
+            writeInt(b.length);
+            write(b, 0, b.length);
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                writeInt(-1);
+            } else {
+                writeBytes(s.getBytes(UTF_8));
+            }
+        }
+
+        private void ensure(int n) {
+            if (count + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+            }
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package quartzDemo.store;
+
+import org.quartz.Calendar;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerKey;
+import org.quartz.impl.jdbcjobstore.FiredTriggerRecord;
+import org.quartz.impl.jdbcjobstore.JobStoreSupport;
+import org.quartz.impl.jdbcjobstore.SchedulerStateRecord;
+import org.quartz.impl.jdbcjobstore.StdJDBCConstants;
+import org.quartz.impl.jdbcjobstore.Util;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 不使用 QRTZ_LOCKS 行锁取出和触发的集群 JobStoreTX(乐观锁)。
+ *
+ * 集群模式下 JobStoreTX 的取出、触发和完成都要先锁住 QRTZ_LOCKS 中 TRIGGER_ACCESS 这一行，所有节点的调度线程和工作线程
+ * 都在这一行上排队，数据库锁饱和之后增加节点不能提高吞吐量。这里这三步不再获取全局锁，而是用带版本条件的 UPDATE 直接在
+ * 触发器行上声明所有权，触发器的 NEXT_FIRE_TIME 就是版本(每次触发都会改变)：
+ * 1，取出：查出到期的触发器和它们的 NEXT_FIRE_TIME，逐个执行
+ *    UPDATE QRTZ_TRIGGERS SET TRIGGER_STATE = 'ACQUIRED' WHERE ... AND TRIGGER_STATE = 'WAITING' AND NEXT_FIRE_TIME = ?，
+ *    更新 0 行说明已被其他节点取走或已被修改，跳过即可；声明成功后写入 QRTZ_FIRED_TRIGGERS，这一行的 ENTRY_ID 是本次声明的凭证；
+ * 2，触发：按 ENTRY_ID 更新 QRTZ_FIRED_TRIGGERS，再用 TRIGGER_STATE = 'ACQUIRED' AND NEXT_FIRE_TIME = ? 的条件更新锁住
+ *    触发器行，任一条更新 0 行(触发器被暂停、删除、替换，或本节点被集群恢复当作宕机撤销了声明)都不触发；
+ *    之后更新下次触发时间等与 JobStoreTX 相同，触发器行在提交前一直被本事务锁住；
+ * 3，完成：允许并发执行的作业执行结果为 NOOP 时只删除自己的 QRTZ_FIRED_TRIGGERS 行(需要时保存 JobDataMap)。
+ * 不允许并发执行的作业在触发和完成时要改变同一作业其他触发器的状态，仍然在 TRIGGER_ACCESS 锁内按 JobStoreTX 的逻辑执行；
+ * 调度、暂停、删除等 API 操作、释放取出的触发器、错过触发和集群恢复也与 JobStoreTX 相同。它们与乐观路径之间由上面的版本条件
+ * 和数据库的行锁保证一致。
+ *
+ * 分区：集群时每个节点按 QRTZ_SCHEDULER_STATE 中存活的实例(按 instanceId 排序)把触发器按 TriggerKey 的哈希分区，
+ * 取出时只取自己分区的触发器，其他分区的触发器超过 partitionStealMillis 毫秒仍未被取出(节点宕机或过载)时也会取出。
+ * 分区只用来减少节点之间的冲突，正确性由版本条件保证；节点加入或退出后最多 clusterCheckinInterval 毫秒重新分区。
+ * 一次声明多行时按 TriggerKey 的顺序更新，两个节点不会以相反的顺序锁行而死锁。
+ *
+ * 数据库需要行级锁，并且 UPDATE 在等到其他事务的行锁后重新检查 WHERE 条件(READ COMMITTED 下的 PostgreSQL、MySQL InnoDB、
+ * Oracle 以及 H2 1.4 都是如此)。
+ *
+ * 配置：
+ * org.quartz.jobStore.class = quartzDemo.store.OptimisticJobStoreTX
+ * org.quartz.jobStore.isClustered = true
+ * org.quartz.jobStore.partitioned = true           (可选，默认 true，只在集群时生效)
+ * org.quartz.jobStore.partitionStealMillis = 1000  (可选，取出其他分区的触发器之前等待的毫秒数)
+ * 其他属性与 JobStoreTX 相同，所有节点都必须使用这个类。
+ *
+ * 与 BatchingJobStoreTX 一样直接继承 JobStoreSupport 并实现 JobStoreTX 的几个方法，避免 JobStoreTX 原始类型的
+ * executeInLock 带来的 unchecked 警告。
+ */
+public class OptimisticJobStoreTX extends JobStoreSupport {
+
+    public static final long DEFAULT_PARTITION_STEAL_MILLIS = 1000L;
+
+    private static final int MAX_CLAIM_RETRY = 3;
+
+    /** 与 SELECT_NEXT_TRIGGER_TO_ACQUIRE 相同，同时读出作为版本的 NEXT_FIRE_TIME */
+    private static final String SELECT_DUE_TRIGGERS = StdJDBCConstants.SELECT_NEXT_TRIGGER_TO_ACQUIRE;
+
+    private static final String CLAIM_TRIGGER = "UPDATE " + StdJDBCConstants.TABLE_PREFIX_SUBST + TABLE_TRIGGERS
+            + " SET " + COL_TRIGGER_STATE + " = ? WHERE " + COL_SCHEDULER_NAME + " = " + StdJDBCConstants.SCHED_NAME_SUBST
+            + " AND " + COL_TRIGGER_NAME + " = ? AND " + COL_TRIGGER_GROUP + " = ? AND " + COL_TRIGGER_STATE + " = ? AND "
+            + COL_NEXT_FIRE_TIME + " = ?";
+
+    private static final Comparator<DueTrigger> BY_KEY = new Comparator<DueTrigger>() {
+        @Override
+        public int compare(DueTrigger a, DueTrigger b) {
+            return a.key.compareTo(b.key);
+        }
+    };
+
+    private boolean partitioned = true;
+
+    private long partitionStealMillis = DEFAULT_PARTITION_STEAL_MILLIS;
+
+    /** 只由调度线程(acquireNextTriggers)读写 */
+    private Partition partition = Partition.WHOLE;
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * 为 false 时每个节点都取所有到期的触发器，只靠版本条件避免重复触发。
+     */
+    public void setPartitioned(boolean partitioned) {
+        this.partitioned = partitioned;
+    }
+
+    public long getPartitionStealMillis() {
+        return partitionStealMillis;
+    }
+
+    public void setPartitionStealMillis(long partitionStealMillis) {
+        if (partitionStealMillis < 0) {
+            throw new IllegalArgumentException("partitionStealMillis cannot be negative");
+        }
+        this.partitionStealMillis = partitionStealMillis;
+    }
+
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler signaler) throws SchedulerConfigException {
+        super.initialize(loadHelper, signaler);
+        getLog().info("OptimisticJobStoreTX initialized.");
+    }
+
+    @Override
+    protected Connection getNonManagedTXConnection() throws JobPersistenceException {
+        return getConnection();
+    }
+
+    @Override
+    protected <T> T executeInLock(String lockName, TransactionCallback<T> txCallback) throws JobPersistenceException {
+        return executeInNonManagedTXLock(lockName, txCallback, null);
+    }
+
+    // ---------------------------------------------------------------- 取出
+
+    @Override
+    public List<OperableTrigger> acquireNextTriggers(final long noLaterThan, final int maxCount, final long timeWindow)
+            throws JobPersistenceException {
+        return executeInNonManagedTXLock(null,
+                new TransactionCallback<List<OperableTrigger>>() {
+                    public List<OperableTrigger> execute(Connection conn) throws JobPersistenceException {
+                        return claimNextTriggers(conn, noLaterThan, maxCount, timeWindow);
+                    }
+                },
+                new TransactionValidator<List<OperableTrigger>>() {
+                    public Boolean validate(Connection conn, List<OperableTrigger> result) throws JobPersistenceException {
+                        Set<String> fireInstanceIds = selectFireInstanceIds(conn, null);
+                        for (OperableTrigger tr : result) {
+                            if (fireInstanceIds.contains(tr.getFireInstanceId())) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                });
+    }
+
+    /**
+     * 与 JobStoreSupport.acquireNextTrigger 的规则相同(batchEnd、不允许并发的作业一批只取一个)，只是用版本条件声明触发器。
+     */
+    private List<OperableTrigger> claimNextTriggers(Connection conn, long noLaterThan, int maxCount, long timeWindow)
+            throws JobPersistenceException {
+        if (timeWindow < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        List<OperableTrigger> acquiredTriggers = new ArrayList<OperableTrigger>();
+        int currentLoopCount = 0;
+        do {
+            currentLoopCount++;
+            try {
+                Partition part = currentPartition(conn);
+                List<DueTrigger> due = selectDueTriggers(conn, noLaterThan + timeWindow, getMisfireTime(),
+                        maxCount * part.count);
+                if (due.isEmpty()) {
+                    return acquiredTriggers;
+                }
+
+                long now = System.currentTimeMillis();
+                long batchEnd = noLaterThan;
+                List<DueTrigger> chosen = new ArrayList<DueTrigger>(maxCount);
+                for (DueTrigger candidate : due) {
+                    if (!part.owns(candidate.key) && candidate.nextFireTime > now - partitionStealMillis) {
+                        continue;
+                    }
+                    if (candidate.nextFireTime > batchEnd) {
+                        break;
+                    }
+                    if (chosen.isEmpty()) {
+                        batchEnd = Math.max(candidate.nextFireTime, now) + timeWindow;
+                    }
+                    chosen.add(candidate);
+                    if (chosen.size() == maxCount) {
+                        break;
+                    }
+                }
+
+                List<DueTrigger> claimOrder = new ArrayList<DueTrigger>(chosen);
+                Collections.sort(claimOrder, BY_KEY);
+                for (DueTrigger candidate : claimOrder) {
+                    candidate.claimed = claim(conn, candidate.key, STATE_WAITING, candidate.nextFireTime);
+                }
+
+                Set<JobKey> acquiredJobKeysForNoConcurrentExec = new HashSet<JobKey>();
+                for (DueTrigger candidate : chosen) {
+                    if (!candidate.claimed) {
+                        continue;
+                    }
+                    OperableTrigger nextTrigger = retrieveTrigger(conn, candidate.key);
+                    if (nextTrigger == null) {
+                        continue;
+                    }
+
+                    JobKey jobKey = nextTrigger.getJobKey();
+                    JobDetail job;
+                    try {
+                        job = retrieveJob(conn, jobKey);
+                    } catch (JobPersistenceException jpe) {
+                        try {
+                            getLog().error("Error retrieving job, setting trigger state to ERROR.", jpe);
+                            getDelegate().updateTriggerState(conn, candidate.key, STATE_ERROR);
+                        } catch (SQLException sqle) {
+                            getLog().error("Unable to set trigger state to ERROR.", sqle);
+                        }
+                        continue;
+                    }
+
+                    if (job.isConcurrentExectionDisallowed() && !acquiredJobKeysForNoConcurrentExec.add(jobKey)) {
+                        // 已经声明了同一作业的另一个触发器，放回去
+                        getDelegate().updateTriggerStateFromOtherState(conn, candidate.key, STATE_WAITING, STATE_ACQUIRED);
+                        continue;
+                    }
+
+                    nextTrigger.setFireInstanceId(getFiredTriggerRecordId());
+                    getDelegate().insertFiredTrigger(conn, nextTrigger, STATE_ACQUIRED, null);
+                    acquiredTriggers.add(nextTrigger);
+                }
+
+                // 候选都被其他节点抢先声明时重新查询
+                if (acquiredTriggers.size() == 0 && currentLoopCount < MAX_CLAIM_RETRY) {
+                    continue;
+                }
+                break;
+            } catch (Exception e) {
+                throw new JobPersistenceException("Couldn't acquire next trigger: " + e.getMessage(), e);
+            }
+        } while (true);
+
+        return acquiredTriggers;
+    }
+
+    private List<DueTrigger> selectDueTriggers(Connection conn, long noLaterThan, long noEarlierThan, int maxCount)
+            throws SQLException {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        List<DueTrigger> due = new ArrayList<DueTrigger>();
+        try {
+            ps = conn.prepareStatement(rtp(SELECT_DUE_TRIGGERS));
+            if (maxCount < 1) {
+                maxCount = 1;
+            }
+            ps.setMaxRows(maxCount);
+            ps.setFetchSize(maxCount);
+            ps.setString(1, STATE_WAITING);
+            ps.setBigDecimal(2, new BigDecimal(String.valueOf(noLaterThan)));
+            ps.setBigDecimal(3, new BigDecimal(String.valueOf(noEarlierThan)));
+            rs = ps.executeQuery();
+            while (rs.next() && due.size() < maxCount) {
+                due.add(new DueTrigger(new TriggerKey(rs.getString(COL_TRIGGER_NAME), rs.getString(COL_TRIGGER_GROUP)),
+                        rs.getBigDecimal(COL_NEXT_FIRE_TIME).longValue()));
+            }
+            return due;
+        } finally {
+            closeResultSet(rs);
+            closeStatement(ps);
+        }
+    }
+
+    /**
+     * 带版本条件把触发器从 fromState 改为 ACQUIRED，返回是否更新了这一行。成功后这一行被本事务锁住直到提交。
+     */
+    private boolean claim(Connection conn, TriggerKey key, String fromState, long nextFireTime) throws SQLException {
+        PreparedStatement ps = null;
+        try {
+            ps = conn.prepareStatement(rtp(CLAIM_TRIGGER));
+            ps.setString(1, STATE_ACQUIRED);
+            ps.setString(2, key.getName());
+            ps.setString(3, key.getGroup());
+            ps.setString(4, fromState);
+            ps.setBigDecimal(5, new BigDecimal(String.valueOf(nextFireTime)));
+            return ps.executeUpdate() > 0;
+        } finally {
+            closeStatement(ps);
+        }
+    }
+
+    /**
+     * 按 QRTZ_SCHEDULER_STATE 计算本节点的分区，每 clusterCheckinInterval 毫秒刷新一次。
+     * 本节点还没有签到(刚启动)时不分区。
+     */
+    private Partition currentPartition(Connection conn) throws SQLException, JobPersistenceException {
+        if (!isClustered() || !partitioned) {
+            return Partition.WHOLE;
+        }
+        long now = System.currentTimeMillis();
+        if (partition != Partition.WHOLE && now - partition.loadedAt < getClusterCheckinInterval()) {
+            return partition;
+        }
+        List<String> alive = new ArrayList<String>();
+        for (SchedulerStateRecord rec : getDelegate().selectSchedulerStateRecords(conn, null)) {
+            // 与 ClusterManager 判断节点失效的方式相同：超过两个签到间隔没有签到
+            if (rec.getCheckinTimestamp() + 2 * rec.getCheckinInterval() >= now) {
+                alive.add(rec.getSchedulerInstanceId());
+            }
+        }
+        Collections.sort(alive);
+        int index = alive.indexOf(getInstanceId());
+        Partition part = index < 0 ? Partition.WHOLE : new Partition(index, alive.size(), now);
+        if (part.count != partition.count || part.index != partition.index) {
+            getLog().info("Claiming trigger partition " + part.index + " of " + part.count + ".");
+        }
+        partition = part;
+        return part;
+    }
+
+    // ---------------------------------------------------------------- 触发
+
+    @Override
+    public List<TriggerFiredResult> triggersFired(final List<OperableTrigger> triggers) throws JobPersistenceException {
+        final List<OperableTrigger> locked = new ArrayList<OperableTrigger>();
+        List<TriggerFiredResult> results = executeInNonManagedTXLock(null,
+                new TransactionCallback<List<TriggerFiredResult>>() {
+                    public List<TriggerFiredResult> execute(Connection conn) throws JobPersistenceException {
+                        List<TriggerFiredResult> results = new ArrayList<TriggerFiredResult>(triggers.size());
+                        for (OperableTrigger trigger : triggers) {
+                            TriggerFiredResult result;
+                            int lockedCount = locked.size();
+                            try {
+                                TriggerFiredBundle bundle = triggerFired(conn, trigger, locked);
+                                result = locked.size() > lockedCount ? null : new TriggerFiredResult(bundle);
+                            } catch (JobPersistenceException jpe) {
+                                result = new TriggerFiredResult(jpe);
+                            } catch (RuntimeException re) {
+                                result = new TriggerFiredResult(re);
+                            }
+                            results.add(result);
+                        }
+                        return results;
+                    }
+                },
+                new TransactionValidator<List<TriggerFiredResult>>() {
+                    @Override
+                    public Boolean validate(Connection conn, List<TriggerFiredResult> result)
+                            throws JobPersistenceException {
+                        Set<String> executingTriggers = selectFireInstanceIds(conn, STATE_EXECUTING);
+                        for (TriggerFiredResult tr : result) {
+                            if (tr != null && tr.getTriggerFiredBundle() != null && executingTriggers.contains(
+                                    tr.getTriggerFiredBundle().getTrigger().getFireInstanceId())) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                });
+        if (locked.isEmpty()) {
+            return results;
+        }
+
+        // 不允许并发执行的作业按 JobStoreTX 的逻辑在锁内触发，结果放回原来的位置
+        List<TriggerFiredResult> lockedResults = super.triggersFired(locked);
+        for (int i = 0, j = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, lockedResults.get(j++));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 与 JobStoreSupport.triggerFired 相同，只是用 ENTRY_ID 和版本条件代替锁内的状态检查。
+     * 作业不允许并发执行时把触发器放入 locked 并返回 null，由 JobStoreTX 的逻辑处理。
+     */
+    private TriggerFiredBundle triggerFired(Connection conn, OperableTrigger trigger, List<OperableTrigger> locked)
+            throws JobPersistenceException {
+        JobDetail job;
+        Calendar cal = null;
+
+        try {
+            job = retrieveJob(conn, trigger.getJobKey());
+            if (job == null) {
+                return null;
+            }
+        } catch (JobPersistenceException jpe) {
+            try {
+                getLog().error("Error retrieving job, setting trigger state to ERROR.", jpe);
+                getDelegate().updateTriggerState(conn, trigger.getKey(), STATE_ERROR);
+            } catch (SQLException sqle) {
+                getLog().error("Unable to set trigger state to ERROR.", sqle);
+            }
+            throw jpe;
+        }
+
+        if (job.isConcurrentExectionDisallowed()) {
+            locked.add(trigger);
+            return null;
+        }
+
+        if (trigger.getCalendarName() != null) {
+            cal = retrieveCalendar(conn, trigger.getCalendarName());
+            if (cal == null) {
+                return null;
+            }
+        }
+
+        try {
+            // 声明被撤销(集群恢复删除了 QRTZ_FIRED_TRIGGERS 行)，或触发器已被暂停、删除、修改
+            if (getDelegate().updateFiredTrigger(conn, trigger, STATE_EXECUTING, job) == 0
+                    || !claim(conn, trigger.getKey(), STATE_ACQUIRED, trigger.getNextFireTime().getTime())) {
+                return null;
+            }
+        } catch (SQLException e) {
+            throw new JobPersistenceException("Couldn't insert fired trigger: " + e.getMessage(), e);
+        }
+
+        Date prevFireTime = trigger.getPreviousFireTime();
+
+        trigger.triggered(cal);
+
+        String state = STATE_WAITING;
+        if (trigger.getNextFireTime() == null) {
+            state = STATE_COMPLETE;
+        }
+
+        storeTrigger(conn, trigger, job, true, state, true, false);
+
+        job.getJobDataMap().clearDirtyFlag();
+
+        return new TriggerFiredBundle(job, trigger, cal, trigger.getKey().getGroup()
+                .equals(Scheduler.DEFAULT_RECOVERY_GROUP), new Date(), trigger
+                .getPreviousFireTime(), prevFireTime, trigger.getNextFireTime());
+    }
+
+    /**
+     * 与 JobStoreTX 相同在锁内释放，但只在本次声明的 QRTZ_FIRED_TRIGGERS 行还在时才恢复触发器的状态：
+     * 声明被集群恢复撤销后，触发器可能已被其他节点重新取出。
+     */
+    @Override
+    public void releaseAcquiredTrigger(final OperableTrigger trigger) {
+        retryExecuteInNonManagedTXLock(LOCK_TRIGGER_ACCESS, new TransactionCallback<Void>() {
+            public Void execute(Connection conn) throws JobPersistenceException {
+                try {
+                    if (getDelegate().deleteFiredTrigger(conn, trigger.getFireInstanceId()) > 0) {
+                        getDelegate().updateTriggerStateFromOtherState(conn, trigger.getKey(), STATE_WAITING,
+                                STATE_ACQUIRED);
+                        getDelegate().updateTriggerStateFromOtherState(conn, trigger.getKey(), STATE_WAITING,
+                                STATE_BLOCKED);
+                    }
+                    return null;
+                } catch (SQLException e) {
+                    throw new JobPersistenceException("Couldn't release acquired trigger: " + e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    // ---------------------------------------------------------------- 完成
+
+    @Override
+    public void triggeredJobComplete(final OperableTrigger trigger, final JobDetail jobDetail,
+                                     final CompletedExecutionInstruction triggerInstCode) {
+        if (triggerInstCode != CompletedExecutionInstruction.NOOP || jobDetail.isConcurrentExectionDisallowed()) {
+            super.triggeredJobComplete(trigger, jobDetail, triggerInstCode);
+            return;
+        }
+        // 只删除自己的 QRTZ_FIRED_TRIGGERS 行和保存 JobDataMap，不涉及其他触发器的状态
+        retryExecuteInNonManagedTXLock(null, new TransactionCallback<Void>() {
+            public Void execute(Connection conn) throws JobPersistenceException {
+                triggeredJobComplete(conn, trigger, jobDetail, triggerInstCode);
+                return null;
+            }
+        });
+    }
+
+    // ---------------------------------------------------------------- 工具
+
+    private Set<String> selectFireInstanceIds(Connection conn, String state) throws JobPersistenceException {
+        try {
+            Set<String> ids = new HashSet<String>();
+            for (FiredTriggerRecord ft : getDelegate().selectInstancesFiredTriggerRecords(conn, getInstanceId())) {
+                if (state == null || state.equals(ft.getFireInstanceState())) {
+                    ids.add(ft.getFireInstanceId());
+                }
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw new JobPersistenceException("error validating trigger acquisition", e);
+        }
+    }
+
+    private String rtp(String query) {
+        return Util.rtp(query, getTablePrefix(), "'" + getInstanceName() + "'");
+    }
+
+    private static void closeResultSet(ResultSet rs) {
+        if (rs != null) {
+            try {
+                rs.close();
+            } catch (SQLException ignore) {
+            }
+        }
+    }
+
+    private static void closeStatement(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException ignore) {
+            }
+        }
+    }
+
+    /**
+     * 查询出的到期触发器和它的版本。
+     */
+    private static final class DueTrigger {
+
+        final TriggerKey key;
+
+        final long nextFireTime;
+
+        boolean claimed;
+
+        DueTrigger(TriggerKey key, long nextFireTime) {
+            this.key = key;
+            this.nextFireTime = nextFireTime;
+        }
+    }
+
+    /**
+     * 本节点负责的分区：TriggerKey 的哈希对 count 取模等于 index 的触发器。
+     */
+    private static final class Partition {
+
+        static final Partition WHOLE = new Partition(0, 1, 0L);
+
+        final int index;
+
+        final int count;
+
+        final long loadedAt;
+
+        Partition(int index, int count, long loadedAt) {
+            this.index = index;
+            this.count = count;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean owns(TriggerKey key) {
+            return count == 1 || (key.hashCode() & Integer.MAX_VALUE) % count == index;
+        }
+    }
+}
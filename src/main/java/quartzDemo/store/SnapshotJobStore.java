@@ -0,0 +1,649 @@
+package quartzDemo.store;
+
+import org.quartz.Calendar;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 关闭时把内存中的状态写成快照、下次启动时从快照懒加载的 TimingWheelJobStore。
+ *
+ * AppMain 那样用 StdSchedulerFactory 创建调度器后逐个 scheduleJob，作业和触发器很多时启动要几十秒：每个触发器都要
+ * 重新构建、计算第一次触发时间并放进索引。这里在调度器关闭(或调用 writeSnapshot)时把作业、触发器(包括当时的下次
+ * 触发时间和状态)、日历和暂停的组写成一个 StateSnapshot 文件，触发器按下次触发时间排序。下次启动时只映射文件、
+ * 读取日历和暂停的组，initialize 在几毫秒内返回，作业和触发器之后再放进 RAMJobStore 的索引：
+ * acquireNextTriggers 只加载下次触发时间不晚于这次取出范围的触发器(按索引顺序，是文件开头的一小段)，
+ * 调度器启动后的后台线程按 loadBatchSize 分批加载其余的，每批之间释放锁。一个作业总是和它的全部触发器一起加载。
+ *
+ * 快照中还有作业键表和触发器键表(按键的哈希排序)。加载完成之前，按键的操作(retrieveJob、checkExists、
+ * storeJob、scheduleJob、removeTrigger、pauseTrigger 等)在键表中二分查找，只加载这个键所在的作业，
+ * 所以启动时照常用 checkExists 判断作业是否已经存在、不存在时再 scheduleJob 也不需要等待加载完成；
+ * 按组或全部的查询和修改(getJobKeys、pauseJobs、pauseAll 等)、日历的修改会先在调用线程中加载全部剩余的内容。
+ *
+ * 快照只在关闭时写出(没有写出之前宕机，下次启动读到的是上一次的快照)，这是加快启动的手段，不是持久化，
+ * supportsPersistence 仍然返回 false；需要宕机后恢复状态时使用 JournalJobStore。快照写出后，快照中的
+ * 作业类找不到、或者 JobDataMap 不能解码的作业和它的触发器在加载时跳过并记录错误。
+ *
+ * 配置：
+ * org.quartz.jobStore.class = quartzDemo.store.SnapshotJobStore
+ * org.quartz.jobStore.snapshotFile = quartz-snapshot.qs          (可选，快照文件)
+ * org.quartz.jobStore.writeSnapshotOnShutdown = true             (可选，关闭时写出快照)
+ * org.quartz.jobStore.loadBatchSize = 1024                       (可选，后台线程每批加载的作业数)
+ * org.quartz.jobStore.jobDataMapCodec = quartzDemo.store.BinaryJobDataMapCodec  (可选)
+ * 以及 TimingWheelJobStore 的配置。
+ */
+public class SnapshotJobStore extends TimingWheelJobStore {
+
+    public static final String DEFAULT_SNAPSHOT_FILE = "quartz-snapshot.qs";
+
+    public static final int DEFAULT_LOAD_BATCH_SIZE = 1024;
+
+    /** 快照中的触发器状态 */
+    private static final byte NORMAL = 0;
+
+    private static final byte PAUSED = 1;
+
+    private static final byte COMPLETE = 2;
+
+    private static final byte ERROR = 3;
+
+    private String snapshotFile = DEFAULT_SNAPSHOT_FILE;
+
+    private boolean writeSnapshotOnShutdown = true;
+
+    private int loadBatchSize = DEFAULT_LOAD_BATCH_SIZE;
+
+    private String jobDataMapCodecClass = BinaryJobDataMapCodec.class.getName();
+
+    private JobDataMapCodec codec = new BinaryJobDataMapCodec();
+
+    private String instanceName = "QuartzScheduler";
+
+    private String instanceId = "NON_CLUSTERED";
+
+    /** 还没有加载完的快照，加载完成后为 null，由 lock 保护 */
+    private StateSnapshot.Reader snapshot;
+
+    /** 已经加载的作业序号，由 lock 保护 */
+    private BitSet loadedJobs;
+
+    /** 索引中下一个要检查的位置，由 lock 保护 */
+    private int cursor;
+
+    private int skipped;
+
+    private long loadStart;
+
+    private volatile boolean loaded = true;
+
+    private volatile boolean shutdown;
+
+    private Thread loader;
+
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler schedSignaler) {
+        super.initialize(loadHelper, schedSignaler);
+        if (!BinaryJobDataMapCodec.class.getName().equals(jobDataMapCodecClass)) {
+            codec = JobDataMapCodecs.newInstance(loadHelper, jobDataMapCodecClass);
+        }
+        File file = new File(snapshotFile);
+        if (!file.isFile()) {
+            getLog().info("SnapshotJobStore initialized without snapshot (file = " + file.getAbsolutePath() + ").");
+            return;
+        }
+        loadStart = System.currentTimeMillis();
+        try {
+            StateSnapshot.Reader reader = StateSnapshot.Reader.open(file, codec, loadHelper);
+            synchronized (lock) {
+                for (Map.Entry<String, Calendar> e : reader.getCalendars().entrySet()) {
+                    try {
+                        super.storeCalendar(e.getKey(), e.getValue(), true, false);
+                    } catch (ObjectAlreadyExistsException ignore) {
+                    }
+                }
+                pausedTriggerGroups.addAll(reader.getPausedTriggerGroups());
+                pausedJobGroups.addAll(reader.getPausedJobGroups());
+                snapshot = reader;
+                loadedJobs = new BitSet(reader.getJobCount());
+                cursor = 0;
+                skipped = 0;
+                loaded = false;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't open snapshot " + file.getAbsolutePath(), e);
+        }
+        getLog().info("SnapshotJobStore initialized (file = " + file.getAbsolutePath() + ", "
+                + snapshot.getJobCount() + " jobs, " + snapshot.getTriggerCount() + " triggers, written "
+                + new Date(snapshot.getCreatedAt()) + ").");
+    }
+
+    @Override
+    public void schedulerStarted() {
+        super.schedulerStarted();
+        synchronized (lock) {
+            if (loaded || loader != null) {
+                return;
+            }
+            loader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!loaded && !shutdown) {
+                        synchronized (lock) {
+                            loadIndex(Long.MAX_VALUE, loadBatchSize);
+                        }
+                        // 每批之间让出锁，调度线程和调用方可以进入
+                        Thread.yield();
+                    }
+                }
+            }, "QuartzScheduler_" + instanceName + "-" + instanceId + "_SnapshotLoader");
+            loader.setDaemon(true);
+            loader.start();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (loader != null) {
+            try {
+                loader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (writeSnapshotOnShutdown) {
+            try {
+                writeSnapshot();
+            } catch (JobPersistenceException e) {
+                getLog().error("Couldn't write snapshot on shutdown.", e);
+            }
+        }
+        super.shutdown();
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        this.instanceName = schedName;
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+        this.instanceId = schedInstId;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public boolean isWriteSnapshotOnShutdown() {
+        return writeSnapshotOnShutdown;
+    }
+
+    /**
+     * 关闭时是否写出快照。设为 false 时每次启动都读取同一个快照(例如作业定义固定、由部署过程生成快照)。
+     */
+    public void setWriteSnapshotOnShutdown(boolean writeSnapshotOnShutdown) {
+        this.writeSnapshotOnShutdown = writeSnapshotOnShutdown;
+    }
+
+    public int getLoadBatchSize() {
+        return loadBatchSize;
+    }
+
+    public void setLoadBatchSize(int loadBatchSize) {
+        if (loadBatchSize < 1) {
+            throw new IllegalArgumentException("loadBatchSize must be > 0");
+        }
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    public String getJobDataMapCodec() {
+        return jobDataMapCodecClass;
+    }
+
+    /**
+     * JobDataMapCodec 的类名，默认 BinaryJobDataMapCodec。
+     */
+    public void setJobDataMapCodec(String jobDataMapCodecClass) {
+        this.jobDataMapCodecClass = jobDataMapCodecClass;
+    }
+
+    /**
+     * 快照是否已经全部加载。
+     */
+    public boolean isSnapshotLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 在锁内把当前状态写成快照(先写临时文件，刷盘后替换)。快照还没有加载完时先加载完。
+     */
+    public void writeSnapshot() throws JobPersistenceException {
+        File file = new File(snapshotFile);
+        synchronized (lock) {
+            ensureLoaded();
+            long start = System.currentTimeMillis();
+            StateSnapshot.Writer writer = null;
+            try {
+                writer = new StateSnapshot.Writer(file, codec);
+                for (Map.Entry<String, Calendar> e : calendarsByName.entrySet()) {
+                    writer.calendar(e.getKey(), e.getValue());
+                }
+                writer.pausedGroups(pausedTriggerGroups, pausedJobGroups);
+                Map<JobKey, Integer> ordinals = new HashMap<JobKey, Integer>(jobsByKey.size() * 2);
+                for (JobKey jobKey : jobsByKey.keySet()) {
+                    ordinals.put(jobKey, writer.job(super.retrieveJob(jobKey)));
+                }
+                for (TriggerKey triggerKey : triggersByKey.keySet()) {
+                    OperableTrigger trigger = TimingWheelTriggerSet.triggerOf(triggersByKey.get(triggerKey));
+                    writer.trigger(trigger, snapshotState(triggerState(triggerKey)), ordinals.get(trigger.getJobKey()));
+                }
+                writer.finish();
+            } catch (IOException e) {
+                if (writer != null) {
+                    writer.abort();
+                }
+                throw new JobPersistenceException("Couldn't write snapshot " + file.getAbsolutePath(), e);
+            }
+            getLog().info("Wrote snapshot " + file.getAbsolutePath() + " (" + jobsByKey.size() + " jobs, "
+                    + triggersByKey.size() + " triggers) in " + (System.currentTimeMillis() - start) + "ms.");
+        }
+    }
+
+    // ---------------------------------------------------------------- 懒加载，调用方持有 lock
+
+    /**
+     * 按索引顺序加载下次触发时间不晚于 noLaterThan 的触发器(连同它们的作业和作业的其他触发器)，最多 maxJobs 个作业。
+     */
+    private void loadIndex(long noLaterThan, int maxJobs) {
+        if (snapshot == null) {
+            return;
+        }
+        int count = snapshot.getTriggerCount();
+        int jobs = 0;
+        while (cursor < count && jobs < maxJobs && snapshot.nextFireTime(cursor) <= noLaterThan) {
+            int ordinal = snapshot.jobOrdinal(cursor++);
+            if (!loadedJobs.get(ordinal)) {
+                loadJob(ordinal);
+                jobs++;
+            }
+        }
+        if (cursor == count) {
+            // 没有触发器的(持久)作业
+            int jobCount = snapshot.getJobCount();
+            for (int ordinal = loadedJobs.nextClearBit(0); ordinal < jobCount && jobs < maxJobs;
+                 ordinal = loadedJobs.nextClearBit(ordinal + 1)) {
+                loadJob(ordinal);
+                jobs++;
+            }
+            if (loadedJobs.nextClearBit(0) >= jobCount) {
+                finishLoading();
+            }
+        }
+    }
+
+    private void loadJob(int ordinal) {
+        loadedJobs.set(ordinal);
+        JobDetail job;
+        try {
+            job = snapshot.job(ordinal);
+            super.storeJob(job, true);
+        } catch (Exception e) {
+            skipped++;
+            getLog().error("Couldn't load job #" + ordinal + " from snapshot, job and its triggers skipped.", e);
+            return;
+        }
+        for (int k = snapshot.jobTriggerStart(ordinal), end = snapshot.jobTriggerEnd(ordinal); k < end; k++) {
+            int i = snapshot.jobTrigger(k);
+            TriggerKey key = null;
+            try {
+                OperableTrigger trigger = snapshot.trigger(i);
+                key = trigger.getKey();
+                super.storeTrigger(trigger, true);
+            } catch (Exception e) {
+                skipped++;
+                getLog().error("Couldn't load trigger " + (key != null ? key : "#" + i) + " of " + job.getKey()
+                        + " from snapshot, skipped.", e);
+                continue;
+            }
+            byte state = snapshot.state(i);
+            if (state == PAUSED) {
+                super.pauseTrigger(key);
+            } else if (state == COMPLETE) {
+                restoreTriggerState(key, STATE_COMPLETE);
+            } else if (state == ERROR) {
+                restoreTriggerState(key, STATE_ERROR);
+            }
+        }
+    }
+
+    private void finishLoading() {
+        getLog().info("Loaded snapshot " + snapshot.getFile().getAbsolutePath() + ": " + jobsByKey.size() + " jobs, "
+                + triggersByKey.size() + " triggers in " + (System.currentTimeMillis() - loadStart) + "ms"
+                + (skipped > 0 ? ", " + skipped + " skipped." : "."));
+        snapshot = null;
+        loadedJobs = null;
+        loaded = true;
+    }
+
+    /**
+     * 加载全部剩余的内容。
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (lock) {
+            loadIndex(Long.MAX_VALUE, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * 只加载快照中键为 jobKey 的作业(和它的全部触发器)。快照中没有这个键、或者已经加载过(之后可能被删除)时不做任何事。
+     */
+    private void ensureLoaded(JobKey jobKey) {
+        if (loaded) {
+            return;
+        }
+        synchronized (lock) {
+            if (snapshot != null) {
+                loadJobs(snapshot.jobOrdinals(jobKey.getGroup(), jobKey.getName()));
+            }
+        }
+    }
+
+    /**
+     * 只加载快照中键为 triggerKey 的触发器所属的作业(和它的全部触发器)。
+     */
+    private void ensureLoaded(TriggerKey triggerKey) {
+        if (loaded) {
+            return;
+        }
+        synchronized (lock) {
+            if (snapshot != null) {
+                loadJobs(snapshot.triggerJobOrdinals(triggerKey.getGroup(), triggerKey.getName()));
+            }
+        }
+    }
+
+    private void loadJobs(int[] ordinals) {
+        for (int ordinal : ordinals) {
+            if (!loadedJobs.get(ordinal)) {
+                loadJob(ordinal);
+            }
+        }
+    }
+
+    private static byte snapshotState(int state) {
+        switch (state) {
+            case STATE_PAUSED:
+            case STATE_PAUSED_BLOCKED:
+                return PAUSED;
+            case STATE_COMPLETE:
+                return COMPLETE;
+            case STATE_ERROR:
+                return ERROR;
+            default:
+                // ACQUIRED、BLOCKED 只在运行期间有意义
+                return NORMAL;
+        }
+    }
+
+    // ---------------------------------------------------------------- 取出：只加载这次取出范围内的触发器
+
+    @Override
+    public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow) {
+        if (!loaded) {
+            synchronized (lock) {
+                loadIndex(noLaterThan + timeWindow, Integer.MAX_VALUE);
+            }
+        }
+        return super.acquireNextTriggers(noLaterThan, maxCount, timeWindow);
+    }
+
+    // ---------------------------------------------------------------- 按键访问：已经加载时直接执行
+
+    @Override
+    public JobDetail retrieveJob(JobKey jobKey) {
+        ensureLoaded(jobKey);
+        return super.retrieveJob(jobKey);
+    }
+
+    @Override
+    public OperableTrigger retrieveTrigger(TriggerKey triggerKey) {
+        ensureLoaded(triggerKey);
+        return super.retrieveTrigger(triggerKey);
+    }
+
+    @Override
+    public boolean checkExists(JobKey jobKey) throws JobPersistenceException {
+        ensureLoaded(jobKey);
+        return super.checkExists(jobKey);
+    }
+
+    @Override
+    public boolean checkExists(TriggerKey triggerKey) throws JobPersistenceException {
+        ensureLoaded(triggerKey);
+        return super.checkExists(triggerKey);
+    }
+
+    @Override
+    public Trigger.TriggerState getTriggerState(TriggerKey triggerKey) throws JobPersistenceException {
+        ensureLoaded(triggerKey);
+        return super.getTriggerState(triggerKey);
+    }
+
+    @Override
+    public List<OperableTrigger> getTriggersForJob(JobKey jobKey) {
+        ensureLoaded(jobKey);
+        return super.getTriggersForJob(jobKey);
+    }
+
+    @Override
+    public boolean removeJob(JobKey jobKey) {
+        ensureLoaded(jobKey);
+        return super.removeJob(jobKey);
+    }
+
+    @Override
+    public boolean removeTrigger(TriggerKey triggerKey) {
+        ensureLoaded(triggerKey);
+        return super.removeTrigger(triggerKey);
+    }
+
+    @Override
+    public boolean replaceTrigger(TriggerKey triggerKey, OperableTrigger newTrigger) throws JobPersistenceException {
+        ensureLoaded(triggerKey);
+        ensureLoaded(newTrigger.getKey());
+        return super.replaceTrigger(triggerKey, newTrigger);
+    }
+
+    @Override
+    public void resetTriggerFromErrorState(TriggerKey triggerKey) throws JobPersistenceException {
+        ensureLoaded(triggerKey);
+        super.resetTriggerFromErrorState(triggerKey);
+    }
+
+    @Override
+    public void pauseTrigger(TriggerKey triggerKey) {
+        ensureLoaded(triggerKey);
+        super.pauseTrigger(triggerKey);
+    }
+
+    @Override
+    public void resumeTrigger(TriggerKey triggerKey) {
+        ensureLoaded(triggerKey);
+        super.resumeTrigger(triggerKey);
+    }
+
+    @Override
+    public void pauseJob(JobKey jobKey) {
+        ensureLoaded(jobKey);
+        super.pauseJob(jobKey);
+    }
+
+    @Override
+    public void resumeJob(JobKey jobKey) {
+        ensureLoaded(jobKey);
+        super.resumeJob(jobKey);
+    }
+
+    // ---------------------------------------------------------------- 新增、按组和全部：先加载全部
+
+    @Override
+    public void clearAllSchedulingData() throws JobPersistenceException {
+        synchronized (lock) {
+            if (!loaded) {
+                // 全部删除，不需要再加载
+                snapshot = null;
+                loadedJobs = null;
+                loaded = true;
+            }
+            super.clearAllSchedulingData();
+        }
+    }
+
+    @Override
+    public void storeJob(JobDetail newJob, boolean replaceExisting) throws ObjectAlreadyExistsException {
+        ensureLoaded(newJob.getKey());
+        super.storeJob(newJob, replaceExisting);
+    }
+
+    @Override
+    public void storeTrigger(OperableTrigger newTrigger, boolean replaceExisting) throws JobPersistenceException {
+        ensureLoaded(newTrigger.getKey());
+        super.storeTrigger(newTrigger, replaceExisting);
+    }
+
+    @Override
+    public void storeJobAndTrigger(JobDetail newJob, OperableTrigger newTrigger) throws JobPersistenceException {
+        ensureLoaded(newJob.getKey());
+        ensureLoaded(newTrigger.getKey());
+        super.storeJobAndTrigger(newJob, newTrigger);
+    }
+
+    @Override
+    public void storeJobsAndTriggers(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, boolean replace)
+            throws JobPersistenceException {
+        ensureLoaded();
+        super.storeJobsAndTriggers(triggersAndJobs, replace);
+    }
+
+    @Override
+    public boolean removeJobs(List<JobKey> jobKeys) throws JobPersistenceException {
+        ensureLoaded();
+        return super.removeJobs(jobKeys);
+    }
+
+    @Override
+    public boolean removeTriggers(List<TriggerKey> triggerKeys) throws JobPersistenceException {
+        ensureLoaded();
+        return super.removeTriggers(triggerKeys);
+    }
+
+    @Override
+    public void storeCalendar(String name, Calendar calendar, boolean replaceExisting, boolean updateTriggers)
+            throws ObjectAlreadyExistsException {
+        ensureLoaded();
+        super.storeCalendar(name, calendar, replaceExisting, updateTriggers);
+    }
+
+    @Override
+    public boolean removeCalendar(String calName) throws JobPersistenceException {
+        ensureLoaded();
+        return super.removeCalendar(calName);
+    }
+
+    @Override
+    public int getNumberOfJobs() {
+        ensureLoaded();
+        return super.getNumberOfJobs();
+    }
+
+    @Override
+    public int getNumberOfTriggers() {
+        ensureLoaded();
+        return super.getNumberOfTriggers();
+    }
+
+    @Override
+    public Set<JobKey> getJobKeys(GroupMatcher<JobKey> matcher) {
+        ensureLoaded();
+        return super.getJobKeys(matcher);
+    }
+
+    @Override
+    public Set<TriggerKey> getTriggerKeys(GroupMatcher<TriggerKey> matcher) {
+        ensureLoaded();
+        return super.getTriggerKeys(matcher);
+    }
+
+    @Override
+    public List<String> getJobGroupNames() {
+        ensureLoaded();
+        return super.getJobGroupNames();
+    }
+
+    @Override
+    public List<String> getTriggerGroupNames() {
+        ensureLoaded();
+        return super.getTriggerGroupNames();
+    }
+
+    @Override
+    public List<String> pauseTriggers(GroupMatcher<TriggerKey> matcher) {
+        ensureLoaded();
+        return super.pauseTriggers(matcher);
+    }
+
+    @Override
+    public List<String> resumeTriggers(GroupMatcher<TriggerKey> matcher) {
+        ensureLoaded();
+        return super.resumeTriggers(matcher);
+    }
+
+    @Override
+    public List<String> pauseJobs(GroupMatcher<JobKey> matcher) {
+        ensureLoaded();
+        return super.pauseJobs(matcher);
+    }
+
+    @Override
+    public Collection<String> resumeJobs(GroupMatcher<JobKey> matcher) {
+        ensureLoaded();
+        return super.resumeJobs(matcher);
+    }
+
+    @Override
+    public void pauseAll() {
+        ensureLoaded();
+        super.pauseAll();
+    }
+
+    @Override
+    public void resumeAll() {
+        ensureLoaded();
+        super.resumeAll();
+    }
+}
@@ -0,0 +1,750 @@
+package quartzDemo.store;
+
+import org.quartz.Calendar;
+import org.quartz.CronExpression;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.impl.JobDetailImpl;
+import org.quartz.impl.triggers.AbstractTrigger;
+import org.quartz.impl.triggers.CronTriggerImpl;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import quartzDemo.cron.CompiledCronTriggerImpl;
+import quartzDemo.store.MappedJournal.ExpandableBuffer;
+import quartzDemo.store.MappedJournal.RecordReader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * SnapshotJobStore 的快照文件：作业、触发器、日历和暂停的组，以及按下次触发时间排序的触发器索引。
+ *
+ *     文件头(magic、版本、写入时间)
+ *     元数据记录(日历、暂停的触发器组和作业组)
+ *     作业记录 ...
+ *     触发器记录 ...
+ *     作业表：每个作业 [记录偏移][在作业触发器表中的起点]
+ *     作业触发器表：按作业分组的触发器在索引中的下标
+ *     作业键表、触发器键表：每项 [键的 64 位哈希][作业序号]，按哈希排序，用来按键找到要加载的作业
+ *     触发器索引：每个触发器 [下次触发时间][记录偏移][作业序号][状态]，按下次触发时间排序
+ *     文件尾(各部分的偏移和个数、结束标记)
+ *
+ * 每条记录是 [长度][内容]，内容用 MappedJournal.ExpandableBuffer 的格式(大端)。常见的作业(JobDetailImpl)和触发器
+ * (SimpleTriggerImpl、CronTriggerImpl、CompiledCronTriggerImpl)按字段写出，读取时直接调用 setter，不经过
+ * Java 序列化；其他类型退回 Java 序列化。JobDataMap 由 JobDataMapCodec 编码。
+ *
+ * 读取时整个文件只读映射到内存，打开时只读文件头、文件尾和元数据，作业和触发器按索引下标或作业序号逐条解码；
+ * 通过作业触发器表可以把一个作业和它的全部触发器一起解码。
+ * 写入先写到同目录下的临时文件，刷盘后改名替换，读到的文件要么是完整的旧快照，要么是完整的新快照。
+ */
+final class StateSnapshot {
+
+    private static final int MAGIC = 0x51534E50;
+
+    private static final int VERSION = 1;
+
+    private static final int FOOTER_MAGIC = 0x454E4453;
+
+    /** magic、version、写入时间 */
+    private static final int HEADER_SIZE = 16;
+
+    /** 元数据、作业表、作业触发器表、作业键表、触发器键表、索引的偏移，作业数、触发器数，结束标记 */
+    private static final int FOOTER_SIZE = 36;
+
+    /** 记录偏移、在作业触发器表中的起点 */
+    private static final int JOB_ENTRY_SIZE = 8;
+
+    /** 下次触发时间、记录偏移、作业序号、状态 */
+    private static final int INDEX_ENTRY_SIZE = 17;
+
+    /** 键的哈希、作业序号 */
+    private static final int KEY_ENTRY_SIZE = 12;
+
+    private static final byte JOB_PLAIN = 1;
+
+    private static final byte JOB_SERIALIZED = 2;
+
+    private static final byte SIMPLE = 1;
+
+    private static final byte CRON = 2;
+
+    private static final byte COMPILED_CRON = 3;
+
+    private static final byte TRIGGER_SERIALIZED = 4;
+
+    private StateSnapshot() {
+    }
+
+    /**
+     * 按顺序写出：calendar* -> pausedGroups -> job* -> trigger* -> finish。
+     */
+    static final class Writer {
+
+        private final File file;
+
+        private final File tmp;
+
+        private final JobDataMapCodec codec;
+
+        private final FileOutputStream stream;
+
+        private final DataOutputStream out;
+
+        private final ExpandableBuffer record = new ExpandableBuffer(512);
+
+        private final Map<String, byte[]> calendars = new LinkedHashMap<String, byte[]>();
+
+        private int[] jobOffsets = new int[1024];
+
+        private long[] jobHashes = new long[1024];
+
+        private int jobCount;
+
+        private long[] nextTimes = new long[1024];
+
+        private int[] triggerOffsets = new int[1024];
+
+        private long[] triggerHashes = new long[1024];
+
+        private int[] triggerJobs = new int[1024];
+
+        private byte[] states = new byte[1024];
+
+        private int triggerCount;
+
+        private int metaOffset = -1;
+
+        Writer(File file, JobDataMapCodec codec) throws IOException {
+            this.file = file;
+            this.tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+            this.codec = codec;
+            File dir = tmp.getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Couldn't create snapshot directory " + dir);
+            }
+            this.stream = new FileOutputStream(tmp);
+            this.out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+        }
+
+        void calendar(String name, Calendar calendar) throws IOException {
+            calendars.put(name, serialize(calendar));
+        }
+
+        void pausedGroups(Set<String> triggerGroups, Set<String> jobGroups) throws IOException {
+            record.reset();
+            record.writeInt(calendars.size());
+            for (Map.Entry<String, byte[]> e : calendars.entrySet()) {
+                record.writeString(e.getKey());
+                record.writeBytes(e.getValue());
+            }
+            writeStrings(triggerGroups);
+            writeStrings(jobGroups);
+            metaOffset = writeRecord();
+        }
+
+        /**
+         * 写出一个作业，返回作业序号。
+         */
+        int job(JobDetail job) throws IOException {
+            record.reset();
+            if (job.getClass() == JobDetailImpl.class) {
+                record.write(JOB_PLAIN);
+                record.writeString(job.getKey().getName());
+                record.writeString(job.getKey().getGroup());
+                record.writeString(job.getDescription());
+                record.writeString(job.getJobClass().getName());
+                record.write((job.isDurable() ? 1 : 0) | (job.requestsRecovery() ? 2 : 0));
+            } else {
+                record.write(JOB_SERIALIZED);
+                record.writeBytes(serialize(job.getJobBuilder().setJobData(new JobDataMap()).build()));
+            }
+            record.writeBytes(encodeData(job.getJobDataMap()));
+            if (jobCount == jobOffsets.length) {
+                jobOffsets = Arrays.copyOf(jobOffsets, jobCount * 2);
+                jobHashes = Arrays.copyOf(jobHashes, jobCount * 2);
+            }
+            jobHashes[jobCount] = keyHash(job.getKey().getGroup(), job.getKey().getName());
+            jobOffsets[jobCount] = writeRecord();
+            return jobCount++;
+        }
+
+        void trigger(OperableTrigger trigger, byte state, int jobOrdinal) throws IOException {
+            record.reset();
+            Class<?> type = trigger.getClass();
+            if (type == SimpleTriggerImpl.class) {
+                SimpleTriggerImpl simple = (SimpleTriggerImpl) trigger;
+                record.write(SIMPLE);
+                writeCommon(trigger);
+                record.writeInt(simple.getRepeatCount());
+                record.writeLong(simple.getRepeatInterval());
+                record.writeInt(simple.getTimesTriggered());
+            } else if (type == CronTriggerImpl.class || type == CompiledCronTriggerImpl.class) {
+                CronTriggerImpl cron = (CronTriggerImpl) trigger;
+                record.write(type == CronTriggerImpl.class ? CRON : COMPILED_CRON);
+                writeCommon(trigger);
+                record.writeString(cron.getCronExpression());
+                record.writeString(cron.getTimeZone().getID());
+            } else {
+                OperableTrigger withoutData = (OperableTrigger) trigger.clone();
+                withoutData.setJobDataMap(new JobDataMap());
+                record.write(TRIGGER_SERIALIZED);
+                record.writeBytes(serialize(withoutData));
+            }
+            record.writeBytes(encodeData(trigger.getJobDataMap()));
+            if (triggerCount == nextTimes.length) {
+                int n = triggerCount * 2;
+                nextTimes = Arrays.copyOf(nextTimes, n);
+                triggerOffsets = Arrays.copyOf(triggerOffsets, n);
+                triggerHashes = Arrays.copyOf(triggerHashes, n);
+                triggerJobs = Arrays.copyOf(triggerJobs, n);
+                states = Arrays.copyOf(states, n);
+            }
+            Date next = trigger.getNextFireTime();
+            nextTimes[triggerCount] = next == null ? Long.MAX_VALUE : next.getTime();
+            triggerHashes[triggerCount] = keyHash(trigger.getKey().getGroup(), trigger.getKey().getName());
+            triggerOffsets[triggerCount] = writeRecord();
+            triggerJobs[triggerCount] = jobOrdinal;
+            states[triggerCount] = state;
+            triggerCount++;
+        }
+
+        /**
+         * 写出偏移表、索引和文件尾，刷盘后替换原来的快照文件。
+         */
+        void finish() throws IOException {
+            if (metaOffset < 0) {
+                throw new IllegalStateException("pausedGroups() was not called");
+            }
+            Integer[] order = new Integer[triggerCount];
+            for (int i = 0; i < triggerCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Long.compare(nextTimes[a], nextTimes[b]);
+                }
+            });
+            // 按作业序号对索引下标做计数排序
+            int[] starts = new int[jobCount + 1];
+            for (int i = 0; i < triggerCount; i++) {
+                starts[triggerJobs[i] + 1]++;
+            }
+            for (int j = 0; j < jobCount; j++) {
+                starts[j + 1] += starts[j];
+            }
+            int[] fill = Arrays.copyOf(starts, jobCount);
+            int[] jobTriggers = new int[triggerCount];
+            for (int k = 0; k < triggerCount; k++) {
+                jobTriggers[fill[triggerJobs[order[k]]]++] = k;
+            }
+            int jobTableOffset = position();
+            for (int j = 0; j < jobCount; j++) {
+                out.writeInt(jobOffsets[j]);
+                out.writeInt(starts[j]);
+            }
+            int jobTriggersOffset = position();
+            for (int k = 0; k < triggerCount; k++) {
+                out.writeInt(jobTriggers[k]);
+            }
+            int jobKeysOffset = position();
+            for (Integer j : sortByHash(jobHashes, jobCount)) {
+                out.writeLong(jobHashes[j]);
+                out.writeInt(j);
+            }
+            int triggerKeysOffset = position();
+            for (Integer i : sortByHash(triggerHashes, triggerCount)) {
+                out.writeLong(triggerHashes[i]);
+                out.writeInt(triggerJobs[i]);
+            }
+            int indexOffset = position();
+            for (Integer i : order) {
+                out.writeLong(nextTimes[i]);
+                out.writeInt(triggerOffsets[i]);
+                out.writeInt(triggerJobs[i]);
+                out.writeByte(states[i]);
+            }
+            out.writeInt(metaOffset);
+            out.writeInt(jobTableOffset);
+            out.writeInt(jobTriggersOffset);
+            out.writeInt(jobKeysOffset);
+            out.writeInt(triggerKeysOffset);
+            out.writeInt(indexOffset);
+            out.writeInt(jobCount);
+            out.writeInt(triggerCount);
+            out.writeInt(FOOTER_MAGIC);
+            position();
+            out.flush();
+            stream.getFD().sync();
+            out.close();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * 写失败时删除临时文件，原来的快照不受影响。
+         */
+        void abort() {
+            try {
+                out.close();
+            } catch (IOException ignore) {
+            }
+            if (!tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+
+        private static Integer[] sortByHash(final long[] hashes, int count) {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Long.compare(hashes[a], hashes[b]);
+                }
+            });
+            return order;
+        }
+
+        private void writeCommon(OperableTrigger trigger) {
+            record.writeString(trigger.getKey().getName());
+            record.writeString(trigger.getKey().getGroup());
+            record.writeString(trigger.getJobKey().getName());
+            record.writeString(trigger.getJobKey().getGroup());
+            record.writeString(trigger.getDescription());
+            record.writeString(trigger.getCalendarName());
+            record.writeInt(trigger.getPriority());
+            record.writeInt(trigger.getMisfireInstruction());
+            record.writeLong(timeOf(trigger.getStartTime()));
+            record.writeLong(timeOf(trigger.getEndTime()));
+            record.writeLong(timeOf(trigger.getNextFireTime()));
+            record.writeLong(timeOf(trigger.getPreviousFireTime()));
+        }
+
+        private void writeStrings(Collection<String> strings) {
+            record.writeInt(strings.size());
+            for (String s : strings) {
+                record.writeString(s);
+            }
+        }
+
+        private int writeRecord() throws IOException {
+            int offset = position();
+            out.writeInt(record.size());
+            out.write(record.array(), 0, record.size());
+            return offset;
+        }
+
+        private int position() throws IOException {
+            int size = out.size();
+            if (size < 0 || size == Integer.MAX_VALUE) {
+                throw new IOException("Snapshot larger than 2GB");
+            }
+            return size;
+        }
+
+        private byte[] encodeData(JobDataMap data) throws IOException {
+            if (data == null || data.isEmpty()) {
+                return new byte[0];
+            }
+            return codec.encode(data.getWrappedMap());
+        }
+    }
+
+    /**
+     * 只读映射的快照。不是线程安全的，由 SnapshotJobStore 在自己的锁内使用。
+     */
+    static final class Reader {
+
+        private final File file;
+
+        private final ByteBuffer buffer;
+
+        private final JobDataMapCodec codec;
+
+        private final ClassLoadHelper loadHelper;
+
+        private final long createdAt;
+
+        private final int jobTableOffset;
+
+        private final int jobTriggersOffset;
+
+        private final int jobKeysOffset;
+
+        private final int triggerKeysOffset;
+
+        private final int indexOffset;
+
+        private final int jobCount;
+
+        private final int triggerCount;
+
+        private final Map<String, Calendar> calendars = new LinkedHashMap<String, Calendar>();
+
+        private final Set<String> pausedTriggerGroups = new HashSet<String>();
+
+        private final Set<String> pausedJobGroups = new HashSet<String>();
+
+        private final Map<String, Class<? extends Job>> jobClasses = new HashMap<String, Class<? extends Job>>();
+
+        private final Map<String, CronExpression> cronExpressions = new HashMap<String, CronExpression>();
+
+        private byte[] scratch = new byte[1024];
+
+        private Reader(File file, ByteBuffer buffer, JobDataMapCodec codec, ClassLoadHelper loadHelper)
+                throws IOException {
+            this.file = file;
+            this.buffer = buffer;
+            this.codec = codec;
+            this.loadHelper = loadHelper;
+            int size = buffer.capacity();
+            if (size < HEADER_SIZE + FOOTER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(size - 4) != FOOTER_MAGIC) {
+                throw new IOException("Not a complete snapshot: " + file);
+            }
+            createdAt = buffer.getLong(8);
+            int footer = size - FOOTER_SIZE;
+            int metaOffset = buffer.getInt(footer);
+            jobTableOffset = buffer.getInt(footer + 4);
+            jobTriggersOffset = buffer.getInt(footer + 8);
+            jobKeysOffset = buffer.getInt(footer + 12);
+            triggerKeysOffset = buffer.getInt(footer + 16);
+            indexOffset = buffer.getInt(footer + 20);
+            jobCount = buffer.getInt(footer + 24);
+            triggerCount = buffer.getInt(footer + 28);
+            if (indexOffset + (long) triggerCount * INDEX_ENTRY_SIZE != footer
+                    || triggerKeysOffset + (long) triggerCount * KEY_ENTRY_SIZE != indexOffset
+                    || jobKeysOffset + (long) jobCount * KEY_ENTRY_SIZE != triggerKeysOffset
+                    || jobTriggersOffset + (long) triggerCount * 4 != jobKeysOffset
+                    || jobTableOffset + (long) jobCount * JOB_ENTRY_SIZE != jobTriggersOffset) {
+                throw new IOException("Corrupt snapshot footer: " + file);
+            }
+            RecordReader in = record(metaOffset);
+            for (int n = in.readInt(); n > 0; n--) {
+                String name = in.readString();
+                calendars.put(name, (Calendar) deserialize(in.readBytes()));
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                pausedTriggerGroups.add(in.readString());
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                pausedJobGroups.add(in.readString());
+            }
+        }
+
+        /**
+         * 映射并检查快照文件，只读取元数据。
+         */
+        static Reader open(File file, JobDataMapCodec codec, ClassLoadHelper loadHelper) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot larger than 2GB: " + file);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return new Reader(file, buffer, codec, loadHelper);
+            } finally {
+                // 关闭文件后映射仍然有效
+                raf.close();
+            }
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        long getCreatedAt() {
+            return createdAt;
+        }
+
+        int getJobCount() {
+            return jobCount;
+        }
+
+        int getTriggerCount() {
+            return triggerCount;
+        }
+
+        Map<String, Calendar> getCalendars() {
+            return calendars;
+        }
+
+        Set<String> getPausedTriggerGroups() {
+            return pausedTriggerGroups;
+        }
+
+        Set<String> getPausedJobGroups() {
+            return pausedJobGroups;
+        }
+
+        /**
+         * 索引中第 i 个(按下次触发时间排序)触发器的下次触发时间，没有时是 Long.MAX_VALUE。
+         */
+        long nextFireTime(int i) {
+            return buffer.getLong(indexOffset + i * INDEX_ENTRY_SIZE);
+        }
+
+        int jobOrdinal(int i) {
+            return buffer.getInt(indexOffset + i * INDEX_ENTRY_SIZE + 12);
+        }
+
+        byte state(int i) {
+            return buffer.get(indexOffset + i * INDEX_ENTRY_SIZE + 16);
+        }
+
+        /**
+         * 键为 group.name 的作业可能的序号(哈希相同的都返回，多加载一个作业没有影响)，快照中没有时返回空数组。
+         */
+        int[] jobOrdinals(String group, String name) {
+            return lookup(jobKeysOffset, jobCount, keyHash(group, name));
+        }
+
+        /**
+         * 键为 group.name 的触发器所属作业可能的序号。
+         */
+        int[] triggerJobOrdinals(String group, String name) {
+            return lookup(triggerKeysOffset, triggerCount, keyHash(group, name));
+        }
+
+        private int[] lookup(int tableOffset, int count, long hash) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (buffer.getLong(tableOffset + mid * KEY_ENTRY_SIZE) < hash) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            int end = lo;
+            while (end < count && buffer.getLong(tableOffset + end * KEY_ENTRY_SIZE) == hash) {
+                end++;
+            }
+            int[] ordinals = new int[end - lo];
+            for (int i = lo; i < end; i++) {
+                ordinals[i - lo] = buffer.getInt(tableOffset + i * KEY_ENTRY_SIZE + 8);
+            }
+            return ordinals;
+        }
+
+        /**
+         * 作业的触发器在作业触发器表中的范围 [jobTriggerStart, jobTriggerEnd)，用 jobTrigger 取得索引下标。
+         */
+        int jobTriggerStart(int ordinal) {
+            return buffer.getInt(jobTableOffset + ordinal * JOB_ENTRY_SIZE + 4);
+        }
+
+        int jobTriggerEnd(int ordinal) {
+            return ordinal + 1 == jobCount ? triggerCount : jobTriggerStart(ordinal + 1);
+        }
+
+        int jobTrigger(int k) {
+            return buffer.getInt(jobTriggersOffset + k * 4);
+        }
+
+        OperableTrigger trigger(int i) throws IOException {
+            RecordReader in = record(buffer.getInt(indexOffset + i * INDEX_ENTRY_SIZE + 8));
+            byte kind = in.readByte();
+            OperableTrigger trigger;
+            switch (kind) {
+                case SIMPLE: {
+                    SimpleTriggerImpl simple = new SimpleTriggerImpl();
+                    readCommon(in, simple);
+                    simple.setRepeatCount(in.readInt());
+                    simple.setRepeatInterval(in.readLong());
+                    simple.setTimesTriggered(in.readInt());
+                    trigger = simple;
+                    break;
+                }
+                case CRON:
+                case COMPILED_CRON: {
+                    CronTriggerImpl cron = kind == CRON ? new CronTriggerImpl() : new CompiledCronTriggerImpl();
+                    readCommon(in, cron);
+                    String expression = in.readString();
+                    cron.setCronExpression(cronExpression(expression, in.readString()));
+                    trigger = cron;
+                    break;
+                }
+                case TRIGGER_SERIALIZED:
+                    trigger = (OperableTrigger) deserialize(in.readBytes());
+                    break;
+                default:
+                    throw new IOException("Unknown trigger record type " + kind + " in " + file);
+            }
+            trigger.setJobDataMap(decodeData(in.readBytes()));
+            return trigger;
+        }
+
+        JobDetail job(int ordinal) throws IOException {
+            RecordReader in = record(buffer.getInt(jobTableOffset + ordinal * JOB_ENTRY_SIZE));
+            byte kind = in.readByte();
+            if (kind == JOB_SERIALIZED) {
+                JobDetail job = (JobDetail) deserialize(in.readBytes());
+                return job.getJobBuilder().setJobData(decodeData(in.readBytes())).build();
+            }
+            if (kind != JOB_PLAIN) {
+                throw new IOException("Unknown job record type " + kind + " in " + file);
+            }
+            JobDetailImpl job = new JobDetailImpl();
+            job.setName(in.readString());
+            job.setGroup(in.readString());
+            job.setDescription(in.readString());
+            job.setJobClass(jobClass(in.readString()));
+            byte flags = in.readByte();
+            job.setDurability((flags & 1) != 0);
+            job.setRequestsRecovery((flags & 2) != 0);
+            job.setJobDataMap(decodeData(in.readBytes()));
+            return job;
+        }
+
+        private void readCommon(RecordReader in, AbstractTrigger<?> trigger) {
+            trigger.setName(in.readString());
+            trigger.setGroup(in.readString());
+            trigger.setJobName(in.readString());
+            trigger.setJobGroup(in.readString());
+            trigger.setDescription(in.readString());
+            trigger.setCalendarName(in.readString());
+            trigger.setPriority(in.readInt());
+            trigger.setMisfireInstruction(in.readInt());
+            trigger.setStartTime(dateOf(in.readLong()));
+            trigger.setEndTime(dateOf(in.readLong()));
+            trigger.setNextFireTime(dateOf(in.readLong()));
+            trigger.setPreviousFireTime(dateOf(in.readLong()));
+        }
+
+        /**
+         * 相同的表达式和时区只解析一次；CompiledCronTriggerImpl 克隆时共享同一个 CronExpression。
+         */
+        private CronExpression cronExpression(String expression, String timeZone) throws IOException {
+            String key = timeZone + ' ' + expression;
+            CronExpression cron = cronExpressions.get(key);
+            if (cron == null) {
+                try {
+                    cron = new CronExpression(expression);
+                } catch (ParseException e) {
+                    throw new IOException("Invalid cron expression '" + expression + "' in " + file, e);
+                }
+                cron.setTimeZone(TimeZone.getTimeZone(timeZone));
+                cronExpressions.put(key, cron);
+            }
+            return cron;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Class<? extends Job> jobClass(String name) throws IOException {
+            Class<? extends Job> type = jobClasses.get(name);
+            if (type == null) {
+                try {
+                    type = (Class<? extends Job>) loadHelper.loadClass(name);
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Job class not found while reading snapshot: " + name, e);
+                }
+                jobClasses.put(name, type);
+            }
+            return type;
+        }
+
+        private RecordReader record(int offset) {
+            int length = buffer.getInt(offset);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            ByteBuffer view = buffer.duplicate();
+            // 与 Java 7/8 兼容：不使用 JDK 9 起 ByteBuffer 覆盖的 position(int)
+            ((Buffer) view).position(offset + 4);
+            view.get(scratch, 0, length);
+            return new RecordReader(scratch, 0);
+        }
+
+        private JobDataMap decodeData(byte[] data) throws IOException {
+            return data.length == 0 ? new JobDataMap() : codec.decode(data);
+        }
+
+        private Object deserialize(byte[] bytes) throws IOException {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                    try {
+                        return loadHelper.loadClass(desc.getName());
+                    } catch (ClassNotFoundException e) {
+                        return super.resolveClass(desc);
+                    }
+                }
+            };
+            try {
+                return in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Class not found while reading snapshot: " + e.getMessage(), e);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(o);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 键的 FNV-1a 64 位哈希。
+     */
+    private static long keyHash(String group, String name) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < group.length(); i++) {
+            h = (h ^ group.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ '.') * 0x100000001b3L;
+        for (int i = 0; i < name.length(); i++) {
+            h = (h ^ name.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long timeOf(Date date) {
+        return date == null ? -1L : date.getTime();
+    }
+
+    private static Date dateOf(long time) {
+        return time < 0 ? null : new Date(time);
+    }
+}
@@ -0,0 +1,363 @@
+package quartzDemo.store;
+
+import org.quartz.Calendar;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.simpl.RAMJobStore;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于分层时间轮的 RAMJobStore。
+ *
+ * RAMJobStore 把所有等待触发的触发器放在一个 TreeSet 中，每次 acquireNextTriggers / triggersFired / storeTrigger
+ * 都要在全局锁内做 O(log n) 的插入和删除。这里保留 RAMJobStore 的全部状态处理逻辑，只把 timeTriggers 换成
+ * TimingWheelTriggerSet，使这些操作变成 O(1) 均摊。同一格内仍然按触发时间和优先级排序(见 Instruc 中的 Trigger Priority)。
+ *
+ * 并行的错过触发(misfire)恢复：
+ * 调度器启动时如果有大量已经错过触发时间的触发器(例如启动时批量加载了开始时间早于现在的触发器)，RAMJobStore 会在
+ * 第一次 acquireNextTriggers 中持有锁逐个执行错过触发指令，全部处理完之前没有任何触发器能够触发。
+ * 设置 misfireRecoveryThreads 后，调度器启动(schedulerStarted)时先在锁内把错过触发的触发器从时间轮中取出，
+ * 然后在 ForkJoinPool 上按 misfireRecoveryBatchSize 分段并行处理：每段先在锁外对触发器的副本执行错过触发指令
+ * (updateAfterMisfire)，再加锁一次，确认触发器没有变化后把副本换入并放回时间轮，最后在锁外通知
+ * TriggerListener.triggerMisfired，每段只唤醒一次调度线程。
+ * 没有错过触发的触发器在恢复期间照常触发。恢复期间被暂停、删除、替换或因作业不允许并发而阻塞的触发器不再处理，
+ * 之后由 RAMJobStore 原有的逻辑(恢复、取出时)处理；所用的日历被替换的触发器在锁内按新的日历重新计算。
+ *
+ * 配置：
+ * org.quartz.jobStore.class = quartzDemo.store.TimingWheelJobStore
+ * org.quartz.jobStore.tickMillis = 1000      (可选，时间轮一格的毫秒数，默认 1000)
+ * org.quartz.jobStore.misfireThreshold = 5000 (可选，与 RAMJobStore 相同)
+ * org.quartz.jobStore.misfireRecoveryThreads = 4       (可选，并行恢复的线程数，默认 0 即不开启)
+ * org.quartz.jobStore.misfireRecoveryBatchSize = 1024  (可选，每段的触发器个数)
+ */
+public class TimingWheelJobStore extends RAMJobStore {
+
+    public static final long DEFAULT_TICK_MILLIS = 1000L;
+
+    public static final int DEFAULT_MISFIRE_RECOVERY_BATCH_SIZE = 1024;
+
+    /** TriggerWrapper 中的状态 */
+    static final int STATE_WAITING = 0;
+
+    static final int STATE_COMPLETE = 3;
+
+    static final int STATE_PAUSED = 4;
+
+    static final int STATE_PAUSED_BLOCKED = 6;
+
+    static final int STATE_ERROR = 7;
+
+    private static final MethodHandle STATE_GETTER;
+
+    private static final MethodHandle STATE_SETTER;
+
+    /** TriggerWrapper.trigger 是 final 字段，MethodHandle 不能写入，只能通过 Field.set 换入执行过错过触发指令的副本 */
+    private static final Field TRIGGER_FIELD;
+
+    static {
+        try {
+            Class<?> wrapperClass = Class.forName("org.quartz.simpl.TriggerWrapper");
+            Field field = wrapperClass.getDeclaredField("state");
+            field.setAccessible(true);
+            STATE_GETTER = MethodHandles.lookup().unreflectGetter(field)
+                    .asType(MethodType.methodType(int.class, Object.class));
+            STATE_SETTER = MethodHandles.lookup().unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, int.class));
+            TRIGGER_FIELD = wrapperClass.getDeclaredField("trigger");
+            TRIGGER_FIELD.setAccessible(true);
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private int misfireRecoveryThreads;
+
+    private int misfireRecoveryBatchSize = DEFAULT_MISFIRE_RECOVERY_BATCH_SIZE;
+
+    private ForkJoinPool recoveryPool;
+
+    public TimingWheelJobStore() {
+        installWheel(DEFAULT_TICK_MILLIS);
+    }
+
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler schedSignaler) {
+        this.signaler = schedSignaler;
+        getLog().info("TimingWheelJobStore initialized (tick = " + getTickMillis() + "ms).");
+    }
+
+    @Override
+    public void schedulerStarted() {
+        super.schedulerStarted();
+        if (misfireRecoveryThreads > 0) {
+            recoverMisfires();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        synchronized (lock) {
+            if (recoveryPool != null) {
+                recoveryPool.shutdownNow();
+                recoveryPool = null;
+            }
+        }
+    }
+
+    public long getTickMillis() {
+        return wheel().getTickMillis();
+    }
+
+    /**
+     * 时间轮一格的长度。只能在存入触发器之前设置(StdSchedulerFactory 会在初始化时调用)。
+     */
+    public void setTickMillis(long tickMillis) {
+        synchronized (lock) {
+            if (!timeTriggers.isEmpty()) {
+                throw new IllegalStateException("Tick cannot be changed once triggers are stored");
+            }
+            installWheel(tickMillis);
+        }
+    }
+
+    public int getMisfireRecoveryThreads() {
+        return misfireRecoveryThreads;
+    }
+
+    /**
+     * 调度器启动时并行恢复错过触发的线程数，0 表示不开启，与 RAMJobStore 的行为相同。
+     */
+    public void setMisfireRecoveryThreads(int misfireRecoveryThreads) {
+        if (misfireRecoveryThreads < 0) {
+            throw new IllegalArgumentException("misfireRecoveryThreads cannot be negative");
+        }
+        this.misfireRecoveryThreads = misfireRecoveryThreads;
+    }
+
+    public int getMisfireRecoveryBatchSize() {
+        return misfireRecoveryBatchSize;
+    }
+
+    public void setMisfireRecoveryBatchSize(int misfireRecoveryBatchSize) {
+        if (misfireRecoveryBatchSize < 1) {
+            throw new IllegalArgumentException("misfireRecoveryBatchSize must be > 0");
+        }
+        this.misfireRecoveryBatchSize = misfireRecoveryBatchSize;
+    }
+
+    /**
+     * 触发器当前的状态(TriggerWrapper.state)，不存在时返回 -1。调用方必须持有 lock。
+     */
+    int triggerState(TriggerKey key) {
+        Object wrapper = triggersByKey.get(key);
+        return wrapper == null ? -1 : stateOf(wrapper);
+    }
+
+    /**
+     * 直接设置触发器的状态，不是 STATE_WAITING 时从时间轮中移除(JournalJobStore 恢复 COMPLETE / ERROR 状态时使用)。
+     * 调用方必须持有 lock。
+     */
+    void restoreTriggerState(TriggerKey key, int state) {
+        Object wrapper = triggersByKey.get(key);
+        if (wrapper == null) {
+            return;
+        }
+        if (state != STATE_WAITING) {
+            timeTriggers.remove(wrapper);
+        }
+        setState(wrapper, state);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void installWheel(long tickMillis) {
+        timeTriggers = (TreeSet) new TimingWheelTriggerSet(tickMillis);
+    }
+
+    private TimingWheelTriggerSet wheel() {
+        return (TimingWheelTriggerSet) (TreeSet) timeTriggers;
+    }
+
+    /**
+     * 在锁内取出所有错过触发的触发器(时间轮中最早的那些)，交给 ForkJoinPool 处理后立即返回。
+     * 忽略错过触发(IGNORE_MISFIRE_POLICY)的触发器也一起取出，由 recover 原样放回。
+     */
+    private void recoverMisfires() {
+        long misfireTime = System.currentTimeMillis() - getMisfireThreshold();
+        synchronized (lock) {
+            List<Object> misfired = wheel().pollUntil(misfireTime);
+            if (misfired.isEmpty()) {
+                return;
+            }
+            if (recoveryPool == null) {
+                recoveryPool = new ForkJoinPool(misfireRecoveryThreads);
+            }
+            Object[] wrappers = misfired.toArray();
+            // 日历在存入时已经复制，之后不会被修改，锁外可以直接使用
+            Map<String, Calendar> calendars = new HashMap<String, Calendar>(calendarsByName);
+            getLog().info("Recovering " + wrappers.length + " misfired triggers on " + misfireRecoveryThreads
+                    + " threads.");
+            recoveryPool.execute(new RecoveryTask(wrappers, 0, wrappers.length, calendars,
+                    new AtomicInteger(wrappers.length), System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * 一段错过触发的触发器：先在锁外对副本执行错过触发指令，再在一次加锁中确认触发器没有变化，换入副本并放回时间轮，
+     * 然后在锁外通知监听器。
+     * 触发器在时间轮外、状态为 WAITING 时，只有 storeCalendar(updateTriggers)或者暂停后恢复会修改它，前者通过日历是否被替换
+     * 发现，后者会把它放回时间轮或改变状态，所以锁外读到不一致的副本时总会被丢弃或重新计算。
+     * 与 RAMJobStore.applyMisfire 相同，监听器收到的是执行指令之前的触发器(下次触发时间是错过的那次)；
+     * 通知在换入之后，JournalJobStore 的 MisfireTrackingSignaler 记录下的是已经更新的触发器。
+     */
+    private void recover(Object[] wrappers, int from, int to, Map<String, Calendar> calendars) {
+        OperableTrigger[] updated = new OperableTrigger[to - from];
+        for (int i = from; i < to; i++) {
+            OperableTrigger trigger = TimingWheelTriggerSet.triggerOf(wrappers[i]);
+            if (trigger.getMisfireInstruction() != Trigger.MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY) {
+                OperableTrigger copy = (OperableTrigger) trigger.clone();
+                copy.updateAfterMisfire(trigger.getCalendarName() == null ? null : calendars.get(trigger.getCalendarName()));
+                updated[i - from] = copy;
+            }
+        }
+
+        List<OperableTrigger> misfired = new ArrayList<OperableTrigger>(to - from);
+        List<OperableTrigger> finalized = null;
+        long earliest = Long.MAX_VALUE;
+        synchronized (lock) {
+            TimingWheelTriggerSet wheel = wheel();
+            for (int i = from; i < to; i++) {
+                Object wrapper = wrappers[i];
+                OperableTrigger trigger = TimingWheelTriggerSet.triggerOf(wrapper);
+                // 恢复期间被删除、替换、暂停、阻塞或已被放回时间轮的触发器不再处理
+                if (triggersByKey.get(trigger.getKey()) != wrapper || stateOf(wrapper) != STATE_WAITING
+                        || wheel.contains(wrapper)) {
+                    continue;
+                }
+                OperableTrigger copy = updated[i - from];
+                if (copy != null) {
+                    String calendarName = trigger.getCalendarName();
+                    Calendar cal = calendarName == null ? null : calendarsByName.get(calendarName);
+                    if (cal != (calendarName == null ? null : calendars.get(calendarName))) {
+                        copy = (OperableTrigger) trigger.clone();
+                        copy.updateAfterMisfire(cal);
+                    }
+                    setTrigger(wrapper, copy);
+                    misfired.add(trigger);
+                    trigger = copy;
+                }
+                Date nextFireTime = trigger.getNextFireTime();
+                if (nextFireTime == null) {
+                    setState(wrapper, STATE_COMPLETE);
+                    if (finalized == null) {
+                        finalized = new ArrayList<OperableTrigger>();
+                    }
+                    finalized.add(trigger);
+                } else {
+                    wheel.add(wrapper);
+                    earliest = Math.min(earliest, nextFireTime.getTime());
+                }
+            }
+        }
+        for (OperableTrigger trigger : misfired) {
+            signaler.notifyTriggerListenersMisfired(trigger);
+        }
+        if (finalized != null) {
+            for (OperableTrigger trigger : finalized) {
+                signaler.notifySchedulerListenersFinalized(trigger);
+            }
+        }
+        if (earliest != Long.MAX_VALUE) {
+            signaler.signalSchedulingChange(earliest);
+        }
+    }
+
+    private static void setTrigger(Object wrapper, OperableTrigger trigger) {
+        try {
+            TRIGGER_FIELD.set(wrapper, trigger);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int stateOf(Object wrapper) {
+        try {
+            return (int) STATE_GETTER.invokeExact(wrapper);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void setState(Object wrapper, int state) {
+        try {
+            STATE_SETTER.invokeExact(wrapper, state);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class RecoveryTask extends RecursiveAction {
+
+        private final Object[] wrappers;
+
+        private final int from;
+
+        private final int to;
+
+        private final Map<String, Calendar> calendars;
+
+        private final AtomicInteger remaining;
+
+        private final long start;
+
+        RecoveryTask(Object[] wrappers, int from, int to, Map<String, Calendar> calendars, AtomicInteger remaining,
+                long start) {
+            this.wrappers = wrappers;
+            this.from = from;
+            this.to = to;
+            this.calendars = calendars;
+            this.remaining = remaining;
+            this.start = start;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > misfireRecoveryBatchSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RecoveryTask(wrappers, from, mid, calendars, remaining, start),
+                        new RecoveryTask(wrappers, mid, to, calendars, remaining, start));
+                return;
+            }
+            try {
+                recover(wrappers, from, to, calendars);
+            } catch (RuntimeException e) {
+                getLog().error("Error recovering misfired triggers", e);
+            }
+            if (remaining.addAndGet(from - to) == 0) {
+                getLog().info("Recovered " + wrappers.length + " misfired triggers in "
+                        + (System.currentTimeMillis() - start) + " ms.");
+            }
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package quartzDemo.store;
+
+import org.quartz.TriggerKey;
+import org.quartz.spi.OperableTrigger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * 用分层时间轮代替 RAMJobStore.timeTriggers 中的 TreeSet。
+ *
+ * RAMJobStore 对 timeTriggers 只用到 add / remove / first / size 等少数几个方法，这里把它们换成时间轮上的操作：
+ * 每层 64 个槽，共 4 层，tickMillis 为一格。add/remove 通过 HashMap 定位节点，O(1)；first 通过每层的占用位图找到
+ * 最近的非空槽，高层槽在需要时下沉(cascade)到低层，每个节点最多下沉 LEVELS 次，所以是 O(1) 均摊。
+ *
+ * 同一格(tick)内的触发器在第一次被 first() 取到时按 (触发时间, 优先级降序, TriggerKey) 排序一次，与
+ * Trigger.TriggerTimeComparator 的顺序相同，即 Instruc 中描述的：同一时刻触发时优先级高的先执行。
+ *
+ * 比游标(cursor)更早的触发器(错过触发时间的、被释放回来的)放在 overdue 里，它是一个普通的有序集合，永远最先被取出。
+ *
+ * 元素是 RAMJobStore 的包级私有类 TriggerWrapper，这里只通过它的 trigger 字段读取触发时间和优先级；
+ * equals/hashCode 与 TriggerWrapper 一致，都按 TriggerKey。
+ * 非线程安全，所有调用都在 RAMJobStore 的 lock 中进行。
+ */
+@SuppressWarnings("serial")
+class TimingWheelTriggerSet extends TreeSet<Object> {
+
+    static final int WHEEL_BITS = 6;
+
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    static final int LEVELS = 4;
+
+    private static final int LEVEL_OVERDUE = -1;
+
+    private static final int LEVEL_OVERFLOW = LEVELS;
+
+    private static final MethodHandle TRIGGER_FIELD;
+
+    static {
+        try {
+            Field field = Class.forName("org.quartz.simpl.TriggerWrapper").getDeclaredField("trigger");
+            field.setAccessible(true);
+            TRIGGER_FIELD = MethodHandles.lookup().unreflectGetter(field)
+                    .asType(MethodType.methodType(OperableTrigger.class, Object.class));
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final Comparator<Node> NODE_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(Node n1, Node n2) {
+            if (n1.fireTime != n2.fireTime) {
+                return n1.fireTime < n2.fireTime ? -1 : 1;
+            }
+            if (n1.priority != n2.priority) {
+                return n1.priority > n2.priority ? -1 : 1;
+            }
+            return n1.key.compareTo(n2.key);
+        }
+    };
+
+    private final long tickMillis;
+
+    private final HashMap<Object, Node> index = new HashMap<Object, Node>(1000);
+
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+
+    private final long[] occupied = new long[LEVELS];
+
+    private final Bucket overflow = new Bucket();
+
+    private final TreeSet<Node> overdue = new TreeSet<Node>(NODE_ORDER);
+
+    private long cursor;
+
+    TimingWheelTriggerSet(long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick must be larger than 0");
+        }
+        this.tickMillis = tickMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheels[level][slot] = new Bucket();
+            }
+        }
+    }
+
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return index.containsKey(o);
+    }
+
+    @Override
+    public boolean add(Object wrapper) {
+        Node node = new Node(wrapper, triggerOf(wrapper), tickMillis);
+        Node existing = index.put(wrapper, node);
+        if (existing != null) {
+            index.put(wrapper, existing);
+            return false;
+        }
+        if (index.size() == 1) {
+            // 空轮时重新对齐游标，往回留一整圈，刚刚错过的触发器仍然能进入时间轮
+            cursor = Math.max(0L, Math.min(node.tick, nowTick() - WHEEL_SIZE));
+        }
+        place(node);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            changed |= add(o);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean remove(Object wrapper) {
+        Node node = index.remove(wrapper);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        overdue.clear();
+        overflow.clear();
+        for (int level = 0; level < LEVELS; level++) {
+            for (Bucket bucket : wheels[level]) {
+                bucket.clear();
+            }
+            occupied[level] = 0L;
+        }
+    }
+
+    @Override
+    public Object first() {
+        Node node = firstNode();
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return node.wrapper;
+    }
+
+    @Override
+    public Object pollFirst() {
+        Node node = firstNode();
+        if (node == null) {
+            return null;
+        }
+        index.remove(node.wrapper);
+        unlink(node);
+        return node.wrapper;
+    }
+
+    /**
+     * 取出触发时间不晚于 time 的所有元素，按触发顺序返回。overdue 中的元素按顺序整段取出，不逐个在 TreeSet 中删除。
+     */
+    List<Object> pollUntil(long time) {
+        List<Object> result = new ArrayList<Object>(overdue.size() + 16);
+        if (!overdue.isEmpty()) {
+            boolean all = overdue.last().fireTime <= time;
+            for (Iterator<Node> it = overdue.iterator(); it.hasNext(); ) {
+                Node node = it.next();
+                if (node.fireTime > time) {
+                    break;
+                }
+                index.remove(node.wrapper);
+                result.add(node.wrapper);
+                if (!all) {
+                    it.remove();
+                }
+            }
+            if (all) {
+                overdue.clear();
+            }
+        }
+        Node node;
+        while ((node = firstNode()) != null && node.fireTime <= time) {
+            index.remove(node.wrapper);
+            unlink(node);
+            result.add(node.wrapper);
+        }
+        return result;
+    }
+
+    /**
+     * 只用于 peekTriggers() 之类的诊断输出，按触发顺序返回一份快照。
+     */
+    @Override
+    public Iterator<Object> iterator() {
+        List<Node> nodes = new ArrayList<Node>(index.values());
+        Collections.sort(nodes, NODE_ORDER);
+        List<Object> wrappers = new ArrayList<Object>(nodes.size());
+        for (Node node : nodes) {
+            wrappers.add(node.wrapper);
+        }
+        return Collections.unmodifiableList(wrappers).iterator();
+    }
+
+    private Node firstNode() {
+        if (!overdue.isEmpty()) {
+            return overdue.first();
+        }
+        while (!index.isEmpty()) {
+            long candidates = occupied[0] & (-1L << digit(cursor, 0));
+            if (candidates != 0) {
+                return wheels[0][Long.numberOfTrailingZeros(candidates)].sortedHead();
+            }
+
+            boolean cascaded = false;
+            for (int level = 1; level < LEVELS && !cascaded; level++) {
+                int d = digit(cursor, level);
+                candidates = d == WHEEL_MASK ? 0L : occupied[level] & (-1L << (d + 1));
+                if (candidates == 0) {
+                    continue;
+                }
+                int slot = Long.numberOfTrailingZeros(candidates);
+                long start = slotStart(level, slot);
+                if (start > horizonTick()) {
+                    // 最近的槽还很远，不为一次查看就把游标推到未来，直接扫描这个槽
+                    return wheels[level][slot].min();
+                }
+                cascade(wheels[level][slot], start);
+                occupied[level] &= ~(1L << slot);
+                cascaded = true;
+            }
+            if (cascaded) {
+                continue;
+            }
+
+            Node min = overflow.min();
+            long start = (min.tick >>> (WHEEL_BITS * LEVELS)) << (WHEEL_BITS * LEVELS);
+            if (start > horizonTick()) {
+                return min;
+            }
+            cascade(overflow, start);
+        }
+        return null;
+    }
+
+    private void cascade(Bucket bucket, long newCursor) {
+        cursor = newCursor;
+        Node node = bucket.detachAll();
+        while (node != null) {
+            Node next = node.next;
+            node.prev = node.next = null;
+            place(node);
+            node = next;
+        }
+    }
+
+    private void place(Node node) {
+        if (node.tick < cursor) {
+            node.level = LEVEL_OVERDUE;
+            overdue.add(node);
+            return;
+        }
+        long diff = node.tick ^ cursor;
+        int level = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / WHEEL_BITS;
+        if (level >= LEVELS) {
+            node.level = LEVEL_OVERFLOW;
+            overflow.append(node, false);
+            return;
+        }
+        int slot = digit(node.tick, level);
+        node.level = level;
+        node.slot = slot;
+        wheels[level][slot].append(node, level == 0);
+        occupied[level] |= 1L << slot;
+    }
+
+    private void unlink(Node node) {
+        if (node.level == LEVEL_OVERDUE) {
+            overdue.remove(node);
+        } else if (node.level == LEVEL_OVERFLOW) {
+            overflow.unlink(node);
+        } else {
+            Bucket bucket = wheels[node.level][node.slot];
+            bucket.unlink(node);
+            if (bucket.head == null) {
+                occupied[node.level] &= ~(1L << node.slot);
+            }
+        }
+    }
+
+    private long nowTick() {
+        return System.currentTimeMillis() / tickMillis;
+    }
+
+    private long horizonTick() {
+        return nowTick() + WHEEL_SIZE;
+    }
+
+    private static int digit(long tick, int level) {
+        return (int) (tick >>> (level * WHEEL_BITS)) & WHEEL_MASK;
+    }
+
+    private long slotStart(int level, int slot) {
+        int shift = (level + 1) * WHEEL_BITS;
+        long upper = shift >= 64 ? 0L : (cursor >>> shift) << shift;
+        return upper | ((long) slot << (level * WHEEL_BITS));
+    }
+
+    static OperableTrigger triggerOf(Object wrapper) {
+        try {
+            return (OperableTrigger) TRIGGER_FIELD.invokeExact(wrapper);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * 时间轮中的一个元素。触发时间和优先级在加入时取快照，RAMJobStore 总是先 remove 再修改触发器，所以快照始终有效。
+     */
+    static final class Node {
+
+        final Object wrapper;
+
+        final TriggerKey key;
+
+        final long fireTime;
+
+        final int priority;
+
+        final long tick;
+
+        int level;
+
+        int slot;
+
+        Node prev;
+
+        Node next;
+
+        Node(Object wrapper, OperableTrigger trigger, long tickMillis) {
+            this.wrapper = wrapper;
+            this.key = trigger.getKey();
+            Date next = trigger.getNextFireTime();
+            this.fireTime = next == null ? Long.MAX_VALUE : next.getTime();
+            this.priority = trigger.getPriority();
+            this.tick = Math.max(0L, fireTime / tickMillis);
+        }
+    }
+
+    /**
+     * 双向链表槽。第 0 层的槽内所有元素 tick 相同，第一次作为最小槽被访问时排序一次，之后按顺序追加的元素保持有序。
+     */
+    static final class Bucket {
+
+        Node head;
+
+        Node tail;
+
+        boolean sorted = true;
+
+        void append(Node node, boolean keepOrder) {
+            if (tail == null) {
+                head = tail = node;
+                sorted = true;
+                return;
+            }
+            if (keepOrder && sorted && NODE_ORDER.compare(tail, node) > 0) {
+                sorted = false;
+            }
+            node.prev = tail;
+            tail.next = node;
+            tail = node;
+        }
+
+        void unlink(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = node.next = null;
+        }
+
+        Node detachAll() {
+            Node first = head;
+            head = tail = null;
+            sorted = true;
+            return first;
+        }
+
+        void clear() {
+            detachAll();
+        }
+
+        Node sortedHead() {
+            if (!sorted) {
+                List<Node> nodes = new ArrayList<Node>();
+                for (Node n = head; n != null; n = n.next) {
+                    nodes.add(n);
+                }
+                Collections.sort(nodes, NODE_ORDER);
+                head = tail = null;
+                for (Node n : nodes) {
+                    n.prev = tail;
+                    n.next = null;
+                    if (tail == null) {
+                        head = n;
+                    } else {
+                        tail.next = n;
+                    }
+                    tail = n;
+                }
+                sorted = true;
+            }
+            return head;
+        }
+
+        Node min() {
+            Node min = head;
+            for (Node n = head; n != null; n = n.next) {
+                if (NODE_ORDER.compare(n, min) < 0) {
+                    min = n;
+                }
+            }
+            return min;
+        }
+    }
+}
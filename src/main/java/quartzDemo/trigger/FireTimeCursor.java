@@ -0,0 +1,107 @@
+package quartzDemo.trigger;
+
+import org.quartz.Calendar;
+import org.quartz.CronExpression;
+import org.quartz.Trigger;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 一个触发器在时间窗口 [from, to) 内的触发时间，按时间顺序逐个计算(惰性)，不生成列表。
+ *
+ * TriggerUtils.computeFireTimes / computeFireTimesBetween 会克隆触发器，逐次调用 triggered() 并把所有结果放进
+ * List<Date>；repeatForever 的 SimpleTrigger 在一个很长的窗口内可能有几百万个触发时间。这里只用只读的
+ * Trigger.getFireTimeAfter()：SimpleTrigger 按开始时间和间隔直接算出窗口内的第一次触发(不从开始时间逐次推进)，
+ * 并考虑 repeatCount 和 endTime；CronTrigger(包括 CompiledCronTriggerImpl)按表达式计算。触发器本身不被修改，
+ * 也不像 computeFireTimesBetween 那样把 SimpleTrigger 的开始时间改成 from(那会改变触发的相位)。
+ *
+ * 有日历时跳过被排除的时间：先用 Calendar.getNextIncludedTime() 跳到下一个包含的时刻，再求这之后的触发时间，
+ * 每 5 分钟触发一次的触发器遇到排除一整个周末的日历只需要一步，而不是逐个检查 576 个触发时间。
+ * 触发时间超过 CronExpression.MAX_YEAR 时停止(与 Quartz 计算第一次触发时间的上限相同)，避免日历排除所有时间时死循环。
+ *
+ * 注意：这是按触发器的定义计算的"计划"时间，不考虑 misfire、暂停和调度器当前的状态。
+ */
+public final class FireTimeCursor implements Iterator<Date> {
+
+    private static final long GIVE_UP_TIME = giveUpTime();
+
+    private final Trigger trigger;
+
+    private final Calendar calendar;
+
+    private final long to;
+
+    private Date next;
+
+    private FireTimeCursor(Trigger trigger, Calendar calendar, long from, long to) {
+        this.trigger = trigger;
+        this.calendar = calendar;
+        this.to = Math.min(to, GIVE_UP_TIME);
+        this.next = included(trigger.getFireTimeAfter(new Date(from - 1)));
+    }
+
+    /**
+     * @param calendar 触发器使用的日历，没有时传 null
+     * @param from     窗口开始(包含)，null 表示现在
+     * @param to       窗口结束(不包含)，null 表示不限
+     */
+    public static FireTimeCursor of(Trigger trigger, Calendar calendar, Date from, Date to) {
+        long start = from == null ? System.currentTimeMillis() : from.getTime();
+        long end = to == null ? Long.MAX_VALUE : to.getTime();
+        return new FireTimeCursor(trigger, calendar, start, end);
+    }
+
+    public Trigger getTrigger() {
+        return trigger;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * 下一次触发时间(毫秒)，不移动游标；没有时返回 Long.MAX_VALUE。
+     */
+    public long peekTime() {
+        return next == null ? Long.MAX_VALUE : next.getTime();
+    }
+
+    @Override
+    public Date next() {
+        Date current = next;
+        if (current == null) {
+            throw new NoSuchElementException();
+        }
+        next = included(trigger.getFireTimeAfter(current));
+        return current;
+    }
+
+    /**
+     * 跳过日历排除的时间，超出窗口时返回 null。
+     */
+    private Date included(Date time) {
+        while (time != null && time.getTime() < to) {
+            if (calendar == null || calendar.isTimeIncluded(time.getTime())) {
+                return time;
+            }
+            long jump = Math.max(calendar.getNextIncludedTime(time.getTime()), time.getTime() + 1);
+            time = trigger.getFireTimeAfter(new Date(jump - 1));
+        }
+        return null;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static long giveUpTime() {
+        java.util.Calendar cal = java.util.Calendar.getInstance();
+        cal.clear();
+        cal.set(CronExpression.MAX_YEAR + 1, java.util.Calendar.JANUARY, 1);
+        return cal.getTimeInMillis();
+    }
+}
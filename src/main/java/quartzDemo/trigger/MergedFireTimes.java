@@ -0,0 +1,187 @@
+package quartzDemo.trigger;
+
+import org.quartz.Calendar;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 多个触发器在同一个时间窗口内的触发时间，按时间顺序合并成一个流，例如"接下来一小时内所有触发器的所有触发"。
+ *
+ * 每个触发器一个 FireTimeCursor，游标放在按下一次触发时间排序的二叉堆中：每次取堆顶的触发，游标前进一步后下沉，
+ * 取出 k 个触发的代价是 O(k log n)，内存只有 n 个游标，与窗口内触发的总数无关；调用方可以在任何时候停止，
+ * 窗口内剩下的触发时间不会被计算。同一时刻的多个触发之间按优先级从高到低返回。
+ *
+ * 用法：
+ * MergedFireTimes fires = MergedFireTimes.of(scheduler, from, to);
+ * while (fires.next()) {
+ *     fires.getTrigger().getKey() ... fires.getFireTime() ...
+ * }
+ */
+public final class MergedFireTimes {
+
+    private final Date from;
+
+    private final Date to;
+
+    private FireTimeCursor[] heap = new FireTimeCursor[16];
+
+    private int size;
+
+    private FireTimeCursor current;
+
+    private long fireTime;
+
+    /**
+     * @param from 窗口开始(包含)，null 表示现在
+     * @param to   窗口结束(不包含)，null 表示不限
+     */
+    public MergedFireTimes(Date from, Date to) {
+        this.from = from == null ? new Date() : from;
+        this.to = to;
+    }
+
+    /**
+     * 调度器中所有会触发的触发器(跳过暂停和出错的)，使用各自的日历。
+     */
+    public static MergedFireTimes of(Scheduler scheduler, Date from, Date to) throws SchedulerException {
+        MergedFireTimes fires = new MergedFireTimes(from, to);
+        Map<String, Calendar> calendars = new HashMap<String, Calendar>();
+        for (TriggerKey key : scheduler.getTriggerKeys(GroupMatcher.<TriggerKey>anyGroup())) {
+            Trigger.TriggerState state = scheduler.getTriggerState(key);
+            if (state == Trigger.TriggerState.PAUSED || state == Trigger.TriggerState.ERROR
+                    || state == Trigger.TriggerState.NONE) {
+                continue;
+            }
+            Trigger trigger = scheduler.getTrigger(key);
+            if (trigger == null) {
+                continue;
+            }
+            Calendar calendar = null;
+            String calendarName = trigger.getCalendarName();
+            if (calendarName != null) {
+                calendar = calendars.get(calendarName);
+                if (calendar == null) {
+                    calendar = scheduler.getCalendar(calendarName);
+                    calendars.put(calendarName, calendar);
+                }
+            }
+            fires.add(trigger, calendar);
+        }
+        return fires;
+    }
+
+    /**
+     * 加入一个触发器；只能在第一次调用 next() 之前调用。
+     *
+     * @param calendar 触发器使用的日历，没有时传 null
+     */
+    public void add(Trigger trigger, Calendar calendar) {
+        if (current != null) {
+            throw new IllegalStateException("Can't add triggers after iteration has started");
+        }
+        FireTimeCursor cursor = FireTimeCursor.of(trigger, calendar, from, to);
+        if (!cursor.hasNext()) {
+            return;
+        }
+        if (size == heap.length) {
+            FireTimeCursor[] grown = new FireTimeCursor[size * 2];
+            System.arraycopy(heap, 0, grown, 0, size);
+            heap = grown;
+        }
+        heap[size] = cursor;
+        siftUp(size++);
+    }
+
+    /**
+     * 触发器数(不包括窗口内没有触发的)。
+     */
+    public int getTriggerCount() {
+        return size;
+    }
+
+    /**
+     * 移动到下一次触发，窗口内没有更多触发时返回 false。
+     */
+    public boolean next() {
+        if (current != null) {
+            current.next();
+            if (current.hasNext()) {
+                siftDown(0);
+            } else {
+                heap[0] = heap[--size];
+                heap[size] = null;
+                if (size > 0) {
+                    siftDown(0);
+                }
+            }
+        }
+        if (size == 0) {
+            current = null;
+            return false;
+        }
+        current = heap[0];
+        fireTime = current.peekTime();
+        return true;
+    }
+
+    /**
+     * 当前这次触发的触发器。
+     */
+    public Trigger getTrigger() {
+        return current.getTrigger();
+    }
+
+    /**
+     * 当前这次触发的时间(毫秒)。
+     */
+    public long getFireTime() {
+        return fireTime;
+    }
+
+    private boolean before(FireTimeCursor a, FireTimeCursor b) {
+        long ta = a.peekTime();
+        long tb = b.peekTime();
+        if (ta != tb) {
+            return ta < tb;
+        }
+        return a.getTrigger().getPriority() > b.getTrigger().getPriority();
+    }
+
+    private void siftUp(int i) {
+        FireTimeCursor cursor = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(cursor, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = cursor;
+    }
+
+    private void siftDown(int i) {
+        FireTimeCursor cursor = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && before(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!before(heap[child], cursor)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = cursor;
+    }
+}
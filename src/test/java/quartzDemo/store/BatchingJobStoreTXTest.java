@@ -0,0 +1,398 @@
+package quartzDemo.store;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobPersistenceException;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.jdbcjobstore.StdJDBCDelegate;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredResult;
+import org.quartz.utils.ConnectionProvider;
+import org.quartz.utils.DBConnectionManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * BatchingJobStoreTX 在内存 H2 数据库上的取出、触发和完成，表结构来自 quartz 包中的 tables_h2.sql。
+ */
+public class BatchingJobStoreTXTest {
+
+    private static final String SCHEMA = "org/quartz/impl/jdbcjobstore/tables_h2.sql";
+
+    private static final AtomicInteger DATABASE_SEQ = new AtomicInteger();
+
+    private String dataSource;
+
+    private String url;
+
+    private BatchingJobStoreTX store;
+
+    @Before
+    public void createDatabase() throws Exception {
+        dataSource = "batchingTest" + DATABASE_SEQ.incrementAndGet();
+        url = "jdbc:h2:mem:" + dataSource + ";DB_CLOSE_DELAY=-1";
+        Connection conn = DriverManager.getConnection(url, "sa", "");
+        try {
+            Statement st = conn.createStatement();
+            for (String sql : readSchema().split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    st.execute(sql);
+                }
+            }
+            st.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    @After
+    public void dropDatabase() throws Exception {
+        ConflictingDelegate.conflicts = false;
+        if (store != null) {
+            store.shutdown();
+        }
+        Connection conn = DriverManager.getConnection(url, "sa", "");
+        try {
+            conn.createStatement().execute("SHUTDOWN");
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void acquireFireAndCompleteInBatches() throws Exception {
+        acquireFireAndComplete(true);
+    }
+
+    @Test
+    public void acquireFireAndCompleteWithBatchInsert() throws Exception {
+        acquireFireAndComplete(false);
+    }
+
+    private void acquireFireAndComplete(boolean multiRowInsert) throws Exception {
+        store = newStore(multiRowInsert, StdJDBCDelegate.class);
+        List<TriggerKey> keys = storeTriggers(20);
+
+        long now = System.currentTimeMillis();
+        List<OperableTrigger> acquired = store.acquireNextTriggers(now, 50, 0);
+        assertEquals(20, acquired.size());
+        assertEquals(new HashSet<TriggerKey>(keys), keysOf(acquired));
+        assertEquals(20, count("SELECT COUNT(*) FROM QRTZ_FIRED_TRIGGERS WHERE STATE = 'ACQUIRED'"));
+        // 已经取出的触发器不会被再次取出
+        assertEquals(0, store.acquireNextTriggers(now, 50, 0).size());
+
+        List<TriggerFiredResult> results = store.triggersFired(acquired);
+        assertEquals(20, results.size());
+        for (TriggerFiredResult result : results) {
+            assertNotNull(result.getTriggerFiredBundle());
+        }
+        assertEquals(20, count("SELECT COUNT(*) FROM QRTZ_FIRED_TRIGGERS WHERE STATE = 'EXECUTING'"
+                + " AND JOB_NAME IS NOT NULL"));
+        assertEquals(20, count("SELECT COUNT(*) FROM QRTZ_TRIGGERS WHERE TRIGGER_STATE = 'WAITING'"));
+        // 下次触发在一小时后
+        assertEquals(0, store.acquireNextTriggers(System.currentTimeMillis(), 50, 0).size());
+
+        for (TriggerFiredResult result : results) {
+            store.triggeredJobComplete(result.getTriggerFiredBundle().getTrigger(),
+                    result.getTriggerFiredBundle().getJobDetail(), Trigger.CompletedExecutionInstruction.NOOP);
+        }
+        // NOOP 的完成延迟删除，shutdown 时删除队列中剩余的行
+        store.shutdown();
+        store = null;
+        assertEquals(0, count("SELECT COUNT(*) FROM QRTZ_FIRED_TRIGGERS"));
+    }
+
+    @Test
+    public void skipsTriggersNoLongerAcquired() throws Exception {
+        store = newStore(true, StdJDBCDelegate.class);
+        storeTriggers(3);
+
+        List<OperableTrigger> acquired = store.acquireNextTriggers(System.currentTimeMillis(), 50, 0);
+        assertEquals(3, acquired.size());
+        // 取出之后暂停其中一个，触发时只跳过它
+        TriggerKey paused = acquired.get(1).getKey();
+        update("UPDATE QRTZ_TRIGGERS SET TRIGGER_STATE = 'PAUSED' WHERE TRIGGER_NAME = '" + paused.getName() + "'");
+
+        List<TriggerFiredResult> results = store.triggersFired(acquired);
+        assertEquals(3, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            TriggerKey key = acquired.get(i).getKey();
+            assertEquals(key.toString(), !key.equals(paused), results.get(i).getTriggerFiredBundle() != null);
+        }
+    }
+
+    @Test
+    public void rollsBackWhenAcquireUpdateCountDiffers() throws Exception {
+        store = newStore(true, ConflictingDelegate.class);
+        storeTriggers(5);
+
+        ConflictingDelegate.conflicts = true;
+        try {
+            store.acquireNextTriggers(System.currentTimeMillis(), 50, 0);
+            fail("Expected JobPersistenceException");
+        } catch (JobPersistenceException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("Acquired 4 of 5"));
+        }
+        // 整个事务回滚：包括 ConflictingDelegate 在同一事务中的修改
+        assertEquals(5, count("SELECT COUNT(*) FROM QRTZ_TRIGGERS WHERE TRIGGER_STATE = 'WAITING'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM QRTZ_FIRED_TRIGGERS"));
+
+        ConflictingDelegate.conflicts = false;
+        assertEquals(5, store.acquireNextTriggers(System.currentTimeMillis(), 50, 0).size());
+    }
+
+    @Test
+    public void schedulerFiresEveryTriggerOnce() throws Exception {
+        int triggers = 200;
+        CountingJob.executions.clear();
+        CountingJob.done = new CountDownLatch(triggers);
+
+        Properties props = new Properties();
+        props.setProperty("org.quartz.scheduler.instanceName", dataSource);
+        props.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "10");
+        props.setProperty("org.quartz.threadPool.threadCount", "5");
+        props.setProperty("org.quartz.jobStore.class", BatchingJobStoreTX.class.getName());
+        props.setProperty("org.quartz.jobStore.driverDelegateClass", StdJDBCDelegate.class.getName());
+        props.setProperty("org.quartz.jobStore.dataSource", dataSource);
+        props.setProperty("org.quartz.dataSource." + dataSource + ".connectionProvider.class",
+                H2ConnectionProvider.class.getName());
+        props.setProperty("org.quartz.dataSource." + dataSource + ".url", url);
+        Scheduler scheduler = new StdSchedulerFactory(props).getScheduler();
+        try {
+            scheduler.addJob(JobBuilder.newJob(CountingJob.class).withIdentity("counting").storeDurably().build(), false);
+            for (int i = 0; i < triggers; i++) {
+                // 每小时一次：第一次执行完成的结果是 NOOP，QRTZ_FIRED_TRIGGERS 由 CompletionFlusher 延迟删除
+                scheduler.scheduleJob(TriggerBuilder.newTrigger().withIdentity("t" + i).forJob("counting")
+                        .startNow().withSchedule(SimpleScheduleBuilder.repeatHourlyForever()).build());
+            }
+            scheduler.start();
+            assertTrue("Not all triggers fired", CountingJob.done.await(30, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown(true);
+        }
+
+        assertEquals(triggers, CountingJob.executions.size());
+        for (AtomicInteger executions : CountingJob.executions.values()) {
+            assertEquals(1, executions.get());
+        }
+        // shutdown 等待 CompletionFlusher 删除队列中剩余的行
+        assertEquals(0, count("SELECT COUNT(*) FROM QRTZ_FIRED_TRIGGERS"));
+        assertEquals(triggers, count("SELECT COUNT(*) FROM QRTZ_TRIGGERS WHERE TRIGGER_STATE = 'WAITING'"));
+    }
+
+    private BatchingJobStoreTX newStore(boolean multiRowInsert, Class<?> delegateClass) throws Exception {
+        H2ConnectionProvider provider = new H2ConnectionProvider();
+        provider.setUrl(url);
+        DBConnectionManager.getInstance().addConnectionProvider(dataSource, provider);
+
+        BatchingJobStoreTX store = new BatchingJobStoreTX();
+        store.setDataSource(dataSource);
+        store.setDriverDelegateClass(delegateClass.getName());
+        store.setInstanceName(dataSource);
+        store.setInstanceId("test");
+        store.setMultiRowInsert(multiRowInsert);
+        CascadingClassLoadHelper loadHelper = new CascadingClassLoadHelper();
+        loadHelper.initialize();
+        store.initialize(loadHelper, new NoopSignaler());
+        store.schedulerStarted();
+        return store;
+    }
+
+    /**
+     * 一个允许并发的作业和 count 个已经到期、每小时触发一次的触发器。
+     */
+    private List<TriggerKey> storeTriggers(int count) throws JobPersistenceException {
+        JobDetail job = JobBuilder.newJob(CountingJob.class).withIdentity("job").storeDurably().build();
+        store.storeJob(job, false);
+        List<TriggerKey> keys = new ArrayList<TriggerKey>();
+        Date start = new Date(System.currentTimeMillis() - 1000);
+        for (int i = 0; i < count; i++) {
+            OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+                    .withIdentity("trigger" + i)
+                    .forJob(job)
+                    .startAt(start)
+                    .withSchedule(SimpleScheduleBuilder.repeatHourlyForever())
+                    .build();
+            trigger.computeFirstFireTime(null);
+            store.storeTrigger(trigger, false);
+            keys.add(trigger.getKey());
+        }
+        return keys;
+    }
+
+    private static Set<TriggerKey> keysOf(List<OperableTrigger> triggers) {
+        Set<TriggerKey> keys = new HashSet<TriggerKey>();
+        for (OperableTrigger trigger : triggers) {
+            assertTrue("Duplicate " + trigger.getKey(), keys.add(trigger.getKey()));
+        }
+        return keys;
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection conn = DriverManager.getConnection(url, "sa", "");
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(sql);
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private void update(String sql) throws SQLException {
+        Connection conn = DriverManager.getConnection(url, "sa", "");
+        try {
+            conn.createStatement().executeUpdate(sql);
+        } finally {
+            conn.close();
+        }
+    }
+
+    static String readSchema() throws IOException {
+        StringBuilder sql = new StringBuilder();
+        InputStream in = BatchingJobStoreTXTest.class.getClassLoader().getResourceAsStream(SCHEMA);
+        if (in == null) {
+            throw new IOException(SCHEMA + " not found");
+        }
+        try {
+            Reader reader = new InputStreamReader(in, "UTF-8");
+            char[] buf = new char[4096];
+            int n;
+            while ((n = reader.read(buf)) > 0) {
+                sql.append(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        // 去掉注释行；quartz 2.3.1 的 QRTZ_SIMPROP_TRIGGERS 最后一列后多了一个逗号，H2 1.4 不接受
+        return sql.toString().replaceAll("(?m)^--.*$", "").replaceAll(",\\s*\\)", ")");
+    }
+
+    public static class CountingJob implements Job {
+
+        static final ConcurrentHashMap<TriggerKey, AtomicInteger> executions =
+                new ConcurrentHashMap<TriggerKey, AtomicInteger>();
+
+        static volatile CountDownLatch done = new CountDownLatch(0);
+
+        @Override
+        public void execute(JobExecutionContext context) {
+            AtomicInteger count = new AtomicInteger();
+            AtomicInteger existing = executions.putIfAbsent(context.getTrigger().getKey(), count);
+            (existing != null ? existing : count).incrementAndGet();
+            done.countDown();
+        }
+    }
+
+    /**
+     * 选出候选之后，在同一个事务中把最后一个候选改为 PAUSED，模拟 WAITING -> ACQUIRED 的多行 UPDATE 行数不符。
+     */
+    public static class ConflictingDelegate extends StdJDBCDelegate {
+
+        static volatile boolean conflicts;
+
+        @Override
+        public List<TriggerKey> selectTriggerToAcquire(Connection conn, long noLaterThan, long noEarlierThan,
+                                                       int maxCount) throws SQLException {
+            List<TriggerKey> keys = super.selectTriggerToAcquire(conn, noLaterThan, noEarlierThan, maxCount);
+            if (conflicts && !keys.isEmpty()) {
+                TriggerKey last = keys.get(keys.size() - 1);
+                PreparedStatement ps = conn.prepareStatement(rtp("UPDATE {0}TRIGGERS SET TRIGGER_STATE = ?"
+                        + " WHERE SCHED_NAME = {1} AND TRIGGER_NAME = ? AND TRIGGER_GROUP = ?"));
+                try {
+                    ps.setString(1, STATE_PAUSED);
+                    ps.setString(2, last.getName());
+                    ps.setString(3, last.getGroup());
+                    ps.executeUpdate();
+                } finally {
+                    ps.close();
+                }
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * 不使用连接池，每次打开一个新的 H2 连接。
+     */
+    public static class H2ConnectionProvider implements ConnectionProvider {
+
+        private String url;
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return DriverManager.getConnection(url, "sa", "");
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public void initialize() {
+        }
+    }
+
+    private static class NoopSignaler implements SchedulerSignaler {
+
+        @Override
+        public void notifyTriggerListenersMisfired(Trigger trigger) {
+        }
+
+        @Override
+        public void notifySchedulerListenersFinalized(Trigger trigger) {
+        }
+
+        @Override
+        public void notifySchedulerListenersJobDeleted(JobKey jobKey) {
+        }
+
+        @Override
+        public void signalSchedulingChange(long candidateNewNextFireTime) {
+        }
+
+        @Override
+        public void notifySchedulerListenersError(String string, org.quartz.SchedulerException jpe) {
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package quartzDemo.store;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.JobBuilder;
+import org.quartz.Scheduler;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.SchedulerRepository;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.jdbcjobstore.StdJDBCDelegate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 同一个 JVM 中的多个集群节点共用一个内存 H2 数据库，在同一批触发器上竞争时每个触发器只触发一次。
+ */
+public class OptimisticJobStoreTXTest {
+
+    private static final int NODES = 3;
+
+    private static final int TRIGGERS = 200;
+
+    private static final AtomicInteger DATABASE_SEQ = new AtomicInteger();
+
+    private String dataSource;
+
+    private String url;
+
+    @Before
+    public void createDatabase() throws Exception {
+        dataSource = "optimisticTest" + DATABASE_SEQ.incrementAndGet();
+        url = "jdbc:h2:mem:" + dataSource + ";DB_CLOSE_DELAY=-1";
+        Connection conn = DriverManager.getConnection(url, "sa", "");
+        try {
+            Statement st = conn.createStatement();
+            for (String sql : BatchingJobStoreTXTest.readSchema().split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    st.execute(sql);
+                }
+            }
+            st.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    @After
+    public void dropDatabase() throws Exception {
+        Connection conn = DriverManager.getConnection(url, "sa", "");
+        try {
+            conn.createStatement().execute("SHUTDOWN");
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * 不分区：每个节点都取所有到期的触发器，只靠版本条件避免重复触发。
+     */
+    @Test
+    public void racingNodesFireEveryTriggerOnce() throws Exception {
+        fireOnceAcrossNodes(false);
+    }
+
+    @Test
+    public void partitionedNodesFireEveryTriggerOnce() throws Exception {
+        fireOnceAcrossNodes(true);
+    }
+
+    private void fireOnceAcrossNodes(boolean partitioned) throws Exception {
+        BatchingJobStoreTXTest.CountingJob.executions.clear();
+        BatchingJobStoreTXTest.CountingJob.done = new CountDownLatch(TRIGGERS);
+
+        List<Scheduler> nodes = new ArrayList<Scheduler>();
+        try {
+            for (int i = 0; i < NODES; i++) {
+                nodes.add(newNode("node" + i, partitioned));
+            }
+            Scheduler first = nodes.get(0);
+            first.addJob(JobBuilder.newJob(BatchingJobStoreTXTest.CountingJob.class).withIdentity("counting")
+                    .storeDurably().build(), false);
+            for (int i = 0; i < TRIGGERS; i++) {
+                // 每小时一次：测试期间每个触发器只应该执行一次
+                first.scheduleJob(TriggerBuilder.newTrigger().withIdentity("t" + i).forJob("counting")
+                        .startNow().withSchedule(SimpleScheduleBuilder.repeatHourlyForever()).build());
+            }
+            for (Scheduler node : nodes) {
+                node.start();
+            }
+            assertTrue("Not all triggers fired", BatchingJobStoreTXTest.CountingJob.done.await(30, TimeUnit.SECONDS));
+            // 给重复触发留出时间
+            Thread.sleep(1000L);
+        } finally {
+            for (Scheduler node : nodes) {
+                node.shutdown(true);
+            }
+        }
+
+        assertEquals(TRIGGERS, BatchingJobStoreTXTest.CountingJob.executions.size());
+        for (AtomicInteger executions : BatchingJobStoreTXTest.CountingJob.executions.values()) {
+            assertEquals(1, executions.get());
+        }
+        assertEquals(0, count("SELECT COUNT(*) FROM QRTZ_FIRED_TRIGGERS"));
+        assertEquals(TRIGGERS, count("SELECT COUNT(*) FROM QRTZ_TRIGGERS WHERE TRIGGER_STATE = 'WAITING'"));
+    }
+
+    private Scheduler newNode(String instanceId, boolean partitioned) throws Exception {
+        Properties props = new Properties();
+        props.setProperty("org.quartz.scheduler.instanceName", dataSource);
+        props.setProperty("org.quartz.scheduler.instanceId", instanceId);
+        props.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "10");
+        props.setProperty("org.quartz.threadPool.threadCount", "5");
+        props.setProperty("org.quartz.jobStore.class", OptimisticJobStoreTX.class.getName());
+        props.setProperty("org.quartz.jobStore.driverDelegateClass", StdJDBCDelegate.class.getName());
+        props.setProperty("org.quartz.jobStore.isClustered", "true");
+        props.setProperty("org.quartz.jobStore.partitioned", String.valueOf(partitioned));
+        props.setProperty("org.quartz.jobStore.dataSource", dataSource);
+        props.setProperty("org.quartz.dataSource." + dataSource + ".connectionProvider.class",
+                BatchingJobStoreTXTest.H2ConnectionProvider.class.getName());
+        props.setProperty("org.quartz.dataSource." + dataSource + ".url", url);
+        Scheduler scheduler = new StdSchedulerFactory(props).getScheduler();
+        // 集群节点的调度器名称相同，从 SchedulerRepository 中移除，下一个工厂才会创建新的实例
+        SchedulerRepository.getInstance().remove(dataSource);
+        return scheduler;
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection conn = DriverManager.getConnection(url, "sa", "");
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(sql);
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            conn.close();
+        }
+    }
+}